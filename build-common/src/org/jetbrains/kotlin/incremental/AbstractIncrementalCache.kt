@@ -47,8 +47,9 @@ interface IncrementalCacheCommon {
  */
 abstract class AbstractIncrementalCache<ClassName>(
     workingDir: File,
-    protected val pathConverter: FileToPathConverter
-) : BasicMapsOwner(workingDir), IncrementalCacheCommon {
+    protected val pathConverter: FileToPathConverter,
+    storageBackend: StorageBackend = StorageBackend.DEFAULT
+) : BasicMapsOwner(workingDir, storageBackend), IncrementalCacheCommon {
     companion object {
         private val SUBTYPES = "subtypes"
         private val SUPERTYPES = "supertypes"
@@ -36,8 +36,9 @@ import java.io.File
 
 open class IncrementalJsCache(
     cachesDir: File,
-    pathConverter: FileToPathConverter
-) : AbstractIncrementalCache<FqName>(cachesDir, pathConverter) {
+    pathConverter: FileToPathConverter,
+    storageBackend: StorageBackend = StorageBackend.DEFAULT
+) : AbstractIncrementalCache<FqName>(cachesDir, pathConverter, storageBackend) {
     companion object {
         private const val TRANSLATION_RESULT_MAP = "translation-result"
         private const val INLINE_FUNCTIONS = "inline-functions"
@@ -44,10 +44,12 @@ val KOTLIN_CACHE_DIRECTORY_NAME = "kotlin"
 open class IncrementalJvmCache(
     private val targetDataRoot: File,
     targetOutputDir: File?,
-    pathConverter: FileToPathConverter
+    pathConverter: FileToPathConverter,
+    storageBackend: StorageBackend = StorageBackend.DEFAULT
 ) : AbstractIncrementalCache<JvmClassName>(
     workingDir = File(targetDataRoot, KOTLIN_CACHE_DIRECTORY_NAME),
-    pathConverter = pathConverter
+    pathConverter = pathConverter,
+    storageBackend = storageBackend
 ), IncrementalCache {
     companion object {
         private val PROTO_MAP = "proto"
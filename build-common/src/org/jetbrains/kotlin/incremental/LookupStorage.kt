@@ -24,21 +24,31 @@ import org.jetbrains.kotlin.incremental.components.Position
 import org.jetbrains.kotlin.incremental.components.ScopeKind
 import org.jetbrains.kotlin.incremental.storage.*
 import org.jetbrains.kotlin.utils.Printer
-import org.jetbrains.kotlin.utils.keysToMap
 import java.io.File
 import java.io.IOException
 import java.util.*
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.write
 
 
 open class LookupStorage(
     targetDataDir: File,
-    pathConverter: FileToPathConverter
-) : BasicMapsOwner(targetDataDir) {
+    pathConverter: FileToPathConverter,
+    storageBackend: StorageBackend = StorageBackend.DEFAULT
+) : BasicMapsOwner(targetDataDir, storageBackend) {
     companion object {
         private val DELETED_TO_SIZE_TRESHOLD = 0.5
         private val MINIMUM_GARBAGE_COLLECTIBLE_SIZE = 10000
+        private val LOOKUP_LOCK_STRIPES = 64
     }
 
+    // Lookups are read and added under the read lock, so that several compilations sharing the storage don't wait for each other.
+    // Everything which removes data or renumbers files takes the write lock
+    private val lock = ReentrantReadWriteLock()
+    // Guards updates of lookups with the same key from concurrent [addAll] calls
+    private val lookupLocks = Array(LOOKUP_LOCK_STRIPES) { Any() }
+
     private val countersFile = "counters".storageFile
     private val idToFile = registerMap(IdToFileMap("id-to-file".storageFile, pathConverter))
     private val fileToId = registerMap(FileToIdMap("file-to-id".storageFile, pathConverter))
@@ -63,8 +73,7 @@ open class LookupStorage(
 
     }
 
-    @Synchronized
-    fun get(lookupSymbol: LookupSymbol): Collection<String> {
+    fun get(lookupSymbol: LookupSymbol): Collection<String> = lock.read {
         val key = LookupSymbolKey(lookupSymbol.name, lookupSymbol.scope)
         val fileIds = lookupMap[key] ?: return emptySet()
 
@@ -74,20 +83,26 @@ open class LookupStorage(
         }
     }
 
-    @Synchronized
-    fun addAll(lookups: Set<Map.Entry<LookupSymbol, Collection<String>>>, allPaths: Set<String>) {
-        val pathToId = allPaths.keysToMap { addFileIfNeeded(File(it)) }
+    fun addAll(lookups: Set<Map.Entry<LookupSymbol, Collection<String>>>, allPaths: Set<String>) = lock.read {
+        val pathToId = addFilesIfNeeded(allPaths)
 
+        // Lookups with the same key are merged, and keys are written in their order, so that each key is updated once
+        // and the storage is written sequentially
+        val keyToFileIds = TreeMap<LookupSymbolKey, MutableSet<Int>>()
         for ((lookupSymbol, paths) in lookups) {
             val key = LookupSymbolKey(lookupSymbol.name, lookupSymbol.scope)
-            val fileIds = paths.mapTo(HashSet<Int>()) { pathToId[it]!! }
-            fileIds.addAll(lookupMap[key] ?: emptySet())
-            lookupMap[key] = fileIds
+            paths.mapTo(keyToFileIds.getOrPut(key) { HashSet() }) { pathToId[it]!! }
+        }
+
+        for ((key, fileIds) in keyToFileIds) {
+            synchronized(lookupLocks[(key.hashCode() and Int.MAX_VALUE) % LOOKUP_LOCK_STRIPES]) {
+                fileIds.addAll(lookupMap[key] ?: emptySet())
+                lookupMap[key] = fileIds
+            }
         }
     }
 
-    @Synchronized
-    fun removeLookupsFrom(files: Sequence<File>) {
+    fun removeLookupsFrom(files: Sequence<File>) = lock.write {
         for (file in files) {
             val id = fileToId[file] ?: continue
             idToFile.remove(id)
@@ -96,8 +111,7 @@ open class LookupStorage(
         }
     }
 
-    @Synchronized
-    override fun clean() {
+    override fun clean() = lock.write {
         if (countersFile.exists()) {
             countersFile.delete()
         }
@@ -108,8 +122,7 @@ open class LookupStorage(
         super.clean()
     }
 
-    @Synchronized
-    override fun flush(memoryCachesOnly: Boolean) {
+    override fun flush(memoryCachesOnly: Boolean) = lock.write {
         try {
             removeGarbageIfNeeded()
 
@@ -127,6 +140,33 @@ open class LookupStorage(
         }
     }
 
+    // Ids of new files are allocated at once, in the order of their paths
+    @Synchronized
+    private fun addFilesIfNeeded(paths: Set<String>): Map<String, Int> {
+        val pathToId = HashMap<String, Int>(paths.size)
+        val newPaths = ArrayList<String>()
+        for (path in paths) {
+            val existing = fileToId[File(path)]
+            if (existing != null) {
+                pathToId[path] = existing
+            }
+            else {
+                newPaths.add(path)
+            }
+        }
+
+        newPaths.sort()
+        for ((i, path) in newPaths.withIndex()) {
+            val id = size + i
+            val file = File(path)
+            fileToId[file] = id
+            idToFile[id] = file
+            pathToId[path] = id
+        }
+        size += newPaths.size
+        return pathToId
+    }
+
     private fun addFileIfNeeded(file: File): Int {
         val existing = fileToId[file]
         if (existing != null) return existing
@@ -172,7 +212,7 @@ open class LookupStorage(
         }
     }
 
-    @TestOnly fun forceGC() {
+    @TestOnly fun forceGC() = lock.write {
         removeGarbageIfNeeded(force = true)
         flush(false)
     }
@@ -17,6 +17,8 @@
 package org.jetbrains.kotlin.incremental
 
 import java.io.File
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
 
 fun File.isJavaFile() =
         extension.equals("java", ignoreCase = true)
@@ -26,3 +28,23 @@ fun File.isKotlinFile(sourceFilesExtensions: List<String>): Boolean =
 
 fun File.isClassFile(): Boolean =
         extension.equals("class", ignoreCase = true)
+
+/**
+ * Mapped files can't be deleted or changed on Windows until they're unmapped, which isn't a part of public API before JDK 9,
+ * so the buffer is unmapped via internal API if it's possible. The buffer must not be accessed after that.
+ */
+fun MappedByteBuffer.unmap() {
+    try {
+        val cleaner = javaClass.getMethod("cleaner").apply { isAccessible = true }.invoke(this) ?: return
+        cleaner.javaClass.getMethod("clean").apply { isAccessible = true }.invoke(cleaner)
+    }
+    catch (e: Exception) {
+        try {
+            val unsafeClass = Class.forName("sun.misc.Unsafe")
+            val unsafe = unsafeClass.getDeclaredField("theUnsafe").apply { isAccessible = true }.get(null)
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer::class.java).invoke(unsafe, this)
+        }
+        catch (ignored: Exception) {
+        }
+    }
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.KeyDescriptor
+import org.jetbrains.kotlin.incremental.unmap
+import java.io.*
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.util.concurrent.Executors
+
+/**
+ * Keeps all records in an append-only log split into memory-mapped segment files, only locations of values are kept in memory.
+ * Existing records are never changed: [set] and [remove] add a record which shadows the previous ones for the key,
+ * and [append] adds a chunk to the value, like [com.intellij.util.io.PersistentHashMap.appendData] does.
+ *
+ * When most of the log is occupied by shadowed records, live values are rewritten to new segments in background.
+ * The storage stays available meanwhile: values are copied from a snapshot of the index, and only the values changed
+ * after the snapshot are copied again under the lock, right before the new segments replace the old ones.
+ * New segments are written next to the old ones and replace them only after the marker file is created,
+ * so an interrupted compaction is either finished or rolled back the next time the storage is opened.
+ *
+ * Keys are compared with [Any.equals], which is consistent with key descriptors used by incremental caches.
+ */
+internal class AppendLogStorage<K, V>(
+    private val storageFile: File,
+    private val keyDescriptor: KeyDescriptor<K>,
+    private val valueExternalizer: DataExternalizer<V>
+) : PersistentStorage<K, V> {
+    private class Segment(val file: File, val buffer: MappedByteBuffer) {
+        var isDirty = false
+    }
+
+    private class Chunk(val segment: Int, val offset: Int, val length: Int, val recordSize: Int)
+
+    private var segments = arrayListOf<Segment>()
+    private var index = HashMap<K, MutableList<Chunk>>()
+
+    // Sizes of all records in the log and of records which are not shadowed yet
+    private var writtenBytes = 0L
+    private var liveBytes = 0L
+
+    private var isClosed = false
+    private var compactionFailure: IOException? = null
+    private var isCompactionScheduled = false
+    private var isCompacting = false
+
+    private val keyBytes = ByteArrayOutputStream()
+    private val valueBytes = ByteArrayOutputStream()
+
+    init {
+        recoverInterruptedCompaction(storageFile)
+        var i = 0
+        while (segmentFile(storageFile, i).exists()) {
+            val file = segmentFile(storageFile, i++)
+            // The last segment is mapped with some free space, so that new records are appended to it
+            val size = file.length().toInt()
+            val isLast = !segmentFile(storageFile, i).exists()
+            segments.add(loadSegment(file, segments.size, if (isLast) maxOf(size, MIN_SEGMENT_SIZE) else size))
+        }
+    }
+
+    override val keys: Collection<K>
+        @Synchronized get() {
+            checkOpen()
+            return index.keys.toList()
+        }
+
+    @Synchronized
+    override fun contains(key: K): Boolean {
+        checkOpen()
+        return key in index
+    }
+
+    @Synchronized
+    override fun get(key: K): V? {
+        checkOpen()
+        val chunks = index[key] ?: return null
+        val bytes = readBytes(chunks) { segments[it].buffer }
+        return valueExternalizer.read(DataInputStream(ByteArrayInputStream(bytes)))
+    }
+
+    @Synchronized
+    override fun set(key: K, value: V) {
+        checkOpen()
+        valueBytes.reset()
+        valueExternalizer.save(DataOutputStream(valueBytes), value)
+        val chunk = writeRecord(PUT, key, valueBytes.toByteArray())
+        index.put(key, arrayListOf(chunk))?.let { shadow(it) }
+        scheduleCompactionIfNeeded()
+    }
+
+    @Synchronized
+    override fun remove(key: K) {
+        checkOpen()
+        val chunks = index.remove(key) ?: return
+        shadow(chunks)
+        val removal = writeRecord(REMOVE, key, EMPTY_DATA)
+        liveBytes -= removal.recordSize
+        scheduleCompactionIfNeeded()
+    }
+
+    @Synchronized
+    override fun append(key: K, append: (DataOutput) -> Unit) {
+        checkOpen()
+        valueBytes.reset()
+        append(DataOutputStream(valueBytes))
+        val chunk = writeRecord(APPEND, key, valueBytes.toByteArray())
+        index.getOrPut(key) { ArrayList(1) }.add(chunk)
+        scheduleCompactionIfNeeded()
+    }
+
+    @Synchronized
+    override fun flush(memoryCachesOnly: Boolean) {
+        checkOpen()
+        if (memoryCachesOnly) return
+
+        for (segment in segments) {
+            if (segment.isDirty) {
+                segment.buffer.force()
+                segment.isDirty = false
+            }
+        }
+    }
+
+    @Synchronized
+    override fun close() {
+        // Segments can't be unmapped while live values are copied from them
+        while (isCompacting) {
+            @Suppress("PLATFORM_CLASS_MAPPED_TO_KOTLIN") (this as Object).wait()
+        }
+        if (isClosed) return
+
+        if (compactionFailure == null) {
+            flush(memoryCachesOnly = false)
+            closeSegments(segments, truncateLast = true)
+        }
+        isClosed = true
+    }
+
+    // Segments are unmapped on close, so any access to them after that would crash the VM
+    private fun checkOpen() {
+        check(!isClosed) { "Storage $storageFile is closed" }
+        compactionFailure?.let { throw IOException("Compaction of $storageFile failed", it) }
+    }
+
+    private inline fun readBytes(chunks: List<Chunk>, segmentBuffer: (Int) -> ByteBuffer): ByteArray {
+        val result = ByteArray(chunks.sumBy { it.length })
+        var position = 0
+        for (chunk in chunks) {
+            val buffer = segmentBuffer(chunk.segment).duplicate()
+            buffer.position(chunk.offset)
+            buffer.get(result, position, chunk.length)
+            position += chunk.length
+        }
+        return result
+    }
+
+    private fun shadow(chunks: List<Chunk>) {
+        for (chunk in chunks) {
+            liveBytes -= chunk.recordSize
+        }
+    }
+
+    private fun writeRecord(kind: Byte, key: K, data: ByteArray): Chunk {
+        val chunk = writeRecord(segments, storageFile, kind, saveKey(key, keyBytes), data)
+        writtenBytes += chunk.recordSize
+        liveBytes += chunk.recordSize
+        return chunk
+    }
+
+    // Record layout: kind, key size, key, data size, data. The kind is written last, so a partially written record looks like the end of the log
+    private fun writeRecord(segments: MutableList<Segment>, storageFile: File, kind: Byte, key: ByteArray, data: ByteArray): Chunk {
+        val recordSize = 1 + 4 + key.size + 4 + data.size
+        var segment = segments.lastOrNull()
+        if (segment == null || segment.buffer.remaining() < recordSize) {
+            val previousSize = segment?.buffer?.capacity() ?: 0
+            val size = maxOf(recordSize, minOf(maxOf(MIN_SEGMENT_SIZE, previousSize * 2), MAX_SEGMENT_SIZE))
+            if (segment != null) {
+                truncateSegment(segment)
+            }
+            segment = Segment(segmentFile(storageFile, segments.size), mapSegment(segmentFile(storageFile, segments.size), size))
+            segments.add(segment)
+        }
+
+        val buffer = segment.buffer
+        val start = buffer.position()
+        buffer.position(start + 1)
+        buffer.putInt(key.size)
+        buffer.put(key)
+        buffer.putInt(data.size)
+        val dataOffset = buffer.position()
+        buffer.put(data)
+        buffer.put(start, kind)
+        segment.isDirty = true
+
+        return Chunk(segments.size - 1, dataOffset, data.size, recordSize)
+    }
+
+    private fun loadSegment(file: File, segmentIndex: Int, size: Int): Segment {
+        val buffer = mapSegment(file, size)
+        while (buffer.hasRemaining()) {
+            val start = buffer.position()
+            val kind = buffer.get()
+            if (kind == END) {
+                buffer.position(start)
+                break
+            }
+
+            val key = readKey(buffer)
+            val dataSize = buffer.int
+            val chunk = Chunk(segmentIndex, buffer.position(), dataSize, buffer.position() + dataSize - start)
+            buffer.position(chunk.offset + dataSize)
+            writtenBytes += chunk.recordSize
+            liveBytes += chunk.recordSize
+
+            when (kind) {
+                PUT -> index.put(key, arrayListOf(chunk))?.let { shadow(it) }
+                APPEND -> index.getOrPut(key) { ArrayList(1) }.add(chunk)
+                REMOVE -> {
+                    index.remove(key)?.let { shadow(it) }
+                    liveBytes -= chunk.recordSize
+                }
+                else -> throw IOException("Unexpected record kind $kind at $start in $file")
+            }
+        }
+        return Segment(file, buffer)
+    }
+
+    private fun saveKey(key: K, bytes: ByteArrayOutputStream): ByteArray {
+        bytes.reset()
+        keyDescriptor.save(DataOutputStream(bytes), key)
+        return bytes.toByteArray()
+    }
+
+    private fun readKey(buffer: ByteBuffer): K {
+        val bytes = ByteArray(buffer.int)
+        buffer.get(bytes)
+        return keyDescriptor.read(DataInputStream(ByteArrayInputStream(bytes)))
+    }
+
+    private fun scheduleCompactionIfNeeded() {
+        if (isCompactionScheduled || isCompacting) return
+        if (writtenBytes < MIN_COMPACTION_SIZE || liveBytes > writtenBytes * MAX_LIVE_RATIO_TO_COMPACT) return
+
+        isCompactionScheduled = true
+        compactionExecutor.execute { compact() }
+    }
+
+    private fun compact() {
+        // Chunks are copied, since lists of appended values are changed in place
+        val snapshot: Map<K, List<Chunk>>
+        val snapshotBuffers: List<ByteBuffer>
+        synchronized(this) {
+            isCompactionScheduled = false
+            if (isClosed || compactionFailure != null) return
+            isCompacting = true
+            snapshot = index.mapValuesTo(HashMap(index.size)) { (_, chunks) -> chunks.toList() }
+            snapshotBuffers = segments.map { it.buffer.duplicate() }
+        }
+
+        try {
+            val newSegments = arrayListOf<Segment>()
+            val newIndex = HashMap<K, MutableList<Chunk>>(snapshot.size)
+            val newKeyBytes = ByteArrayOutputStream()
+            try {
+                for ((key, chunks) in snapshot) {
+                    val data = readBytes(chunks) { snapshotBuffers[it] }
+                    newIndex[key] = arrayListOf(writeCompactedRecord(newSegments, key, data, newKeyBytes))
+                }
+            }
+            catch (e: Exception) {
+                discardCompactedSegments(newSegments)
+                return
+            }
+
+            synchronized(this) {
+                replaceSegments(snapshot, newSegments, newIndex)
+            }
+        }
+        finally {
+            synchronized(this) {
+                isCompacting = false
+                @Suppress("PLATFORM_CLASS_MAPPED_TO_KOTLIN") (this as Object).notifyAll()
+            }
+        }
+    }
+
+    private fun replaceSegments(
+        snapshot: Map<K, List<Chunk>>,
+        newSegments: MutableList<Segment>,
+        newIndex: HashMap<K, MutableList<Chunk>>
+    ) {
+        val newWrittenBytes: Long
+        try {
+            // Values set or appended after the snapshot was taken are copied again, removed ones are dropped from the new index
+            for ((key, chunks) in index) {
+                val copied = snapshot[key]
+                if (copied == null || copied.size != chunks.size || copied.last() !== chunks.last()) {
+                    val data = readBytes(chunks) { segments[it].buffer }
+                    newIndex[key] = arrayListOf(writeCompactedRecord(newSegments, key, data, keyBytes))
+                }
+            }
+            newIndex.keys.retainAll(index.keys)
+            newWrittenBytes = newSegments.fold(0L) { size, segment -> size + segment.buffer.position() }
+
+            newSegments.forEach { it.buffer.force() }
+            closeSegments(newSegments, truncateLast = true)
+            compactedMarkerFile(storageFile).createNewFile()
+        }
+        catch (e: Exception) {
+            // The old log is still intact, so the storage just stays as it is
+            discardCompactedSegments(newSegments)
+            return
+        }
+
+        flush(memoryCachesOnly = false)
+        closeSegments(segments, truncateLast = false)
+        segments = arrayListOf()
+        index = newIndex
+        writtenBytes = newWrittenBytes
+        liveBytes = newIndex.values.fold(0L) { size, chunks -> size + chunks.single().recordSize }
+
+        try {
+            recoverInterruptedCompaction(storageFile)
+            for ((i, segment) in newSegments.withIndex()) {
+                val file = segmentFile(storageFile, i)
+                val isLast = i == newSegments.lastIndex
+                val buffer = mapSegment(file, if (isLast) segment.buffer.capacity() else segment.buffer.position())
+                buffer.position(segment.buffer.position())
+                segments.add(Segment(file, buffer))
+            }
+        }
+        catch (e: IOException) {
+            // The new log is complete and will be used the next time the storage is opened
+            closeSegments(segments, truncateLast = false)
+            compactionFailure = e
+        }
+    }
+
+    private fun writeCompactedRecord(newSegments: MutableList<Segment>, key: K, data: ByteArray, keyBytes: ByteArrayOutputStream): Chunk =
+        writeRecord(newSegments, compactingFileBase(storageFile), PUT, saveKey(key, keyBytes), data)
+
+    private fun discardCompactedSegments(newSegments: List<Segment>) {
+        closeSegments(newSegments, truncateLast = false)
+        newSegments.forEach { it.file.delete() }
+    }
+
+    private fun closeSegments(segments: List<Segment>, truncateLast: Boolean) {
+        segments.forEach { it.buffer.unmap() }
+        if (truncateLast) {
+            segments.lastOrNull()?.let { truncateSegment(it) }
+        }
+    }
+
+    // Trailing free space of a segment is dropped when it's not written anymore
+    private fun truncateSegment(segment: Segment) {
+        try {
+            RandomAccessFile(segment.file, "rw").use { it.setLength(segment.buffer.position().toLong()) }
+        }
+        catch (ignored: IOException) {
+            // e.g. the segment can't be unmapped on Windows, it's read correctly anyway
+        }
+    }
+
+    companion object {
+        private const val END: Byte = 0
+        private const val PUT: Byte = 1
+        private const val APPEND: Byte = 2
+        private const val REMOVE: Byte = 3
+
+        private val EMPTY_DATA = ByteArray(0)
+
+        private const val MIN_SEGMENT_SIZE = 64 * 1024
+        private const val MAX_SEGMENT_SIZE = 16 * 1024 * 1024
+
+        private const val MIN_COMPACTION_SIZE = 1024 * 1024
+        private const val MAX_LIVE_RATIO_TO_COMPACT = 0.5
+
+        private val compactionExecutor = Executors.newSingleThreadExecutor { runnable ->
+            Thread(runnable, "Incremental cache compaction").apply { isDaemon = true }
+        }
+
+        fun exists(storageFile: File): Boolean =
+            segmentFile(storageFile, 0).exists() || compactedMarkerFile(storageFile).exists()
+
+        private fun segmentFile(storageFile: File, i: Int): File =
+            File(storageFile.parentFile, "${storageFile.name}.$i.log")
+
+        private fun compactingFileBase(storageFile: File): File =
+            File(storageFile.parentFile, "${storageFile.name}.compacting")
+
+        private fun compactedMarkerFile(storageFile: File): File =
+            File(storageFile.parentFile, "${storageFile.name}.compacted")
+
+        // New segments replace the old ones if the marker is written, otherwise they're incomplete and are dropped
+        private fun recoverInterruptedCompaction(storageFile: File) {
+            val marker = compactedMarkerFile(storageFile)
+            val compacted = marker.exists()
+            if (compacted) {
+                var i = 0
+                while (segmentFile(storageFile, i).exists()) {
+                    delete(segmentFile(storageFile, i++))
+                }
+            }
+
+            var i = 0
+            while (true) {
+                val file = segmentFile(compactingFileBase(storageFile), i)
+                if (!file.exists()) break
+
+                if (compacted) {
+                    if (!file.renameTo(segmentFile(storageFile, i))) throw IOException("Could not rename $file")
+                }
+                else {
+                    delete(file)
+                }
+                i++
+            }
+
+            if (compacted) {
+                delete(marker)
+            }
+        }
+
+        private fun delete(file: File) {
+            if (!file.delete()) throw IOException("Could not delete $file")
+        }
+
+        private fun mapSegment(file: File, size: Int): MappedByteBuffer =
+            RandomAccessFile(file, "rw").use { randomAccessFile ->
+                randomAccessFile.setLength(size.toLong())
+                randomAccessFile.channel.map(FileChannel.MapMode.READ_WRITE, 0, size.toLong())
+            }
+    }
+}
@@ -30,6 +30,15 @@ abstract class BasicMap<K : Comparable<K>, V>(
 ) {
     protected val storage = LazyStorage(storageFile, keyDescriptor, valueExternalizer)
 
+    /**
+     * Is set by [BasicMapsOwner] when the map is registered, before the map is used
+     */
+    var storageBackend: StorageBackend
+        get() = storage.backend
+        set(value) {
+            storage.backend = value
+        }
+
     fun clean() {
         storage.clean()
     }
@@ -19,7 +19,10 @@ package org.jetbrains.kotlin.incremental.storage
 import org.jetbrains.annotations.TestOnly
 import java.io.File
 
-open class BasicMapsOwner(val cachesDir: File) {
+open class BasicMapsOwner(
+        val cachesDir: File,
+        val storageBackend: StorageBackend = StorageBackend.DEFAULT
+) {
     private val maps = arrayListOf<BasicMap<*, *>>()
 
     companion object {
@@ -30,6 +33,7 @@ open class BasicMapsOwner(val cachesDir: File) {
         get() = File(cachesDir, this + "." + CACHE_EXTENSION)
 
     protected fun <K, V, M : BasicMap<K, V>> registerMap(map: M): M {
+        map.storageBackend = storageBackend
         maps.add(map)
         return map
     }
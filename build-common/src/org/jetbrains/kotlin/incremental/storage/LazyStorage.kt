@@ -26,7 +26,7 @@ import java.io.IOException
 
 
 /**
- * It's lazy in a sense that PersistentHashMap is created only on write
+ * It's lazy in a sense that the storage is created only on write
  */
 class LazyStorage<K, V>(
         private val storageFile: File,
@@ -34,40 +34,52 @@ class LazyStorage<K, V>(
         private val valueExternalizer: DataExternalizer<V>
 ) {
     @Volatile
-    private var storage: PersistentHashMap<K, V>? = null
+    private var storage: PersistentStorage<K, V>? = null
+
+    /**
+     * Can be changed only before the storage is created
+     */
+    var backend: StorageBackend = StorageBackend.DEFAULT
+        @Synchronized
+        set(value) {
+            check(storage == null) { "Storage $storageFile is already created with $field backend" }
+            field = value
+        }
 
     @Synchronized
-    private fun getStorageIfExists(): PersistentHashMap<K, V>? {
+    private fun getStorageIfExists(): PersistentStorage<K, V>? {
         if (storage != null) return storage
 
-        if (storageFile.exists()) {
-            storage = createMap()
+        if (backend.storageExists(storageFile)) {
+            storage = createStorage()
             return storage
         }
 
+        checkNoStorageOfOtherBackend()
         return null
     }
 
     @Synchronized
-    private fun getStorageOrCreateNew(): PersistentHashMap<K, V> {
+    private fun getStorageOrCreateNew(): PersistentStorage<K, V> {
         if (storage == null) {
-            storage = createMap()
+            checkNoStorageOfOtherBackend()
+            storage = createStorage()
         }
 
         return storage!!
     }
 
     val keys: Collection<K>
-        get() = getStorageIfExists()?.allKeysWithExistingMapping ?: listOf()
+        get() = getStorageIfExists()?.keys ?: listOf()
 
     operator fun contains(key: K): Boolean =
-            getStorageIfExists()?.containsMapping(key) ?: false
+            getStorageIfExists()?.contains(key) ?: false
 
     operator fun get(key: K): V? =
             getStorageIfExists()?.get(key)
 
     operator fun set(key: K, value: V) {
-        getStorageOrCreateNew().put(key, value)
+        getStorageOrCreateNew()[key] = value
     }
 
     fun remove(key: K) {
@@ -90,22 +102,14 @@ class LazyStorage<K, V>(
         catch (ignored: Throwable) {
         }
 
+        // Files of all backends start with the name of the storage file
         PersistentHashMap.deleteFilesStartingWith(storageFile)
         storage = null
     }
 
     @Synchronized
     fun flush(memoryCachesOnly: Boolean) {
-        val existingStorage = storage ?: return
-
-        if (memoryCachesOnly) {
-            if (existingStorage.isDirty) {
-                existingStorage.dropMemoryCaches()
-            }
-        }
-        else {
-            existingStorage.force()
-        }
+        storage?.flush(memoryCachesOnly)
     }
 
     @Synchronized
@@ -113,10 +117,16 @@ class LazyStorage<K, V>(
         storage?.close()
     }
 
-    private fun createMap(): PersistentHashMap<K, V> =
-            PersistentHashMap(storageFile, keyDescriptor, valueExternalizer)
+    private fun createStorage(): PersistentStorage<K, V> =
+            backend.createStorage(storageFile, keyDescriptor, valueExternalizer)
+
+    // Data written by another backend can't be read, so the cache has to be rebuilt (it's done on any exception from caches)
+    private fun checkNoStorageOfOtherBackend() {
+        val otherBackend = StorageBackend.values().firstOrNull { it != backend && it.storageExists(storageFile) } ?: return
+        throw IOException("Storage $storageFile was created with $otherBackend backend, but $backend backend is used")
+    }
 
     private fun append(key: K, append: (DataOutput)->Unit) {
-        getStorageOrCreateNew().appendData(key, append)
+        getStorageOrCreateNew().append(key, append)
     }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.KeyDescriptor
+import com.intellij.util.io.PersistentHashMap
+import java.io.DataOutput
+import java.io.File
+
+/**
+ * Defines how [LazyStorage] keeps its data on disk. Each [BasicMapsOwner] uses the same backend for all of its maps.
+ *
+ * The default backend may be changed with the "kotlin.incremental.storage.backend" system property.
+ */
+enum class StorageBackend {
+    PERSISTENT_HASH_MAP {
+        override fun <K, V> createStorage(
+            storageFile: File,
+            keyDescriptor: KeyDescriptor<K>,
+            valueExternalizer: DataExternalizer<V>
+        ): PersistentStorage<K, V> = PersistentHashMapStorage(storageFile, keyDescriptor, valueExternalizer)
+
+        override fun storageExists(storageFile: File): Boolean = storageFile.exists()
+    },
+
+    /**
+     * See [AppendLogStorage]
+     */
+    APPEND_LOG {
+        override fun <K, V> createStorage(
+            storageFile: File,
+            keyDescriptor: KeyDescriptor<K>,
+            valueExternalizer: DataExternalizer<V>
+        ): PersistentStorage<K, V> = AppendLogStorage(storageFile, keyDescriptor, valueExternalizer)
+
+        override fun storageExists(storageFile: File): Boolean = AppendLogStorage.exists(storageFile)
+    };
+
+    internal abstract fun <K, V> createStorage(
+        storageFile: File,
+        keyDescriptor: KeyDescriptor<K>,
+        valueExternalizer: DataExternalizer<V>
+    ): PersistentStorage<K, V>
+
+    internal abstract fun storageExists(storageFile: File): Boolean
+
+    companion object {
+        private const val BACKEND_PROPERTY = "kotlin.incremental.storage.backend"
+
+        @JvmField
+        val DEFAULT: StorageBackend =
+            System.getProperty(BACKEND_PROPERTY)?.let { name -> values().firstOrNull { it.name.equals(name, ignoreCase = true) } }
+                ?: PERSISTENT_HASH_MAP
+    }
+}
+
+internal interface PersistentStorage<K, V> {
+    val keys: Collection<K>
+
+    operator fun contains(key: K): Boolean
+
+    operator fun get(key: K): V?
+
+    operator fun set(key: K, value: V)
+
+    fun remove(key: K)
+
+    fun append(key: K, append: (DataOutput) -> Unit)
+
+    fun flush(memoryCachesOnly: Boolean)
+
+    fun close()
+}
+
+private class PersistentHashMapStorage<K, V>(
+    storageFile: File,
+    keyDescriptor: KeyDescriptor<K>,
+    valueExternalizer: DataExternalizer<V>
+) : PersistentStorage<K, V> {
+    private val map = PersistentHashMap(storageFile, keyDescriptor, valueExternalizer)
+
+    override val keys: Collection<K>
+        get() = map.allKeysWithExistingMapping
+
+    override fun contains(key: K): Boolean = map.containsMapping(key)
+
+    override fun get(key: K): V? = map.get(key)
+
+    override fun set(key: K, value: V) {
+        map.put(key, value)
+    }
+
+    override fun remove(key: K) {
+        map.remove(key)
+    }
+
+    override fun append(key: K, append: (DataOutput) -> Unit) {
+        map.appendData(key, append)
+    }
+
+    override fun flush(memoryCachesOnly: Boolean) {
+        if (memoryCachesOnly) {
+            if (map.isDirty) {
+                map.dropMemoryCaches()
+            }
+        }
+        else {
+            map.force()
+        }
+    }
+
+    override fun close() {
+        map.close()
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import org.jetbrains.kotlin.progress.ProgressIndicatorAndCompilationCanceledStatus
+import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin
+import org.jetbrains.kotlin.utils.rethrow
+import org.jetbrains.org.objectweb.asm.*
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import java.util.concurrent.*
+
+/**
+ * Records all events of generated classes instead of writing them right away. As soon as a class is finished, its events are replayed
+ * into a class builder of [delegate] on one of [threadCount] backend threads, so the most expensive part of writing a class file
+ * (method optimizations, frame computation and constant pool construction) is done in parallel with generation of other classes.
+ * Recorded events are released after replaying, and bytes and text of a class are taken from the finished class builder of [delegate].
+ * Since events are replayed in the order they were recorded, the resulting class files are identical to the ones written directly.
+ */
+class DeferredClassBuilderFactory(private val delegate: ClassBuilderFactory, threadCount: Int) : ClassBuilderFactory by delegate {
+    // Idle threads are stopped, so the pool doesn't outlive the compilation even if the factory is not closed
+    private val executor = ThreadPoolExecutor(threadCount, threadCount, 1, TimeUnit.SECONDS, LinkedBlockingQueue()) { runnable ->
+        Thread(runnable, "Kotlin backend").apply { isDaemon = true }
+    }.apply { allowCoreThreadTimeOut(true) }
+
+    override fun newClassBuilder(origin: JvmDeclarationOrigin): ClassBuilder {
+        val builder = DeferredClassBuilder(origin, RecordingClassVisitor())
+        builder.recorder.onEnd = {
+            val task = FutureTask<ClassBuilder> {
+                ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
+                replay(builder).also { builder.recorder.release() }
+            }
+            builder.replayTask = task
+            executor.execute(task)
+        }
+        return builder
+    }
+
+    override fun asBytes(builder: ClassBuilder): ByteArray =
+        delegate.asBytes(replayed(builder as DeferredClassBuilder))
+
+    override fun asText(builder: ClassBuilder): String =
+        delegate.asText(replayed(builder as DeferredClassBuilder))
+
+    override fun close() {
+        executor.shutdown()
+        delegate.close()
+    }
+
+    private fun replay(builder: DeferredClassBuilder): ClassBuilder =
+        delegate.newClassBuilder(builder.origin).also { builder.recorder.replay(it.visitor) }
+
+    private fun replayed(builder: DeferredClassBuilder): ClassBuilder {
+        // A class which is not finished is written as it is, like a class builder of the delegate would do
+        val task = builder.replayTask ?: return replay(builder)
+        // Replays the class in this thread if no backend thread has taken it yet
+        task.run()
+        try {
+            return task.get()
+        } catch (e: ExecutionException) {
+            throw rethrow(e.cause!!)
+        }
+    }
+
+    private class DeferredClassBuilder(
+        val origin: JvmDeclarationOrigin,
+        val recorder: RecordingClassVisitor
+    ) : AbstractClassBuilder.Concrete(recorder) {
+        var replayTask: FutureTask<ClassBuilder>? = null
+    }
+}
+
+private typealias ClassEvent = (ClassVisitor) -> Unit
+
+private class RecordingClassVisitor : ClassVisitor(Opcodes.API_VERSION) {
+    private var events = ArrayList<ClassEvent>()
+
+    var onEnd: () -> Unit = {}
+
+    fun replay(visitor: ClassVisitor) {
+        for (event in events) {
+            event(visitor)
+        }
+    }
+
+    fun release() {
+        events = ArrayList()
+    }
+
+    override fun visit(version: Int, access: Int, name: String, signature: String?, superName: String?, interfaces: Array<out String>?) {
+        events.add { it.visit(version, access, name, signature, superName, interfaces) }
+    }
+
+    override fun visitSource(source: String?, debug: String?) {
+        events.add { it.visitSource(source, debug) }
+    }
+
+    override fun visitModule(name: String, access: Int, version: String?): ModuleVisitor =
+        RecordingModuleVisitor().also { module ->
+            events.add { module.replay(it.visitModule(name, access, version)) }
+        }
+
+    override fun visitNestHost(nestHost: String) {
+        events.add { it.visitNestHost(nestHost) }
+    }
+
+    override fun visitOuterClass(owner: String, name: String?, descriptor: String?) {
+        events.add { it.visitOuterClass(owner, name, descriptor) }
+    }
+
+    override fun visitAnnotation(descriptor: String, visible: Boolean): AnnotationVisitor =
+        RecordingAnnotationVisitor().also { annotation ->
+            events.add { annotation.replay(it.visitAnnotation(descriptor, visible)) }
+        }
+
+    override fun visitTypeAnnotation(typeRef: Int, typePath: TypePath?, descriptor: String, visible: Boolean): AnnotationVisitor =
+        RecordingAnnotationVisitor().also { annotation ->
+            events.add { annotation.replay(it.visitTypeAnnotation(typeRef, typePath, descriptor, visible)) }
+        }
+
+    override fun visitAttribute(attribute: Attribute) {
+        events.add { it.visitAttribute(attribute) }
+    }
+
+    override fun visitNestMember(nestMember: String) {
+        events.add { it.visitNestMember(nestMember) }
+    }
+
+    override fun visitInnerClass(name: String, outerName: String?, innerName: String?, access: Int) {
+        events.add { it.visitInnerClass(name, outerName, innerName, access) }
+    }
+
+    override fun visitField(access: Int, name: String, descriptor: String, signature: String?, value: Any?): FieldVisitor =
+        RecordingFieldVisitor().also { field ->
+            events.add { field.replay(it.visitField(access, name, descriptor, signature, value)) }
+        }
+
+    override fun visitMethod(
+        access: Int, name: String, descriptor: String, signature: String?, exceptions: Array<out String>?
+    ): MethodVisitor =
+        // Method bodies are replayed into OptimizationMethodVisitor, which buffers them into a MethodNode anyway,
+        // so recording them as a MethodNode doesn't change the result
+        MethodNode(Opcodes.API_VERSION, access, name, descriptor, signature, exceptions).also { method ->
+            events.add { method.replay(it.visitMethod(access, name, descriptor, signature, exceptions)) }
+        }
+
+    override fun visitEnd() {
+        events.add { it.visitEnd() }
+        onEnd()
+    }
+}
+
+private fun MethodNode.replay(visitor: MethodVisitor?) {
+    if (visitor == null) return
+    accept(object : MethodVisitor(Opcodes.API_VERSION, visitor) {
+        override fun visitEnd() {}
+    })
+    // MethodNode.accept doesn't visit local variables of a method with empty instructions list
+    if (instructions.size() == 0) {
+        localVariables?.forEach { it.accept(visitor) }
+    }
+    visitor.visitEnd()
+}
+
+private class RecordingAnnotationVisitor : AnnotationVisitor(Opcodes.API_VERSION) {
+    private val events = ArrayList<(AnnotationVisitor) -> Unit>()
+
+    fun replay(visitor: AnnotationVisitor?) {
+        if (visitor == null) return
+        for (event in events) {
+            event(visitor)
+        }
+    }
+
+    override fun visit(name: String?, value: Any) {
+        events.add { it.visit(name, value) }
+    }
+
+    override fun visitEnum(name: String?, descriptor: String, value: String) {
+        events.add { it.visitEnum(name, descriptor, value) }
+    }
+
+    override fun visitAnnotation(name: String?, descriptor: String): AnnotationVisitor =
+        RecordingAnnotationVisitor().also { annotation ->
+            events.add { annotation.replay(it.visitAnnotation(name, descriptor)) }
+        }
+
+    override fun visitArray(name: String?): AnnotationVisitor =
+        RecordingAnnotationVisitor().also { array ->
+            events.add { array.replay(it.visitArray(name)) }
+        }
+
+    override fun visitEnd() {
+        events.add { it.visitEnd() }
+    }
+}
+
+private class RecordingModuleVisitor : ModuleVisitor(Opcodes.API_VERSION) {
+    private val events = ArrayList<(ModuleVisitor) -> Unit>()
+
+    fun replay(visitor: ModuleVisitor?) {
+        if (visitor == null) return
+        for (event in events) {
+            event(visitor)
+        }
+    }
+
+    override fun visitMainClass(mainClass: String) {
+        events.add { it.visitMainClass(mainClass) }
+    }
+
+    override fun visitPackage(packaze: String) {
+        events.add { it.visitPackage(packaze) }
+    }
+
+    override fun visitRequire(module: String, access: Int, version: String?) {
+        events.add { it.visitRequire(module, access, version) }
+    }
+
+    // Modules are null if a package is exported or opened to all modules
+    override fun visitExport(packaze: String, access: Int, modules: Array<out String>?) {
+        events.add { it.visitExport(packaze, access, *modules.orEmpty()) }
+    }
+
+    override fun visitOpen(packaze: String, access: Int, modules: Array<out String>?) {
+        events.add { it.visitOpen(packaze, access, *modules.orEmpty()) }
+    }
+
+    override fun visitUse(service: String) {
+        events.add { it.visitUse(service) }
+    }
+
+    override fun visitProvide(service: String, providers: Array<out String>) {
+        events.add { it.visitProvide(service, *providers) }
+    }
+
+    override fun visitEnd() {
+        events.add { it.visitEnd() }
+    }
+}
+
+private class RecordingFieldVisitor : FieldVisitor(Opcodes.API_VERSION) {
+    private val events = ArrayList<(FieldVisitor) -> Unit>()
+
+    fun replay(visitor: FieldVisitor?) {
+        if (visitor == null) return
+        for (event in events) {
+            event(visitor)
+        }
+    }
+
+    override fun visitAnnotation(descriptor: String, visible: Boolean): AnnotationVisitor =
+        RecordingAnnotationVisitor().also { annotation ->
+            events.add { annotation.replay(it.visitAnnotation(descriptor, visible)) }
+        }
+
+    override fun visitTypeAnnotation(typeRef: Int, typePath: TypePath?, descriptor: String, visible: Boolean): AnnotationVisitor =
+        RecordingAnnotationVisitor().also { annotation ->
+            events.add { annotation.replay(it.visitTypeAnnotation(typeRef, typePath, descriptor, visible)) }
+        }
+
+    override fun visitAttribute(attribute: Attribute) {
+        events.add { it.visitAttribute(attribute) }
+    }
+
+    override fun visitEnd() {
+        events.add { it.visitEnd() }
+    }
+}
@@ -16,7 +16,6 @@ import org.jetbrains.kotlin.codegen.optimization.DeadCodeEliminationMethodTransf
 import org.jetbrains.kotlin.codegen.optimization.common.*
 import org.jetbrains.kotlin.codegen.optimization.fixStack.FixStackMethodTransformer
 import org.jetbrains.kotlin.codegen.optimization.fixStack.top
-import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
 import org.jetbrains.kotlin.config.LanguageVersionSettings
 import org.jetbrains.kotlin.config.isReleaseCoroutines
 import org.jetbrains.kotlin.diagnostics.DiagnosticSink
@@ -535,13 +534,15 @@ class CoroutineTransformerMethodVisitor(
 
     private fun spillVariables(suspensionPoints: List<SuspensionPoint>, methodNode: MethodNode): List<List<SpilledVariableDescriptor>> {
         val instructions = methodNode.instructions
-        val frames = performRefinedTypeAnalysis(methodNode, containingClassInternalName)
+        // Both analyses are made before the method is modified, so they share its control flow graph and basic frames
+        val analysis = MethodAnalysisCache(containingClassInternalName, methodNode)
+        val frames = performRefinedTypeAnalysis(analysis)
         fun AbstractInsnNode.index() = instructions.indexOf(this)
 
         // We postpone these actions because they change instruction indices that we use when obtaining frames
         val postponedActions = mutableListOf<() -> Unit>()
         val maxVarsCountByType = mutableMapOf<Type, Int>()
-        val livenessFrames = analyzeLiveness(methodNode)
+        val livenessFrames = analyzeLiveness(analysis)
         val spilledToVariableMapping = arrayListOf<List<SpilledVariableDescriptor>>()
 
         for (suspension in suspensionPoints) {
@@ -944,8 +945,9 @@ private fun allSuspensionPointsAreTailCalls(
     methodNode: MethodNode,
     suspensionPoints: List<SuspensionPoint>
 ): Boolean {
-    val sourceFrames = MethodTransformer.analyze(thisName, methodNode, IgnoringCopyOperationSourceInterpreter())
-    val safelyReachableReturns = findSafelyReachableReturns(methodNode, sourceFrames)
+    val analysis = MethodAnalysisCache(thisName, methodNode)
+    val sourceFrames = analysis.analyze(IgnoringCopyOperationSourceInterpreter())
+    val safelyReachableReturns = findSafelyReachableReturns(methodNode, sourceFrames, analysis.controlFlowGraph)
 
     val instructions = methodNode.instructions
     return suspensionPoints.all { suspensionPoint ->
@@ -963,7 +965,7 @@ private fun allSuspensionPointsAreTailCalls(
         if (insideTryBlock) return@all false
 
         safelyReachableReturns[endIndex + 1]?.all { returnIndex ->
-            sourceFrames[returnIndex].top().sure {
+            sourceFrames[returnIndex]?.top().sure {
                 "There must be some value on stack to return"
             }.insns.any { sourceInsn ->
                 sourceInsn?.let(instructions::indexOf) in beginIndex..endIndex
@@ -985,9 +987,11 @@ internal class IgnoringCopyOperationSourceInterpreter : SourceInterpreter(Opcode
  *
  * @return indices of safely reachable returns for each instruction in the method node
  */
-private fun findSafelyReachableReturns(methodNode: MethodNode, sourceFrames: Array<Frame<SourceValue?>?>): Array<Set<Int>?> {
-    val controlFlowGraph = ControlFlowGraph.build(methodNode)
-
+private fun findSafelyReachableReturns(
+    methodNode: MethodNode,
+    sourceFrames: Array<Frame<SourceValue>?>,
+    controlFlowGraph: ControlFlowGraph
+): Array<Set<Int>?> {
     val insns = methodNode.instructions
     val reachableReturnsIndices = Array<Set<Int>?>(insns.size()) init@ { index ->
         val insn = insns[index]
@@ -1029,7 +1033,7 @@ private fun findSafelyReachableReturns(methodNode: MethodNode, sourceFrames: Arr
 }
 
 // Check whether this instruction is unreachable, i.e. there is no path leading to this instruction
-internal fun isUnreachable(index: Int, sourceFrames: Array<Frame<SourceValue?>?>) = sourceFrames[index] == null
+internal fun isUnreachable(index: Int, sourceFrames: Array<out Frame<*>?>) = sourceFrames[index] == null
 
 private fun AbstractInsnNode?.isInvisibleInDebugVarInsn(methodNode: MethodNode): Boolean {
     val insns = methodNode.instructions
@@ -19,7 +19,6 @@ package org.jetbrains.kotlin.codegen.coroutines
 import org.jetbrains.kotlin.codegen.optimization.common.*
 import org.jetbrains.kotlin.codegen.optimization.fixStack.peek
 import org.jetbrains.kotlin.codegen.optimization.fixStack.top
-import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
 import org.jetbrains.org.objectweb.asm.Opcodes
 import org.jetbrains.org.objectweb.asm.Type
 import org.jetbrains.org.objectweb.asm.tree.*
@@ -34,10 +33,11 @@ import java.util.*
 // But it seems like Dalvik does not follow it, and spilling boolean value into an 'int' field fails with VerifyError on Android 4,
 // so this function calculates refined frames' markup.
 // Note that type of some values is only possible to determine by their usages (e.g. ICONST_1, BALOAD both may push boolean or byte on stack)
-internal fun performRefinedTypeAnalysis(methodNode: MethodNode, thisName: String): Array<out Frame<out BasicValue>?> {
+internal fun performRefinedTypeAnalysis(analysis: MethodAnalysisCache): Array<out Frame<out BasicValue>?> {
+    val methodNode = analysis.node
     val insnList = methodNode.instructions
-    val basicFrames = MethodTransformer.analyze(thisName, methodNode, OptimizationBasicInterpreter())
-    val sourceValueFrames = MethodTransformer.analyze(thisName, methodNode, MySourceInterpreter())
+    val basicFrames = analysis.getBasicFrames()
+    val sourceValueFrames = analysis.analyze(MySourceInterpreter())
 
     val expectedTypeAndSourcesByInsnIndex: Array<Pair<Type, List<SourceValue>>?> = arrayOfNulls(insnList.size())
 
@@ -69,7 +69,7 @@ internal fun performRefinedTypeAnalysis(methodNode: MethodNode, thisName: String
 
         val insnIndex = insnList.indexOf(insn)
 
-        val arrayArg = basicFrames[insnIndex].peek(2)
+        val arrayArg = basicFrames[insnIndex]?.peek(2)
         // may be different from 'arrayStoreType' in case of boolean arrays (BASTORE opcode is also used for them)
         val expectedType =
                 if (arrayArg?.type?.sort == Type.ARRAY)
@@ -141,7 +141,7 @@ internal fun performRefinedTypeAnalysis(methodNode: MethodNode, thisName: String
                 }
             }
         }
-    })
+    }, analysis.controlFlowGraph)
 
     return Array(basicFrames.size) {
         insnIndex ->
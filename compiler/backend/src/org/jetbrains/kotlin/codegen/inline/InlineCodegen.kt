@@ -20,6 +20,7 @@ import org.jetbrains.kotlin.codegen.state.GenerationState
 import org.jetbrains.kotlin.codegen.state.KotlinTypeMapper
 import org.jetbrains.kotlin.config.isReleaseCoroutines
 import org.jetbrains.kotlin.descriptors.*
+import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.psi.KtCallableReferenceExpression
 import org.jetbrains.kotlin.psi.KtExpression
@@ -567,7 +568,9 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
                 result ?: throw IllegalStateException("Couldn't obtain compiled function body for $functionDescriptor")
             }
 
-            return resultInCache.copyWithNewNode(cloneMethodNode(resultInCache.node))
+            // The node may be shared with other compilations through SharedInlineCache, and cloning it resets its labels
+            val node = synchronized(resultInCache.node) { cloneMethodNode(resultInCache.node) }
+            return resultInCache.copyWithNewNode(node)
         }
 
         private fun createDefaultFakeSMAP() = SMAPParser.parseOrCreateDefault(null, null, "fake", -1, -1)
@@ -620,6 +623,22 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
                     ?: throw IllegalStateException("Couldn't find declaration file for $containerId")
             }
 
+            if (SharedInlineCache.isEnabled) {
+                val methodId = MethodId(AsmUtil.asmTypeByClassId(containerId).internalName, asmMethod)
+                return SharedInlineCache.getOrPut(bytes, methodId) {
+                    readMethodNodeFromCompiled(callableDescriptor, bytes, containerId, asmMethod)
+                }
+            }
+
+            return readMethodNodeFromCompiled(callableDescriptor, bytes, containerId, asmMethod)
+        }
+
+        private fun readMethodNodeFromCompiled(
+            callableDescriptor: CallableMemberDescriptor,
+            bytes: ByteArray,
+            containerId: ClassId,
+            asmMethod: Method
+        ): SMAPAndMethodNode? {
             val methodNode =
                 getMethodNode(bytes, asmMethod.name, asmMethod.descriptor, AsmUtil.asmTypeByClassId(containerId)) ?: return null
 
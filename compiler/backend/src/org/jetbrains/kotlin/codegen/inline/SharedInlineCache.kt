@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.inline
+
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Bodies of inline functions read from compiled classes, shared by all compilations in the process (e.g. in the compile daemon),
+ * unlike [InlineCache] which lives as long as a single [org.jetbrains.kotlin.codegen.state.GenerationState].
+ *
+ * Entries are keyed by a hash of the content of the class file together with the method id, so class path changes never lead
+ * to stale bodies: a changed class simply has another key, and entries for its old version are eventually evicted. The class
+ * file is read by each compilation anyway, and hashing it is much cheaper than parsing its methods. The total estimated size
+ * of cached method nodes is bounded by [maxSizeInBytes], the cache is disabled if it's 0.
+ *
+ * Cached method nodes are shared between threads, so they must only be copied under a lock on the node, see [InlineCodegen].
+ */
+object SharedInlineCache {
+    // ByteBuffer compares the content of the wrapped digest
+    private data class Key(val classDigest: ByteBuffer, val methodId: MethodId)
+
+    private class Entry(val value: SMAPAndMethodNode, val size: Long)
+
+    @Volatile
+    var maxSizeInBytes: Long = 0L
+        set(value) {
+            field = value
+            synchronized(entries) {
+                evictIfNeeded()
+            }
+        }
+
+    val isEnabled: Boolean
+        get() = maxSizeInBytes > 0
+
+    private val entries = LinkedHashMap<Key, Entry>(16, 0.75f, /* accessOrder = */ true)
+    private var sizeInBytes = 0L
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val evictions = AtomicLong()
+
+    fun getOrPut(classBytes: ByteArray, methodId: MethodId, compute: () -> SMAPAndMethodNode?): SMAPAndMethodNode? {
+        val key = Key(ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(classBytes)), methodId)
+
+        synchronized(entries) {
+            entries[key]?.let {
+                hits.incrementAndGet()
+                return it.value
+            }
+        }
+
+        misses.incrementAndGet()
+        // Computed outside of the lock: two compilations may read the same body at once, the second result just replaces the first one
+        val value = compute() ?: return null
+        val entry = Entry(value, estimateSize(value))
+        synchronized(entries) {
+            entries.put(key, entry)?.let { sizeInBytes -= it.size }
+            sizeInBytes += entry.size
+            evictIfNeeded()
+        }
+        return value
+    }
+
+    fun clear() {
+        synchronized(entries) {
+            entries.clear()
+            sizeInBytes = 0L
+        }
+        hits.set(0)
+        misses.set(0)
+        evictions.set(0)
+    }
+
+    fun reportStatistics(consumer: (String) -> Unit) {
+        val size = synchronized(entries) { "${entries.size} entries, ${sizeInBytes / 1024} kb" }
+        consumer("Shared inline cache: ${hits.get()} hits, ${misses.get()} misses, ${evictions.get()} evictions, $size")
+    }
+
+    private fun evictIfNeeded() {
+        val iterator = entries.values.iterator()
+        while (sizeInBytes > maxSizeInBytes && iterator.hasNext()) {
+            sizeInBytes -= iterator.next().size
+            iterator.remove()
+            evictions.incrementAndGet()
+        }
+    }
+
+    // A rough estimation of the retained size of a method node, which is dominated by its instructions
+    private fun estimateSize(value: SMAPAndMethodNode): Long {
+        val node = value.node
+        return 256L + 64L * node.instructions.size() + 64L * (node.localVariables?.size ?: 0) + 64L * node.tryCatchBlocks.size
+    }
+}
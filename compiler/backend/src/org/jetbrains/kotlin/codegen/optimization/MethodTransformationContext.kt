@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization
+
+import org.jetbrains.kotlin.codegen.JvmBackendClassResolver
+import org.jetbrains.kotlin.codegen.state.GenerationState
+import org.jetbrains.kotlin.codegen.state.KotlinTypeMapper
+import org.jetbrains.kotlin.config.JVMConstructorCallNormalizationMode
+import org.jetbrains.kotlin.resolve.BindingContext
+
+/**
+ * The part of [GenerationState] which is available to method transformers of [OptimizationMethodVisitor].
+ *
+ * With `-Xbackend-threads`, methods of a class are transformed on a backend thread while code of other classes is still being generated
+ * (see [org.jetbrains.kotlin.codegen.DeferredClassBuilderFactory]), so everything here must be safe to use from several threads
+ * at once: the settings are immutable, and descriptors are resolved lazily under the storage manager of the module.
+ * [GenerationState.typeMapper] reads the binding context, which is modified by code generation, so types are mapped by [typeMapper]
+ * which doesn't use it. Transformers only map types of inline classes, which are top-level and thus don't need the binding context.
+ */
+class MethodTransformationContext(state: GenerationState) {
+    val constructorCallNormalizationMode: JVMConstructorCallNormalizationMode = state.constructorCallNormalizationMode
+
+    val disableOptimization: Boolean = state.disableOptimization
+
+    val jvmBackendClassResolver: JvmBackendClassResolver = state.jvmBackendClassResolver
+
+    val typeMapper = KotlinTypeMapper(
+        BindingContext.EMPTY, state.classBuilderMode, state.moduleName, state.languageVersionSettings,
+        jvmTarget = state.target, isIrBackend = state.isIrBackend
+    )
+}
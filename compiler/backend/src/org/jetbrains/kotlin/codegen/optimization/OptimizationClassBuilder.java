@@ -20,17 +20,16 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.codegen.ClassBuilder;
 import org.jetbrains.kotlin.codegen.DelegatingClassBuilder;
-import org.jetbrains.kotlin.codegen.state.GenerationState;
 import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin;
 import org.jetbrains.org.objectweb.asm.MethodVisitor;
 
 public class OptimizationClassBuilder extends DelegatingClassBuilder {
     private final ClassBuilder delegate;
-    private final GenerationState generationState;
+    private final MethodTransformationContext context;
 
-    public OptimizationClassBuilder(@NotNull ClassBuilder delegate, @NotNull GenerationState generationState) {
+    public OptimizationClassBuilder(@NotNull ClassBuilder delegate, @NotNull MethodTransformationContext context) {
         this.delegate = delegate;
-        this.generationState = generationState;
+        this.context = context;
     }
 
     @NotNull
@@ -51,7 +50,7 @@ public class OptimizationClassBuilder extends DelegatingClassBuilder {
     ) {
         return new OptimizationMethodVisitor(
                 super.newMethod(origin, access, name, desc, signature, exceptions),
-                generationState, access, name, desc, signature, exceptions
+                context, access, name, desc, signature, exceptions
         );
     }
 }
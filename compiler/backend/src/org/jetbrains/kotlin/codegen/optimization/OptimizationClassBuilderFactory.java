@@ -19,20 +19,19 @@ package org.jetbrains.kotlin.codegen.optimization;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.kotlin.codegen.ClassBuilderFactory;
 import org.jetbrains.kotlin.codegen.DelegatingClassBuilderFactory;
-import org.jetbrains.kotlin.codegen.state.GenerationState;
 import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin;
 
 public class OptimizationClassBuilderFactory extends DelegatingClassBuilderFactory {
-    private final GenerationState generationState;
+    private final MethodTransformationContext context;
 
-    public OptimizationClassBuilderFactory(ClassBuilderFactory delegate, @NotNull GenerationState generationState) {
+    public OptimizationClassBuilderFactory(ClassBuilderFactory delegate, @NotNull MethodTransformationContext context) {
         super(delegate);
-        this.generationState = generationState;
+        this.context = context;
     }
 
     @NotNull
     @Override
     public OptimizationClassBuilder newClassBuilder(@NotNull JvmDeclarationOrigin origin) {
-        return new OptimizationClassBuilder(getDelegate().newClassBuilder(origin), generationState);
+        return new OptimizationClassBuilder(getDelegate().newClassBuilder(origin), context);
     }
 }
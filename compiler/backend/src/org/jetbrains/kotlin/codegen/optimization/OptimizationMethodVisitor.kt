@@ -20,16 +20,17 @@ import org.jetbrains.kotlin.codegen.TransformationMethodVisitor
 import org.jetbrains.kotlin.codegen.optimization.boxing.PopBackwardPropagationTransformer
 import org.jetbrains.kotlin.codegen.optimization.boxing.RedundantBoxingMethodTransformer
 import org.jetbrains.kotlin.codegen.optimization.boxing.StackPeepholeOptimizationsTransformer
+import org.jetbrains.kotlin.codegen.optimization.common.SparseMethodAnalyzer
 import org.jetbrains.kotlin.codegen.optimization.common.prepareForEmitting
 import org.jetbrains.kotlin.codegen.optimization.nullCheck.RedundantNullCheckMethodTransformer
 import org.jetbrains.kotlin.codegen.optimization.transformer.CompositeMethodTransformer
-import org.jetbrains.kotlin.codegen.state.GenerationState
+import org.jetbrains.kotlin.codegen.optimization.transformer.TimedMethodTransformer.Companion.timed
 import org.jetbrains.org.objectweb.asm.MethodVisitor
 import org.jetbrains.org.objectweb.asm.tree.MethodNode
 
 class OptimizationMethodVisitor(
     delegate: MethodVisitor,
-    private val generationState: GenerationState,
+    private val context: MethodTransformationContext,
     access: Int,
     name: String,
     desc: String,
@@ -37,36 +38,49 @@ class OptimizationMethodVisitor(
     exceptions: Array<String>?
 ) : TransformationMethodVisitor(delegate, access, name, desc, signature, exceptions) {
     private val constructorCallNormalizationTransformer =
-        UninitializedStoresMethodTransformer(generationState.constructorCallNormalizationMode)
+        timed(UninitializedStoresMethodTransformer(context.constructorCallNormalizationMode))
 
     val normalizationMethodTransformer = CompositeMethodTransformer(
-        FixStackWithLabelNormalizationMethodTransformer(),
-        MethodVerifier("AFTER mandatory stack transformations")
+        timed(FixStackWithLabelNormalizationMethodTransformer()),
+        timed(MethodVerifier("AFTER mandatory stack transformations"), "MethodVerifier after mandatory stack transformations")
     )
 
     val optimizationTransformer = CompositeMethodTransformer(
-        CapturedVarsOptimizationMethodTransformer(),
-        RedundantNullCheckMethodTransformer(generationState),
-        RedundantCheckCastEliminationMethodTransformer(),
-        ConstantConditionEliminationMethodTransformer(),
-        RedundantBoxingMethodTransformer(generationState),
-        StackPeepholeOptimizationsTransformer(),
-        PopBackwardPropagationTransformer(),
-        DeadCodeEliminationMethodTransformer(),
-        RedundantGotoMethodTransformer(),
-        RedundantNopsCleanupMethodTransformer(),
-        MethodVerifier("AFTER optimizations")
+        timed(CapturedVarsOptimizationMethodTransformer()),
+        timed(RedundantNullCheckMethodTransformer(context)),
+        timed(RedundantCheckCastEliminationMethodTransformer()),
+        timed(ConstantConditionEliminationMethodTransformer()),
+        timed(RedundantBoxingMethodTransformer(context)),
+        timed(StackPeepholeOptimizationsTransformer()),
+        timed(PopBackwardPropagationTransformer()),
+        timed(DeadCodeEliminationMethodTransformer()),
+        timed(RedundantGotoMethodTransformer()),
+        timed(RedundantNopsCleanupMethodTransformer()),
+        timed(MethodVerifier("AFTER optimizations"), "MethodVerifier after optimizations")
+    )
+
+    // Optimizations for methods which are too large to keep frames of all instructions, see canBeOptimizedUsingSparseFrames
+    val sparseFramesOptimizationTransformer = CompositeMethodTransformer(
+        timed(RedundantNullCheckMethodTransformer(context, useSparseFrames = true), "RedundantNullCheckMethodTransformer sparse"),
+        timed(RedundantBoxingMethodTransformer(context, useSparseFrames = true), "RedundantBoxingMethodTransformer sparse"),
+        timed(StackPeepholeOptimizationsTransformer()),
+        timed(RedundantGotoMethodTransformer()),
+        timed(RedundantNopsCleanupMethodTransformer())
     )
 
     override fun performTransformations(methodNode: MethodNode) {
         normalizationMethodTransformer.transform("fake", methodNode)
         constructorCallNormalizationTransformer.transform("fake", methodNode)
 
-        if (canBeOptimized(methodNode) && !generationState.disableOptimization) {
-            optimizationTransformer.transform("fake", methodNode)
+        if (!context.disableOptimization) {
+            if (canBeOptimized(methodNode)) {
+                optimizationTransformer.transform("fake", methodNode)
+            } else if (canBeOptimizedUsingSparseFrames(methodNode)) {
+                sparseFramesOptimizationTransformer.transform("fake", methodNode)
+            }
         }
 
-        DeadCodeEliminationMethodTransformer().transform("fake", methodNode)
+        timed(DeadCodeEliminationMethodTransformer(), "DeadCodeEliminationMethodTransformer before emitting").transform("fake", methodNode)
 
         methodNode.prepareForEmitting()
     }
@@ -79,6 +93,12 @@ class OptimizationMethodVisitor(
             return totalFramesSizeMb < MEMORY_LIMIT_BY_METHOD_MB
         }
 
+        fun canBeOptimizedUsingSparseFrames(node: MethodNode): Boolean {
+            val totalFramesSizeMb =
+                SparseMethodAnalyzer.countBasicBlocks(node).toLong() * (node.maxLocals + node.maxStack) / (1024 * 1024)
+            return totalFramesSizeMb < MEMORY_LIMIT_BY_METHOD_MB
+        }
+
         fun canBeOptimizedUsingSourceInterpreter(node: MethodNode): Boolean {
             val frameSize = node.maxLocals + node.maxStack
             val methodSize = node.instructions.size().toLong()
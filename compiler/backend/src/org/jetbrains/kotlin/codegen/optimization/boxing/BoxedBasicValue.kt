@@ -18,8 +18,8 @@ package org.jetbrains.kotlin.codegen.optimization.boxing
 
 import com.intellij.openapi.util.Pair
 import org.jetbrains.kotlin.codegen.AsmUtil
+import org.jetbrains.kotlin.codegen.optimization.MethodTransformationContext
 import org.jetbrains.kotlin.codegen.optimization.common.StrictBasicValue
-import org.jetbrains.kotlin.codegen.state.GenerationState
 import org.jetbrains.kotlin.resolve.jvm.AsmTypes
 import org.jetbrains.org.objectweb.asm.Type
 import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode
@@ -38,9 +38,9 @@ class CleanBoxedValue(
     boxedType: Type,
     boxingInsn: AbstractInsnNode,
     progressionIterator: ProgressionIteratorBasicValue?,
-    val generationState: GenerationState
+    val context: MethodTransformationContext
 ) : BoxedBasicValue(boxedType) {
-    override val descriptor = BoxedValueDescriptor(boxedType, boxingInsn, progressionIterator, generationState)
+    override val descriptor = BoxedValueDescriptor(boxedType, boxingInsn, progressionIterator, context)
 
     private var tainted: TaintedBoxedValue? = null
     override fun taint(): BoxedBasicValue = tainted ?: TaintedBoxedValue(this).also { tainted = it }
@@ -58,7 +58,7 @@ class BoxedValueDescriptor(
     private val boxedType: Type,
     val boxingInsn: AbstractInsnNode,
     val progressionIterator: ProgressionIteratorBasicValue?,
-    val generationState: GenerationState
+    val context: MethodTransformationContext
 ) {
     private val associatedInsns = HashSet<AbstractInsnNode>()
     private val unboxingWithCastInsns = HashSet<Pair<AbstractInsnNode, Type>>()
@@ -66,7 +66,7 @@ class BoxedValueDescriptor(
     private val mergedWith = HashSet<BoxedValueDescriptor>()
 
     var isSafeToRemove = true; private set
-    val unboxedType: Type = getUnboxedType(boxedType, generationState)
+    val unboxedType: Type = getUnboxedType(boxedType, context)
     val isInlineClassValue = isInlineClassValue(boxedType)
 
     fun getAssociatedInsns() = associatedInsns.toList()
@@ -106,20 +106,20 @@ class BoxedValueDescriptor(
 }
 
 
-fun getUnboxedType(boxedType: Type, state: GenerationState): Type {
+fun getUnboxedType(boxedType: Type, context: MethodTransformationContext): Type {
     val primitiveType = AsmUtil.unboxPrimitiveTypeOrNull(boxedType)
     if (primitiveType != null) return primitiveType
 
     if (boxedType == AsmTypes.K_CLASS_TYPE) return AsmTypes.JAVA_CLASS_TYPE
 
-    unboxedTypeOfInlineClass(boxedType, state)?.let { return it }
+    unboxedTypeOfInlineClass(boxedType, context)?.let { return it }
 
     throw IllegalArgumentException("Expected primitive type wrapper or KClass or inline class wrapper, got: $boxedType")
 }
 
-fun unboxedTypeOfInlineClass(boxedType: Type, state: GenerationState): Type? {
-    val descriptor = state.jvmBackendClassResolver.resolveToClassDescriptors(boxedType).singleOrNull() ?: return null
-    return state.typeMapper.mapType(descriptor.defaultType)
+fun unboxedTypeOfInlineClass(boxedType: Type, context: MethodTransformationContext): Type? {
+    val descriptor = context.jvmBackendClassResolver.resolveToClassDescriptors(boxedType).singleOrNull() ?: return null
+    return context.typeMapper.mapType(descriptor.defaultType)
 }
 
 private fun isInlineClassValue(boxedType: Type): Boolean {
@@ -17,7 +17,7 @@
 package org.jetbrains.kotlin.codegen.optimization.boxing
 
 import com.google.common.collect.ImmutableSet
-import org.jetbrains.kotlin.codegen.state.GenerationState
+import org.jetbrains.kotlin.codegen.optimization.MethodTransformationContext
 import org.jetbrains.org.objectweb.asm.Opcodes
 import org.jetbrains.org.objectweb.asm.Type
 import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode
@@ -28,8 +28,8 @@ import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue
 
 internal class RedundantBoxingInterpreter(
     insnList: InsnList,
-    generationState: GenerationState
-) : BoxingInterpreter(insnList, generationState) {
+    context: MethodTransformationContext
+) : BoxingInterpreter(insnList, context) {
 
     val candidatesBoxedValues = RedundantBoxedValuesCollection()
 
@@ -20,12 +20,13 @@ import com.intellij.openapi.util.Pair
 import org.jetbrains.kotlin.codegen.inline.insnOpcodeText
 import org.jetbrains.kotlin.codegen.inline.insnText
 import org.jetbrains.kotlin.codegen.intrinsics.IntrinsicMethods
+import org.jetbrains.kotlin.codegen.optimization.MethodTransformationContext
 import org.jetbrains.kotlin.codegen.optimization.common.StrictBasicValue
+import org.jetbrains.kotlin.codegen.optimization.common.forEachFrame
 import org.jetbrains.kotlin.codegen.optimization.common.remapLocalVariables
 import org.jetbrains.kotlin.codegen.optimization.fixStack.peek
 import org.jetbrains.kotlin.codegen.optimization.fixStack.top
 import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
-import org.jetbrains.kotlin.codegen.state.GenerationState
 import org.jetbrains.org.objectweb.asm.Label
 import org.jetbrains.org.objectweb.asm.Opcodes
 import org.jetbrains.org.objectweb.asm.Type
@@ -35,21 +36,26 @@ import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue
 import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
 import java.util.*
 
-class RedundantBoxingMethodTransformer(private val generationState: GenerationState) : MethodTransformer() {
+class RedundantBoxingMethodTransformer(
+    private val context: MethodTransformationContext,
+    private val useSparseFrames: Boolean = false
+) : MethodTransformer() {
 
     override fun transform(internalClassName: String, node: MethodNode) {
-        val interpreter = RedundantBoxingInterpreter(node.instructions, generationState)
-        val frames = MethodTransformer.analyze(internalClassName, node, interpreter)
-
-        interpretPopInstructionsForBoxedValues(interpreter, node, frames)
+        val interpreter = RedundantBoxingInterpreter(node.instructions, context)
+        val variableValues = LocalVariableValues(node)
+        forEachFrame(internalClassName, node, interpreter, useSparseFrames) { i, frame ->
+            interpretPopInstructionForBoxedValues(interpreter, node.instructions[i], frame)
+            variableValues.collect(i, frame)
+        }
 
         val valuesToOptimize = interpreter.candidatesBoxedValues
 
         if (!valuesToOptimize.isEmpty) {
-            // has side effect on valuesToOptimize and frames, containing BoxedBasicValues that are unsafe to remove
-            removeValuesClashingWithVariables(valuesToOptimize, node, frames)
+            // has side effect on valuesToOptimize, containing BoxedBasicValues that are unsafe to remove
+            removeValuesClashingWithVariables(valuesToOptimize, node, variableValues)
 
-            adaptLocalVariableTableForBoxedValues(node, frames)
+            adaptLocalVariableTableForBoxedValues(node, variableValues)
 
             node.remapLocalVariables(buildVariablesRemapping(valuesToOptimize, node))
 
@@ -57,34 +63,27 @@ class RedundantBoxingMethodTransformer(private val generationState: GenerationSt
         }
     }
 
-    private fun interpretPopInstructionsForBoxedValues(
+    private fun interpretPopInstructionForBoxedValues(
         interpreter: RedundantBoxingInterpreter,
-        node: MethodNode,
-        frames: Array<out Frame<BasicValue>?>
+        insn: AbstractInsnNode,
+        frame: Frame<BasicValue>
     ) {
-        for (i in frames.indices) {
-            val insn = node.instructions[i]
-            if (insn.opcode != Opcodes.POP && insn.opcode != Opcodes.POP2) {
-                continue
-            }
+        if (insn.opcode != Opcodes.POP && insn.opcode != Opcodes.POP2) return
 
-            val frame = frames[i] ?: continue
+        val top = frame.top()!!
+        interpreter.processPopInstruction(insn, top)
 
-            val top = frame.top()!!
-            interpreter.processPopInstruction(insn, top)
-
-            if (top.size == 1 && insn.opcode == Opcodes.POP2) {
-                interpreter.processPopInstruction(insn, frame.peek(1)!!)
-            }
+        if (top.size == 1 && insn.opcode == Opcodes.POP2) {
+            interpreter.processPopInstruction(insn, frame.peek(1)!!)
         }
     }
 
     private fun removeValuesClashingWithVariables(
         values: RedundantBoxedValuesCollection,
         node: MethodNode,
-        frames: Array<Frame<BasicValue>>
+        variableValues: LocalVariableValues
     ) {
-        while (removeValuesClashingWithVariablesPass(values, node, frames)) {
+        while (removeValuesClashingWithVariablesPass(values, node, variableValues)) {
             // do nothing
         }
     }
@@ -92,7 +91,7 @@ class RedundantBoxingMethodTransformer(private val generationState: GenerationSt
     private fun removeValuesClashingWithVariablesPass(
         values: RedundantBoxedValuesCollection,
         node: MethodNode,
-        frames: Array<out Frame<BasicValue>?>
+        variableValues: LocalVariableValues
     ): Boolean {
         var needToRepeat = false
 
@@ -101,14 +100,14 @@ class RedundantBoxingMethodTransformer(private val generationState: GenerationSt
                 continue
             }
 
-            val variableValues = getValuesStoredOrLoadedToVariable(localVariableNode, node, frames)
+            val usedValues = variableValues.getValuesStoredOrLoadedToVariable(localVariableNode)
 
-            val boxed = variableValues.filterIsInstance<BoxedBasicValue>()
+            val boxed = usedValues.filterIsInstance<BoxedBasicValue>()
 
             if (boxed.isEmpty()) continue
 
             val firstBoxed = boxed.first().descriptor
-            if (isUnsafeToRemoveBoxingForConnectedValues(variableValues, firstBoxed.unboxedType)) {
+            if (isUnsafeToRemoveBoxingForConnectedValues(usedValues, firstBoxed.unboxedType)) {
                 for (value in boxed) {
                     val descriptor = value.descriptor
                     if (descriptor.isSafeToRemove) {
@@ -131,13 +130,13 @@ class RedundantBoxingMethodTransformer(private val generationState: GenerationSt
             !descriptor.isSafeToRemove || descriptor.unboxedType != unboxedType
         }
 
-    private fun adaptLocalVariableTableForBoxedValues(node: MethodNode, frames: Array<Frame<BasicValue>>) {
+    private fun adaptLocalVariableTableForBoxedValues(node: MethodNode, variableValues: LocalVariableValues) {
         for (localVariableNode in node.localVariables) {
             if (Type.getType(localVariableNode.desc).sort != Type.OBJECT) {
                 continue
             }
 
-            for (value in getValuesStoredOrLoadedToVariable(localVariableNode, node, frames)) {
+            for (value in variableValues.getValuesStoredOrLoadedToVariable(localVariableNode)) {
                 if (value !is BoxedBasicValue) continue
 
                 val descriptor = value.descriptor
@@ -147,37 +146,46 @@ class RedundantBoxingMethodTransformer(private val generationState: GenerationSt
         }
     }
 
-    private fun getValuesStoredOrLoadedToVariable(
-        localVariableNode: LocalVariableNode,
-        node: MethodNode,
-        frames: Array<out Frame<BasicValue>?>
-    ): List<BasicValue> {
-        val values = ArrayList<BasicValue>()
-        val insnList = node.instructions
-        val localVariableStart = insnList.indexOf(localVariableNode.start)
-        val localVariableEnd = insnList.indexOf(localVariableNode.end)
-
-        frames[localVariableStart]?.let { frameForStartInsn ->
-            frameForStartInsn.getLocal(localVariableNode.index)?.let { localVarValue ->
-                values.add(localVarValue)
+    /**
+     * Values of local variables at the starts of their ranges and values stored or loaded by ASTORE and ALOAD instructions.
+     * Only these values are kept instead of the frames they are taken from, so frames of huge methods don't have to be stored.
+     */
+    private class LocalVariableValues(node: MethodNode) {
+        private val insnList = node.instructions
+        private val storedOrLoadedValues = arrayOfNulls<BasicValue>(insnList.size())
+        private val valuesAtStart = HashMap<LocalVariableNode, BasicValue>()
+        private val variablesByStart = node.localVariables.orEmpty().groupBy { insnList.indexOf(it.start) }
+
+        fun collect(insnIndex: Int, frame: Frame<BasicValue>) {
+            variablesByStart[insnIndex]?.forEach { localVariableNode ->
+                frame.getLocal(localVariableNode.index)?.let { valuesAtStart[localVariableNode] = it }
+            }
+
+            val insn = insnList[insnIndex]
+            if (insn.opcode == Opcodes.ASTORE) {
+                storedOrLoadedValues[insnIndex] = frame.top()!!
+            } else if (insn.opcode == Opcodes.ALOAD) {
+                storedOrLoadedValues[insnIndex] = frame.getLocal((insn as VarInsnNode).`var`)
             }
         }
 
-        for (i in localVariableStart until localVariableEnd) {
-            if (i < 0 || i >= insnList.size()) continue
-            val frame = frames[i] ?: continue
-            val insn = insnList[i]
-            if ((insn.opcode == Opcodes.ASTORE || insn.opcode == Opcodes.ALOAD) &&
-                (insn as VarInsnNode).`var` == localVariableNode.index) {
-                if (insn.getOpcode() == Opcodes.ASTORE) {
-                    values.add(frame.top()!!)
-                } else {
-                    values.add(frame.getLocal(insn.`var`))
+        fun getValuesStoredOrLoadedToVariable(localVariableNode: LocalVariableNode): List<BasicValue> {
+            val values = ArrayList<BasicValue>()
+            val localVariableStart = insnList.indexOf(localVariableNode.start)
+            val localVariableEnd = insnList.indexOf(localVariableNode.end)
+
+            valuesAtStart[localVariableNode]?.let { values.add(it) }
+
+            for (i in localVariableStart until localVariableEnd) {
+                if (i < 0 || i >= insnList.size()) continue
+                val value = storedOrLoadedValues[i] ?: continue
+                if ((insnList[i] as VarInsnNode).`var` == localVariableNode.index) {
+                    values.add(value)
                 }
             }
-        }
 
-        return values
+            return values
+        }
     }
 
     private fun buildVariablesRemapping(values: RedundantBoxedValuesCollection, node: MethodNode): IntArray {
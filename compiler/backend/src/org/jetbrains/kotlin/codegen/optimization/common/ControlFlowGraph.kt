@@ -19,7 +19,7 @@ package org.jetbrains.kotlin.codegen.optimization.common
 import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode
 import org.jetbrains.org.objectweb.asm.tree.InsnList
 import org.jetbrains.org.objectweb.asm.tree.MethodNode
-import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue
+import org.jetbrains.org.objectweb.asm.tree.analysis.*
 
 
 class ControlFlowGraph private constructor(private val insns: InsnList) {
@@ -28,28 +28,63 @@ class ControlFlowGraph private constructor(private val insns: InsnList) {
     fun getSuccessorsIndices(insn: AbstractInsnNode): List<Int> = getSuccessorsIndices(insns.indexOf(insn))
     fun getSuccessorsIndices(index: Int): List<Int> = edges[index]
 
+    // An instruction is visited by an analyzer again each time its frame changes, so the same edge may be reported several times
+    private fun addEdge(from: Int, to: Int) {
+        val successors = edges[from]
+        if (to !in successors) {
+            successors.add(to)
+        }
+    }
+
     companion object {
         @JvmStatic
         fun build(node: MethodNode): ControlFlowGraph {
             val graph = ControlFlowGraph(node.instructions)
 
-            fun addEdge(from: Int, to: Int) {
-                graph.edges[from].add(to)
-            }
-
             object : MethodAnalyzer<BasicValue>("fake", node, OptimizationBasicInterpreter()) {
                 override fun visitControlFlowEdge(insn: Int, successor: Int): Boolean {
-                    addEdge(insn, successor)
+                    graph.addEdge(insn, successor)
                     return true
                 }
 
                 override fun visitControlFlowExceptionEdge(insn: Int, successor: Int): Boolean {
-                    addEdge(insn, successor)
+                    graph.addEdge(insn, successor)
                     return true
                 }
             }.analyze()
 
             return graph
         }
+
+        /**
+         * Builds the graph while analyzing the method with [interpreter], so that a method which needs both its frames and
+         * its control flow graph is analyzed once.
+         */
+        @JvmStatic
+        fun <V : Value> buildWithFrames(
+            thisName: String,
+            node: MethodNode,
+            interpreter: Interpreter<V>
+        ): Pair<ControlFlowGraph, Array<Frame<V>?>> {
+            val graph = ControlFlowGraph(node.instructions)
+
+            val analyzer = object : Analyzer<V>(interpreter) {
+                override fun newControlFlowEdge(insn: Int, successor: Int) {
+                    graph.addEdge(insn, successor)
+                }
+
+                override fun newControlFlowExceptionEdge(insn: Int, successor: Int): Boolean {
+                    graph.addEdge(insn, successor)
+                    return true
+                }
+            }
+            val frames = try {
+                analyzer.analyze(thisName, node)
+            } catch (e: AnalyzerException) {
+                throw RuntimeException(e)
+            }
+
+            return Pair(graph, frames)
+        }
     }
 }
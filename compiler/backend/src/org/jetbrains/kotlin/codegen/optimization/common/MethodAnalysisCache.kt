@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.common
+
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
+import org.jetbrains.org.objectweb.asm.tree.analysis.Interpreter
+import org.jetbrains.org.objectweb.asm.tree.analysis.Value
+
+/**
+ * The control flow graph and frames computed with [OptimizationBasicInterpreter] of [node], shared between analyses of the method.
+ *
+ * The graph is built during the first analysis of the method made through the cache, so it doesn't take a separate pass.
+ * The method must not be modified while the cache is used.
+ */
+class MethodAnalysisCache(private val thisName: String, val node: MethodNode) {
+    private val instructionsCount = node.instructions.size()
+    private var graph: ControlFlowGraph? = null
+    private var basicFrames: Array<Frame<BasicValue>?>? = null
+
+    val controlFlowGraph: ControlFlowGraph
+        get() {
+            graph?.let { return it }
+            getBasicFrames()
+            return graph!!
+        }
+
+    fun getBasicFrames(): Array<Frame<BasicValue>?> =
+        basicFrames ?: analyze(OptimizationBasicInterpreter()).also { basicFrames = it }
+
+    fun <V : Value> analyze(interpreter: Interpreter<V>): Array<Frame<V>?> {
+        assert(node.instructions.size() == instructionsCount) { "Method ${node.name} was modified after it was analyzed" }
+
+        if (graph != null) {
+            return MethodTransformer.analyze(thisName, node, interpreter)
+        }
+
+        val (newGraph, frames) = ControlFlowGraph.buildWithFrames(thisName, node, interpreter)
+        graph = newGraph
+        return frames
+    }
+}
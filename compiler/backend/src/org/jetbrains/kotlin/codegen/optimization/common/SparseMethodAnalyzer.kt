@@ -0,0 +1,248 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.common
+
+import org.jetbrains.kotlin.codegen.inline.insnText
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.Type
+import org.jetbrains.org.objectweb.asm.tree.*
+import org.jetbrains.org.objectweb.asm.tree.analysis.AnalyzerException
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
+import org.jetbrains.org.objectweb.asm.tree.analysis.Interpreter
+import org.jetbrains.org.objectweb.asm.tree.analysis.Value
+
+/**
+ * Computes the same frames as [MethodAnalyzer], but keeps them only at the entries of basic blocks.
+ * A frame of any other instruction is recomputed from the entry frame of its block when it's visited with [forEachFrame].
+ * So memory used by the analysis is proportional to the number of basic blocks rather than to the number of instructions,
+ * which makes it possible to analyze huge methods with many local variables.
+ *
+ * Note that [forEachFrame] interprets all reachable instructions once more with their final frames, so the interpreter
+ * should be ready to execute an instruction with the same input several times, as in any fixed-point analysis.
+ */
+class SparseMethodAnalyzer<V : Value>(
+    private val owner: String,
+    private val method: MethodNode,
+    private val interpreter: Interpreter<V>
+) {
+    private val instructions: InsnList = method.instructions
+    private val nInsns: Int = instructions.size()
+
+    private val isBlockStart: BooleanArray = computeBlockStarts(method)
+    private val blockFrames: Array<Frame<V>?> = arrayOfNulls(nInsns)
+
+    private val handlers: Array<MutableList<TryCatchBlockNode>?> = arrayOfNulls(nInsns)
+    private val queued: BooleanArray = BooleanArray(nInsns)
+    private val queue: IntArray = IntArray(nInsns)
+    private var top: Int = 0
+
+    fun analyze() {
+        if (nInsns == 0) return
+
+        computeExceptionHandlersForEachInsn()
+
+        val current = Frame<V>(method.maxLocals, method.maxStack)
+        val handler = Frame<V>(method.maxLocals, method.maxStack)
+        initControlFlowAnalysis(current)
+
+        while (top > 0) {
+            val blockStart = queue[--top]
+            queued[blockStart] = false
+
+            current.init(blockFrames[blockStart]!!)
+            val blockEnd = interpretBlock(blockStart, current) { insn, frame ->
+                handlers[insn]?.forEach { tcb ->
+                    handler.init(frame)
+                    handler.clearStack()
+                    handler.push(interpreter.newValue(Type.getObjectType(tcb.type ?: "java/lang/Throwable")))
+                    mergeControlFlowEdge(instructions.indexOf(tcb.handler), handler)
+                }
+            }
+            visitSuccessors(blockEnd, current)
+        }
+    }
+
+    /**
+     * Visits frames of all reachable instructions in the order of instructions.
+     * The frame passed to [visitor] is reused for the following instructions, so it should not be stored.
+     */
+    fun forEachFrame(visitor: (Int, Frame<V>) -> Unit) {
+        if (nInsns == 0) return
+
+        val current = Frame<V>(method.maxLocals, method.maxStack)
+        for (blockStart in 0 until nInsns) {
+            val blockFrame = blockFrames[blockStart] ?: continue
+            current.init(blockFrame)
+            interpretBlock(blockStart, current, visitor)
+        }
+    }
+
+    // Interprets instructions of the block starting at [blockStart], returns the index of the last instruction of the block
+    private inline fun interpretBlock(blockStart: Int, current: Frame<V>, beforeInsn: (Int, Frame<V>) -> Unit): Int {
+        var insn = blockStart
+        while (true) {
+            val insnNode = instructions[insn]
+            try {
+                beforeInsn(insn, current)
+
+                val insnType = insnNode.type
+                if (insnType != AbstractInsnNode.LABEL && insnType != AbstractInsnNode.LINE && insnType != AbstractInsnNode.FRAME) {
+                    current.execute(insnNode, interpreter)
+                }
+            } catch (e: AnalyzerException) {
+                throw AnalyzerException(e.node, "Error at instruction #$insn ${insnNode.insnText}: ${e.message}", e)
+            } catch (e: Exception) {
+                throw AnalyzerException(insnNode, "Error at instruction #$insn ${insnNode.insnText}: ${e.message}", e)
+            }
+
+            if (insn + 1 == nInsns || isBlockStart[insn + 1]) return insn
+            insn++
+        }
+    }
+
+    private fun visitSuccessors(blockEnd: Int, current: Frame<V>) {
+        val insnNode = instructions[blockEnd]
+        val insnOpcode = insnNode.opcode
+        when {
+            insnNode is JumpInsnNode -> {
+                if (insnOpcode != Opcodes.GOTO) {
+                    mergeControlFlowEdge(blockEnd + 1, current)
+                }
+                mergeControlFlowEdge(instructions.indexOf(insnNode.label), current)
+            }
+            insnNode is TableSwitchInsnNode -> {
+                mergeControlFlowEdge(instructions.indexOf(insnNode.dflt), current)
+                for (label in insnNode.labels) {
+                    mergeControlFlowEdge(instructions.indexOf(label), current)
+                }
+            }
+            insnNode is LookupSwitchInsnNode -> {
+                mergeControlFlowEdge(instructions.indexOf(insnNode.dflt), current)
+                for (label in insnNode.labels) {
+                    mergeControlFlowEdge(instructions.indexOf(label), current)
+                }
+            }
+            insnOpcode != Opcodes.ATHROW && (insnOpcode < Opcodes.IRETURN || insnOpcode > Opcodes.RETURN) ->
+                mergeControlFlowEdge(blockEnd + 1, current)
+        }
+    }
+
+    private fun initControlFlowAnalysis(current: Frame<V>) {
+        current.setReturn(interpreter.newValue(Type.getReturnType(method.desc)))
+        var local = 0
+        if ((method.access and Opcodes.ACC_STATIC) == 0) {
+            current.setLocal(local++, interpreter.newValue(Type.getObjectType(owner)))
+        }
+        for (arg in Type.getArgumentTypes(method.desc)) {
+            current.setLocal(local++, interpreter.newValue(arg))
+            if (arg.size == 2) {
+                current.setLocal(local++, interpreter.newValue(null))
+            }
+        }
+        while (local < method.maxLocals) {
+            current.setLocal(local++, interpreter.newValue(null))
+        }
+        mergeControlFlowEdge(0, current)
+    }
+
+    private fun computeExceptionHandlersForEachInsn() {
+        for (tcb in method.tryCatchBlocks) {
+            val begin = instructions.indexOf(tcb.start)
+            val end = instructions.indexOf(tcb.end)
+            for (j in begin until end) {
+                val insnHandlers = handlers[j] ?: ArrayList<TryCatchBlockNode>().also { handlers[j] = it }
+                insnHandlers.add(tcb)
+            }
+        }
+    }
+
+    private fun mergeControlFlowEdge(blockStart: Int, frame: Frame<V>) {
+        val oldFrame = blockFrames[blockStart]
+        val changes =
+            if (oldFrame != null)
+                oldFrame.merge(frame, interpreter)
+            else {
+                blockFrames[blockStart] = Frame<V>(frame.locals, frame.maxStackSize).apply { init(frame) }
+                true
+            }
+        if (changes && !queued[blockStart]) {
+            queued[blockStart] = true
+            queue[top++] = blockStart
+        }
+    }
+
+    companion object {
+        fun countBasicBlocks(method: MethodNode): Int =
+            computeBlockStarts(method).count { it }
+
+        // Basic blocks start at the first instruction, at targets of jumps and exception handlers,
+        // and after instructions which may not fall through to the next one
+        private fun computeBlockStarts(method: MethodNode): BooleanArray {
+            val instructions = method.instructions
+            val isBlockStart = BooleanArray(instructions.size())
+
+            fun markBlockStart(insn: AbstractInsnNode?) {
+                if (insn != null) {
+                    isBlockStart[instructions.indexOf(insn)] = true
+                }
+            }
+
+            markBlockStart(instructions.first)
+            for (tcb in method.tryCatchBlocks) {
+                markBlockStart(tcb.handler)
+            }
+            for (insn in instructions.toArray()) {
+                val endsBlock = when (insn) {
+                    is JumpInsnNode -> {
+                        markBlockStart(insn.label)
+                        true
+                    }
+                    is TableSwitchInsnNode -> {
+                        markBlockStart(insn.dflt)
+                        insn.labels.forEach(::markBlockStart)
+                        true
+                    }
+                    is LookupSwitchInsnNode -> {
+                        markBlockStart(insn.dflt)
+                        insn.labels.forEach(::markBlockStart)
+                        true
+                    }
+                    else ->
+                        insn.opcode == Opcodes.ATHROW || insn.opcode in Opcodes.IRETURN..Opcodes.RETURN
+                }
+                if (endsBlock) {
+                    markBlockStart(insn.next)
+                }
+            }
+            return isBlockStart
+        }
+    }
+}
+
+/**
+ * Visits frames of all reachable instructions of [method] in the order of instructions. Frames are computed either with
+ * a regular analyzer, which keeps frames of all instructions, or with [SparseMethodAnalyzer] if [useSparseFrames] is true.
+ */
+fun <V : Value> forEachFrame(
+    owner: String,
+    method: MethodNode,
+    interpreter: Interpreter<V>,
+    useSparseFrames: Boolean,
+    visitor: (Int, Frame<V>) -> Unit
+) {
+    if (useSparseFrames) {
+        SparseMethodAnalyzer(owner, method, interpreter).run {
+            analyze()
+            forEachFrame(visitor)
+        }
+    } else {
+        val frames = MethodTransformer.analyze(owner, method, interpreter)
+        for (i in frames.indices) {
+            visitor(i, frames[i] ?: continue)
+        }
+    }
+}
@@ -31,8 +31,11 @@ interface BackwardAnalysisInterpreter<F : VarFrame<F>> {
     fun use(frame: F, insn: AbstractInsnNode)
 }
 
-fun <F : VarFrame<F>> analyze(node: MethodNode, interpreter: BackwardAnalysisInterpreter<F>): List<F> {
-    val graph = ControlFlowGraph.build(node)
+fun <F : VarFrame<F>> analyze(
+    node: MethodNode,
+    interpreter: BackwardAnalysisInterpreter<F>,
+    graph: ControlFlowGraph = ControlFlowGraph.build(node)
+): List<F> {
     val insnList = node.instructions
 
     val frames = (1..insnList.size()).map { interpreter.newFrame(node.maxLocals) }.toMutableList()
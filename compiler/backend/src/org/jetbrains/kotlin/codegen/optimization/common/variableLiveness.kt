@@ -6,7 +6,6 @@
 package org.jetbrains.kotlin.codegen.optimization.common
 
 import org.jetbrains.kotlin.codegen.coroutines.SUSPEND_FUNCTION_COMPLETION_PARAMETER_NAME
-import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
 import org.jetbrains.kotlin.load.java.JvmAbi
 import org.jetbrains.org.objectweb.asm.Type
 import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode
@@ -47,15 +46,18 @@ class VariableLivenessFrame(val maxLocals: Int) : VarFrame<VariableLivenessFrame
     override fun hashCode() = bitSet.hashCode()
 }
 
-fun analyzeLiveness(node: MethodNode): List<VariableLivenessFrame> {
-    val typeAnnotatedFrames = MethodTransformer.analyze("fake", node, OptimizationBasicInterpreter())
+fun analyzeLiveness(node: MethodNode): List<VariableLivenessFrame> = analyzeLiveness(MethodAnalysisCache("fake", node))
+
+fun analyzeLiveness(analysis: MethodAnalysisCache): List<VariableLivenessFrame> {
+    val node = analysis.node
+    val typeAnnotatedFrames = analysis.getBasicFrames()
     val visibleByDebuggerVariables = analyzeVisibleByDebuggerVariables(node, typeAnnotatedFrames)
     return analyze(node, object : BackwardAnalysisInterpreter<VariableLivenessFrame> {
         override fun newFrame(maxLocals: Int) = VariableLivenessFrame(maxLocals)
         override fun def(frame: VariableLivenessFrame, insn: AbstractInsnNode) = defVar(frame, insn)
         override fun use(frame: VariableLivenessFrame, insn: AbstractInsnNode) =
             useVar(frame, insn, node, visibleByDebuggerVariables[node.instructions.indexOf(insn)])
-    })
+    }, analysis.controlFlowGraph)
 }
 
 private fun analyzeVisibleByDebuggerVariables(
@@ -19,8 +19,10 @@ package org.jetbrains.kotlin.codegen.optimization.nullCheck
 import org.jetbrains.kotlin.codegen.coroutines.withInstructionAdapter
 import org.jetbrains.kotlin.codegen.inline.ReifiedTypeInliner
 import org.jetbrains.kotlin.codegen.intrinsics.IntrinsicMethods
+import org.jetbrains.kotlin.codegen.optimization.MethodTransformationContext
 import org.jetbrains.kotlin.codegen.optimization.common.StrictBasicValue
 import org.jetbrains.kotlin.codegen.optimization.common.debugText
+import org.jetbrains.kotlin.codegen.optimization.common.forEachFrame
 import org.jetbrains.kotlin.codegen.optimization.common.isInsn
 import org.jetbrains.kotlin.codegen.optimization.fixStack.peek
 import org.jetbrains.kotlin.codegen.optimization.fixStack.top
@@ -28,7 +30,6 @@ import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
 import org.jetbrains.kotlin.codegen.pseudoInsns.PseudoInsn
 import org.jetbrains.kotlin.codegen.pseudoInsns.asNotNull
 import org.jetbrains.kotlin.codegen.pseudoInsns.isPseudo
-import org.jetbrains.kotlin.codegen.state.GenerationState
 import org.jetbrains.kotlin.resolve.jvm.AsmTypes
 import org.jetbrains.kotlin.utils.SmartList
 import org.jetbrains.org.objectweb.asm.Label
@@ -36,13 +37,21 @@ import org.jetbrains.org.objectweb.asm.Opcodes
 import org.jetbrains.org.objectweb.asm.commons.InstructionAdapter
 import org.jetbrains.org.objectweb.asm.tree.*
 
-class RedundantNullCheckMethodTransformer(private val generationState: GenerationState) : MethodTransformer() {
+class RedundantNullCheckMethodTransformer(
+    private val context: MethodTransformationContext,
+    private val useSparseFrames: Boolean = false
+) : MethodTransformer() {
     override fun transform(internalClassName: String, methodNode: MethodNode) {
-        while (TransformerPass(internalClassName, methodNode, generationState).run()) {
+        while (TransformerPass(internalClassName, methodNode, context, useSparseFrames).run()) {
         }
     }
 
-    private class TransformerPass(val internalClassName: String, val methodNode: MethodNode, val generationState: GenerationState) {
+    private class TransformerPass(
+        val internalClassName: String,
+        val methodNode: MethodNode,
+        val context: MethodTransformationContext,
+        val useSparseFrames: Boolean
+    ) {
         private var changes = false
 
         fun run(): Boolean {
@@ -60,21 +69,19 @@ class RedundantNullCheckMethodTransformer(private val generationState: Generatio
         }
 
         private fun analyzeNullabilities(): Map<AbstractInsnNode, StrictBasicValue> {
-            val frames = analyze(internalClassName, methodNode, NullabilityInterpreter(generationState))
             val insns = methodNode.instructions.toArray()
             val nullabilityMap = LinkedHashMap<AbstractInsnNode, StrictBasicValue>()
-            for (i in insns.indices) {
-                val frame = frames[i] ?: continue
+            forEachFrame(internalClassName, methodNode, NullabilityInterpreter(context), useSparseFrames) { i, frame ->
                 val insn = insns[i]
 
                 val value = when {
                     insn.isInstanceOfOrNullCheck() -> frame.top()
                     insn.isCheckExpressionValueIsNotNull() -> frame.peek(1)
                     else -> null
-                } as? StrictBasicValue ?: continue
+                } as? StrictBasicValue ?: return@forEachFrame
 
                 val nullability = value.getNullability()
-                if (nullability == Nullability.NULLABLE) continue
+                if (nullability == Nullability.NULLABLE) return@forEachFrame
                 nullabilityMap[insn] = value
             }
             return nullabilityMap
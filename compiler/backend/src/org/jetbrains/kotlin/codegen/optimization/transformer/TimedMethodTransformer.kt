@@ -0,0 +1,30 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.transformer
+
+import org.jetbrains.kotlin.util.PerformanceCounter
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Measures time spent in [transformer]. Time is accumulated in a [PerformanceCounter] shared by all transformers with the same [name],
+ * so it is reported together with other performance counters (e.g. with `-Xreport-perf`).
+ */
+class TimedMethodTransformer(name: String, private val transformer: MethodTransformer) : MethodTransformer() {
+    private val counter = counters.computeIfAbsent(name) { PerformanceCounter.create("Method transformer $it") }
+
+    override fun transform(internalClassName: String, methodNode: MethodNode) {
+        counter.time { transformer.transform(internalClassName, methodNode) }
+    }
+
+    companion object {
+        private val counters = ConcurrentHashMap<String, PerformanceCounter>()
+
+        // Transformers are created for each method, so they are wrapped only if time of performance counters is measured
+        fun timed(transformer: MethodTransformer, name: String = transformer.javaClass.simpleName): MethodTransformer =
+            if (PerformanceCounter.isTimeCounterEnabled) TimedMethodTransformer(name, transformer) else transformer
+    }
+}
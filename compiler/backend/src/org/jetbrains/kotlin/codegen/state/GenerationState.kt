@@ -17,6 +17,7 @@ import org.jetbrains.kotlin.codegen.extensions.ClassBuilderInterceptorExtension
 import org.jetbrains.kotlin.codegen.inline.GlobalInlineContext
 import org.jetbrains.kotlin.codegen.inline.InlineCache
 import org.jetbrains.kotlin.codegen.intrinsics.IntrinsicMethods
+import org.jetbrains.kotlin.codegen.optimization.MethodTransformationContext
 import org.jetbrains.kotlin.codegen.optimization.OptimizationClassBuilderFactory
 import org.jetbrains.kotlin.config.*
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
@@ -43,6 +44,7 @@ import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOriginKind.*
 import org.jetbrains.kotlin.serialization.deserialization.DeserializationConfiguration
 import org.jetbrains.kotlin.storage.LockBasedStorageManager
 import org.jetbrains.kotlin.types.KotlinType
+import org.jetbrains.kotlin.utils.DeclarationProfiler
 import java.io.File
 
 class GenerationState private constructor(
@@ -191,7 +193,7 @@ class GenerationState private constructor(
     )
     val bindingContext: BindingContext = bindingTrace.bindingContext
     val mainFunctionDetector = MainFunctionDetector(bindingContext, languageVersionSettings)
-    private val isIrBackend = configuration.get(JVMConfigurationKeys.IR) ?: false
+    internal val isIrBackend = configuration.get(JVMConfigurationKeys.IR) ?: false
     val typeMapper: KotlinTypeMapper = KotlinTypeMapper(
         this.bindingContext,
         classBuilderMode,
@@ -256,12 +258,24 @@ class GenerationState private constructor(
 
     val metadataVersion = configuration.get(CommonConfigurationKeys.METADATA_VERSION) ?: JvmMetadataVersion.INSTANCE
 
+    // Class files are only written in parallel by the old backend, the IR backend writes them directly
+    val backendThreadCount: Int = if (isIrBackend) 1 else configuration.get(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS) ?: 1
+
+    val declarationProfiler: DeclarationProfiler = DeclarationProfiler.getInstance(project)
+
     init {
         this.interceptedBuilderFactory = builderFactory
             .wrapWith(
                 {
                     if (classBuilderMode.generateBodies)
-                        OptimizationClassBuilderFactory(it, this)
+                        OptimizationClassBuilderFactory(it, MethodTransformationContext(this))
+                    else
+                        it
+                },
+                {
+                    // Deferred class builders record methods before optimizations, so that they are optimized in parallel
+                    if (classBuilderMode.generateBodies && backendThreadCount > 1)
+                        DeferredClassBuilderFactory(it, backendThreadCount)
                     else
                         it
                 },
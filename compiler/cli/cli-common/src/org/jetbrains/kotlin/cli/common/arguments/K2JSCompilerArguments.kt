@@ -120,6 +120,14 @@ class K2JSCompilerArguments : CommonCompilerArguments() {
     )
     var irLegacyGradlePluginCompatibility: Boolean by FreezableVar(false)
 
+    @Argument(
+        value = "-Xir-deserialization-threads",
+        valueDescription = "<N>",
+        description = "Parse IR of dependencies in N parallel threads.\n" +
+                "0 means one thread per available processor. Default value is 1"
+    )
+    var irDeserializationThreads: String by FreezableVar("1")
+
     @GradleOption(DefaultValues.BooleanTrueDefault::class)
     @Argument(value = "-Xtyped-arrays", description = "Translate primitive arrays to JS typed arrays")
     var typedArrays: Boolean by FreezableVar(true)
@@ -134,4 +142,11 @@ class K2JSCompilerArguments : CommonCompilerArguments() {
             description = "Paths to friend modules"
     )
     var friendModules: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+            value = "-Xinline-function-cache",
+            valueDescription = "<path>",
+            description = "Cache inline functions parsed from libraries in the given directory, so other compilations don't parse them again"
+    )
+    var inlineFunctionCache: String? by NullableStringFreezableVar(null)
 }
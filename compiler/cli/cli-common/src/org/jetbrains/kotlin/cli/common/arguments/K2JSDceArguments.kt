@@ -42,6 +42,27 @@ class K2JSDceArguments : CommonToolArguments() {
     )
     var printReachabilityInfo: Boolean by FreezableVar(false)
 
+    @Argument(
+            value = "-Xminify",
+            description = "Print output files without indentation and optional whitespace"
+    )
+    var minify: Boolean by FreezableVar(false)
+
+    @Argument(
+            value = "-Xoutput-cache",
+            description = "Keep fingerprints of output files in the output directory\n" +
+                          "and don't rewrite output files which are unchanged since the previous run"
+    )
+    var outputCache: Boolean by FreezableVar(false)
+
+    @Argument(
+            value = "-Xthreads",
+            valueDescription = "<N>",
+            description = "Parse and print files in N parallel threads.\n" +
+                          "0 means one thread per available processor. Default value is 1"
+    )
+    var threads: String by FreezableVar("1")
+
     @Argument(
             value = "-dev-mode",
             description = "Development mode: don't strip out any code, just copy dependencies"
@@ -135,6 +135,21 @@ class K2JVMCompilerArguments : CommonCompilerArguments() {
     )
     var buildFile: String? by NullableStringFreezableVar(null)
 
+    @Argument(
+        value = "-Xbackend-threads",
+        valueDescription = "<N>",
+        description = "Write generated class files (frame computation and serialization) in N parallel threads.\n" +
+                "0 means one thread per available processor. Default value is 1"
+    )
+    var backendThreads: String by FreezableVar("1")
+
+    @Argument(
+        value = "-Xclasspath-index",
+        valueDescription = "<path>",
+        description = "Path to the directory where indices of classpath jars are cached between compilations"
+    )
+    var classpathIndexDirectory: String? by NullableStringFreezableVar(null)
+
     @Argument(value = "-Xmultifile-parts-inherit", description = "Compile multifile classes as a hierarchy of parts and facade")
     var inheritMultifileParts: Boolean by FreezableVar(false)
 
@@ -161,6 +176,20 @@ class K2JVMCompilerArguments : CommonCompilerArguments() {
     )
     var declarationsOutputPath: String? by NullableStringFreezableVar(null)
 
+    @Argument(
+        value = "-Xprofile-declarations",
+        valueDescription = "<path>",
+        description = "Measure time spent on body resolution, inference, control flow analysis and code generation of each declaration\n" +
+                "and write the slowest declarations to the specified file"
+    )
+    var profileDeclarationsPath: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xlock-free-storage-manager",
+        description = "Compute lazy declarations and memoized resolution results without a global lock"
+    )
+    var lockFreeStorageManager: Boolean by FreezableVar(false)
+
     @Argument(value = "-Xsingle-module", description = "Combine modules for source files and binary dependencies into a single module")
     var singleModule: Boolean by FreezableVar(false)
 
@@ -435,6 +435,10 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
             configuration.put(JSConfigurationKeys.FRIEND_PATHS, friendPaths);
         }
 
+        if (arguments.getInlineFunctionCache() != null) {
+            configuration.put(JSConfigurationKeys.INLINE_FUNCTION_CACHE_DIR, new File(arguments.getInlineFunctionCache()));
+        }
+
         String moduleKindName = arguments.getModuleKind();
         ModuleKind moduleKind = moduleKindName != null ? moduleKindMap.get(moduleKindName) : ModuleKind.PLAIN;
         if (moduleKind == null) {
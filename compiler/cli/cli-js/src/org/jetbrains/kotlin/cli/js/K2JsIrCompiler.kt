@@ -225,6 +225,15 @@ class K2JsIrCompiler : CLICompiler<K2JSCompilerArguments>() {
 
         configuration.put(JSConfigurationKeys.TYPED_ARRAYS_ENABLED, arguments.typedArrays)
 
+        val deserializationThreads = arguments.irDeserializationThreads.toIntOrNull()
+        when {
+            deserializationThreads == null || deserializationThreads < 0 ->
+                messageCollector.report(ERROR, "Invalid number of IR deserialization threads: ${arguments.irDeserializationThreads}")
+            deserializationThreads == 0 ->
+                configuration.put(JSConfigurationKeys.IR_DESERIALIZATION_THREADS, Runtime.getRuntime().availableProcessors())
+            else -> configuration.put(JSConfigurationKeys.IR_DESERIALIZATION_THREADS, deserializationThreads)
+        }
+
         configuration.put(JSConfigurationKeys.FRIEND_PATHS_DISABLED, arguments.friendModulesDisabled)
 
         val friendModules = arguments.friendModules
@@ -61,14 +61,14 @@ class K2JSDce : CLITool<K2JSDceArguments>() {
         }
 
         return if (!arguments.devMode) {
-            performDce(files, arguments, messageCollector)
+            performDce(files, baseDir, arguments, messageCollector)
         } else {
             copyFiles(files)
             ExitCode.OK
         }
     }
 
-    private fun performDce(files: List<InputFile>, arguments: K2JSDceArguments, messageCollector: MessageCollector): ExitCode {
+    private fun performDce(files: List<InputFile>, baseDir: File, arguments: K2JSDceArguments, messageCollector: MessageCollector): ExitCode {
         val includedDeclarations = arguments.declarationsToKeep.orEmpty().toSet()
 
         val logConsumer = { level: DCELogLevel, message: String ->
@@ -80,7 +80,18 @@ class K2JSDce : CLITool<K2JSDceArguments>() {
             messageCollector.report(severity, message)
         }
 
-        val dceResult = DeadCodeElimination.run(files, includedDeclarations, logConsumer)
+        val threads = arguments.threads.toIntOrNull()
+        if (threads == null || threads < 0) {
+            messageCollector.report(CompilerMessageSeverity.ERROR, "Invalid number of threads: ${arguments.threads}")
+            return ExitCode.COMPILATION_ERROR
+        }
+
+        val dceResult = DeadCodeElimination.run(
+            files, includedDeclarations, logConsumer,
+            threads = if (threads == 0) Runtime.getRuntime().availableProcessors() else threads,
+            outputCacheFile = if (arguments.outputCache) File(baseDir, OUTPUT_CACHE_FILE_NAME) else null,
+            minify = arguments.minify
+        )
         if (dceResult.status == DeadCodeEliminationStatus.FAILED) return ExitCode.COMPILATION_ERROR
         val nodes = dceResult.reachableNodes.filterTo(mutableSetOf()) { it.reachable }
 
@@ -244,6 +255,9 @@ class K2JSDce : CLITool<K2JSDceArguments>() {
     override fun executableScriptFileName(): String = "kotlin-dce-js"
 
     companion object {
+        // Lets unchanged output files be skipped on subsequent runs
+        private const val OUTPUT_CACHE_FILE_NAME = ".dce-output-cache"
+
         @JvmStatic
         fun main(args: Array<String>) {
             CLITool.doMain(K2JSDce(), args)
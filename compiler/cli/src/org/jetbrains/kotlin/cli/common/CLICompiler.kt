@@ -29,6 +29,7 @@ import org.jetbrains.kotlin.cli.common.messages.GroupingMessageCollector
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector
 import org.jetbrains.kotlin.cli.common.messages.MessageCollectorUtil
 import org.jetbrains.kotlin.cli.common.messages.MessageRenderer
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
 import org.jetbrains.kotlin.config.CompilerConfiguration
 import org.jetbrains.kotlin.config.Services
 import org.jetbrains.kotlin.metadata.deserialization.BinaryVersion
@@ -66,6 +67,7 @@ abstract class CLICompiler<A : CommonCompilerArguments> : CLITool<A>() {
         }
 
         configuration.put(CLIConfigurationKeys.PERF_MANAGER, performanceManager)
+        performanceManager.phaseMeasurements?.let { configuration.put(CommonConfigurationKeys.PHASE_MEASUREMENTS, it) }
         try {
             setupCommonArguments(configuration, arguments)
             setupPlatformSpecificArgumentsAndServices(configuration, arguments, services)
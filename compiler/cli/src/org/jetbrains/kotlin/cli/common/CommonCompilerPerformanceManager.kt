@@ -6,6 +6,8 @@
 package org.jetbrains.kotlin.cli.common
 
 import org.jetbrains.kotlin.util.PerformanceCounter
+import org.jetbrains.kotlin.util.PhaseMeasurements
+import org.jetbrains.kotlin.util.slicedMap.ColumnarSlicedMap
 import java.io.File
 import java.lang.management.ManagementFactory
 import java.util.concurrent.TimeUnit
@@ -13,15 +15,23 @@ import java.util.concurrent.TimeUnit
 abstract class CommonCompilerPerformanceManager(private val presentableName: String) {
     @Suppress("MemberVisibilityCanBePrivate")
     protected val measurements: MutableList<PerformanceMeasurement> = mutableListOf()
-    protected var isEnabled: Boolean = false
+    var isEnabled: Boolean = false
+        private set
     private var initStartNanos = PerformanceCounter.currentTime()
     private var analysisStart: Long = 0
     private var generationStart: Long = 0
 
+    /**
+     * Per-module measurements of compiler phases, null unless collecting performance statistics is enabled.
+     */
+    var phaseMeasurements: PhaseMeasurements? = null
+        private set
+
     fun getMeasurementResults(): List<PerformanceMeasurement> = measurements
 
     fun enableCollectingPerformanceStatistics() {
         isEnabled = true
+        phaseMeasurements = PhaseMeasurements()
         PerformanceCounter.setTimeCounterEnabled(true)
     }
 
@@ -35,6 +45,7 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
         recordGcTime()
         recordJitCompilationTime()
         recordPerfCountersMeasurements()
+        recordPhaseMeasurements()
     }
 
     open fun notifyAnalysisStarted() {
@@ -55,8 +66,17 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
         measurements += CodeGenerationMeasurement(lines, files, TimeUnit.NANOSECONDS.toMillis(time), additionalDescription)
     }
 
+    open fun notifyBindingContextCollected(sliceStatistics: List<ColumnarSlicedMap.SliceStatistics>) {
+        if (!isEnabled) return
+        sliceStatistics.forEach { measurements += BindingContextSliceMeasurement(it) }
+    }
+
     fun dumpPerformanceReport(destination: File) {
-        destination.writeBytes(createPerformanceReport())
+        if (destination.extension == "json") {
+            destination.writeBytes(createJsonPerformanceReport())
+        } else {
+            destination.writeBytes(createPerformanceReport())
+        }
     }
 
     private fun recordGcTime() {
@@ -83,8 +103,53 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
         PerformanceCounter.report { s -> measurements += PerformanceCounterMeasurement(s) }
     }
 
+    private fun recordPhaseMeasurements() {
+        phaseMeasurements?.getMeasurements()?.forEach { measurements += PhaseMeasurement(it) }
+    }
+
     private fun createPerformanceReport(): ByteArray = buildString {
         appendln("$presentableName performance report")
         measurements.map { it.render() }.sorted().forEach { appendln(it) }
     }.toByteArray()
+
+    private fun createJsonPerformanceReport(): ByteArray = buildString {
+        appendln("{")
+        appendln("  \"compiler\": ${presentableName.toJsonString()},")
+        appendln("  \"phases\": [")
+        val phases = phaseMeasurements?.getMeasurements().orEmpty()
+        phases.forEachIndexed { index, phase ->
+            append("    {")
+            append("\"module\": ${phase.module?.toJsonString() ?: "null"}, ")
+            append("\"phase\": ${phase.phase.toJsonString()}, ")
+            append("\"count\": ${phase.count}, ")
+            append("\"wallTimeMs\": ${TimeUnit.NANOSECONDS.toMillis(phase.wallTimeNanos)}, ")
+            append("\"cpuTimeMs\": ${TimeUnit.NANOSECONDS.toMillis(phase.cpuTimeNanos)}, ")
+            append("\"allocatedBytes\": ${phase.allocatedBytes}")
+            appendln(if (index < phases.size - 1) "}," else "}")
+        }
+        appendln("  ],")
+        appendln("  \"measurements\": [")
+        val rendered = measurements.filter { it !is PhaseMeasurement }.map { it.render() }.sorted()
+        rendered.forEachIndexed { index, measurement ->
+            appendln("    " + measurement.toJsonString() + if (index < rendered.size - 1) "," else "")
+        }
+        appendln("  ]")
+        appendln("}")
+    }.toByteArray()
+
+    private fun String.toJsonString(): String = buildString {
+        append('"')
+        for (c in this@toJsonString) {
+            when {
+                c == '"' -> append("\\\"")
+                c == '\\' -> append("\\\\")
+                c == '\n' -> append("\\n")
+                c == '\r' -> append("\\r")
+                c == '\t' -> append("\\t")
+                c < ' ' -> append("\\u%04x".format(c.toInt()))
+                else -> append(c)
+            }
+        }
+        append('"')
+    }
 }
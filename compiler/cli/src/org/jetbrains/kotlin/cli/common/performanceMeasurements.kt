@@ -5,6 +5,10 @@
 
 package org.jetbrains.kotlin.cli.common
 
+import org.jetbrains.kotlin.util.PhaseMeasurements
+import org.jetbrains.kotlin.util.slicedMap.ColumnarSlicedMap
+import java.util.concurrent.TimeUnit
+
 interface PerformanceMeasurement {
     fun render(): String
 }
@@ -48,3 +52,18 @@ class GarbageCollectionMeasurement(private val garbageCollectionKind: String, pr
 class PerformanceCounterMeasurement(private val counterReport: String) : PerformanceMeasurement {
     override fun render(): String = counterReport
 }
+
+
+class PhaseMeasurement(private val measurement: PhaseMeasurements.Measurement) : PerformanceMeasurement {
+    override fun render(): String = with(measurement) {
+        val target = if (module != null) "for module $module " else ""
+        "PHASE: $phase ${target}in ${TimeUnit.NANOSECONDS.toMillis(wallTimeNanos)} ms, " +
+                "CPU ${TimeUnit.NANOSECONDS.toMillis(cpuTimeNanos)} ms, allocated ${allocatedBytes / 1024} KB" +
+                if (count > 1) " ($count runs)" else ""
+    }
+}
+
+
+class BindingContextSliceMeasurement(private val sliceStatistics: ColumnarSlicedMap.SliceStatistics) : PerformanceMeasurement {
+    override fun render(): String = "BINDING CONTEXT: $sliceStatistics"
+}
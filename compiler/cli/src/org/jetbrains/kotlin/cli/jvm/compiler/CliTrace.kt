@@ -12,8 +12,11 @@ import org.jetbrains.kotlin.psi.KtPsiUtil
 import org.jetbrains.kotlin.resolve.BindingContext
 import org.jetbrains.kotlin.resolve.BindingTrace
 import org.jetbrains.kotlin.resolve.BindingTraceContext
+import org.jetbrains.kotlin.resolve.BindingTraceFilter
 import org.jetbrains.kotlin.resolve.CodeAnalyzerInitializer
 import org.jetbrains.kotlin.resolve.lazy.KotlinCodeAnalyzer
+import org.jetbrains.kotlin.util.slicedMap.ColumnarSlicedMap
+import org.jetbrains.kotlin.util.slicedMap.MutableSlicedMap
 import org.jetbrains.kotlin.util.slicedMap.ReadOnlySlice
 import org.jetbrains.kotlin.util.slicedMap.WritableSlice
 import kotlin.properties.Delegates
@@ -43,7 +46,12 @@ class CliTraceHolder : CodeAnalyzerInitializer {
 
 
 // TODO: needs better name + list of keys to skip somewhere
-class NoScopeRecordCliBindingTrace : CliBindingTrace() {
+class NoScopeRecordCliBindingTrace private constructor(private val map: MutableSlicedMap) : CliBindingTrace(map) {
+    constructor() : this(BindingTraceContext.createColumnarSlicedMap(COLUMN_SLICES))
+
+    // Empty if rewrites are tracked, since the slices are stored in TrackingSlicedMap then
+    fun getSliceStatistics(): List<ColumnarSlicedMap.SliceStatistics> = (map as? ColumnarSlicedMap)?.sliceStatistics.orEmpty()
+
     override fun <K, V> record(slice: WritableSlice<K, V>, key: K, value: V) {
         if (slice == BindingContext.LEXICAL_SCOPE || slice == BindingContext.DATA_FLOW_INFO_BEFORE) {
             // In the compiler there's no need to keep scopes
@@ -55,9 +63,24 @@ class NoScopeRecordCliBindingTrace : CliBindingTrace() {
     override fun toString(): String {
         return NoScopeRecordCliBindingTrace::class.java.name
     }
+
+    companion object {
+        // Slices which are recorded for most of expressions in the compiled code
+        private val COLUMN_SLICES = listOf(
+            BindingContext.EXPRESSION_TYPE_INFO,
+            BindingContext.REFERENCE_TARGET,
+            BindingContext.CALL,
+            BindingContext.RESOLVED_CALL
+        )
+    }
 }
 
-open class CliBindingTrace @TestOnly constructor() : BindingTraceContext() {
+open class CliBindingTrace : BindingTraceContext {
+    @TestOnly
+    constructor() : super()
+
+    protected constructor(map: MutableSlicedMap) : super(map, BindingTraceFilter.ACCEPT_ALL)
+
     private var kotlinCodeAnalyzer: KotlinCodeAnalyzer? = null
 
     override fun toString(): String {
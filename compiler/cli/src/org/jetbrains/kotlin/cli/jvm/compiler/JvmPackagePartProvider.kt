@@ -23,6 +23,7 @@ import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.ERROR
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.LOGGING
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector
+import org.jetbrains.kotlin.cli.jvm.index.ClasspathIndexCache
 import org.jetbrains.kotlin.cli.jvm.index.JavaRoot
 import org.jetbrains.kotlin.config.LanguageVersionSettings
 import org.jetbrains.kotlin.load.kotlin.PackagePartProvider
@@ -39,7 +40,8 @@ import java.io.PrintStream
 
 class JvmPackagePartProvider(
     languageVersionSettings: LanguageVersionSettings,
-    private val scope: GlobalSearchScope
+    private val scope: GlobalSearchScope,
+    private val classpathIndexCache: ClasspathIndexCache? = null
 ) : PackagePartProvider, MetadataPartProvider {
     private data class ModuleMappingInfo(val root: VirtualFile, val mapping: ModuleMapping, val name: String)
 
@@ -89,33 +91,44 @@ class JvmPackagePartProvider(
             if (type != JavaRoot.RootType.BINARY) continue
             if (root !in scope) continue
 
+            val jarIndex = classpathIndexCache?.getJarIndex(root)
+            if (jarIndex != null) {
+                for ((name, bytes) in jarIndex.moduleMappings) {
+                    val moduleName = name.removeSuffix("." + ModuleMapping.MAPPING_FILE_EXT)
+                    loadModule(root, bytes, "${root.path}META-INF/$name", moduleName, messageCollector)
+                }
+                continue
+            }
+
             val metaInf = root.findChild("META-INF") ?: continue
             for (moduleFile in metaInf.children) {
                 if (!moduleFile.name.endsWith(ModuleMapping.MAPPING_FILE_EXT)) continue
 
-                try {
-                    val mapping = ModuleMapping.loadModuleMapping(
-                        moduleFile.contentsToByteArray(), moduleFile.toString(), deserializationConfiguration
-                    ) { incompatibleVersion ->
-                        messageCollector.report(
-                            ERROR,
-                            "Module was compiled with an incompatible version of Kotlin. The binary version of its metadata is " +
-                                    "$incompatibleVersion, expected version is ${JvmMetadataVersion.INSTANCE}.",
-                            CompilerMessageLocation.create(moduleFile.path)
-                        )
-                    }
-                    loadedModules.add(ModuleMappingInfo(root, mapping, moduleFile.nameWithoutExtension))
-                } catch (e: EOFException) {
-                    messageCollector.report(
-                        ERROR, "Error occurred when reading the module: ${e.message}", CompilerMessageLocation.create(moduleFile.path)
-                    )
-                    messageCollector.report(
-                        LOGGING,
-                        String(ByteArrayOutputStream().also { e.printStackTrace(PrintStream(it)) }.toByteArray()),
-                        CompilerMessageLocation.create(moduleFile.path)
-                    )
-                }
+                loadModule(root, moduleFile.contentsToByteArray(), moduleFile.path, moduleFile.nameWithoutExtension, messageCollector)
+            }
+        }
+    }
+
+    private fun loadModule(root: VirtualFile, bytes: ByteArray, path: String, name: String, messageCollector: MessageCollector) {
+        try {
+            val mapping = ModuleMapping.loadModuleMapping(bytes, path, deserializationConfiguration) { incompatibleVersion ->
+                messageCollector.report(
+                    ERROR,
+                    "Module was compiled with an incompatible version of Kotlin. The binary version of its metadata is " +
+                            "$incompatibleVersion, expected version is ${JvmMetadataVersion.INSTANCE}.",
+                    CompilerMessageLocation.create(path)
+                )
             }
+            loadedModules.add(ModuleMappingInfo(root, mapping, name))
+        } catch (e: EOFException) {
+            messageCollector.report(
+                ERROR, "Error occurred when reading the module: ${e.message}", CompilerMessageLocation.create(path)
+            )
+            messageCollector.report(
+                LOGGING,
+                String(ByteArrayOutputStream().also { e.printStackTrace(PrintStream(it)) }.toByteArray()),
+                CompilerMessageLocation.create(path)
+            )
         }
     }
 }
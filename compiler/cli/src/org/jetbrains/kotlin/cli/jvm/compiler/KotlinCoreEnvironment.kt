@@ -170,6 +170,7 @@ class KotlinCoreEnvironment private constructor(
 
     private val classpathRootsResolver: ClasspathRootsResolver
     private val initialRoots: List<JavaRoot>
+    private val classpathIndexCache: ClasspathIndexCache?
 
     val configuration: CompilerConfiguration = initialConfiguration.apply { setupJdkClasspathRoots(configFiles) }.copy()
 
@@ -240,9 +241,11 @@ class KotlinCoreEnvironment private constructor(
         val (roots, singleJavaFileRoots) =
                 initialRoots.partition { (file) -> file.isDirectory || file.extension != JavaFileType.DEFAULT_EXTENSION }
 
+        classpathIndexCache = configuration.get(JVMConfigurationKeys.CLASSPATH_INDEX_DIRECTORY)?.let(::ClasspathIndexCache)
+
         // REPL and kapt2 update classpath dynamically
-        rootsIndex = JvmDependenciesDynamicCompoundIndex().apply {
-            addIndex(JvmDependenciesIndexImpl(roots))
+        rootsIndex = JvmDependenciesDynamicCompoundIndex(classpathIndexCache).apply {
+            addIndex(JvmDependenciesIndexImpl(roots, classpathIndexCache))
             updateClasspathFromRootsIndex(this)
         }
 
@@ -294,7 +297,7 @@ class KotlinCoreEnvironment private constructor(
     }
 
     fun createPackagePartProvider(scope: GlobalSearchScope): JvmPackagePartProvider {
-        return JvmPackagePartProvider(configuration.languageVersionSettings, scope).apply {
+        return JvmPackagePartProvider(configuration.languageVersionSettings, scope, classpathIndexCache).apply {
             addRoots(initialRoots, configuration.getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY))
             packagePartProviders += this
             (ModuleAnnotationsResolver.getInstance(project) as CliModuleAnnotationsResolver).addPackagePartProvider(this)
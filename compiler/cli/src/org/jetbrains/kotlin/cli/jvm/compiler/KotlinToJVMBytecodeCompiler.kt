@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.cli.jvm.compiler
 import com.intellij.openapi.extensions.Extensions
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.vfs.*
+import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiElementFinder
 import com.intellij.psi.PsiJavaModule
 import com.intellij.psi.search.DelegatingGlobalSearchScope
@@ -48,6 +49,7 @@ import org.jetbrains.kotlin.codegen.*
 import org.jetbrains.kotlin.codegen.state.GenerationState
 import org.jetbrains.kotlin.codegen.state.GenerationStateEventCallback
 import org.jetbrains.kotlin.config.*
+import org.jetbrains.kotlin.diagnostics.PsiDiagnosticUtils
 import org.jetbrains.kotlin.fileClasses.JvmFileClassUtil
 import org.jetbrains.kotlin.fir.FirSession
 import org.jetbrains.kotlin.fir.backend.Fir2IrConverter
@@ -69,17 +71,23 @@ import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.platform.TargetPlatform
 import org.jetbrains.kotlin.platform.jvm.JvmPlatforms
 import org.jetbrains.kotlin.progress.ProgressIndicatorAndCompilationCanceledStatus
+import org.jetbrains.kotlin.psi.KtAnonymousInitializer
 import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtNamedDeclaration
 import org.jetbrains.kotlin.resolve.PlatformDependentAnalyzerServices
 import org.jetbrains.kotlin.resolve.jvm.KotlinJavaPsiFacade
 import org.jetbrains.kotlin.resolve.jvm.platform.JvmPlatformAnalyzerServices
+import org.jetbrains.kotlin.utils.DeclarationProfiler
 import org.jetbrains.kotlin.utils.newLinkedHashMapWithExpectedSize
 import org.jetbrains.kotlin.utils.tryConstructClassFromStringArgs
 import java.io.File
 import java.lang.reflect.InvocationTargetException
 import java.net.URLClassLoader
+import java.util.concurrent.TimeUnit
 
 object KotlinToJVMBytecodeCompiler {
+    private const val DECLARATIONS_IN_PROFILE = 50
+
     private fun writeOutput(
         configuration: CompilerConfiguration,
         outputFiles: OutputFileCollection,
@@ -142,6 +150,7 @@ object KotlinToJVMBytecodeCompiler {
 
     private fun CompilerConfiguration.applyModuleProperties(module: Module, buildFile: File?): CompilerConfiguration {
         return copy().apply {
+            put(CommonConfigurationKeys.MODULE_NAME, module.getModuleName())
             if (buildFile != null) {
                 fun checkKeyIsNull(key: CompilerConfigurationKey<*>, name: String) {
                     assert(get(key) == null) { "$name should be null, when buildFile is used" }
@@ -174,25 +183,29 @@ object KotlinToJVMBytecodeCompiler {
 
         val targetDescription = "in targets [" + chunk.joinToString { input -> input.getModuleName() + "-" + input.getModuleType() } + "]"
 
-        val result = repeatAnalysisIfNeeded(analyze(environment, targetDescription), environment, targetDescription)
-        if (result == null || !result.shouldGenerateCode) return false
+        val outputs = profileDeclarationsIfNeeded(environment) {
+            val result = repeatAnalysisIfNeeded(analyze(environment, targetDescription), environment, targetDescription)
+            if (result == null || !result.shouldGenerateCode) return false
 
-        ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
+            ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
 
-        result.throwIfError()
+            result.throwIfError()
 
-        val outputs = newLinkedHashMapWithExpectedSize<Module, GenerationState>(chunk.size)
+            val states = newLinkedHashMapWithExpectedSize<Module, GenerationState>(chunk.size)
 
-        val localFileSystem = VirtualFileManager.getInstance().getFileSystem(StandardFileSystems.FILE_PROTOCOL)
+            val localFileSystem = VirtualFileManager.getInstance().getFileSystem(StandardFileSystems.FILE_PROTOCOL)
 
-        for (module in chunk) {
-            ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
+            for (module in chunk) {
+                ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
 
-            val ktFiles = module.getSourceFiles(environment, localFileSystem, chunk.size > 1, buildFile)
-            if (!checkKotlinPackageUsage(environment, ktFiles)) return false
-            val moduleConfiguration = projectConfiguration.applyModuleProperties(module, buildFile)
+                val ktFiles = module.getSourceFiles(environment, localFileSystem, chunk.size > 1, buildFile)
+                if (!checkKotlinPackageUsage(environment, ktFiles)) return false
+                val moduleConfiguration = projectConfiguration.applyModuleProperties(module, buildFile)
+
+                states[module] = generate(environment, moduleConfiguration, result, ktFiles, module)
+            }
 
-            outputs[module] = generate(environment, moduleConfiguration, result, ktFiles, module)
+            states
         }
 
         return writeOutputs(environment, projectConfiguration, chunk, outputs)
@@ -328,19 +341,24 @@ object KotlinToJVMBytecodeCompiler {
             }
             val builder = RawFirBuilder(session, stubMode = false)
             val resolveTransformer = FirTotalResolveTransformer()
-            val firFiles = ktFiles.map {
-                val firFile = builder.buildFirFile(it)
-                (session.service<FirProvider>() as FirProviderImpl).recordFile(firFile)
-                firFile
+            val firFiles = moduleConfiguration.measurePhase("Raw FIR building") {
+                ktFiles.map {
+                    val firFile = builder.buildFirFile(it)
+                    (session.service<FirProvider>() as FirProviderImpl).recordFile(firFile)
+                    firFile
+                }
             }.also {
-                try {
-                    resolveTransformer.processFiles(it)
-                } catch (e: Exception) {
-                    throw e
+                moduleConfiguration.measurePhase("FIR resolve") {
+                    try {
+                        resolveTransformer.processFiles(it)
+                    } catch (e: Exception) {
+                        throw e
+                    }
                 }
             }
-            val (moduleFragment, symbolTable, sourceManager) =
+            val (moduleFragment, symbolTable, sourceManager) = moduleConfiguration.measurePhase("FIR to IR conversion") {
                 Fir2IrConverter.createModuleFragment(session, firFiles, moduleConfiguration.languageVersionSettings)
+            }
             val dummyBindingContext = NoScopeRecordCliBindingTrace().bindingContext
 
             val codegenFactory = JvmIrCodegenFactory(moduleConfiguration.get(CLIConfigurationKeys.PHASE_CONFIG) ?: PhaseConfig(jvmPhases))
@@ -360,12 +378,14 @@ object KotlinToJVMBytecodeCompiler {
 
             val performanceManager = environment.configuration.get(CLIConfigurationKeys.PERF_MANAGER)
             performanceManager?.notifyGenerationStarted()
-            generationState.beforeCompile()
-            codegenFactory.generateModuleInFrontendIRMode(
-                generationState, moduleFragment, CompilationErrorHandler.THROW_EXCEPTION, symbolTable, sourceManager
-            )
-            CodegenFactory.doCheckCancelled(generationState)
-            generationState.factory.done()
+            moduleConfiguration.measurePhase("Code generation") {
+                generationState.beforeCompile()
+                codegenFactory.generateModuleInFrontendIRMode(
+                    generationState, moduleFragment, CompilationErrorHandler.THROW_EXCEPTION, symbolTable, sourceManager
+                )
+                CodegenFactory.doCheckCancelled(generationState)
+                generationState.factory.done()
+            }
             performanceManager?.notifyGenerationFinished(
                 ktFiles.size,
                 environment.countLinesOfCode(ktFiles),
@@ -424,7 +444,7 @@ object KotlinToJVMBytecodeCompiler {
 
         if (!checkKotlinPackageUsage(environment, environment.getSourceFiles())) return false
 
-        val generationState = analyzeAndGenerate(environment) ?: return false
+        val generationState = profileDeclarationsIfNeeded(environment) { analyzeAndGenerate(environment) } ?: return false
 
         try {
             writeOutput(environment.configuration, generationState.factory, MainClassProvider(generationState, environment))
@@ -540,22 +560,7 @@ object KotlinToJVMBytecodeCompiler {
 
         val analyzerWithCompilerReport = AnalyzerWithCompilerReport(collector, environment.configuration.languageVersionSettings)
         analyzerWithCompilerReport.analyzeAndReport(sourceFiles) {
-            val project = environment.project
-            val moduleOutputs = environment.configuration.get(JVMConfigurationKeys.MODULES)?.mapNotNullTo(hashSetOf()) { module ->
-                environment.findLocalFile(module.getOutputDirectory())
-            }.orEmpty()
-            val sourcesOnly = TopDownAnalyzerFacadeForJVM.newModuleSearchScope(project, sourceFiles)
-            // To support partial and incremental compilation, we add the scope which contains binaries from output directories
-            // of the compiled modules (.class) to the list of scopes of the source module
-            val scope = if (moduleOutputs.isEmpty()) sourcesOnly else sourcesOnly.uniteWith(DirectoriesScope(project, moduleOutputs))
-            TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
-                project,
-                sourceFiles,
-                NoScopeRecordCliBindingTrace(),
-                environment.configuration,
-                environment::createPackagePartProvider,
-                sourceModuleSearchScope = scope
-            )
+            environment.configuration.measurePhase("Analysis") { analyzeFiles(environment, sourceFiles) }
         }
 
         performanceManager?.notifyAnalysisFinished(sourceFiles.size, environment.countLinesOfCode(sourceFiles), targetDescription)
@@ -568,6 +573,32 @@ object KotlinToJVMBytecodeCompiler {
             null
     }
 
+    private fun analyzeFiles(environment: KotlinCoreEnvironment, sourceFiles: List<KtFile>): AnalysisResult {
+        val project = environment.project
+        val moduleOutputs = environment.configuration.get(JVMConfigurationKeys.MODULES)?.mapNotNullTo(hashSetOf()) { module ->
+            environment.findLocalFile(module.getOutputDirectory())
+        }.orEmpty()
+        val sourcesOnly = TopDownAnalyzerFacadeForJVM.newModuleSearchScope(project, sourceFiles)
+        // To support partial and incremental compilation, we add the scope which contains binaries from output directories
+        // of the compiled modules (.class) to the list of scopes of the source module
+        val scope = if (moduleOutputs.isEmpty()) sourcesOnly else sourcesOnly.uniteWith(DirectoriesScope(project, moduleOutputs))
+        val trace = NoScopeRecordCliBindingTrace()
+        val result = TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
+            project,
+            sourceFiles,
+            trace,
+            environment.configuration,
+            environment::createPackagePartProvider,
+            sourceModuleSearchScope = scope
+        )
+        // Slice statistics go through the whole binding context, so they are only collected for the performance report
+        val performanceManager = environment.configuration.get(CLIConfigurationKeys.PERF_MANAGER)
+        if (performanceManager != null && performanceManager.isEnabled) {
+            performanceManager.notifyBindingContextCollected(trace.getSliceStatistics())
+        }
+        return result
+    }
+
     class DirectoriesScope(
         project: Project,
         private val directories: Set<VirtualFile>
@@ -587,6 +618,45 @@ object KotlinToJVMBytecodeCompiler {
         override fun toString() = "All files under: $directories"
     }
 
+    private inline fun <T> profileDeclarationsIfNeeded(environment: KotlinCoreEnvironment, block: () -> T): T {
+        val reportPath = environment.configuration.get(JVMConfigurationKeys.DECLARATIONS_PROFILE_PATH) ?: return block()
+
+        DeclarationProfiler.start(environment.project)
+        try {
+            return block()
+        } finally {
+            writeDeclarationsProfile(File(reportPath), DeclarationProfiler.stop(environment.project))
+        }
+    }
+
+    private fun writeDeclarationsProfile(destination: File, entries: List<DeclarationProfiler.Entry>) {
+        fun Long.toMillis(): Long = TimeUnit.NANOSECONDS.toMillis(this)
+
+        val report = StringBuilder()
+        report.appendln("Slowest declarations (${minOf(entries.size, DECLARATIONS_IN_PROFILE)} of ${entries.size}):")
+        for (entry in entries.take(DECLARATIONS_IN_PROFILE)) {
+            val declaration = entry.declaration
+            val file = declaration.containingFile
+            val line = PsiDiagnosticUtils.offsetToLineAndColumn(file.viewProvider.document, declaration.textOffset).line
+            val times = DeclarationProfiler.Kind.values().joinToString { kind ->
+                "${kind.description} ${entry.getTimeNanos(kind).toMillis()} ms"
+            }
+            report.appendln(
+                "${entry.totalTimeNanos.toMillis()} ms ${renderProfiledDeclaration(declaration)} " +
+                        "(${file.virtualFile?.path ?: file.name}:$line): $times"
+            )
+        }
+        destination.writeText(report.toString())
+    }
+
+    private fun renderProfiledDeclaration(declaration: PsiElement): String =
+        when (declaration) {
+            is KtNamedDeclaration -> declaration.fqName?.asString() ?: declaration.name ?: "<no name>"
+            is KtAnonymousInitializer -> "init block of " + renderProfiledDeclaration(declaration.containingDeclaration)
+            is KtFile -> "top-level declarations of " + declaration.name
+            else -> declaration.toString()
+        }
+
     private fun GenerationState.Builder.withModule(module: Module?) =
         apply {
             if (module != null) {
@@ -627,7 +697,9 @@ object KotlinToJVMBytecodeCompiler {
         val performanceManager = environment.configuration.get(CLIConfigurationKeys.PERF_MANAGER)
         performanceManager?.notifyGenerationStarted()
 
-        KotlinCodegenFacade.compileCorrectFiles(generationState, CompilationErrorHandler.THROW_EXCEPTION)
+        configuration.measurePhase("Code generation") {
+            KotlinCodegenFacade.compileCorrectFiles(generationState, CompilationErrorHandler.THROW_EXCEPTION)
+        }
 
         performanceManager?.notifyGenerationFinished(
             sourceFiles.size,
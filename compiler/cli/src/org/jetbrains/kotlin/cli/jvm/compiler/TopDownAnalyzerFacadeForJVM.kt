@@ -30,9 +30,11 @@ import org.jetbrains.kotlin.container.StorageComponentContainer
 import org.jetbrains.kotlin.container.get
 import org.jetbrains.kotlin.container.useImpl
 import org.jetbrains.kotlin.context.ContextForNewModule
+import org.jetbrains.kotlin.context.GlobalContext
+import org.jetbrains.kotlin.context.LockFreeGlobalContext
 import org.jetbrains.kotlin.context.ModuleContext
 import org.jetbrains.kotlin.context.MutableModuleContext
-import org.jetbrains.kotlin.context.ProjectContext
+import org.jetbrains.kotlin.context.withProject
 import org.jetbrains.kotlin.descriptors.ClassDescriptor
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
 import org.jetbrains.kotlin.descriptors.PackageFragmentProvider
@@ -276,7 +278,11 @@ object TopDownAnalyzerFacadeForJVM {
     }
 
     private fun createModuleContext(project: Project, configuration: CompilerConfiguration): MutableModuleContext {
-        val projectContext = ProjectContext(project, "TopDownAnalyzer for JVM")
+        val debugName = "TopDownAnalyzer for JVM"
+        val globalContext =
+            if (configuration.getBoolean(JVMConfigurationKeys.USE_LOCK_FREE_STORAGE_MANAGER)) LockFreeGlobalContext(debugName)
+            else GlobalContext(debugName)
+        val projectContext = globalContext.withProject(project)
         val builtIns = JvmBuiltIns(projectContext.storageManager, JvmBuiltIns.Kind.FROM_DEPENDENCIES)
         return ContextForNewModule(
             projectContext, Name.special("<${configuration.getNotNull(CommonConfigurationKeys.MODULE_NAME)}>"), builtIns, null
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.index
+
+import com.intellij.openapi.vfs.StandardFileSystems
+import com.intellij.openapi.vfs.VfsUtilCore
+import com.intellij.openapi.vfs.VirtualFile
+import org.jetbrains.kotlin.metadata.jvm.deserialization.ModuleMapping
+import java.io.*
+import java.security.MessageDigest
+import java.util.zip.ZipFile
+
+/**
+ * Packages and module mappings of jars on the classpath, persisted in [directory] so that a jar is scanned only when it changes.
+ *
+ * Each jar has its own index file named after the hash of the jar path. An index is valid while the size and the modification
+ * time of the jar are the same as when it was written, otherwise the jar is scanned again and the index is rewritten.
+ */
+class ClasspathIndexCache(private val directory: File) {
+    private val jarIndices = HashMap<VirtualFile, JarIndex?>()
+
+    /**
+     * Returns the index of the jar which [root] is the root of, or null if [root] is not a jar root or the jar can't be read.
+     */
+    @Synchronized
+    fun getJarIndex(root: VirtualFile): JarIndex? =
+        jarIndices.getOrPut(root) {
+            if (root.fileSystem.protocol != StandardFileSystems.JAR_PROTOCOL || root.parent != null) return@getOrPut null
+            val jarFile = VfsUtilCore.getVirtualFileForJar(root) ?: return@getOrPut null
+            getJarIndex(VfsUtilCore.virtualToIoFile(jarFile))
+        }
+
+    fun getJarIndex(jar: File): JarIndex? {
+        val indexFile = File(directory, "${pathHash(jar.absolutePath)}.$VERSION")
+        readIndex(indexFile, jar)?.let { return it }
+
+        val index = try {
+            scanJar(jar)
+        } catch (e: IOException) {
+            return null
+        }
+
+        try {
+            writeIndex(indexFile, jar, index)
+        } catch (e: IOException) {
+            // The jar is scanned again by the next compilation
+        }
+        return index
+    }
+
+    private fun readIndex(indexFile: File, jar: File): JarIndex? {
+        if (!indexFile.exists()) return null
+
+        return try {
+            DataInputStream(BufferedInputStream(FileInputStream(indexFile))).use { input ->
+                if (input.readLong() != jar.length() || input.readLong() != jar.lastModified()) return null
+
+                val packages = HashSet<String>()
+                repeat(input.readInt()) {
+                    packages.add(input.readUTF())
+                }
+
+                val moduleMappings = LinkedHashMap<String, ByteArray>()
+                repeat(input.readInt()) {
+                    val name = input.readUTF()
+                    val bytes = ByteArray(input.readInt())
+                    input.readFully(bytes)
+                    moduleMappings[name] = bytes
+                }
+
+                JarIndex(packages, moduleMappings)
+            }
+        } catch (e: IOException) {
+            null
+        }
+    }
+
+    private fun writeIndex(indexFile: File, jar: File, index: JarIndex) {
+        directory.mkdirs()
+        // Written to a temporary file first, so that concurrent compilations never read an incomplete index
+        val tempFile = File.createTempFile(indexFile.name, ".tmp", directory)
+        try {
+            DataOutputStream(BufferedOutputStream(FileOutputStream(tempFile))).use { output ->
+                output.writeLong(jar.length())
+                output.writeLong(jar.lastModified())
+
+                output.writeInt(index.packages.size)
+                for (packageFqName in index.packages) {
+                    output.writeUTF(packageFqName)
+                }
+
+                output.writeInt(index.moduleMappings.size)
+                for ((name, bytes) in index.moduleMappings) {
+                    output.writeUTF(name)
+                    output.writeInt(bytes.size)
+                    output.write(bytes)
+                }
+            }
+            if (!tempFile.renameTo(indexFile)) {
+                indexFile.delete()
+                tempFile.renameTo(indexFile)
+            }
+        } finally {
+            tempFile.delete()
+        }
+    }
+
+    private fun scanJar(jar: File): JarIndex {
+        val packages = hashSetOf("")
+        val moduleMappings = LinkedHashMap<String, ByteArray>()
+
+        ZipFile(jar).use { zip ->
+            for (entry in zip.entries()) {
+                val name = entry.name
+                var separator = name.indexOf('/')
+                while (separator > 0) {
+                    packages.add(name.substring(0, separator).replace('/', '.'))
+                    separator = name.indexOf('/', separator + 1)
+                }
+
+                if (!entry.isDirectory && name.startsWith(META_INF) && name.indexOf('/', META_INF.length) < 0 &&
+                    name.endsWith(ModuleMapping.MAPPING_FILE_EXT)
+                ) {
+                    moduleMappings[name.substring(META_INF.length)] = zip.getInputStream(entry).use { it.readBytes() }
+                }
+            }
+        }
+
+        return JarIndex(packages, moduleMappings)
+    }
+
+    private fun pathHash(path: String): String {
+        val digest = MessageDigest.getInstance("MD5").digest(path.toByteArray(Charsets.UTF_8))
+        return digest.joinToString("") { (it.toInt() and 0xFF).toString(16).padStart(2, '0') }
+    }
+
+    companion object {
+        private const val VERSION = 1
+        private const val META_INF = "META-INF/"
+    }
+}
+
+/**
+ * [packages] contains fq names of all directories of the jar, including the root package, [moduleMappings] contains contents of
+ * `.kotlin_module` files from the `META-INF` directory keyed by their names.
+ */
+class JarIndex(val packages: Set<String>, val moduleMappings: Map<String, ByteArray>)
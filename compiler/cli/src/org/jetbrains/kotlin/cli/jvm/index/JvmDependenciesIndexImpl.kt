@@ -29,7 +29,10 @@ import java.util.*
 // speeds up finding files/classes in classpath/java source roots
 // NOT THREADSAFE, needs to be adapted/removed if we want compiler to be multithreaded
 // the main idea of this class is for each package to store roots which contains it to avoid excessive file system traversal
-class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
+class JvmDependenciesIndexImpl(
+    _roots: List<JavaRoot>,
+    private val classpathIndexCache: ClasspathIndexCache? = null
+) : JvmDependenciesIndex {
     //these fields are computed based on _roots passed to constructor which are filled in later
     private val roots: List<JavaRoot> by lazy { _roots.toList() }
 
@@ -173,6 +176,10 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         val pathRoot = roots[rootIndex]
         val prefixPathSegments = pathRoot.prefixFqName?.pathSegments()
 
+        // Packages which are not in the index of a jar are not looked for in its directories
+        val jarIndex = if (prefixPathSegments == null) classpathIndexCache?.getJarIndex(pathRoot.file) else null
+        val packageFqName = StringBuilder()
+
         var currentFile = pathRoot.file
 
         for (pathIndex in packagesPath.indices) {
@@ -183,6 +190,10 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
                     return null
                 }
             } else {
+                if (jarIndex != null) {
+                    if (pathIndex > 0) packageFqName.append('.')
+                    if (packageFqName.append(subPackageName).toString() !in jarIndex.packages) return null
+                }
                 currentFile = currentFile.findChildPackage(subPackageName, pathRoot.type) ?: return null
             }
 
@@ -195,6 +195,18 @@ fun CompilerConfiguration.configureAdvancedJvmOptions(arguments: K2JVMCompilerAr
 
     put(CLIConfigurationKeys.ALLOW_KOTLIN_PACKAGE, arguments.allowKotlinPackage)
     put(JVMConfigurationKeys.USE_SINGLE_MODULE, arguments.singleModule)
+    put(JVMConfigurationKeys.USE_LOCK_FREE_STORAGE_MANAGER, arguments.lockFreeStorageManager)
+
+    val backendThreads = arguments.backendThreads.toIntOrNull()
+    when {
+        backendThreads == null || backendThreads < 0 ->
+            getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY)
+                .report(ERROR, "Invalid number of backend threads: ${arguments.backendThreads}")
+        backendThreads == 0 -> put(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, Runtime.getRuntime().availableProcessors())
+        else -> put(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, backendThreads)
+    }
 
     arguments.declarationsOutputPath?.let { put(JVMConfigurationKeys.DECLARATIONS_JSON_PATH, it) }
+    arguments.profileDeclarationsPath?.let { put(JVMConfigurationKeys.DECLARATIONS_PROFILE_PATH, it) }
+    arguments.classpathIndexDirectory?.let { put(JVMConfigurationKeys.CLASSPATH_INDEX_DIRECTORY, File(it)) }
 }
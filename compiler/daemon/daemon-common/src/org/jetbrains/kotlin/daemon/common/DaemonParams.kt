@@ -47,6 +47,9 @@ val COMPILE_DAEMON_DEFAULT_UNUSED_TIMEOUT_S: Int = 60
 val COMPILE_DAEMON_DEFAULT_SHUTDOWN_DELAY_MS: Long = 1000L // 1 sec
 val COMPILE_DAEMON_MEMORY_THRESHOLD_INFINITE: Long = 0L
 val COMPILE_DAEMON_FORCE_SHUTDOWN_DEFAULT_TIMEOUT_MS: Long = 10000L // 10 secs
+val COMPILE_DAEMON_DEFAULT_INLINE_CACHE_SIZE_MB: Int = 64
+val COMPILE_DAEMON_DEFAULT_TOKEN_CACHE_SIZE_MB: Int = 0 // disabled
+val COMPILE_DAEMON_DEFAULT_COMPILATION_MEMORY_BUDGET_MB: Int = 0 // 3/4 of the max heap size
 val COMPILE_DAEMON_TIMEOUT_INFINITE_MS: Long = 0L
 val COMPILE_DAEMON_IS_READY_MESSAGE = "Kotlin compile daemon is ready"
 
@@ -210,7 +213,10 @@ data class DaemonOptions(
         var shutdownDelayMilliseconds: Long = COMPILE_DAEMON_DEFAULT_SHUTDOWN_DELAY_MS,
         var forceShutdownTimeoutMilliseconds: Long = COMPILE_DAEMON_FORCE_SHUTDOWN_DEFAULT_TIMEOUT_MS,
         var verbose: Boolean = false,
-        var reportPerf: Boolean = false
+        var reportPerf: Boolean = false,
+        var inlineCacheSizeMb: Int = COMPILE_DAEMON_DEFAULT_INLINE_CACHE_SIZE_MB,
+        var tokenCacheSizeMb: Int = COMPILE_DAEMON_DEFAULT_TOKEN_CACHE_SIZE_MB,
+        var compilationMemoryBudgetMb: Int = COMPILE_DAEMON_DEFAULT_COMPILATION_MEMORY_BUDGET_MB
 ) : OptionsGroup {
 
     override val mappers: List<PropMapper<*, *, *>>
@@ -222,7 +228,10 @@ data class DaemonOptions(
                        PropMapper(this, DaemonOptions::shutdownDelayMilliseconds, fromString = String::toLong, skipIf = { it == COMPILE_DAEMON_DEFAULT_SHUTDOWN_DELAY_MS }, mergeDelimiter = "="),
                        PropMapper(this, DaemonOptions::forceShutdownTimeoutMilliseconds, fromString = String::toLong, skipIf = { it == COMPILE_DAEMON_FORCE_SHUTDOWN_DEFAULT_TIMEOUT_MS }, mergeDelimiter = "="),
                        BoolPropMapper(this, DaemonOptions::verbose),
-                       BoolPropMapper(this, DaemonOptions::reportPerf))
+                       BoolPropMapper(this, DaemonOptions::reportPerf),
+                       PropMapper(this, DaemonOptions::inlineCacheSizeMb, fromString = String::toInt, skipIf = { it == COMPILE_DAEMON_DEFAULT_INLINE_CACHE_SIZE_MB }, mergeDelimiter = "="),
+                       PropMapper(this, DaemonOptions::tokenCacheSizeMb, fromString = String::toInt, skipIf = { it == COMPILE_DAEMON_DEFAULT_TOKEN_CACHE_SIZE_MB }, mergeDelimiter = "="),
+                       PropMapper(this, DaemonOptions::compilationMemoryBudgetMb, fromString = String::toInt, skipIf = { it == COMPILE_DAEMON_DEFAULT_COMPILATION_MEMORY_BUDGET_MB }, mergeDelimiter = "="))
 }
 
 // TODO: consider implementing generic approach to it or may be replace getters with ones returning default if necessary
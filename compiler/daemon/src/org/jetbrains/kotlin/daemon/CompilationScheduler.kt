@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import org.jetbrains.kotlin.cli.common.arguments.CommonCompilerArguments
+import org.jetbrains.kotlin.cli.common.arguments.K2JSCompilerArguments
+import org.jetbrains.kotlin.cli.common.arguments.K2JVMCompilerArguments
+import org.jetbrains.kotlin.cli.common.arguments.K2MetadataCompilerArguments
+import org.jetbrains.kotlin.daemon.common.usedMemory
+import java.util.*
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+val DAEMON_MEMORY_SAMPLING_INTERVAL_MS = 100L
+
+/**
+ * Admits compilations so that their estimated memory usage fits into [memoryBudget].
+ *
+ * Compilations run in parallel on threads of their calls. A compilation of a module is estimated to need as much memory as
+ * its previous compilation did, but not less than [defaultEstimate], which is also the estimate of unknown modules.
+ * A compilation which doesn't fit into the budget waits until memory is released, but it always runs if nothing else is running,
+ * so modules exceeding the budget are compiled one at a time. Compilations are admitted in the order of arrival, so big ones don't starve.
+ *
+ * All compilations share one heap, so the peak memory of a compilation is the maximal growth of the used heap since its start,
+ * sampled with [sampleMemory]. Growth caused by compilations running at the same time is attributed to each of them,
+ * which makes estimates conservative. The used heap is obtained from [usedHeap].
+ */
+class CompilationScheduler(
+    val memoryBudget: Long,
+    private val defaultEstimate: Long = memoryBudget / 4,
+    private val usedHeap: () -> Long = { usedMemory(withGC = false) }
+) {
+    class Compilation internal constructor(val sessionId: Int, val moduleKey: String?, val estimate: Long) {
+        internal var startMemory = 0L
+
+        @Volatile
+        var peakMemory = 0L
+            internal set
+    }
+
+    private val lock = ReentrantLock()
+    private val memoryReleased = lock.newCondition()
+
+    private val queue = ArrayDeque<Compilation>()
+    private val running = LinkedHashSet<Compilation>()
+    private var reservedMemory = 0L
+
+    private val lastPeakMemory = HashMap<String, Long>()
+
+    val queueDepth: Int
+        get() = lock.withLock { queue.size }
+
+    val runningCount: Int
+        get() = lock.withLock { running.size }
+
+    /**
+     * Blocks until the compilation may start, [finishCompilation] should be called after it in any case
+     */
+    fun startCompilation(sessionId: Int, moduleKey: String?): Compilation = lock.withLock {
+        val compilation = Compilation(sessionId, moduleKey, moduleKey?.let { lastPeakMemory[it] } ?: defaultEstimate)
+        queue.add(compilation)
+        try {
+            while (queue.peek() !== compilation || !fits(compilation)) {
+                memoryReleased.await()
+            }
+        }
+        catch (e: InterruptedException) {
+            queue.remove(compilation)
+            memoryReleased.signalAll()
+            throw e
+        }
+
+        queue.poll()
+        running.add(compilation)
+        reservedMemory += compilation.estimate
+        compilation.startMemory = usedHeap()
+        // the next compilation in the queue may fit as well
+        memoryReleased.signalAll()
+        compilation
+    }
+
+    fun finishCompilation(compilation: Compilation) {
+        lock.withLock {
+            sampleMemory()
+            running.remove(compilation)
+            reservedMemory -= compilation.estimate
+            // Heap may shrink during a compilation because of GC, so a small peak doesn't mean that the next compilation needs less
+            if (compilation.moduleKey != null && compilation.peakMemory > 0) {
+                lastPeakMemory[compilation.moduleKey] = maxOf(compilation.peakMemory, defaultEstimate)
+            }
+            memoryReleased.signalAll()
+        }
+    }
+
+    fun sampleMemory() {
+        lock.withLock {
+            if (running.isEmpty()) return
+
+            val used = usedHeap()
+            for (compilation in running) {
+                compilation.peakMemory = maxOf(compilation.peakMemory, used - compilation.startMemory)
+            }
+        }
+    }
+
+    fun describe(): String = lock.withLock {
+        buildString {
+            appendln("Compilations: ${running.size} running, ${queue.size} queued, ${reservedMemory.mb()} of ${memoryBudget.mb()} mb reserved")
+            for (compilation in running) {
+                val module = compilation.moduleKey?.let { " ($it)" } ?: ""
+                appendln("Session ${compilation.sessionId}$module: estimated ${compilation.estimate.mb()} mb, peak ${compilation.peakMemory.mb()} mb")
+            }
+        }
+    }
+
+    private fun fits(compilation: Compilation): Boolean =
+        running.isEmpty() || reservedMemory + compilation.estimate <= memoryBudget
+
+    private fun Long.mb() = this / (1024 * 1024)
+}
+
+// Identifies a module to estimate memory needed for its compilation by previous ones
+fun CommonCompilerArguments.compilationKey(): String? = when (this) {
+    is K2JVMCompilerArguments -> destination ?: moduleName
+    is K2JSCompilerArguments -> outputFile
+    is K2MetadataCompilerArguments -> destination ?: moduleName
+    else -> null
+}
@@ -39,6 +39,7 @@ import org.jetbrains.kotlin.cli.js.K2JSCompiler
 import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
 import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
 import org.jetbrains.kotlin.cli.metadata.K2MetadataCompiler
+import org.jetbrains.kotlin.codegen.inline.SharedInlineCache
 import org.jetbrains.kotlin.config.Services
 import org.jetbrains.kotlin.daemon.common.*
 import org.jetbrains.kotlin.daemon.report.*
@@ -53,6 +54,7 @@ import org.jetbrains.kotlin.incremental.multiproject.ModulesApiHistoryJvm
 import org.jetbrains.kotlin.incremental.parsing.classesFqNames
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCompilationComponents
 import org.jetbrains.kotlin.modules.Module
+import org.jetbrains.kotlin.parsing.SharedTokenCache
 import org.jetbrains.kotlin.progress.CompilationCanceledStatus
 import java.io.BufferedOutputStream
 import java.io.ByteArrayOutputStream
@@ -106,8 +108,15 @@ abstract class CompileServiceImplBase(
 
     init {
         System.setProperty(KOTLIN_COMPILER_ENVIRONMENT_KEEPALIVE_PROPERTY, "true")
+        SharedInlineCache.maxSizeInBytes = daemonOptions.inlineCacheSizeMb.toLong() * 1024 * 1024
+        SharedTokenCache.maxSizeInBytes = daemonOptions.tokenCacheSizeMb.toLong() * 1024 * 1024
     }
 
+    protected val compilationScheduler = CompilationScheduler(
+        if (daemonOptions.compilationMemoryBudgetMb > 0) daemonOptions.compilationMemoryBudgetMb.toLong() * 1024 * 1024
+        else Runtime.getRuntime().maxMemory() / 4 * 3
+    )
+
     // wrapped in a class to encapsulate alive check logic
     protected class ClientOrSessionProxy<out T : Any>(
         val aliveFlagPath: String?,
@@ -309,6 +318,7 @@ abstract class CompileServiceImplBase(
         val k2PlatformArgs = compiler.createArguments()
         parseCommandLineArguments(compilerArguments.asList(), k2PlatformArgs)
         val argumentParseError = validateArguments(k2PlatformArgs.errors)
+        val compilationKey = k2PlatformArgs.compilationKey()
 
         if (argumentParseError != null) {
             messageCollector.report(CompilerMessageSeverity.ERROR, argumentParseError)
@@ -317,14 +327,14 @@ abstract class CompileServiceImplBase(
             CompilerMode.JPS_COMPILER -> {
                 servicesFacade as JpsServicesFacadeT
                 withIC(enabled = servicesFacade.hasIncrementalCaches()) {
-                    doCompile(sessionId, daemonReporter, tracer = null) { eventManger, profiler ->
+                    doCompile(sessionId, daemonReporter, tracer = null, compilationKey = compilationKey) { eventManger, profiler ->
                         val services = createServices(servicesFacade, eventManger, profiler)
                         compiler.exec(messageCollector, services, k2PlatformArgs)
                     }
                 }
             }
             CompilerMode.NON_INCREMENTAL_COMPILER -> {
-                doCompile(sessionId, daemonReporter, tracer = null) { _, _ ->
+                doCompile(sessionId, daemonReporter, tracer = null, compilationKey = compilationKey) { _, _ ->
                     compiler.exec(messageCollector, Services.EMPTY, k2PlatformArgs)
                 }
             }
@@ -334,7 +344,7 @@ abstract class CompileServiceImplBase(
 
                 when (targetPlatform) {
                     CompileService.TargetPlatform.JVM -> withIC {
-                        doCompile(sessionId, daemonReporter, tracer = null) { _, _ ->
+                        doCompile(sessionId, daemonReporter, tracer = null, compilationKey = compilationKey) { _, _ ->
                             execIncrementalCompiler(
                                 k2PlatformArgs as K2JVMCompilerArguments,
                                 gradleIncrementalArgs,
@@ -348,7 +358,7 @@ abstract class CompileServiceImplBase(
                         }
                     }
                     CompileService.TargetPlatform.JS -> withJsIC {
-                        doCompile(sessionId, daemonReporter, tracer = null) { _, _ ->
+                        doCompile(sessionId, daemonReporter, tracer = null, compilationKey = compilationKey) { _, _ ->
                             execJsIncrementalCompiler(
                                 k2PlatformArgs as K2JSCompilerArguments,
                                 gradleIncrementalArgs,
@@ -374,6 +384,7 @@ abstract class CompileServiceImplBase(
         sessionId: Int,
         daemonMessageReporter: DaemonMessageReporter,
         tracer: RemoteOperationsTracer?,
+        compilationKey: String? = null,
         body: (EventManager, Profiler) -> ExitCode
     ): CompileService.CallResult<Int> = run {
         log.fine("alive!")
@@ -381,6 +392,7 @@ abstract class CompileServiceImplBase(
             tracer?.before("compile")
             val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadTotalProfiler() else DummyProfiler()
             val eventManager = EventManagerImpl()
+            val compilation = compilationScheduler.startCompilation(sessionId, compilationKey)
             try {
                 log.fine("trying get exitCode")
                 val exitCode = checkedCompile(daemonMessageReporter, rpcProfiler) {
@@ -388,6 +400,7 @@ abstract class CompileServiceImplBase(
                 }
                 CompileService.CallResult.Good(exitCode)
             } finally {
+                compilationScheduler.finishCompilation(compilation)
                 eventManager.fireCompilationFinished()
                 tracer?.after("compile")
             }
@@ -422,6 +435,20 @@ abstract class CompileServiceImplBase(
                     log.info(it)
                 }
 
+                SharedInlineCache.reportStatistics { statistics ->
+                    "PERF: $statistics".let {
+                        daemonMessageReporter.report(ReportSeverity.INFO, it)
+                        log.info(it)
+                    }
+                }
+
+                SharedTokenCache.reportStatistics { statistics ->
+                    "PERF: $statistics".let {
+                        daemonMessageReporter.report(ReportSeverity.INFO, it)
+                        log.info(it)
+                    }
+                }
+
                 // this will only be reported if if appropriate (e.g. ByClass) profiler is used
                 for ((obj, counters) in rpcProfiler.getCounters()) {
                     "PERF: rpc by $obj: ${counters.count} calls, ${counters.time.ms()} ms, thread ${counters.threadTime.ms()} ms".let {
@@ -476,6 +503,9 @@ abstract class CompileServiceImplBase(
         timer.schedule(delay = DAEMON_PERIODIC_SELDOM_CHECK_INTERVAL_MS + 100, period = DAEMON_PERIODIC_SELDOM_CHECK_INTERVAL_MS) {
             exceptionLoggingTimerThread { periodicSeldomCheck() }
         }
+        timer.schedule(delay = DAEMON_MEMORY_SAMPLING_INTERVAL_MS, period = DAEMON_MEMORY_SAMPLING_INTERVAL_MS) {
+            exceptionLoggingTimerThread { compilationScheduler.sampleMemory() }
+        }
     }
 
 
@@ -643,7 +673,8 @@ class CompileServiceImpl(
     // RMI-exposed API
 
     override fun getDaemonInfo(): CompileService.CallResult<String> = ifAlive(minAliveness = Aliveness.Dying) {
-        CompileService.CallResult.Good("Kotlin daemon on port $port")
+        // the port is expected to be the last word
+        CompileService.CallResult.Good(compilationScheduler.describe() + "Kotlin daemon on port $port")
     }
 
     override fun getDaemonOptions(): CompileService.CallResult<DaemonOptions> = ifAlive {
@@ -1152,6 +1183,7 @@ class CompileServiceImpl(
                         REMOTE_STREAM_BUFFER_SIZE
                     )
                 )
+                val compilation = compilationScheduler.startCompilation(sessionId, moduleKey = null)
                 try {
                     val compileServiceReporter = DaemonMessageReporterPrintStreamAdapter(serviceOutputStream)
                     if (args.none())
@@ -1162,6 +1194,7 @@ class CompileServiceImpl(
                     }
                     CompileService.CallResult.Good(exitCode)
                 } finally {
+                    compilationScheduler.finishCompilation(compilation)
                     serviceOutputStream.flush()
                     compilerMessagesStream.flush()
                     eventManger.fireCompilationFinished()
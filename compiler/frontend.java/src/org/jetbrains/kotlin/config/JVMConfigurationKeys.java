@@ -87,6 +87,9 @@ public class JVMConfigurationKeys {
     public static final CompilerConfigurationKey<String> DECLARATIONS_JSON_PATH =
             CompilerConfigurationKey.create("path to declarations output");
 
+    public static final CompilerConfigurationKey<String> DECLARATIONS_PROFILE_PATH =
+            CompilerConfigurationKey.create("path to the report of the slowest declarations");
+
     public static final CompilerConfigurationKey<List<Module>> MODULES =
             CompilerConfigurationKey.create("module data");
 
@@ -110,4 +113,13 @@ public class JVMConfigurationKeys {
 
     public static final CompilerConfigurationKey<Boolean> ENABLE_JVM_DEFAULT =
             CompilerConfigurationKey.create("Allow to use '@JvmDefault'");
+
+    public static final CompilerConfigurationKey<Integer> PARALLEL_BACKEND_THREADS =
+            CompilerConfigurationKey.create("number of threads used to write generated class files");
+
+    public static final CompilerConfigurationKey<Boolean> USE_LOCK_FREE_STORAGE_MANAGER =
+            CompilerConfigurationKey.create("use lock-free storage manager for resolution [experimental]");
+
+    public static final CompilerConfigurationKey<File> CLASSPATH_INDEX_DIRECTORY =
+            CompilerConfigurationKey.create("directory for cached indices of classpath jars");
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.load.kotlin;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.org.objectweb.asm.AnnotationVisitor;
+import org.jetbrains.org.objectweb.asm.ClassVisitor;
+import org.jetbrains.org.objectweb.asm.FieldVisitor;
+import org.jetbrains.org.objectweb.asm.MethodVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.jetbrains.org.objectweb.asm.Opcodes.API_VERSION;
+
+/**
+ * Annotations and members of a class file recorded while it's read by a ClassReader, which can be replayed to other visitors
+ * without reading the file again.
+ *
+ * Only what {@link FileBasedKotlinClass} needs is recorded: member names, descriptors, constant values and annotations.
+ * Unlike the ASM tree API, annotation arguments are replayed exactly as they were read, e.g. primitive arrays are not
+ * converted to array visits.
+ */
+class ClassFileSummary extends ClassVisitor {
+    private final List<Annotation> annotations = new ArrayList<>();
+    private final List<Member> members = new ArrayList<>();
+
+    ClassFileSummary() {
+        super(API_VERSION);
+    }
+
+    void accept(@NotNull ClassVisitor visitor) {
+        acceptAnnotations(visitor);
+        for (Member member : members) {
+            member.accept(visitor);
+        }
+        visitor.visitEnd();
+    }
+
+    void acceptAnnotations(@NotNull ClassVisitor visitor) {
+        for (Annotation annotation : annotations) {
+            annotation.accept(visitor.visitAnnotation(annotation.desc, annotation.visible));
+        }
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(@NotNull String desc, boolean visible) {
+        Annotation annotation = new Annotation(desc, visible);
+        annotations.add(annotation);
+        return annotation;
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, @NotNull String name, @NotNull String desc, String signature, Object value) {
+        Member field = new Member(name, desc, value, false);
+        members.add(field);
+        return new FieldVisitor(API_VERSION) {
+            @Override
+            public AnnotationVisitor visitAnnotation(@NotNull String desc, boolean visible) {
+                return field.addAnnotation(-1, desc, visible);
+            }
+        };
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, @NotNull String name, @NotNull String desc, String signature, String[] exceptions) {
+        Member method = new Member(name, desc, null, true);
+        members.add(method);
+        return new MethodVisitor(API_VERSION) {
+            @Override
+            public AnnotationVisitor visitAnnotation(@NotNull String desc, boolean visible) {
+                return method.addAnnotation(-1, desc, visible);
+            }
+
+            @Override
+            public void visitAnnotableParameterCount(int parameterCount, boolean visible) {
+                if (visible) {
+                    method.visibleAnnotableParameterCount = parameterCount;
+                }
+                else {
+                    method.invisibleAnnotableParameterCount = parameterCount;
+                }
+            }
+
+            @Override
+            public AnnotationVisitor visitParameterAnnotation(int parameter, @NotNull String desc, boolean visible) {
+                return method.addAnnotation(parameter, desc, visible);
+            }
+        };
+    }
+
+    private static class Member {
+        private final String name;
+        private final String desc;
+        private final Object value;
+        private final boolean isMethod;
+        private List<Annotation> annotations = null;
+        private int visibleAnnotableParameterCount = -1;
+        private int invisibleAnnotableParameterCount = -1;
+
+        private Member(@NotNull String name, @NotNull String desc, @Nullable Object value, boolean isMethod) {
+            this.name = name;
+            this.desc = desc;
+            this.value = value;
+            this.isMethod = isMethod;
+        }
+
+        @NotNull
+        private Annotation addAnnotation(int parameter, @NotNull String desc, boolean visible) {
+            if (annotations == null) {
+                annotations = new ArrayList<>(1);
+            }
+            Annotation annotation = new Annotation(desc, visible);
+            annotation.parameter = parameter;
+            annotations.add(annotation);
+            return annotation;
+        }
+
+        private void accept(@NotNull ClassVisitor visitor) {
+            if (isMethod) {
+                MethodVisitor v = visitor.visitMethod(0, name, desc, null, null);
+                if (v == null) return;
+
+                if (visibleAnnotableParameterCount >= 0) v.visitAnnotableParameterCount(visibleAnnotableParameterCount, true);
+                if (invisibleAnnotableParameterCount >= 0) v.visitAnnotableParameterCount(invisibleAnnotableParameterCount, false);
+                if (annotations != null) {
+                    for (Annotation annotation : annotations) {
+                        annotation.accept(
+                                annotation.parameter < 0
+                                ? v.visitAnnotation(annotation.desc, annotation.visible)
+                                : v.visitParameterAnnotation(annotation.parameter, annotation.desc, annotation.visible)
+                        );
+                    }
+                }
+                v.visitEnd();
+            }
+            else {
+                FieldVisitor v = visitor.visitField(0, name, desc, null, value);
+                if (v == null) return;
+
+                if (annotations != null) {
+                    for (Annotation annotation : annotations) {
+                        annotation.accept(v.visitAnnotation(annotation.desc, annotation.visible));
+                    }
+                }
+                v.visitEnd();
+            }
+        }
+    }
+
+    private static class EnumValue {
+        private final String desc;
+        private final String value;
+
+        private EnumValue(@NotNull String desc, @NotNull String value) {
+            this.desc = desc;
+            this.value = value;
+        }
+    }
+
+    // An annotation, a nested annotation argument, or an array argument if desc is null
+    private static class Annotation extends AnnotationVisitor {
+        private final String desc;
+        private final boolean visible;
+        private int parameter = -1;
+        private List<String> names = null;
+        private List<Object> values = null;
+
+        private Annotation(@Nullable String desc, boolean visible) {
+            super(API_VERSION);
+            this.desc = desc;
+            this.visible = visible;
+        }
+
+        private <T> T add(@Nullable String name, @NotNull T value) {
+            if (names == null) {
+                names = new ArrayList<>(2);
+                values = new ArrayList<>(2);
+            }
+            names.add(name);
+            values.add(value);
+            return value;
+        }
+
+        @Override
+        public void visit(String name, @NotNull Object value) {
+            add(name, value);
+        }
+
+        @Override
+        public void visitEnum(String name, @NotNull String desc, @NotNull String value) {
+            add(name, new EnumValue(desc, value));
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String name, @NotNull String desc) {
+            return add(name, new Annotation(desc, true));
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            return add(name, new Annotation(null, true));
+        }
+
+        private void accept(@Nullable AnnotationVisitor visitor) {
+            if (visitor == null) return;
+
+            if (names != null) {
+                for (int i = 0; i < names.size(); i++) {
+                    String name = names.get(i);
+                    Object value = values.get(i);
+                    if (value instanceof EnumValue) {
+                        visitor.visitEnum(name, ((EnumValue) value).desc, ((EnumValue) value).value);
+                    }
+                    else if (value instanceof Annotation) {
+                        Annotation argument = (Annotation) value;
+                        argument.accept(argument.desc == null ? visitor.visitArray(name) : visitor.visitAnnotation(name, argument.desc));
+                    }
+                    else {
+                        visitor.visit(name, value);
+                    }
+                }
+            }
+            visitor.visitEnd();
+        }
+    }
+}
@@ -31,6 +31,7 @@ import org.jetbrains.kotlin.resolve.constants.ClassLiteralValue;
 import org.jetbrains.kotlin.resolve.jvm.JvmPrimitiveType;
 import org.jetbrains.org.objectweb.asm.*;
 
+import java.lang.ref.SoftReference;
 import java.util.*;
 
 import static org.jetbrains.org.objectweb.asm.ClassReader.*;
@@ -42,6 +43,10 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
     private final KotlinClassHeader classHeader;
     private final InnerClassesInfo innerClasses;
 
+    // Annotations and members of the class read in the same pass as the header, so that loading them doesn't read and parse
+    // the class file again. Soft, because most classes are never asked for their members
+    private volatile SoftReference<ClassFileSummary> summary = null;
+
     protected FileBasedKotlinClass(
             @NotNull ClassId classId,
             int classVersion,
@@ -93,11 +98,16 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
         Ref<String> classNameRef = Ref.create();
         Ref<Integer> classVersion = Ref.create();
         InnerClassesInfo innerClasses = new InnerClassesInfo();
-        new ClassReader(fileContents).accept(new ClassVisitor(API_VERSION) {
+        ClassFileSummary summary = new ClassFileSummary();
+        new ClassReader(fileContents).accept(new ClassVisitor(API_VERSION, summary) {
+            private boolean isHeaderRead = false;
+            private boolean isKotlinClass = false;
+
             @Override
             public void visit(int version, int access, @NotNull String name, String signature, String superName, String[] interfaces) {
                 classNameRef.set(name);
                 classVersion.set(version);
+                super.visit(version, access, name, signature, superName, interfaces);
             }
 
             @Override
@@ -105,13 +115,38 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
                 innerClasses.add(name, outerName, innerName);
             }
 
+            // Class annotations are visited before inner classes and members, so the header is read from the recorded annotations
+            // as soon as the first member is visited. Members of classes without a header are not recorded
+            private void readHeader() {
+                if (isHeaderRead) return;
+                isHeaderRead = true;
+                summary.acceptAnnotations(new ClassVisitor(API_VERSION) {
+                    @Override
+                    public org.jetbrains.org.objectweb.asm.AnnotationVisitor visitAnnotation(@NotNull String desc, boolean visible) {
+                        org.jetbrains.org.objectweb.asm.AnnotationVisitor v = convertAnnotationVisitor(readHeaderVisitor, desc, innerClasses);
+                        if (v != null) {
+                            isKotlinClass = true;
+                        }
+                        return v;
+                    }
+                });
+            }
+
             @Override
-            public org.jetbrains.org.objectweb.asm.AnnotationVisitor visitAnnotation(@NotNull String desc, boolean visible) {
-                return convertAnnotationVisitor(readHeaderVisitor, desc, innerClasses);
+            public FieldVisitor visitField(int access, @NotNull String name, @NotNull String desc, String signature, Object value) {
+                readHeader();
+                return isKotlinClass ? super.visitField(access, name, desc, signature, value) : null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, @NotNull String name, @NotNull String desc, String signature, String[] exceptions) {
+                readHeader();
+                return isKotlinClass ? super.visitMethod(access, name, desc, signature, exceptions) : null;
             }
 
             @Override
             public void visitEnd() {
+                readHeader();
                 readHeaderVisitor.visitEnd();
             }
         }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
@@ -123,7 +158,24 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
         if (header == null) return null;
 
         ClassId id = resolveNameByInternalName(className, innerClasses);
-        return factory.invoke(id, classVersion.get(), header, innerClasses);
+        T result = factory.invoke(id, classVersion.get(), header, innerClasses);
+        if (result instanceof FileBasedKotlinClass) {
+            ((FileBasedKotlinClass) result).summary = new SoftReference<>(summary);
+        }
+        return result;
+    }
+
+    @NotNull
+    private ClassFileSummary getSummary(@Nullable byte[] cachedContents) {
+        SoftReference<ClassFileSummary> reference = summary;
+        ClassFileSummary result = reference != null ? reference.get() : null;
+        if (result == null) {
+            byte[] fileContents = cachedContents != null ? cachedContents : getFileContents();
+            result = new ClassFileSummary();
+            new ClassReader(fileContents).accept(result, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+            summary = new SoftReference<>(result);
+        }
+        return result;
     }
 
     @NotNull
@@ -144,8 +196,7 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
 
     @Override
     public void loadClassAnnotations(@NotNull AnnotationVisitor annotationVisitor, @Nullable byte[] cachedContents) {
-        byte[] fileContents = cachedContents != null ? cachedContents : getFileContents();
-        new ClassReader(fileContents).accept(new ClassVisitor(API_VERSION) {
+        getSummary(cachedContents).accept(new ClassVisitor(API_VERSION) {
             @Override
             public org.jetbrains.org.objectweb.asm.AnnotationVisitor visitAnnotation(@NotNull String desc, boolean visible) {
                 return convertAnnotationVisitor(annotationVisitor, desc, innerClasses);
@@ -155,7 +206,7 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
             public void visitEnd() {
                 annotationVisitor.visitEnd();
             }
-        }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+        });
     }
 
     @Nullable
@@ -227,8 +278,7 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
 
     @Override
     public void visitMembers(@NotNull MemberVisitor memberVisitor, @Nullable byte[] cachedContents) {
-        byte[] fileContents = cachedContents != null ? cachedContents : getFileContents();
-        new ClassReader(fileContents).accept(new ClassVisitor(API_VERSION) {
+        getSummary(cachedContents).accept(new ClassVisitor(API_VERSION) {
             @Override
             public FieldVisitor visitField(int access, @NotNull String name, @NotNull String desc, String signature, Object value) {
                 AnnotationVisitor v = memberVisitor.visitField(Name.identifier(name), desc, value);
@@ -284,7 +334,7 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
                     }
                 };
             }
-        }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+        });
     }
 
     @NotNull
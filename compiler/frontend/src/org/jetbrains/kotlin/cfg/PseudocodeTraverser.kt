@@ -16,7 +16,6 @@
 
 package org.jetbrains.kotlin.cfg.pseudocodeTraverser
 
-import org.jetbrains.kotlin.cfg.ControlFlowInfo
 import org.jetbrains.kotlin.cfg.pseudocode.Pseudocode
 import org.jetbrains.kotlin.cfg.pseudocode.instructions.Instruction
 import org.jetbrains.kotlin.cfg.pseudocode.instructions.special.InlinedLocalFunctionDeclarationInstruction
@@ -54,82 +53,139 @@ fun <D> Pseudocode.traverse(
     }
 }
 
-fun <I : ControlFlowInfo<*, *, *>> Pseudocode.collectData(
+/**
+ * Computes data flow values for instructions of this pseudocode and its local declarations.
+ *
+ * Instructions are indexed in the traversal order, and the values are recomputed in sweeps over the instructions
+ * following this order, each sweep recomputing only the instructions which have a predecessor changed after their last computation.
+ */
+fun <D : Any> Pseudocode.collectData(
     traversalOrder: TraversalOrder,
-    mergeEdges: (Instruction, Collection<I>) -> Edges<I>,
-    updateEdge: (Instruction, Instruction, I) -> I,
-    initialInfo: I
-): Map<Instruction, Edges<I>> {
-    val edgesMap = LinkedHashMap<Instruction, Edges<I>>()
-    val startInstruction = getStartInstruction(traversalOrder)
-    edgesMap[startInstruction] = Edges(initialInfo, initialInfo)
-
-    val changed = mutableMapOf<Instruction, Boolean>()
-    do {
-        collectDataFromSubgraph(
-            traversalOrder, edgesMap,
-            mergeEdges, updateEdge, Collections.emptyList<Instruction>(), changed, false
-        )
-    } while (changed.any { it.value })
-
-    return edgesMap
-}
+    mergeEdges: (Instruction, Collection<D>) -> Edges<D>,
+    updateEdge: (Instruction, Instruction, D) -> D,
+    initialInfo: D
+): Map<Instruction, Edges<D>> = DataFlowSolver(this, traversalOrder, mergeEdges, updateEdge).solve(initialInfo)
 
-private fun <I : ControlFlowInfo<*, *, *>> Pseudocode.collectDataFromSubgraph(
-    traversalOrder: TraversalOrder,
-    edgesMap: MutableMap<Instruction, Edges<I>>,
-    mergeEdges: (Instruction, Collection<I>) -> Edges<I>,
-    updateEdge: (Instruction, Instruction, I) -> I,
-    previousSubGraphInstructions: Collection<Instruction>,
-    changed: MutableMap<Instruction, Boolean>,
-    isLocal: Boolean
+private class DataFlowSolver<D : Any>(
+    private val pseudocode: Pseudocode,
+    private val traversalOrder: TraversalOrder,
+    private val mergeEdges: (Instruction, Collection<D>) -> Edges<D>,
+    private val updateEdge: (Instruction, Instruction, D) -> D
 ) {
-    val instructions = getInstructions(traversalOrder)
-    val startInstruction = getStartInstruction(traversalOrder)
+    private val instructions = ArrayList<Instruction>()
+    private val indices = HashMap<Instruction, Int>()
+    private val previousInstructions = ArrayList<Collection<Instruction>>()
+    // For local function declarations: the instruction of the body which flow is taken by the declaration, null otherwise
+    private val declarationBodyLastInstructions = ArrayList<Instruction?>()
 
-    for (instruction in instructions) {
-        val isStart = instruction.isStartInstruction(traversalOrder)
-        if (!isLocal && isStart)
-            continue
+    fun solve(initialInfo: D): Map<Instruction, Edges<D>> {
+        val startInstruction = pseudocode.getStartInstruction(traversalOrder)
+        addInstruction(startInstruction, emptyList(), null)
+        pseudocode.addInstructions(Collections.emptyList(), false)
 
-        val previousInstructions =
-            getPreviousIncludingSubGraphInstructions(instruction, traversalOrder, startInstruction, previousSubGraphInstructions)
+        val size = instructions.size
+        val edges = arrayOfNulls<Edges<D>>(size)
+        edges[0] = Edges(initialInfo, initialInfo)
 
-        if (instruction is LocalFunctionDeclarationInstruction) {
-            val subroutinePseudocode = instruction.body
-            subroutinePseudocode.collectDataFromSubgraph(
-                traversalOrder, edgesMap, mergeEdges, updateEdge, previousInstructions, changed, true
-            )
-            // Special case for inlined functions: take flow from EXIT instructions (it contains flow which exits declaration normally)
-            val lastInstruction = if (instruction is InlinedLocalFunctionDeclarationInstruction && traversalOrder == FORWARD)
-                subroutinePseudocode.exitInstruction
-            else
-                subroutinePseudocode.getLastInstruction(traversalOrder)
-            val previousValue = edgesMap[instruction]
-            val newValue = edgesMap[lastInstruction]
-            val updatedValue = newValue?.let {
-                Edges(updateEdge(lastInstruction, instruction, it.incoming), updateEdge(lastInstruction, instruction, it.outgoing))
+        val previous = Array(size) { index -> toIndices(previousInstructions[index]) }
+        val next = computeNextIndices(previous)
+
+        val dirty = BitSet(size)
+        dirty.set(1, size)
+        while (!dirty.isEmpty) {
+            var index = dirty.nextSetBit(0)
+            while (index >= 0) {
+                dirty.clear(index)
+                val newValue = computeEdges(index, previous[index], edges)
+                if (newValue != null && newValue != edges[index]) {
+                    edges[index] = newValue
+                    for (nextIndex in next[index]) {
+                        dirty.set(nextIndex)
+                    }
+                }
+                index = dirty.nextSetBit(index + 1)
             }
-            updateEdgeDataForInstruction(instruction, previousValue, updatedValue, edgesMap, changed)
-            continue
         }
 
+        val result = LinkedHashMap<Instruction, Edges<D>>(size * 2)
+        for (index in 0 until size) {
+            result[instructions[index]] = edges[index] ?: continue
+        }
+        return result
+    }
+
+    private fun Pseudocode.addInstructions(previousSubGraphInstructions: Collection<Instruction>, isLocal: Boolean) {
+        val startInstruction = getStartInstruction(traversalOrder)
+
+        for (instruction in getInstructions(traversalOrder)) {
+            val isStart = instruction.isStartInstruction(traversalOrder)
+            if (!isLocal && isStart)
+                continue
 
-        val previousDataValue = edgesMap[instruction]
-        if (previousDataValue != null && previousInstructions.all { changed[it] == false }) {
-            changed[instruction] = false
-            continue
+            val previous =
+                getPreviousIncludingSubGraphInstructions(instruction, traversalOrder, startInstruction, previousSubGraphInstructions)
+
+            if (instruction is LocalFunctionDeclarationInstruction) {
+                val subroutinePseudocode = instruction.body
+                subroutinePseudocode.addInstructions(previous, true)
+                // Special case for inlined functions: take flow from EXIT instructions (it contains flow which exits declaration normally)
+                val lastInstruction = if (instruction is InlinedLocalFunctionDeclarationInstruction && traversalOrder == FORWARD)
+                    subroutinePseudocode.exitInstruction
+                else
+                    subroutinePseudocode.getLastInstruction(traversalOrder)
+                addInstruction(instruction, listOf(lastInstruction), lastInstruction)
+                continue
+            }
+
+            addInstruction(instruction, previous, null)
         }
+    }
 
-        val incomingEdgesData = HashSet<I>()
+    private fun addInstruction(instruction: Instruction, previous: Collection<Instruction>, declarationBodyLastInstruction: Instruction?) {
+        indices[instruction] = instructions.size
+        instructions.add(instruction)
+        previousInstructions.add(previous)
+        declarationBodyLastInstructions.add(declarationBodyLastInstruction)
+    }
+
+    // Instructions which are not traversed (e.g. dead code) never have data, so they are skipped
+    private fun toIndices(instructions: Collection<Instruction>): IntArray =
+        instructions.mapNotNull { indices[it] }.toIntArray()
+
+    private fun computeNextIndices(previous: Array<IntArray>): Array<IntArray> {
+        val nextCounts = IntArray(previous.size)
+        for (previousIndices in previous) {
+            for (previousIndex in previousIndices) {
+                nextCounts[previousIndex]++
+            }
+        }
+        val next = Array(previous.size) { index -> IntArray(nextCounts[index]) }
+        for ((index, previousIndices) in previous.withIndex()) {
+            for (previousIndex in previousIndices) {
+                next[previousIndex][--nextCounts[previousIndex]] = index
+            }
+        }
+        return next
+    }
 
-        for (previousInstruction in previousInstructions) {
-            val previousData = edgesMap[previousInstruction] ?: continue
-            incomingEdgesData.add(updateEdge(previousInstruction, instruction, previousData.outgoing))
+    private fun computeEdges(index: Int, previous: IntArray, edges: Array<Edges<D>?>): Edges<D>? {
+        val instruction = instructions[index]
+
+        val lastInstruction = declarationBodyLastInstructions[index]
+        if (lastInstruction != null) {
+            val lastEdges = previous.singleOrNull()?.let { edges[it] } ?: return null
+            return Edges(
+                updateEdge(lastInstruction, instruction, lastEdges.incoming),
+                updateEdge(lastInstruction, instruction, lastEdges.outgoing)
+            )
         }
 
-        val mergedData = mergeEdges(instruction, incomingEdgesData)
-        updateEdgeDataForInstruction(instruction, previousDataValue, mergedData, edgesMap, changed)
+        val incomingEdgesData = HashSet<D>()
+        for (previousIndex in previous) {
+            val previousData = edges[previousIndex] ?: continue
+            incomingEdgesData.add(updateEdge(instructions[previousIndex], instruction, previousData.outgoing))
+        }
+        return mergeEdges(instruction, incomingEdgesData)
     }
 }
 
@@ -148,21 +204,6 @@ private fun getPreviousIncludingSubGraphInstructions(
     return result
 }
 
-private fun <I : ControlFlowInfo<*, *, *>> updateEdgeDataForInstruction(
-    instruction: Instruction,
-    previousValue: Edges<I>?,
-    newValue: Edges<I>?,
-    edgesMap: MutableMap<Instruction, Edges<I>>,
-    changed: MutableMap<Instruction, Boolean>
-) {
-    if (previousValue != newValue && newValue != null) {
-        changed[instruction] = true
-        edgesMap[instruction] = newValue
-    } else {
-        changed[instruction] = false
-    }
-}
-
 data class Edges<out T>(val incoming: T, val outgoing: T)
 
 enum class TraverseInstructionResult {
@@ -16,6 +16,7 @@ import org.jetbrains.kotlin.cfg.pseudocodeTraverser.traverse
 import org.jetbrains.kotlin.descriptors.VariableDescriptor
 import org.jetbrains.kotlin.resolve.BindingContext
 import org.jetbrains.kotlin.resolve.BindingContextUtils
+import java.util.*
 
 class PseudocodeVariableDataCollector(
     private val bindingContext: BindingContext,
@@ -23,37 +24,48 @@ class PseudocodeVariableDataCollector(
 ) {
     val blockScopeVariableInfo = computeBlockScopeVariableInfo(pseudocode)
 
-    fun <I : VariableUsageControlFlowInfo<*, *>> collectData(
+    fun collectData(
         traversalOrder: TraversalOrder,
-        initialInfo: I,
-        instructionDataMergeStrategy: (Instruction, Collection<I>) -> Edges<I>
-    ): Map<Instruction, Edges<I>> {
+        layout: VariableBitVectorLayout,
+        initialData: BitSet,
+        instructionDataMergeStrategy: (Instruction, Collection<BitSet>) -> Edges<BitSet>
+    ): Map<Instruction, Edges<BitSet>> {
+        val removedVariablesByDepth = HashMap<Int, BitSet>()
         return pseudocode.collectData(
             traversalOrder,
             instructionDataMergeStrategy,
-            { from, to, info -> filterOutVariablesOutOfScope(from, to, info) },
-            initialInfo
+            { from, to, data -> filterOutVariablesOutOfScope(from, to, data, layout, removedVariablesByDepth) },
+            initialData
         )
     }
 
-    private fun <I : VariableUsageControlFlowInfo<*, *>> filterOutVariablesOutOfScope(
+    private fun filterOutVariablesOutOfScope(
         from: Instruction,
         to: Instruction,
-        info: I
-    ): I {
+        data: BitSet,
+        layout: VariableBitVectorLayout,
+        removedVariablesByDepth: MutableMap<Int, BitSet>
+    ): BitSet {
         // If an edge goes from deeper scope to a less deep one, this means that it points outside of the deeper scope.
         val toDepth = to.blockScope.depth
-        if (toDepth >= from.blockScope.depth) return info
+        if (toDepth >= from.blockScope.depth) return data
 
         // Variables declared in an inner (deeper) scope can't be accessed from an outer scope.
         // Thus they can be filtered out upon leaving the inner scope.
-        @Suppress("UNCHECKED_CAST")
-        return info.retainAll { variable ->
-            val blockScope = blockScopeVariableInfo.declaredIn[variable]
-            // '-1' for variables declared outside this pseudocode
-            val depth = blockScope?.depth ?: -1
-            depth <= toDepth
-        } as I
+        val removedVariables = removedVariablesByDepth.getOrPut(toDepth) {
+            val variables = BitSet(layout.size)
+            layout.variables.forEachIndexed { index, variable ->
+                val blockScope = blockScopeVariableInfo.declaredIn[variable]
+                // '-1' for variables declared outside this pseudocode
+                val depth = blockScope?.depth ?: -1
+                if (depth > toDepth) {
+                    variables.set(index)
+                }
+            }
+            layout.replicateToAllPlanes(variables)
+        }
+        if (!data.intersects(removedVariables)) return data
+        return (data.clone() as BitSet).apply { andNot(removedVariables) }
     }
 
     private fun computeBlockScopeVariableInfo(pseudocode: Pseudocode): BlockScopeVariableInfo {
@@ -7,6 +7,7 @@ package org.jetbrains.kotlin.cfg.variable
 
 import org.jetbrains.kotlin.cfg.pseudocode.Pseudocode
 import org.jetbrains.kotlin.cfg.pseudocode.PseudocodeUtil
+import org.jetbrains.kotlin.cfg.pseudocode.instructions.BlockScope
 import org.jetbrains.kotlin.cfg.pseudocode.instructions.Instruction
 import org.jetbrains.kotlin.cfg.pseudocode.instructions.eval.MagicInstruction
 import org.jetbrains.kotlin.cfg.pseudocode.instructions.eval.MagicKind
@@ -23,6 +24,7 @@ import org.jetbrains.kotlin.resolve.BindingContext
 import org.jetbrains.kotlin.resolve.BindingContextUtils.variableDescriptorForDeclaration
 import org.jetbrains.kotlin.util.javaslang.*
 import org.jetbrains.kotlin.utils.addToStdlib.safeAs
+import java.util.*
 
 class PseudocodeVariablesData(val pseudocode: Pseudocode, private val bindingContext: BindingContext) {
     private val containsDoWhile = pseudocode.rootPseudocode.containsDoWhile
@@ -141,24 +143,34 @@ class PseudocodeVariablesData(val pseudocode: Pseudocode, private val bindingCon
 
         if (rootVariables.nonTrivialVariables.isEmpty()) return resultForValsWithTrivialInitializer
 
+        val layout = VariableBitVectorLayout(rootVariables.nonTrivialVariables, INIT_PLANE_COUNT)
+        val declaredOutsideByDeclaration = HashMap<BlockScope?, BitSet>()
+        fun getVariablesDeclaredOutside(instruction: Instruction) =
+            declaredOutsideByDeclaration.getOrPut(instruction.blockScope.blockScopeForContainingDeclaration) {
+                computeVariablesDeclaredOutside(layout, instruction, blockScopeVariableInfo)
+            }
+
         return pseudocodeVariableDataCollector.collectData(
             TraversalOrder.FORWARD,
-            VariableInitControlFlowInfo()
-        ) { instruction: Instruction, incomingEdgesData: Collection<VariableInitControlFlowInfo> ->
+            layout,
+            BitSet()
+        ) { instruction: Instruction, incomingEdgesData: Collection<BitSet> ->
 
             val enterInstructionData =
                 mergeIncomingEdgesDataForInitializers(
-                    instruction,
                     incomingEdgesData,
-                    blockScopeVariableInfo
-                )
+                    layout
+                ) { getVariablesDeclaredOutside(instruction) }
             val exitInstructionData = addVariableInitStateFromCurrentInstructionIfAny(
-                instruction, enterInstructionData, blockScopeVariableInfo
-            )
+                instruction, enterInstructionData, layout
+            ) { getVariablesDeclaredOutside(instruction) }
             Edges(enterInstructionData, exitInstructionData)
         }.mapValues { (instruction, edges) ->
             val trivialEdges = resultForValsWithTrivialInitializer[instruction]!!
-            Edges(trivialEdges.incoming.replaceDelegate(edges.incoming), trivialEdges.outgoing.replaceDelegate(edges.outgoing))
+            Edges(
+                trivialEdges.incoming.replaceDelegate(VariableInitBitVectorInfo(layout, edges.incoming)),
+                trivialEdges.outgoing.replaceDelegate(VariableInitBitVectorInfo(layout, edges.outgoing))
+            )
         }
     }
 
@@ -243,18 +255,20 @@ class PseudocodeVariablesData(val pseudocode: Pseudocode, private val bindingCon
 
     private fun addVariableInitStateFromCurrentInstructionIfAny(
         instruction: Instruction,
-        enterInstructionData: VariableInitControlFlowInfo,
-        blockScopeVariableInfo: BlockScopeVariableInfo
-    ): VariableInitControlFlowInfo {
+        enterInstructionData: BitSet,
+        layout: VariableBitVectorLayout,
+        getVariablesDeclaredOutside: () -> BitSet
+    ): BitSet {
         if (instruction is MagicInstruction) {
             if (instruction.kind === MagicKind.EXHAUSTIVE_WHEN_ELSE) {
-                return enterInstructionData.iterator().fold(enterInstructionData) { result, (key, value) ->
-                    if (!value.definitelyInitialized()) {
-                        result.put(
-                            key,
-                            VariableControlFlowState.createInitializedExhaustively(value.isDeclared)
-                        )
-                    } else result
+                // All variables which are not definitely initialized become initialized exhaustively
+                val mayBeNotInitialized = layout.getPlane(enterInstructionData, INIT_MAY_BE_NOT_INITIALIZED)
+                if (mayBeNotInitialized.isEmpty) return enterInstructionData
+                val initialized = layout.getPlane(enterInstructionData, INIT_MAY_BE_INITIALIZED)
+                initialized.andNot(mayBeNotInitialized)
+                return (enterInstructionData.clone() as BitSet).apply {
+                    layout.setPlane(this, INIT_MAY_BE_INITIALIZED, initialized)
+                    layout.setPlane(this, INIT_MAY_BE_NOT_INITIALIZED, BitSet())
                 }
             }
         }
@@ -263,36 +277,33 @@ class PseudocodeVariablesData(val pseudocode: Pseudocode, private val bindingCon
         }
         val variable =
             PseudocodeUtil.extractVariableDescriptorIfAny(instruction, bindingContext)
-                ?.takeIf { it in rootVariables.nonTrivialVariables }
+                ?.let { layout.indexOf(it) }
+                ?.takeIf { it >= 0 }
                 ?: return enterInstructionData
-        var exitInstructionData = enterInstructionData
+        val isPresent = enterInstructionData[layout.bit(INIT_PRESENT, variable)]
+        val exitInstructionData = enterInstructionData.clone() as BitSet
+        exitInstructionData.set(layout.bit(INIT_PRESENT, variable))
         if (instruction is WriteValueInstruction) {
             // if writing to already initialized object
             if (!PseudocodeUtil.isThisOrNoDispatchReceiver(instruction, bindingContext)) {
                 return enterInstructionData
             }
 
-            val enterInitState = enterInstructionData.getOrNull(variable)
-            val initializationAtThisElement =
-                VariableControlFlowState.create(instruction.element is KtProperty, enterInitState)
-            exitInstructionData = exitInstructionData.put(variable, initializationAtThisElement, enterInitState)
+            exitInstructionData.set(layout.bit(INIT_MAY_BE_INITIALIZED, variable))
+            exitInstructionData.clear(layout.bit(INIT_MAY_BE_NOT_INITIALIZED, variable))
+            // the variable is declared if it is declared at this element or was declared before
+            exitInstructionData[layout.bit(INIT_NOT_DECLARED, variable)] =
+                instruction.element !is KtProperty && (!isPresent || enterInstructionData[layout.bit(INIT_NOT_DECLARED, variable)])
         } else {
             // instruction instanceof VariableDeclarationInstruction
-            val enterInitState =
-                enterInstructionData.getOrNull(variable)
-                    ?: getDefaultValueForInitializers(
-                        variable,
-                        instruction,
-                        blockScopeVariableInfo
-                    )
-
-            if (!enterInitState.mayBeInitialized() || !enterInitState.isDeclared) {
-                val variableDeclarationInfo =
-                    VariableControlFlowState.create(enterInitState.initState, isDeclared = true)
-                exitInstructionData = exitInstructionData.put(variable, variableDeclarationInfo, enterInitState)
+            if (!isPresent) {
+                val isInitialized = getVariablesDeclaredOutside()[variable]
+                exitInstructionData[layout.bit(INIT_MAY_BE_INITIALIZED, variable)] = isInitialized
+                exitInstructionData[layout.bit(INIT_MAY_BE_NOT_INITIALIZED, variable)] = !isInitialized
             }
+            exitInstructionData.clear(layout.bit(INIT_NOT_DECLARED, variable))
         }
-        return exitInstructionData
+        return if (exitInstructionData == enterInstructionData) enterInstructionData else exitInstructionData
     }
 
     // variable use
@@ -308,48 +319,42 @@ class PseudocodeVariablesData(val pseudocode: Pseudocode, private val bindingCon
                 }
             }
 
+            val layout = VariableBitVectorLayout(rootVariables.nonTrivialVariables, USE_PLANE_COUNT)
             return pseudocodeVariableDataCollector.collectData(
                 TraversalOrder.BACKWARD,
-                UsageVariableControlFlowInfo()
-            ) { instruction: Instruction, incomingEdgesData: Collection<UsageVariableControlFlowInfo> ->
-
-                val enterResult: UsageVariableControlFlowInfo = if (incomingEdgesData.size == 1) {
-                    incomingEdgesData.single()
-                } else {
-                    incomingEdgesData.fold(UsageVariableControlFlowInfo()) { result, edgeData ->
-                        edgeData.iterator().fold(result) { subResult, (variableDescriptor, variableUseState) ->
-                            subResult.put(variableDescriptor, variableUseState.merge(subResult.getOrNull(variableDescriptor)))
-                        }
-                    }
+                layout,
+                BitSet()
+            ) { instruction: Instruction, incomingEdgesData: Collection<BitSet> ->
+
+                val enterResult = when (incomingEdgesData.size) {
+                    0 -> BitSet()
+                    1 -> incomingEdgesData.single()
+                    else -> incomingEdgesData.fold(BitSet()) { result, edgeData -> result.apply { or(edgeData) } }
                 }
 
-                val variableDescriptor =
+                val variable =
                     PseudocodeUtil.extractVariableDescriptorFromReference(instruction, bindingContext)
-                        ?.takeIf { it in rootVariables.nonTrivialVariables }
-                if (variableDescriptor == null || instruction !is ReadValueInstruction && instruction !is WriteValueInstruction) {
+                        ?.let { layout.indexOf(it) }
+                        ?.takeIf { it >= 0 }
+                if (variable == null || instruction !is ReadValueInstruction && instruction !is WriteValueInstruction) {
                     Edges(enterResult, enterResult)
                 } else {
-                    val exitResult =
+                    val exitResult = (enterResult.clone() as BitSet).apply {
+                        set(layout.bit(USE_WRITTEN, variable))
+                        // a write keeps WRITTEN_AFTER_READ if the variable is read later
                         if (instruction is ReadValueInstruction) {
-                            enterResult.put(variableDescriptor, VariableUseState.READ)
+                            set(layout.bit(USE_WRITTEN_AFTER_READ, variable))
+                            set(layout.bit(USE_READ, variable))
                         } else {
-                            var variableUseState: VariableUseState? = enterResult.getOrNull(variableDescriptor)
-                            if (variableUseState == null) {
-                                variableUseState = VariableUseState.UNUSED
-                            }
-                            when (variableUseState) {
-                                VariableUseState.UNUSED, VariableUseState.ONLY_WRITTEN_NEVER_READ ->
-                                    enterResult.put(variableDescriptor, VariableUseState.ONLY_WRITTEN_NEVER_READ)
-                                VariableUseState.WRITTEN_AFTER_READ, VariableUseState.READ ->
-                                    enterResult.put(variableDescriptor, VariableUseState.WRITTEN_AFTER_READ)
-                            }
+                            clear(layout.bit(USE_READ, variable))
                         }
-                    Edges(enterResult, exitResult)
+                    }
+                    Edges(enterResult, if (exitResult == enterResult) enterResult else exitResult)
                 }
             }.mapValues { (_, edges) ->
                 Edges(
-                    edgesForTrivialVals.incoming.replaceDelegate(edges.incoming),
-                    edgesForTrivialVals.outgoing.replaceDelegate(edges.outgoing)
+                    edgesForTrivialVals.incoming.replaceDelegate(VariableUseBitVectorInfo(layout, edges.incoming)),
+                    edgesForTrivialVals.outgoing.replaceDelegate(VariableUseBitVectorInfo(layout, edges.outgoing))
                 )
             }
         }
@@ -431,40 +436,50 @@ class PseudocodeVariablesData(val pseudocode: Pseudocode, private val bindingCon
             return VariableControlFlowState.create(isInitialized = declaredOutsideThisDeclaration)
         }
 
-        private val EMPTY_INIT_CONTROL_FLOW_INFO = VariableInitControlFlowInfo()
-
-        private fun mergeIncomingEdgesDataForInitializers(
+        private fun computeVariablesDeclaredOutside(
+            layout: VariableBitVectorLayout,
             instruction: Instruction,
-            incomingEdgesData: Collection<VariableInitControlFlowInfo>,
             blockScopeVariableInfo: BlockScopeVariableInfo
-        ): VariableInitControlFlowInfo {
+        ): BitSet {
+            val result = BitSet(layout.size)
+            layout.variables.forEachIndexed { index, variable ->
+                if (getDefaultValueForInitializers(variable, instruction, blockScopeVariableInfo).definitelyInitialized()) {
+                    result.set(index)
+                }
+            }
+            return result
+        }
+
+        private fun mergeIncomingEdgesDataForInitializers(
+            incomingEdgesData: Collection<BitSet>,
+            layout: VariableBitVectorLayout,
+            getVariablesDeclaredOutside: () -> BitSet
+        ): BitSet {
             if (incomingEdgesData.size == 1) return incomingEdgesData.single()
-            if (incomingEdgesData.isEmpty()) return EMPTY_INIT_CONTROL_FLOW_INFO
-            val variablesInScope = linkedSetOf<VariableDescriptor>()
+            if (incomingEdgesData.isEmpty()) return BitSet()
+
+            // States of variables are merged by union of their bits
+            val result = BitSet()
+            val presentOnAllEdges = layout.getPlane(incomingEdgesData.first(), INIT_PRESENT)
             for (edgeData in incomingEdgesData) {
-                variablesInScope.addAll(edgeData.keySet())
+                result.or(edgeData)
+                presentOnAllEdges.and(layout.getPlane(edgeData, INIT_PRESENT))
             }
 
-            return variablesInScope.fold(EMPTY_INIT_CONTROL_FLOW_INFO) { result, variable ->
-                var initState: InitState? = null
-                var isDeclared = true
-                for (edgeData in incomingEdgesData) {
-                    val varControlFlowState = edgeData.getOrNull(variable)
-                        ?: getDefaultValueForInitializers(
-                            variable,
-                            instruction,
-                            blockScopeVariableInfo
-                        )
-                    initState = initState?.merge(varControlFlowState.initState) ?: varControlFlowState.initState
-                    if (!varControlFlowState.isDeclared) {
-                        isDeclared = false
-                    }
-                }
-                if (initState == null) {
-                    throw AssertionError("An empty set of incoming edges data")
-                }
-                result.put(variable, VariableControlFlowState.create(initState, isDeclared))
+            // Variables which are missing on some edges take the default value there: not declared and
+            // initialized iff declared outside the current declaration
+            val missingOnSomeEdges = layout.getPlane(result, INIT_PRESENT)
+            missingOnSomeEdges.andNot(presentOnAllEdges)
+            if (!missingOnSomeEdges.isEmpty) {
+                val initialized = getVariablesDeclaredOutside().clone() as BitSet
+                initialized.and(missingOnSomeEdges)
+                val notInitialized = missingOnSomeEdges.clone() as BitSet
+                notInitialized.andNot(initialized)
+                layout.orPlane(result, INIT_MAY_BE_INITIALIZED, initialized)
+                layout.orPlane(result, INIT_MAY_BE_NOT_INITIALIZED, notInitialized)
+                layout.orPlane(result, INIT_NOT_DECLARED, missingOnSomeEdges)
             }
+            return result
         }
     }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cfg.variable
+
+import org.jetbrains.kotlin.descriptors.VariableDescriptor
+import org.jetbrains.kotlin.util.javaslang.ImmutableHashMap
+import org.jetbrains.kotlin.util.javaslang.ImmutableMap
+import java.util.*
+
+/**
+ * Dense representation of per-variable data flow facts.
+ *
+ * Each of [variables] gets an index, and a data flow value consists of [planeCount] planes of bits stored in a single [BitSet]:
+ * bit `plane * size + index` is set iff the fact corresponding to the plane holds for the variable with the given index.
+ * Values are never modified after they are computed, so they can be shared between instructions.
+ */
+class VariableBitVectorLayout(variables: Collection<VariableDescriptor>, val planeCount: Int) {
+    val variables: List<VariableDescriptor> = ArrayList(variables)
+    private val indices = HashMap<VariableDescriptor, Int>(variables.size * 2)
+
+    init {
+        this.variables.forEachIndexed { index, variable -> indices[variable] = index }
+    }
+
+    val size: Int
+        get() = variables.size
+
+    // -1 for variables which are not tracked
+    fun indexOf(variable: VariableDescriptor): Int = indices[variable] ?: -1
+
+    fun bit(plane: Int, index: Int): Int = plane * size + index
+
+    fun getPlane(data: BitSet, plane: Int): BitSet = data.get(plane * size, (plane + 1) * size)
+
+    fun setPlane(data: BitSet, plane: Int, bits: BitSet) {
+        data.clear(plane * size, (plane + 1) * size)
+        orPlane(data, plane, bits)
+    }
+
+    fun orPlane(data: BitSet, plane: Int, bits: BitSet) {
+        var index = bits.nextSetBit(0)
+        while (index >= 0) {
+            data.set(bit(plane, index))
+            index = bits.nextSetBit(index + 1)
+        }
+    }
+
+    // Returns a mask which retains all facts about the given variables
+    fun replicateToAllPlanes(bits: BitSet): BitSet {
+        val result = BitSet(planeCount * size)
+        for (plane in 0 until planeCount) {
+            orPlane(result, plane, bits)
+        }
+        return result
+    }
+
+    inline fun forEachSetBit(data: BitSet, plane: Int, action: (VariableDescriptor, Int) -> Unit) {
+        val end = (plane + 1) * size
+        var bit = data.nextSetBit(plane * size)
+        while (bit in 0 until end) {
+            val index = bit - plane * size
+            action(variables[index], index)
+            bit = data.nextSetBit(bit + 1)
+        }
+    }
+}
+
+// Planes of variable initialization data. Initialization state is encoded with two bits, so that merge of states is a union:
+// INITIALIZED_EXHAUSTIVELY = 00, INITIALIZED = 10, NOT_INITIALIZED = 01, UNKNOWN = 11
+internal const val INIT_PRESENT = 0
+internal const val INIT_MAY_BE_INITIALIZED = 1
+internal const val INIT_MAY_BE_NOT_INITIALIZED = 2
+internal const val INIT_NOT_DECLARED = 3
+internal const val INIT_PLANE_COUNT = 4
+
+// Planes of variable use data. Use state is encoded with bits which are set for it and for all states with lower priority,
+// so that merge of states is a union: ONLY_WRITTEN_NEVER_READ = 100, WRITTEN_AFTER_READ = 110, READ = 111
+internal const val USE_WRITTEN = 0
+internal const val USE_WRITTEN_AFTER_READ = 1
+internal const val USE_READ = 2
+internal const val USE_PLANE_COUNT = 3
+
+internal class VariableInitBitVectorInfo(
+    private val layout: VariableBitVectorLayout,
+    val data: BitSet
+) : VariableInitReadOnlyControlFlowInfo {
+    override fun getOrNull(key: VariableDescriptor): VariableControlFlowState? {
+        val index = layout.indexOf(key)
+        if (index < 0 || !data[layout.bit(INIT_PRESENT, index)]) return null
+        return VariableControlFlowState.create(getInitState(index), isDeclared = !data[layout.bit(INIT_NOT_DECLARED, index)])
+    }
+
+    private fun getInitState(index: Int): InitState {
+        val mayBeInitialized = data[layout.bit(INIT_MAY_BE_INITIALIZED, index)]
+        val mayBeNotInitialized = data[layout.bit(INIT_MAY_BE_NOT_INITIALIZED, index)]
+        return when {
+            mayBeInitialized && mayBeNotInitialized -> InitState.UNKNOWN
+            mayBeInitialized -> InitState.INITIALIZED
+            mayBeNotInitialized -> InitState.NOT_INITIALIZED
+            else -> InitState.INITIALIZED_EXHAUSTIVELY
+        }
+    }
+
+    override fun checkDefiniteInitializationInWhen(merge: VariableInitReadOnlyControlFlowInfo): Boolean {
+        layout.forEachSetBit(data, INIT_PRESENT) { variable, index ->
+            if (getInitState(index) == InitState.INITIALIZED_EXHAUSTIVELY &&
+                merge.getOrNull(variable)?.initState == InitState.INITIALIZED
+            ) {
+                return true
+            }
+        }
+        return false
+    }
+
+    override fun asMap(): ImmutableMap<VariableDescriptor, VariableControlFlowState> {
+        var result = ImmutableHashMap.empty<VariableDescriptor, VariableControlFlowState>()
+        layout.forEachSetBit(data, INIT_PRESENT) { variable, _ ->
+            result = result.put(variable, getOrNull(variable)!!)
+        }
+        return result
+    }
+
+    override fun equals(other: Any?) = data == (other as? VariableInitBitVectorInfo)?.data
+
+    override fun hashCode() = data.hashCode()
+
+    override fun toString() = asMap().toString()
+}
+
+internal class VariableUseBitVectorInfo(
+    private val layout: VariableBitVectorLayout,
+    val data: BitSet
+) : VariableUsageReadOnlyControlInfo {
+    override fun getOrNull(key: VariableDescriptor): VariableUseState? {
+        val index = layout.indexOf(key)
+        return when {
+            index < 0 -> null
+            data[layout.bit(USE_READ, index)] -> VariableUseState.READ
+            data[layout.bit(USE_WRITTEN_AFTER_READ, index)] -> VariableUseState.WRITTEN_AFTER_READ
+            data[layout.bit(USE_WRITTEN, index)] -> VariableUseState.ONLY_WRITTEN_NEVER_READ
+            else -> null
+        }
+    }
+
+    override fun asMap(): ImmutableMap<VariableDescriptor, VariableUseState> {
+        var result = ImmutableHashMap.empty<VariableDescriptor, VariableUseState>()
+        layout.forEachSetBit(data, USE_WRITTEN) { variable, _ ->
+            result = result.put(variable, getOrNull(variable)!!)
+        }
+        return result
+    }
+
+    override fun equals(other: Any?) = data == (other as? VariableUseBitVectorInfo)?.data
+
+    override fun hashCode() = data.hashCode()
+
+    override fun toString() = asMap().toString()
+}
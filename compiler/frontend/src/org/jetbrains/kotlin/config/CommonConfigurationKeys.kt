@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.config
 import org.jetbrains.kotlin.incremental.components.ExpectActualTracker
 import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.metadata.deserialization.BinaryVersion
+import org.jetbrains.kotlin.util.PhaseMeasurements
 
 object CommonConfigurationKeys {
     @JvmField
@@ -44,8 +45,23 @@ object CommonConfigurationKeys {
 
     @JvmField
     val USE_FIR = CompilerConfigurationKey.create<Boolean>("front-end IR")
+
+    @JvmField
+    val PHASE_MEASUREMENTS = CompilerConfigurationKey.create<PhaseMeasurements>("phase measurements")
 }
 
 var CompilerConfiguration.languageVersionSettings: LanguageVersionSettings
     get() = get(CommonConfigurationKeys.LANGUAGE_VERSION_SETTINGS, LanguageVersionSettingsImpl.DEFAULT)
     set(value) = put(CommonConfigurationKeys.LANGUAGE_VERSION_SETTINGS, value)
+
+/**
+ * Runs [block] measuring it as [phase] of [module] if [CommonConfigurationKeys.PHASE_MEASUREMENTS] is set.
+ */
+inline fun <T> CompilerConfiguration.measurePhase(
+    phase: String,
+    module: String? = get(CommonConfigurationKeys.MODULE_NAME),
+    crossinline block: () -> T
+): T {
+    val phaseMeasurements = get(CommonConfigurationKeys.PHASE_MEASUREMENTS) ?: return block()
+    return phaseMeasurements.measure(module, phase) { block() }
+}
@@ -25,6 +25,7 @@ import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.platform.TargetPlatform
 import org.jetbrains.kotlin.storage.ExceptionTracker
 import org.jetbrains.kotlin.storage.LockBasedStorageManager
+import org.jetbrains.kotlin.storage.LockFreeStorageManager
 import org.jetbrains.kotlin.storage.StorageManager
 
 interface GlobalContext {
@@ -88,6 +89,11 @@ fun GlobalContext(debugName: String): GlobalContextImpl {
     return GlobalContextImpl(LockBasedStorageManager.createWithExceptionHandling(debugName, tracker), tracker)
 }
 
+fun LockFreeGlobalContext(debugName: String): GlobalContext {
+    val tracker = ExceptionTracker()
+    return SimpleGlobalContext(LockFreeStorageManager.createWithExceptionHandling(debugName, tracker), tracker)
+}
+
 fun ProjectContext(project: Project, debugName: String): ProjectContext = ProjectContextImpl(project, GlobalContext(debugName))
 fun ModuleContext(module: ModuleDescriptor, project: Project, debugName: String): ModuleContext =
     ModuleContextImpl(module, ProjectContext(project, debugName))
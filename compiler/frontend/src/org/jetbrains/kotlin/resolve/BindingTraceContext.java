@@ -91,8 +91,7 @@ public class BindingTraceContext implements BindingTrace {
         this(TRACK_REWRITES && !allowSliceRewrite ? new TrackingSlicedMap(TRACK_WITH_STACK_TRACES) : new SlicedMapImpl(allowSliceRewrite), filter);
     }
 
-
-    private BindingTraceContext(@NotNull MutableSlicedMap map, BindingTraceFilter filter) {
+    protected BindingTraceContext(@NotNull MutableSlicedMap map, BindingTraceFilter filter) {
         this.map = map;
         this.mutableDiagnostics = !filter.getIgnoreDiagnostics()
                                   ? new MutableDiagnosticsWithSuppression(bindingContext, Diagnostics.Companion.getEMPTY())
@@ -100,6 +99,15 @@ public class BindingTraceContext implements BindingTrace {
         this.filter = filter;
     }
 
+    /**
+     * Creates a map which stores the given slices in separate tables, or a tracking map if rewrites are tracked
+     */
+    @NotNull
+    protected static MutableSlicedMap createColumnarSlicedMap(@NotNull Collection<? extends WritableSlice<?, ?>> columnSlices) {
+        //noinspection ConstantConditions
+        return TRACK_REWRITES ? new TrackingSlicedMap(TRACK_WITH_STACK_TRACES) : new ColumnarSlicedMap(false, columnSlices);
+    }
+
     @TestOnly
     public static BindingTraceContext createTraceableBindingTrace() {
         return new BindingTraceContext(new TrackingSlicedMap(TRACK_WITH_STACK_TRACES), BindingTraceFilter.Companion.getACCEPT_ALL());
@@ -52,12 +52,14 @@ import org.jetbrains.kotlin.types.expressions.ValueParameterResolver;
 import org.jetbrains.kotlin.types.expressions.typeInfoFactory.TypeInfoFactoryKt;
 import org.jetbrains.kotlin.util.Box;
 import org.jetbrains.kotlin.util.ReenteringLazyValueComputationException;
+import org.jetbrains.kotlin.utils.DeclarationProfiler;
 
 import java.util.*;
 
 import static org.jetbrains.kotlin.config.LanguageFeature.TopLevelSealedInheritance;
 import static org.jetbrains.kotlin.diagnostics.Errors.*;
 import static org.jetbrains.kotlin.resolve.BindingContext.*;
+import static org.jetbrains.kotlin.resolve.ProfiledDeclarations.getProfiledDeclaration;
 import static org.jetbrains.kotlin.resolve.descriptorUtil.DescriptorUtilsKt.isEffectivelyExternal;
 import static org.jetbrains.kotlin.types.TypeUtils.NO_EXPECTED_TYPE;
 
@@ -77,6 +79,7 @@ public class BodyResolver {
     @NotNull private final KotlinBuiltIns builtIns;
     @NotNull private final OverloadChecker overloadChecker;
     @NotNull private final LanguageVersionSettings languageVersionSettings;
+    @NotNull private final DeclarationProfiler profiler;
 
     public BodyResolver(
             @NotNull Project project,
@@ -110,6 +113,7 @@ public class BodyResolver {
         this.valueParameterResolver = valueParameterResolver;
         this.builtIns = builtIns;
         this.languageVersionSettings = languageVersionSettings;
+        this.profiler = DeclarationProfiler.getInstance(project);
     }
 
     private void resolveBehaviorDeclarationBodies(@NotNull BodiesResolveContext c) {
@@ -132,7 +136,15 @@ public class BodyResolver {
         for (Map.Entry<KtSecondaryConstructor, ClassConstructorDescriptor> entry : c.getSecondaryConstructors().entrySet()) {
             LexicalScope declaringScope = c.getDeclaringScope(entry.getKey());
             assert declaringScope != null : "Declaring scope should be registered before body resolve";
-            resolveSecondaryConstructorBody(c.getOuterDataFlowInfo(), trace, entry.getKey(), entry.getValue(), declaringScope);
+            if (profiler.isEnabled()) {
+                profiler.measure(getProfiledDeclaration(entry.getKey()), DeclarationProfiler.Kind.BODY_RESOLVE, () -> {
+                    resolveSecondaryConstructorBody(c.getOuterDataFlowInfo(), trace, entry.getKey(), entry.getValue(), declaringScope);
+                    return Unit.INSTANCE;
+                });
+            }
+            else {
+                resolveSecondaryConstructorBody(c.getOuterDataFlowInfo(), trace, entry.getKey(), entry.getValue(), declaringScope);
+            }
         }
         if (c.getSecondaryConstructors().isEmpty()) return;
         Set<ConstructorDescriptor> visitedConstructors = new HashSet<>();
@@ -648,7 +660,15 @@ public class BodyResolver {
         for (Map.Entry<KtAnonymousInitializer, ClassDescriptorWithResolutionScopes> entry : c.getAnonymousInitializers().entrySet()) {
             KtAnonymousInitializer initializer = entry.getKey();
             ClassDescriptorWithResolutionScopes descriptor = entry.getValue();
-            resolveAnonymousInitializer(c.getOuterDataFlowInfo(), initializer, descriptor);
+            if (profiler.isEnabled()) {
+                profiler.measure(getProfiledDeclaration(initializer), DeclarationProfiler.Kind.BODY_RESOLVE, () -> {
+                    resolveAnonymousInitializer(c.getOuterDataFlowInfo(), initializer, descriptor);
+                    return Unit.INSTANCE;
+                });
+            }
+            else {
+                resolveAnonymousInitializer(c.getOuterDataFlowInfo(), initializer, descriptor);
+            }
         }
     }
 
@@ -743,6 +763,22 @@ public class BodyResolver {
             @NotNull BodiesResolveContext c,
             @NotNull KtProperty property,
             @NotNull PropertyDescriptor propertyDescriptor
+    ) {
+        if (profiler.isEnabled()) {
+            profiler.measure(getProfiledDeclaration(property), DeclarationProfiler.Kind.BODY_RESOLVE, () -> {
+                doResolveProperty(c, property, propertyDescriptor);
+                return Unit.INSTANCE;
+            });
+        }
+        else {
+            doResolveProperty(c, property, propertyDescriptor);
+        }
+    }
+
+    private void doResolveProperty(
+            @NotNull BodiesResolveContext c,
+            @NotNull KtProperty property,
+            @NotNull PropertyDescriptor propertyDescriptor
     ) {
         computeDeferredType(propertyDescriptor.getReturnType());
 
@@ -901,16 +937,33 @@ public class BodyResolver {
             LexicalScope scope = c.getDeclaringScope(declaration);
             assert scope != null : "Scope is null: " + PsiUtilsKt.getElementTextWithContext(declaration);
 
-            if (!c.getTopDownAnalysisMode().isLocalDeclarations() && !(bodyResolveCache instanceof BodyResolveCache.ThrowException) &&
-                expressionTypingServices.getStatementFilter() != StatementFilter.NONE) {
-                bodyResolveCache.resolveFunctionBody(declaration).addOwnDataTo(trace, true);
+            if (profiler.isEnabled()) {
+                profiler.measure(getProfiledDeclaration(declaration), DeclarationProfiler.Kind.BODY_RESOLVE, () -> {
+                    resolveFunctionBodyOrTakeFromCache(c, declaration, entry.getValue(), scope);
+                    return Unit.INSTANCE;
+                });
             }
             else {
-                resolveFunctionBody(c.getOuterDataFlowInfo(), trace, declaration, entry.getValue(), scope);
+                resolveFunctionBodyOrTakeFromCache(c, declaration, entry.getValue(), scope);
             }
         }
     }
 
+    private void resolveFunctionBodyOrTakeFromCache(
+            @NotNull BodiesResolveContext c,
+            @NotNull KtNamedFunction declaration,
+            @NotNull SimpleFunctionDescriptor descriptor,
+            @NotNull LexicalScope scope
+    ) {
+        if (!c.getTopDownAnalysisMode().isLocalDeclarations() && !(bodyResolveCache instanceof BodyResolveCache.ThrowException) &&
+            expressionTypingServices.getStatementFilter() != StatementFilter.NONE) {
+            bodyResolveCache.resolveFunctionBody(declaration).addOwnDataTo(trace, true);
+        }
+        else {
+            resolveFunctionBody(c.getOuterDataFlowInfo(), trace, declaration, descriptor, scope);
+        }
+    }
+
     public void resolveFunctionBody(
             @NotNull DataFlowInfo outerDataFlowInfo,
             @NotNull BindingTrace trace,
@@ -16,6 +16,9 @@
 
 package org.jetbrains.kotlin.resolve;
 
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import kotlin.Unit;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.builtins.KotlinBuiltIns;
@@ -27,9 +30,11 @@ import org.jetbrains.kotlin.descriptors.SimpleFunctionDescriptor;
 import org.jetbrains.kotlin.psi.*;
 import org.jetbrains.kotlin.resolve.checkers.PlatformDiagnosticSuppressor;
 import org.jetbrains.kotlin.types.KotlinType;
+import org.jetbrains.kotlin.utils.DeclarationProfiler;
 
 import java.util.Map;
 
+import static org.jetbrains.kotlin.resolve.ProfiledDeclarations.getProfiledDeclaration;
 import static org.jetbrains.kotlin.types.TypeUtils.NO_EXPECTED_TYPE;
 
 public class ControlFlowAnalyzer {
@@ -37,8 +42,10 @@ public class ControlFlowAnalyzer {
     private final KotlinBuiltIns builtIns;
     private final LanguageVersionSettings languageVersionSettings;
     private final PlatformDiagnosticSuppressor diagnosticSuppressor;
+    private final DeclarationProfiler profiler;
 
     public ControlFlowAnalyzer(
+            @NotNull Project project,
             @NotNull BindingTrace trace,
             @NotNull KotlinBuiltIns builtIns,
             @NotNull LanguageVersionSettings languageVersionSettings,
@@ -48,6 +55,7 @@ public class ControlFlowAnalyzer {
         this.builtIns = builtIns;
         this.languageVersionSettings = languageVersionSettings;
         this.diagnosticSuppressor = diagnosticSuppressor;
+        this.profiler = DeclarationProfiler.getInstance(project);
     }
 
     public void process(@NotNull BodiesResolveContext c) {
@@ -61,7 +69,15 @@ public class ControlFlowAnalyzer {
             checkDeclarationContainer(c, script);
         }
         for (KtSecondaryConstructor constructor : c.getSecondaryConstructors().keySet()) {
-            checkSecondaryConstructor(constructor);
+            if (profiler.isEnabled()) {
+                profiler.measure(getProfiledDeclaration(constructor), DeclarationProfiler.Kind.CONTROL_FLOW_ANALYSIS, () -> {
+                    checkSecondaryConstructor(constructor);
+                    return Unit.INSTANCE;
+                });
+            }
+            else {
+                checkSecondaryConstructor(constructor);
+            }
         }
         for (Map.Entry<KtNamedFunction, SimpleFunctionDescriptor> entry : c.getFunctions().entrySet()) {
             KtNamedFunction function = entry.getKey();
@@ -69,12 +85,28 @@ public class ControlFlowAnalyzer {
             KotlinType expectedReturnType = !function.hasBlockBody() && !function.hasDeclaredReturnType()
                                                ? NO_EXPECTED_TYPE
                                                : functionDescriptor.getReturnType();
-            checkFunction(c, function, expectedReturnType);
+            if (profiler.isEnabled()) {
+                profiler.measure(getProfiledDeclaration(function), DeclarationProfiler.Kind.CONTROL_FLOW_ANALYSIS, () -> {
+                    checkFunction(c, function, expectedReturnType);
+                    return Unit.INSTANCE;
+                });
+            }
+            else {
+                checkFunction(c, function, expectedReturnType);
+            }
         }
         for (Map.Entry<KtProperty, PropertyDescriptor> entry : c.getProperties().entrySet()) {
             KtProperty property = entry.getKey();
             PropertyDescriptor propertyDescriptor = entry.getValue();
-            checkProperty(c, property, propertyDescriptor);
+            if (profiler.isEnabled()) {
+                profiler.measure(getProfiledDeclaration(property), DeclarationProfiler.Kind.CONTROL_FLOW_ANALYSIS, () -> {
+                    checkProperty(c, property, propertyDescriptor);
+                    return Unit.INSTANCE;
+                });
+            }
+            else {
+                checkProperty(c, property, propertyDescriptor);
+            }
         }
     }
 
@@ -86,6 +118,19 @@ public class ControlFlowAnalyzer {
     }
 
     private void checkDeclarationContainer(@NotNull BodiesResolveContext c, KtDeclarationContainer declarationContainer) {
+        if (profiler.isEnabled()) {
+            PsiElement declaration = getProfiledDeclaration((KtElement) declarationContainer);
+            profiler.measure(declaration, DeclarationProfiler.Kind.CONTROL_FLOW_ANALYSIS, () -> {
+                doCheckDeclarationContainer(c, declarationContainer);
+                return Unit.INSTANCE;
+            });
+        }
+        else {
+            doCheckDeclarationContainer(c, declarationContainer);
+        }
+    }
+
+    private void doCheckDeclarationContainer(@NotNull BodiesResolveContext c, KtDeclarationContainer declarationContainer) {
         // A pseudocode of class/object initialization corresponds to a class/object
         // or initialization of properties corresponds to a package declared in a file
         ControlFlowInformationProvider controlFlowInformationProvider = new ControlFlowInformationProvider(
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+@file:JvmName("ProfiledDeclarations")
+
+package org.jetbrains.kotlin.resolve
+
+import com.intellij.psi.PsiElement
+import org.jetbrains.kotlin.psi.KtDeclaration
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtPropertyAccessor
+import org.jetbrains.kotlin.psi.KtPsiUtil
+
+/**
+ * Returns the declaration or the file to which [org.jetbrains.kotlin.utils.DeclarationProfiler] attributes time spent on [element],
+ * or null if it's attributed to the innermost measured declaration, as it is for local declarations, members of local classes
+ * and object literals, and expressions.
+ */
+fun getProfiledDeclaration(element: PsiElement?): PsiElement? =
+    when (element) {
+        is KtFile -> element
+        is KtPropertyAccessor -> getProfiledDeclaration(element.property)
+        is KtDeclaration -> if (KtPsiUtil.isLocal(element)) null else element
+        else -> null
+    }
@@ -24,14 +24,19 @@ import java.util.concurrent.atomic.AtomicLong
 
 /**
  * This counter is thread-safe for initialization and usage.
- * But it may calculate time and number of runs not precisely.
+ * Time of a reenterable counter or a counter with excluded methods may be calculated not precisely
+ * when it is used from several threads at once.
  */
 abstract class PerformanceCounter protected constructor(val name: String) {
     companion object {
         private val allCounters = arrayListOf<PerformanceCounter>()
 
+        @Volatile
         private var enabled = false
 
+        val isTimeCounterEnabled: Boolean
+            get() = enabled
+
         fun currentTime(): Long = System.nanoTime()
 
         fun report(consumer: (String) -> Unit) {
@@ -73,8 +78,8 @@ abstract class PerformanceCounter protected constructor(val name: String) {
 
     internal val excludedFrom: MutableList<CounterWithExclude> = ArrayList()
 
-    private var count: Int = 0
-    private var totalTimeNanos: Long = 0
+    private val count = AtomicInteger()
+    private val totalTimeNanos = AtomicLong()
 
     init {
         synchronized(allCounters) {
@@ -83,11 +88,11 @@ abstract class PerformanceCounter protected constructor(val name: String) {
     }
 
     fun increment() {
-        count++
+        count.incrementAndGet()
     }
 
     fun <T> time(block: () -> T): T {
-        count++
+        count.incrementAndGet()
         if (!enabled) return block()
 
         excludedFrom.forEach { it.enterExcludedMethod() }
@@ -99,17 +104,19 @@ abstract class PerformanceCounter protected constructor(val name: String) {
     }
 
     fun reset() {
-        count = 0
-        totalTimeNanos = 0
+        count.set(0)
+        totalTimeNanos.set(0)
     }
 
     protected fun incrementTime(delta: Long) {
-        totalTimeNanos += delta
+        totalTimeNanos.addAndGet(delta)
     }
 
     protected abstract fun <T> countTime(block: () -> T): T
 
     fun report(consumer: (String) -> Unit) {
+        val count = this.count.get()
+        val totalTimeNanos = this.totalTimeNanos.get()
         if (totalTimeNanos == 0L) {
             consumer("$name performed $count times")
         } else {
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.util
+
+import java.lang.management.ManagementFactory
+
+/**
+ * Wall time, CPU time and allocated bytes of compiler phases (analysis, IR lowerings, code generation, etc.) per module.
+ *
+ * CPU time and allocations are measured for the thread which runs a phase, so work done by the phase in other threads is only
+ * included in its wall time. Time and allocations of nested phases are included in the outer phase too.
+ * Measurements of a phase which is run several times for the same module (e.g. a lowering run for each file) are summed up.
+ */
+class PhaseMeasurements {
+    class Measurement(val module: String?, val phase: String) {
+        var count: Int = 0
+            internal set
+        var wallTimeNanos: Long = 0L
+            internal set
+        var cpuTimeNanos: Long = 0L
+            internal set
+        var allocatedBytes: Long = 0L
+            internal set
+    }
+
+    private val measurements = LinkedHashMap<Pair<String?, String>, Measurement>()
+
+    fun <T> measure(module: String?, phase: String, block: () -> T): T {
+        val wallStart = System.nanoTime()
+        val cpuStart = currentThreadCpuTime()
+        val allocatedStart = currentThreadAllocatedBytes()
+        try {
+            return block()
+        } finally {
+            val wallTime = System.nanoTime() - wallStart
+            val cpuTime = currentThreadCpuTime() - cpuStart
+            val allocated = currentThreadAllocatedBytes() - allocatedStart
+            synchronized(measurements) {
+                val measurement = measurements.getOrPut(module to phase) { Measurement(module, phase) }
+                measurement.count++
+                measurement.wallTimeNanos += wallTime
+                measurement.cpuTimeNanos += cpuTime
+                measurement.allocatedBytes += allocated
+            }
+        }
+    }
+
+    // For work measured by other means, e.g. done in several threads, its CPU time and allocations are not known
+    fun add(module: String?, phase: String, count: Int, wallTimeNanos: Long) {
+        synchronized(measurements) {
+            val measurement = measurements.getOrPut(module to phase) { Measurement(module, phase) }
+            measurement.count += count
+            measurement.wallTimeNanos += wallTimeNanos
+        }
+    }
+
+    fun getMeasurements(): List<Measurement> = synchronized(measurements) { measurements.values.toList() }
+
+    companion object {
+        private val threadMXBean = ManagementFactory.getThreadMXBean()
+        private val isCpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported
+
+        private val allocationMXBean = (threadMXBean as? com.sun.management.ThreadMXBean)?.takeIf {
+            try {
+                it.isThreadAllocatedMemorySupported && it.isThreadAllocatedMemoryEnabled
+            } catch (e: UnsupportedOperationException) {
+                false
+            }
+        }
+
+        private fun currentThreadCpuTime(): Long = if (isCpuTimeSupported) threadMXBean.currentThreadCpuTime else 0L
+
+        private fun currentThreadAllocatedBytes(): Long =
+            allocationMXBean?.getThreadAllocatedBytes(Thread.currentThread().id) ?: 0L
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import com.google.common.collect.ImmutableMap;
+import com.intellij.openapi.util.Key;
+import kotlin.jvm.functions.Function3;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * A sliced map which stores the given frequently written slices (e.g. expression types and resolved calls) in separate tables
+ * holding keys and values directly, and all other slices in {@link SlicedMapImpl}.
+ *
+ * {@link SlicedMapImpl} keeps a persistent {@link com.intellij.util.keyFMap.KeyFMap} for each key which is copied on each put,
+ * so for slices which are written for almost every expression a separate table takes less memory and is faster to update.
+ * Collective slices are never stored in separate tables.
+ */
+public class ColumnarSlicedMap extends SlicedMapImpl {
+    // Approximate size in bytes of an entry of a slice, assuming compressed references: an entry of a KeyFMap holds an int id of
+    // the slice key and a reference to the value, and an entry of a separate table holds references to the key and to the value
+    private static final int REFERENCE_SIZE = 4;
+    private static final int ENTRY_SIZE = 2 * REFERENCE_SIZE;
+
+    private final boolean alwaysAllowRewrite;
+    private final Map<Key<?>, OpenAddressLinearProbingHashTable<Object, Object>> columns = new HashMap<>();
+
+    public ColumnarSlicedMap(boolean alwaysAllowRewrite, @NotNull Collection<? extends WritableSlice<?, ?>> columnSlices) {
+        super(alwaysAllowRewrite);
+        this.alwaysAllowRewrite = alwaysAllowRewrite;
+        for (WritableSlice<?, ?> slice : columnSlices) {
+            assert !slice.isCollective() : "Collective slice can't be stored in a separate table: " + slice;
+            columns.put(slice.getKey(), new OpenAddressLinearProbingHashTable<>());
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> void put(WritableSlice<K, V> slice, K key, V value) {
+        OpenAddressLinearProbingHashTable<Object, Object> column = columns.get(slice.getKey());
+        if (column == null) {
+            super.put(slice, key, value);
+            return;
+        }
+
+        if (!slice.check(key, value)) {
+            return;
+        }
+
+        RewritePolicy rewritePolicy = slice.getRewritePolicy();
+        if (!alwaysAllowRewrite && rewritePolicy.rewriteProcessingNeeded(key)) {
+            V oldValue = (V) column.get(key);
+            if (oldValue != null) {
+                if (!rewritePolicy.processRewrite(slice, key, oldValue, value)) {
+                    return;
+                }
+            }
+        }
+
+        column.put(key, value);
+        slice.afterPut(this, key, value);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        for (OpenAddressLinearProbingHashTable<Object, Object> column : columns.values()) {
+            column.clear();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+        OpenAddressLinearProbingHashTable<Object, Object> column = columns.get(slice.getKey());
+        if (column == null) {
+            return super.get(slice, key);
+        }
+
+        V value = key == null ? null : (V) column.get(key);
+        return slice.computeValue(this, key, value, value == null);
+    }
+
+    @Override
+    public void forEach(@NotNull Function3<WritableSlice, Object, Object, Void> f) {
+        super.forEach(f);
+        for (Map.Entry<Key<?>, OpenAddressLinearProbingHashTable<Object, Object>> entry : columns.entrySet()) {
+            WritableSlice<?, ?> slice = ((AbstractWritableSlice<?, ?>) entry.getKey()).getSlice();
+            entry.getValue().forEach((key, value) -> f.invoke(slice, key, value));
+        }
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+        OpenAddressLinearProbingHashTable<Object, Object> column = columns.get(slice.getKey());
+        if (column == null) {
+            return super.getSliceContents(slice);
+        }
+
+        ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
+        column.forEach((key, value) -> builder.put((K) key, (V) value));
+        return builder.build();
+    }
+
+    /**
+     * Returns the number of entries and the approximate memory taken by each slice, excluding memory taken by keys and values
+     * themselves, sorted by the memory in descending order. Slices stored in KeyFMaps and in separate tables are estimated alike,
+     * by their number of entries, so overhead of the maps and free slots of the tables are not counted.
+     */
+    @NotNull
+    public List<SliceStatistics> getSliceStatistics() {
+        Map<WritableSlice<?, ?>, Integer> entries = new HashMap<>();
+        super.forEach((slice, key, value) -> {
+            entries.merge(slice, 1, Integer::sum);
+            return null;
+        });
+
+        List<SliceStatistics> result = new ArrayList<>();
+        for (Map.Entry<WritableSlice<?, ?>, Integer> entry : entries.entrySet()) {
+            result.add(new SliceStatistics(entry.getKey(), entry.getValue(), (long) entry.getValue() * ENTRY_SIZE, false));
+        }
+        for (Map.Entry<Key<?>, OpenAddressLinearProbingHashTable<Object, Object>> entry : columns.entrySet()) {
+            WritableSlice<?, ?> slice = ((AbstractWritableSlice<?, ?>) entry.getKey()).getSlice();
+            int size = entry.getValue().size();
+            result.add(new SliceStatistics(slice, size, (long) size * ENTRY_SIZE, true));
+        }
+
+        result.sort((o1, o2) -> Long.compare(o2.getEstimatedBytes(), o1.getEstimatedBytes()));
+        return result;
+    }
+
+    public static class SliceStatistics {
+        private final WritableSlice<?, ?> slice;
+        private final int entries;
+        private final long estimatedBytes;
+        private final boolean isColumn;
+
+        private SliceStatistics(@NotNull WritableSlice<?, ?> slice, int entries, long estimatedBytes, boolean isColumn) {
+            this.slice = slice;
+            this.entries = entries;
+            this.estimatedBytes = estimatedBytes;
+            this.isColumn = isColumn;
+        }
+
+        @NotNull
+        public WritableSlice<?, ?> getSlice() {
+            return slice;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+
+        public boolean isColumn() {
+            return isColumn;
+        }
+
+        @Override
+        public String toString() {
+            return slice + ": " + entries + " entries, ~" + estimatedBytes / 1024 + " KB" + (isColumn ? " (separate table)" : "");
+        }
+    }
+}
@@ -26,8 +26,9 @@ import kotlin.collections.HashSet
 
 class InputsCache(
         workingDir: File,
-        private val reporter: ICReporter
-) : BasicMapsOwner(workingDir) {
+        private val reporter: ICReporter,
+        storageBackend: StorageBackend = StorageBackend.DEFAULT
+) : BasicMapsOwner(workingDir, storageBackend) {
     companion object {
         private val SOURCE_SNAPSHOTS = "source-snapshot"
         private val SOURCE_TO_OUTPUT_FILES = "source-to-output"
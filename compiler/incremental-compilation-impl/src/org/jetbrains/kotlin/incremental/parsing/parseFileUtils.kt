@@ -12,6 +12,8 @@ import com.intellij.openapi.vfs.VirtualFileManager
 import com.intellij.openapi.vfs.local.CoreLocalFileSystem
 import com.intellij.psi.PsiManager
 import com.intellij.psi.SingleRootFileViewProvider
+import com.intellij.util.containers.SLRUMap
+import org.jetbrains.annotations.TestOnly
 import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector
 import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
@@ -23,22 +25,59 @@ import org.jetbrains.kotlin.psi.KtDeclaration
 import org.jetbrains.kotlin.psi.KtFile
 
 import java.io.File
+import java.security.MessageDigest
 import java.util.*
+import java.util.concurrent.atomic.AtomicInteger
+
+private const val MAX_PARSED_FILES = 20000
+
+private class ParsedFile(val contentHash: ByteArray, val classesFqNames: Set<String>)
+
+/**
+ * Results of parsing by [classesFqNames] are reused while contents of files stay the same,
+ * so files which haven't changed since the previous build in the same process (e.g. in the daemon) are not parsed again.
+ * The daemon compiles many projects, so only recently used files are kept.
+ */
+private val parsedFiles = SLRUMap<String, ParsedFile>(MAX_PARSED_FILES / 2, MAX_PARSED_FILES / 2)
+
+private val parsedFilesCount = AtomicInteger()
+
+// Number of files parsed by [classesFqNames] in the process, to check that unchanged files are not parsed again
+internal val classesFqNamesParsedFilesCount: Int
+    @TestOnly get() = parsedFilesCount.get()
 
 fun classesFqNames(files: Set<File>): Set<String> {
     val existingKotlinFiles = files.filter { it.name.endsWith(".kt", ignoreCase = true) && it.isFile }
     if (existingKotlinFiles.isEmpty()) return emptySet()
 
+    val result = HashSet<String>()
+    val changedFiles = LinkedHashMap<File, ByteArray>()
+    for (file in existingKotlinFiles) {
+        val contentHash = MessageDigest.getInstance("MD5").digest(file.readBytes())
+        val parsedFile = synchronized(parsedFiles) { parsedFiles[file.absolutePath] }
+        if (parsedFile != null && parsedFile.contentHash.contentEquals(contentHash)) {
+            result.addAll(parsedFile.classesFqNames)
+        }
+        else {
+            changedFiles[file] = contentHash
+        }
+    }
+    if (changedFiles.isEmpty()) return result
+
     val disposable = Disposer.newDisposable()
 
-    return try {
-        classesFqNames(existingKotlinFiles, disposable)
+    try {
+        for ((file, classes) in classesFqNames(changedFiles.keys, disposable)) {
+            synchronized(parsedFiles) { parsedFiles.put(file.absolutePath, ParsedFile(changedFiles[file]!!, classes)) }
+            result.addAll(classes)
+        }
     } finally {
         Disposer.dispose(disposable)
     }
+    return result
 }
 
-private fun classesFqNames(kotlinFiles: Collection<File>, disposable: Disposable): Set<String> {
+private fun classesFqNames(kotlinFiles: Collection<File>, disposable: Disposable): Map<File, Set<String>> {
     val config = CompilerConfiguration()
     config.put(JVMConfigurationKeys.NO_JDK, true)
     config.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE)
@@ -48,10 +87,11 @@ private fun classesFqNames(kotlinFiles: Collection<File>, disposable: Disposable
     val fileManager = VirtualFileManager.getInstance()
     val localFS = fileManager.getFileSystem(StandardFileSystems.FILE_PROTOCOL) as CoreLocalFileSystem
 
-    val result = HashSet<String>()
+    val result = HashMap<File, Set<String>>()
 
     for (file in kotlinFiles) {
         val virtualFile = localFS.findFileByIoFile(file)!!
+        val classesInFile = HashSet<String>()
 
         for (psiFile in SingleRootFileViewProvider(psiManager, virtualFile).allFiles) {
             if (psiFile !is KtFile) continue
@@ -61,11 +101,13 @@ private fun classesFqNames(kotlinFiles: Collection<File>, disposable: Disposable
             while (classes.isNotEmpty()) {
                 val klass = classes.pollFirst()
                 klass.fqName?.let {
-                    result.add(it.asString())
+                    classesInFile.add(it.asString())
                 }
                 klass.declarations.filterClassesTo(classes)
             }
         }
+        result[file] = classesInFile
+        parsedFilesCount.incrementAndGet()
     }
 
     return result
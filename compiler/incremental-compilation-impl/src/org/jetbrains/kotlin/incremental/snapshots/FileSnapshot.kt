@@ -22,7 +22,8 @@ import java.util.*
 class FileSnapshot(
         val file: File,
         val length: Long,
-        val hash: ByteArray
+        val hash: ByteArray,
+        val hashAlgorithm: FileHashAlgorithm = FileHashAlgorithm.MD5
 ) {
     init {
         assert(!file.isDirectory)
@@ -36,6 +37,7 @@ class FileSnapshot(
 
         if (file != other.file) return false
         if (length != other.length) return false
+        if (hashAlgorithm != other.hashAlgorithm) return false
         if (!Arrays.equals(hash, other.hash)) return false
 
         return true
@@ -44,11 +46,12 @@ class FileSnapshot(
     override fun hashCode(): Int {
         var result = file.hashCode()
         result = 31 * result + length.hashCode()
+        result = 31 * result + hashAlgorithm.hashCode()
         result = 31 * result + Arrays.hashCode(hash)
         return result
     }
 
     override fun toString(): String {
-        return "FileSnapshot(file=$file, length=$length, hash=${Arrays.toString(hash)})"
+        return "FileSnapshot(file=$file, length=$length, hash=${Arrays.toString(hash)}, hashAlgorithm=$hashAlgorithm)"
     }
 }
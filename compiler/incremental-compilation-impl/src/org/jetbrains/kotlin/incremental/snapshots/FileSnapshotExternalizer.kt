@@ -22,9 +22,17 @@ import java.io.DataOutput
 import java.io.File
 
 object FileSnapshotExternalizer : DataExternalizer<FileSnapshot> {
+    // Snapshots written before the hash algorithm was recorded always have a non-negative hash size here, and they're all MD5 ones.
+    // MD5 snapshots are still written that way, so caches are compatible in both directions unless another algorithm is used
+    private const val HASH_ALGORITHM_MARKER = -1
+
     override fun save(out: DataOutput, value: FileSnapshot) {
         out.writeUTF(value.file.canonicalPath)
         out.writeLong(value.length)
+        if (value.hashAlgorithm != FileHashAlgorithm.MD5) {
+            out.writeInt(HASH_ALGORITHM_MARKER)
+            out.writeUTF(value.hashAlgorithm.name)
+        }
         out.writeInt(value.hash.size)
         out.write(value.hash)
     }
@@ -32,9 +40,14 @@ object FileSnapshotExternalizer : DataExternalizer<FileSnapshot> {
     override fun read(input: DataInput): FileSnapshot {
         val file = File(input.readUTF())
         val length = input.readLong()
-        val hashSize = input.readInt()
+        var hashSize = input.readInt()
+        var hashAlgorithm = FileHashAlgorithm.MD5
+        if (hashSize == HASH_ALGORITHM_MARKER) {
+            hashAlgorithm = FileHashAlgorithm.valueOf(input.readUTF())
+            hashSize = input.readInt()
+        }
         val hash = ByteArray(hashSize)
         input.readFully(hash)
-        return FileSnapshot(file, length, hash)
+        return FileSnapshot(file, length, hash, hashAlgorithm)
     }
 }
\ No newline at end of file
@@ -21,13 +21,22 @@ import org.jetbrains.kotlin.incremental.storage.BasicStringMap
 import org.jetbrains.kotlin.incremental.storage.PathStringDescriptor
 import java.io.File
 import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+
+class FileSnapshotMap(
+        storageFile: File,
+        private val hashAlgorithm: FileHashAlgorithm = FileHashAlgorithm.DEFAULT
+) : BasicStringMap<FileSnapshot>(storageFile, PathStringDescriptor, FileSnapshotExternalizer) {
+    companion object {
+        private const val MIN_FILES_TO_HASH_IN_PARALLEL = 16
+    }
 
-class FileSnapshotMap(storageFile: File) : BasicStringMap<FileSnapshot>(storageFile, PathStringDescriptor, FileSnapshotExternalizer) {
     override fun dumpValue(value: FileSnapshot): String =
             value.toString()
 
     fun compareAndUpdate(newFiles: Iterable<File>): ChangedFiles.Known {
-        val snapshotProvider = SimpleFileSnapshotProviderImpl()
         val newOrModified = ArrayList<File>()
         val removed = ArrayList<File>()
 
@@ -39,10 +48,11 @@ class FileSnapshotMap(storageFile: File) : BasicStringMap<FileSnapshot>(storageF
             }
         }
 
+        val newSnapshots = createSnapshots(newPaths)
         for (path in newPaths) {
             val file = File(path)
             val oldSnapshot = storage[path]
-            val newSnapshot = snapshotProvider[file]
+            val newSnapshot = newSnapshots[path]!!
 
             if (oldSnapshot == null || oldSnapshot != newSnapshot) {
                 newOrModified.add(file)
@@ -52,4 +62,27 @@ class FileSnapshotMap(storageFile: File) : BasicStringMap<FileSnapshot>(storageF
 
         return ChangedFiles.Known(newOrModified, removed)
     }
+
+    // Hashing takes most of the time, so files are hashed in parallel
+    private fun createSnapshots(paths: Collection<String>): Map<String, FileSnapshot> {
+        val snapshotProvider = SimpleFileSnapshotProviderImpl(hashAlgorithm)
+        val threadCount = minOf(Runtime.getRuntime().availableProcessors(), paths.size / MIN_FILES_TO_HASH_IN_PARALLEL)
+        if (threadCount <= 1) return paths.associate { it to snapshotProvider[File(it)] }
+
+        val executor = Executors.newFixedThreadPool(threadCount)
+        try {
+            val futures = paths.map { path -> path to executor.submit(Callable { snapshotProvider[File(path)] }) }
+            return futures.associate { (path, future) ->
+                try {
+                    path to future.get()
+                }
+                catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow()
+        }
+    }
 }
\ No newline at end of file
@@ -22,10 +22,12 @@ interface FileSnapshotProvider {
     operator fun get(file: File): FileSnapshot
 }
 
-class SimpleFileSnapshotProviderImpl : FileSnapshotProvider {
+class SimpleFileSnapshotProviderImpl(
+        private val hashAlgorithm: FileHashAlgorithm = FileHashAlgorithm.DEFAULT
+) : FileSnapshotProvider {
     override fun get(file: File): FileSnapshot {
         val length = file.length()
-        val hash = file.md5
-        return FileSnapshot(file, length, hash)
+        val hash = file.hash(hashAlgorithm)
+        return FileSnapshot(file, length, hash, hashAlgorithm)
     }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental
+
+import org.jetbrains.kotlin.TestWithWorkingDir
+import org.jetbrains.kotlin.incremental.storage.FileToCanonicalPathConverter
+import org.junit.Test
+import java.io.File
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class LookupStorageTest : TestWithWorkingDir() {
+    @Test
+    fun testConcurrentAddAllRecordsAllLookups() {
+        val storage = LookupStorage(File(workingDir, "lookups"), FileToCanonicalPathConverter)
+        val paths = (0 until FILE_COUNT).map { File(workingDir, "file$it.kt").canonicalPath }
+        val symbols = (0 until SYMBOL_COUNT).map { LookupSymbol("name$it", "scope${it % 10}") }
+        val expected = symbols.associateWith { HashSet<String>() }
+
+        // Each compilation adds lookups of its files, files and symbols of different compilations overlap
+        val compilations = (0 until THREAD_COUNT).map { thread ->
+            val lookups = HashMap<LookupSymbol, Collection<String>>()
+            for (i in thread until SYMBOL_COUNT step 2) {
+                val symbolPaths = (0 until 5).map { paths[(i * 7 + it * 13 + thread) % FILE_COUNT] }
+                lookups[symbols[i]] = symbolPaths
+                expected.getValue(symbols[i]).addAll(symbolPaths)
+            }
+            lookups
+        }
+
+        val barrier = CyclicBarrier(THREAD_COUNT)
+        val executor = Executors.newFixedThreadPool(THREAD_COUNT)
+        try {
+            val futures = compilations.map { lookups ->
+                executor.submit {
+                    barrier.await()
+                    storage.addAll(lookups.entries, lookups.values.flatten().toSet())
+                }
+            }
+            futures.forEach { it.get(1, TimeUnit.MINUTES) }
+        }
+        finally {
+            executor.shutdown()
+        }
+
+        try {
+            // Ids are unique if no lookup is attributed to a file of another compilation
+            for (symbol in symbols) {
+                assertEquals(symbol.toString(), expected.getValue(symbol), storage.get(symbol).toSet())
+            }
+        }
+        finally {
+            storage.close()
+        }
+    }
+
+    companion object {
+        private const val THREAD_COUNT = 8
+        private const val FILE_COUNT = 300
+        private const val SYMBOL_COUNT = 2000
+    }
+}
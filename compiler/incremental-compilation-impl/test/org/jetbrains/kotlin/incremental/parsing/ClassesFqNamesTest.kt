@@ -132,6 +132,38 @@ class ClassesFqNamesTest : KtUsefulTestCase() {
         )
     }
 
+    @Test
+    fun testChangedFile() {
+        val parsedFiles = classesFqNamesParsedFilesCount
+        doTest(
+            setOf("test.Foo"),
+            """
+                package test
+
+                class Foo""".trimIndent()
+        )
+        UsefulTestCase.assertEquals(parsedFiles + 1, classesFqNamesParsedFilesCount)
+
+        // The same content is not parsed again
+        doTest(
+            setOf("test.Foo"),
+            """
+                package test
+
+                class Foo""".trimIndent()
+        )
+        UsefulTestCase.assertEquals(parsedFiles + 1, classesFqNamesParsedFilesCount)
+
+        doTest(
+            setOf("test.Bar"),
+            """
+                package test
+
+                class Bar""".trimIndent()
+        )
+        UsefulTestCase.assertEquals(parsedFiles + 2, classesFqNamesParsedFilesCount)
+    }
+
     private fun doTest(expectedClasses: Set<String>, code: String) {
         val testKt = File(workingDir, "test.kt")
         testKt.writeText(code)
@@ -6,9 +6,11 @@
 package org.jetbrains.kotlin.incremental.snapshots
 
 import org.jetbrains.kotlin.TestWithWorkingDir
+import org.junit.Assert.assertArrayEquals
 import org.junit.Assert.assertNotEquals
 import org.junit.Test
 import java.io.*
+import java.security.MessageDigest
 
 class FileSnapshotTest : TestWithWorkingDir() {
     private val fileSnapshotProvider: FileSnapshotProvider
@@ -72,6 +74,46 @@ class FileSnapshotTest : TestWithWorkingDir() {
         assertNotEquals(oldSnapshot, newSnapshot)
     }
 
+    @Test
+    fun testExternalizerWithMurmur3() {
+        val file = File(workingDir, "1.txt").apply { writeText("test") }
+        val snapshot = SimpleFileSnapshotProviderImpl(FileHashAlgorithm.MURMUR3_128)[file]
+        val deserializedSnapshot = saveAndReadBack(snapshot)
+        assertEquals(snapshot, deserializedSnapshot)
+        assertNotEquals(SimpleFileSnapshotProviderImpl(FileHashAlgorithm.MD5)[file], deserializedSnapshot)
+    }
+
+    @Test
+    fun testExternalizerReadsSnapshotsWithoutHashAlgorithm() {
+        val file = File(workingDir, "1.txt").apply { writeText("test") }
+        val byteOut = ByteArrayOutputStream()
+        DataOutputStream(byteOut).use { out ->
+            out.writeUTF(file.canonicalPath)
+            out.writeLong(file.length())
+            out.writeInt(16)
+            out.write(md5(file.readBytes()))
+        }
+        val snapshot = DataInputStream(ByteArrayInputStream(byteOut.toByteArray())).use { FileSnapshotExternalizer.read(it) }
+        assertEquals(SimpleFileSnapshotProviderImpl(FileHashAlgorithm.MD5)[file], snapshot)
+    }
+
+    @Test
+    fun testMurmur3Hash() {
+        val file = File(workingDir, "1.txt").apply { writeText("hello") }
+        val hash = file.hash(FileHashAlgorithm.MURMUR3_128).joinToString("") { "%02x".format(it) }
+        assertEquals("029bbd41b3a7d8cb191dae486a901e5b", hash)
+    }
+
+    @Test
+    fun testMappedFileHash() {
+        val bytes = ByteArray(1024 * 1024 + 7) { it.toByte() }
+        val file = File(workingDir, "1.bin").apply { writeBytes(bytes) }
+        assertArrayEquals(md5(bytes), file.hash(FileHashAlgorithm.MD5))
+    }
+
+    private fun md5(bytes: ByteArray): ByteArray =
+        MessageDigest.getInstance("MD5").digest(bytes)
+
     private fun saveAndReadBack(snapshot: FileSnapshot): FileSnapshot {
         val byteOut = ByteArrayOutputStream()
         DataOutputStream(byteOut).use { FileSnapshotExternalizer.save(it, snapshot) }
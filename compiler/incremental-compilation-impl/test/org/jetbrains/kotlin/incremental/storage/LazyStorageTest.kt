@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import com.intellij.util.io.EnumeratorStringDescriptor
+import org.jetbrains.kotlin.TestWithWorkingDir
+import org.junit.Test
+import java.io.File
+import java.io.IOException
+
+class LazyStorageTest : TestWithWorkingDir() {
+    @Test
+    fun testBackendsHaveSameContent() {
+        val expected = runScenario(StorageBackend.PERSISTENT_HASH_MAP)
+        assertEquals(expected, runScenario(StorageBackend.APPEND_LOG))
+    }
+
+    @Test
+    fun testAppendLogIsReadAfterManyOverwrites() {
+        val file = File(workingDir, "overwrites.tab")
+        val value = "x".repeat(1000)
+        withStorage(file, StorageBackend.APPEND_LOG) { storage ->
+            // Enough to fill several segments and to trigger compaction
+            for (i in 0 until 5000) {
+                storage["key${i % 10}"] = listOf("$value$i")
+            }
+            storage.remove("key0")
+        }
+
+        withStorage(file, StorageBackend.APPEND_LOG) { storage ->
+            assertEquals((1..9).map { "key$it" }, storage.keys.sorted())
+            assertEquals(listOf("${value}4999"), storage["key9"]?.toList())
+        }
+    }
+
+    @Test
+    fun testAppendLogKeepsValuesChangedDuringCompaction() {
+        val file = File(workingDir, "concurrent.tab")
+        val value = "x".repeat(1000)
+        val expected = HashMap<String, MutableSet<String>>()
+        withStorage(file, StorageBackend.APPEND_LOG) { storage ->
+            // Compaction runs in background, so values are set, appended and removed while live values are being copied
+            for (i in 0 until 20000) {
+                val key = "key${i % 50}"
+                when (i % 7) {
+                    0 -> {
+                        storage.remove(key)
+                        expected.remove(key)
+                    }
+                    1, 2 -> {
+                        storage.append(key, "$value$i")
+                        expected.getOrPut(key) { HashSet() }.add("$value$i")
+                    }
+                    else -> {
+                        storage[key] = listOf("$value$i")
+                        expected[key] = hashSetOf("$value$i")
+                    }
+                }
+            }
+            assertEquals(expected, storage.keys.associateWith { storage[it]!!.toSet() })
+        }
+
+        withStorage(file, StorageBackend.APPEND_LOG) { storage ->
+            assertEquals(expected, storage.keys.associateWith { storage[it]!!.toSet() })
+        }
+    }
+
+    @Test
+    fun testStorageOfOtherBackendIsNotRead() {
+        val file = File(workingDir, "other.tab")
+        withStorage(file, StorageBackend.PERSISTENT_HASH_MAP) { storage ->
+            storage["a"] = listOf("b")
+        }
+
+        withStorage(file, StorageBackend.APPEND_LOG) { storage ->
+            try {
+                storage["a"]
+                fail("Storage of other backend should not be read")
+            }
+            catch (e: IOException) {
+            }
+
+            storage.clean()
+            assertNull(storage["a"])
+        }
+    }
+
+    private fun runScenario(backend: StorageBackend): String {
+        val file = File(workingDir, "${backend.name.toLowerCase()}.tab")
+        withStorage(file, backend) { storage ->
+            storage["a"] = listOf("1")
+            storage["b"] = listOf("2")
+            storage["b"] = listOf("3")
+            storage.append("c", "4")
+            storage.append("c", "5")
+            storage.append("a", "6")
+            storage["d"] = listOf("7")
+            storage.remove("d")
+            storage.flush(memoryCachesOnly = true)
+        }
+
+        return withStorage(file, backend) { storage ->
+            storage.append("b", "8")
+            storage.keys.sorted().joinToString { "$it -> ${storage[it]!!.sorted()}" } + ", contains(d) = ${"d" in storage}"
+        }
+    }
+
+    private fun <T> withStorage(file: File, backend: StorageBackend, action: (LazyStorage<String, Collection<String>>) -> T): T {
+        val storage = LazyStorage(file, EnumeratorStringDescriptor.INSTANCE, StringCollectionExternalizer)
+        storage.backend = backend
+        try {
+            return action(storage)
+        }
+        finally {
+            storage.flush(memoryCachesOnly = false)
+            storage.close()
+        }
+    }
+}
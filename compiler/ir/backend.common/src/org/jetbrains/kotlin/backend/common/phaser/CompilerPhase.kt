@@ -6,6 +6,7 @@
 package org.jetbrains.kotlin.backend.common.phaser
 
 import org.jetbrains.kotlin.backend.common.CommonBackendContext
+import org.jetbrains.kotlin.config.measurePhase
 import kotlin.system.measureTimeMillis
 
 class PhaserState<Data>(
@@ -121,6 +122,17 @@ abstract class AbstractNamedPhaseWrapper<in Context : CommonBackendContext, Inpu
     }
 
     private fun runBody(phaseConfig: PhaseConfig, phaserState: PhaserState<Input>, context: Context, input: Input): Output {
+        return context.configuration.measurePhase(name) {
+            runBodyAndProfileIfNeeded(phaseConfig, phaserState, context, input)
+        }
+    }
+
+    private fun runBodyAndProfileIfNeeded(
+        phaseConfig: PhaseConfig,
+        phaserState: PhaserState<Input>,
+        context: Context,
+        input: Input
+    ): Output {
         return if (phaseConfig.needProfiling) {
             runAndProfile(phaseConfig, phaserState, context, input)
         } else {
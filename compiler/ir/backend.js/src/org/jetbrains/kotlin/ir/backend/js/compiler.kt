@@ -8,6 +8,7 @@ package org.jetbrains.kotlin.ir.backend.js
 import com.intellij.openapi.project.Project
 import org.jetbrains.kotlin.backend.common.phaser.PhaseConfig
 import org.jetbrains.kotlin.backend.common.phaser.invokeToplevel
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
 import org.jetbrains.kotlin.config.CompilerConfiguration
 import org.jetbrains.kotlin.ir.backend.js.transformers.irToJs.IrModuleToJsTransformer
 import org.jetbrains.kotlin.ir.backend.js.utils.JsMainFunctionDetector
@@ -56,6 +57,7 @@ fun compile(
             deserializer = deserializer
         ).generateUnboundSymbolsAsDependencies()
     }
+    configuration.get(CommonConfigurationKeys.PHASE_MEASUREMENTS)?.let { deserializer.reportDeserializationStatistics(it) }
 
     // Since modules should be initialized in the correct topological order we sort them
     val irFiles = sortDependencies(dependencyModules).flatMap { it.files } + moduleFragment.files
@@ -32,6 +32,13 @@ import org.jetbrains.kotlin.protobuf.ExtensionRegistryLite.newInstance
 import org.jetbrains.kotlin.resolve.descriptorUtil.module
 import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedCallableMemberDescriptor
 import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedClassDescriptor
+import org.jetbrains.kotlin.util.PhaseMeasurements
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicLong
 import org.jetbrains.kotlin.backend.common.serialization.proto.Annotations as ProtoAnnotations
 import org.jetbrains.kotlin.backend.common.serialization.proto.DescriptorReference as ProtoDescriptorReference
 import org.jetbrains.kotlin.backend.common.serialization.proto.IrDeclaration as ProtoDeclaration
@@ -50,7 +57,10 @@ abstract class KotlinIrLinker(
     val symbolTable: SymbolTable,
     val exportedDependencies: List<ModuleDescriptor>,
     private val forwardModuleDescriptor: ModuleDescriptor?,
-    private val firstKnownBuiltinsIndex: Long
+    private val firstKnownBuiltinsIndex: Long,
+    // Protos of reachable top level declarations are parsed in this number of threads, [reader] must be thread safe if it's more than 1.
+    // Symbols are still bound in the calling thread
+    private val deserializationThreads: Int = 1
 ) : DescriptorUniqIdAware, IrDeserializer {
 
     protected val deserializedSymbols = mutableMapOf<UniqIdKey, IrSymbol>()
@@ -72,9 +82,9 @@ abstract class KotlinIrLinker(
 
         private var moduleLoops = mutableMapOf<Int, IrLoopBase>()
 
-        private val symbolProtosCache = mutableMapOf<Int, ProtoSymbolData>()
-        private val typeProtosCache = mutableMapOf<Int, ProtoType>()
-        private val stringsCache = mutableMapOf<Int, String>()
+        private val symbolProtosCache = TableCache<ProtoSymbolData>()
+        private val typeProtosCache = TableCache<ProtoType>()
+        private val stringsCache = TableCache<String>()
 
         // This is a heavy initializer
         val module = deserializeIrModuleHeader(moduleProto)
@@ -315,8 +325,7 @@ abstract class KotlinIrLinker(
         get() =
             this.moduleDescriptor ?: reversedFileIndex[this]?.handleClashes(this)?.packageFragmentDescriptor?.containingDeclaration
 
-    private fun deserializeTopLevelDeclaration(uniqIdKey: UniqIdKey): IrDeclaration {
-        val proto = loadTopLevelDeclarationProto(uniqIdKey)
+    private fun deserializeTopLevelDeclaration(uniqIdKey: UniqIdKey, proto: ProtoDeclaration): IrDeclaration {
         return deserializersForModules[uniqIdKey.moduleOfOrigin]!!
             .deserializeDeclaration(proto, reversedFileIndex[uniqIdKey]!!.handleClashes(uniqIdKey))
     }
@@ -334,9 +343,45 @@ abstract class KotlinIrLinker(
                       "[${this.joinToString { it.packageFragmentDescriptor.containingDeclaration.name.asString() }}]")
     }
 
-    private fun loadTopLevelDeclarationProto(uniqIdKey: UniqIdKey): ProtoDeclaration {
-        val stream = reader(uniqIdKey.moduleOfOrigin!!, uniqIdKey.uniqId).codedInputStream
-        return ProtoDeclaration.parseFrom(stream, newInstance())
+    private fun loadTopLevelDeclarationProto(moduleOfOrigin: ModuleDescriptor, uniqId: UniqId): ProtoDeclaration {
+        val start = System.nanoTime()
+        val stream = reader(moduleOfOrigin, uniqId).codedInputStream
+        return ProtoDeclaration.parseFrom(stream, newInstance()).also {
+            moduleStatistics(moduleOfOrigin).parsingNanos.addAndGet(System.nanoTime() - start)
+        }
+    }
+
+    private fun loadTopLevelDeclarationProtosInParallel(
+        pool: ForkJoinPool,
+        keys: List<UniqIdKey>
+    ): Map<UniqIdKey, Future<ProtoDeclaration>> {
+        val result = HashMap<UniqIdKey, Future<ProtoDeclaration>>()
+        for (key in keys) {
+            if (deserializedSymbols[key]?.isBound == true) continue
+            val moduleOfOrigin = key.moduleOfOrigin ?: continue
+            result[key] = pool.submit(Callable { loadTopLevelDeclarationProto(moduleOfOrigin, key.uniqId) })
+        }
+        return result
+    }
+
+    private class ModuleStatistics {
+        val parsingNanos = AtomicLong()
+        var deserializationNanos = 0L
+        var declarations = 0
+    }
+
+    private val statisticsByModule = ConcurrentHashMap<ModuleDescriptor, ModuleStatistics>()
+
+    private fun moduleStatistics(module: ModuleDescriptor): ModuleStatistics =
+        statisticsByModule.getOrPut(module) { ModuleStatistics() }
+
+    // Parsing time is summed up over all threads. Statistics are reported once, when all needed declarations are deserialized
+    fun reportDeserializationStatistics(phaseMeasurements: PhaseMeasurements) {
+        for ((module, statistics) in statisticsByModule) {
+            val moduleName = module.name.asString()
+            phaseMeasurements.add(moduleName, "IR deserialization: parsing", statistics.declarations, statistics.parsingNanos.get())
+            phaseMeasurements.add(moduleName, "IR deserialization: linking", statistics.declarations, statistics.deserializationNanos)
+        }
     }
 
     private fun loadSymbolProto(moduleDescriptor: ModuleDescriptor, index: Int): ProtoSymbolData {
@@ -360,31 +405,62 @@ abstract class KotlinIrLinker(
     }
 
     private fun deserializeAllReachableTopLevels() {
+        // Threads are only started if there are enough declarations to parse, and are stopped when all of them are deserialized
+        val pool = if (deserializationThreads > 1) lazy(LazyThreadSafetyMode.NONE) { ForkJoinPool(deserializationThreads) } else null
+        try {
+            deserializeAllReachableTopLevels(pool)
+        } finally {
+            if (pool != null && pool.isInitialized()) pool.value.shutdownNow()
+        }
+    }
+
+    private fun deserializeAllReachableTopLevels(pool: Lazy<ForkJoinPool>?) {
+        // Declarations reachable from the current ones are added to the end of the set, so they are handled in the next round
         do {
-            val key = reachableTopLevels.first()
-            val moduleOfOrigin = key.moduleOfOrigin
+            val keys = reachableTopLevels.toList()
+            val protos =
+                if (pool != null && keys.size >= PARALLEL_PARSING_THRESHOLD) loadTopLevelDeclarationProtosInParallel(pool.value, keys)
+                else emptyMap()
+
+            for (key in keys) {
+                val moduleOfOrigin = key.moduleOfOrigin
+
+                if (deserializedSymbols[key]?.isBound == true ||
+                    // The key.moduleOrigin is null for uniqIds that we haven't seen in any of the library headers.
+                    // Just skip it for now and handle it elsewhere.
+                    moduleOfOrigin == null
+                ) {
+                    protos[key]?.cancel(false)
+                    reachableTopLevels.remove(key)
+                    deserializedTopLevels.add(key)
+                    continue
+                }
 
-            if (deserializedSymbols[key]?.isBound == true ||
-                // The key.moduleOrigin is null for uniqIds that we haven't seen in any of the library headers.
-                // Just skip it for now and handle it elsewhere.
-                moduleOfOrigin == null
-            ) {
+                val proto = protos[key]?.let { getParsedProto(it) } ?: loadTopLevelDeclarationProto(moduleOfOrigin, key.uniqId)
+
+                val start = System.nanoTime()
+                val reachable = deserializeTopLevelDeclaration(key, proto)
+                val file = reversedFileIndex[key]!!.handleClashes(key)
+                file.declarations.add(reachable)
+                deserializeFileAnnotationsIfFirstUse(moduleOfOrigin, file)
+                moduleStatistics(moduleOfOrigin).let {
+                    it.deserializationNanos += System.nanoTime() - start
+                    it.declarations++
+                }
 
                 reachableTopLevels.remove(key)
                 deserializedTopLevels.add(key)
-                continue
             }
-
-            val reachable = deserializeTopLevelDeclaration(key)
-            val file = reversedFileIndex[key]!!.handleClashes(key)
-            file.declarations.add(reachable)
-            deserializeFileAnnotationsIfFirstUse(moduleOfOrigin, file)
-
-            reachableTopLevels.remove(key)
-            deserializedTopLevels.add(key)
         } while (reachableTopLevels.isNotEmpty())
     }
 
+    private fun getParsedProto(future: Future<ProtoDeclaration>): ProtoDeclaration =
+        try {
+            future.get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
+
     private fun findDeserializedDeclarationForDescriptor(descriptor: DeclarationDescriptor): DeclarationDescriptor? {
         val topLevelDescriptor = descriptor.findTopLevelDescriptor()
 
@@ -487,6 +563,21 @@ abstract class KotlinIrLinker(
         }
 }
 
+private const val PARALLEL_PARSING_THRESHOLD = 8
+
+// Items of a klib table decoded on first access, indices are dense so they're kept in a growing array
+private class TableCache<T : Any> {
+    private var items = arrayOfNulls<Any>(16)
+
+    fun getOrPut(index: Int, load: () -> T): T {
+        if (index >= items.size) {
+            items = items.copyOf(maxOf(index + 1, items.size * 2))
+        }
+        @Suppress("UNCHECKED_CAST")
+        return items[index] as T? ?: load().also { items[index] = it }
+    }
+}
+
 enum class DeserializationStrategy {
     ONLY_REFERENCED,
     ALL,
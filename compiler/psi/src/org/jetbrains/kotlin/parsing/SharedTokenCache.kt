@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.parsing
+
+import com.intellij.lexer.Lexer
+import com.intellij.lexer.LexerBase
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.psi.tree.IElementType
+import org.jetbrains.kotlin.lexer.KotlinLexer
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Tokens of parsed Kotlin files, shared by all compilations in the process (e.g. in the compile daemon), so files which
+ * haven't changed since a previous compilation are not lexed again.
+ *
+ * Syntax trees and stubs belong to a project and can't outlive the environment of a compilation, but tokens are made of
+ * text offsets and element types, which are the same in all environments.
+ *
+ * Entries are keyed by the path of the file and keep a copy of its text, tokens are reused only if the text is the same,
+ * and tokens of a changed file replace the previous ones. The total estimated size of cached texts and tokens is bounded
+ * by [maxSizeInBytes], the cache is disabled if it's 0.
+ */
+object SharedTokenCache {
+    private class Tokens(val text: String, val types: Array<IElementType?>, val starts: IntArray) {
+        val size: Long
+            get() = 64L + 2L * text.length + 16L * types.size
+    }
+
+    @Volatile
+    var maxSizeInBytes: Long = 0L
+        set(value) {
+            field = value
+            synchronized(entries) {
+                evictIfNeeded()
+            }
+        }
+
+    val isEnabled: Boolean
+        get() = maxSizeInBytes > 0
+
+    private val entries = LinkedHashMap<String, Tokens>(16, 0.75f, /* accessOrder = */ true)
+    private var sizeInBytes = 0L
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val evictions = AtomicLong()
+
+    /**
+     * Returns a lexer which produces the same tokens as [KotlinLexer] for [text], lexing it only if it's not in the cache.
+     * The lexer can only be started on the whole [text].
+     */
+    fun getLexer(path: String, text: CharSequence): Lexer {
+        val cached = synchronized(entries) { entries[path] }
+        if (cached != null && StringUtil.equals(cached.text, text)) {
+            hits.incrementAndGet()
+            return CachedTokensLexer(cached)
+        }
+
+        misses.incrementAndGet()
+        val tokens = lex(text)
+        synchronized(entries) {
+            entries.put(path, tokens)?.let { sizeInBytes -= it.size }
+            sizeInBytes += tokens.size
+            evictIfNeeded()
+        }
+        return CachedTokensLexer(tokens)
+    }
+
+    fun clear() {
+        synchronized(entries) {
+            entries.clear()
+            sizeInBytes = 0L
+        }
+        hits.set(0)
+        misses.set(0)
+        evictions.set(0)
+    }
+
+    fun reportStatistics(consumer: (String) -> Unit) {
+        val total = hits.get() + misses.get()
+        val hitRate = if (total > 0) hits.get() * 100 / total else 0
+        val size = synchronized(entries) { "${entries.size} entries, ${sizeInBytes / 1024} kb" }
+        consumer("Shared token cache: ${hits.get()} hits, ${misses.get()} misses ($hitRate% hit rate), ${evictions.get()} evictions, $size")
+    }
+
+    private fun evictIfNeeded() {
+        val iterator = entries.values.iterator()
+        while (sizeInBytes > maxSizeInBytes && iterator.hasNext()) {
+            sizeInBytes -= iterator.next().size
+            iterator.remove()
+            evictions.incrementAndGet()
+        }
+    }
+
+    private fun lex(text: CharSequence): Tokens {
+        var types = arrayOfNulls<IElementType>(text.length / 4 + 16)
+        var starts = IntArray(types.size + 1)
+        var count = 0
+
+        val lexer = KotlinLexer()
+        lexer.start(text)
+        while (true) {
+            val type = lexer.tokenType ?: break
+            if (count == types.size) {
+                types = types.copyOf(count * 2)
+                starts = starts.copyOf(count * 2 + 1)
+            }
+            types[count] = type
+            starts[count] = lexer.tokenStart
+            count++
+            lexer.advance()
+        }
+        starts[count] = text.length
+
+        return Tokens(text.toString(), types.copyOf(count), starts.copyOf(count + 1))
+    }
+
+    private class CachedTokensLexer(private val tokens: Tokens) : LexerBase() {
+        private var buffer: CharSequence = ""
+        private var index = 0
+
+        override fun start(buffer: CharSequence, startOffset: Int, endOffset: Int, initialState: Int) {
+            assert(startOffset == 0 && endOffset == tokens.starts.last()) { "Cached tokens can only be used for the whole text" }
+            this.buffer = buffer
+            index = 0
+        }
+
+        override fun getState(): Int = 0
+
+        override fun getTokenType(): IElementType? = if (index < tokens.types.size) tokens.types[index] else null
+
+        override fun getTokenStart(): Int = tokens.starts[index]
+
+        override fun getTokenEnd(): Int = if (index < tokens.types.size) tokens.starts[index + 1] else tokens.starts[index]
+
+        override fun advance() {
+            if (index < tokens.types.size) index++
+        }
+
+        override fun getBufferSequence(): CharSequence = buffer
+
+        override fun getBufferEnd(): Int = buffer.length
+    }
+}
@@ -17,7 +17,9 @@
 package org.jetbrains.kotlin.psi.stubs.elements;
 
 import com.intellij.lang.*;
+import com.intellij.lexer.Lexer;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.StubBuilder;
 import com.intellij.psi.stubs.IndexSink;
@@ -27,8 +29,10 @@ import com.intellij.psi.stubs.StubOutputStream;
 import com.intellij.psi.tree.IStubFileElementType;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.idea.KotlinLanguage;
 import org.jetbrains.kotlin.parsing.KotlinParser;
+import org.jetbrains.kotlin.parsing.SharedTokenCache;
 import org.jetbrains.kotlin.psi.stubs.KotlinFileStub;
 import org.jetbrains.kotlin.psi.stubs.KotlinStubVersions;
 
@@ -79,11 +83,20 @@ public class KtFileElementType extends IStubFileElementType<KotlinFileStub> {
     protected ASTNode doParseContents(@NotNull ASTNode chameleon, @NotNull PsiElement psi) {
         Project project = psi.getProject();
         Language languageForParser = getLanguageForParser(psi);
-        PsiBuilder builder = PsiBuilderFactory.getInstance().createBuilder(project, chameleon, null, languageForParser, chameleon.getChars());
+        PsiBuilder builder = PsiBuilderFactory.getInstance().createBuilder(
+                project, chameleon, createLexer(psi, languageForParser, chameleon.getChars()), languageForParser, chameleon.getChars());
         KotlinParser parser = (KotlinParser) LanguageParserDefinitions.INSTANCE.forLanguage(languageForParser).createParser(project);
         return parser.parse(this, builder, psi.getContainingFile()).getFirstChildNode();
     }
 
+    @Nullable
+    private static Lexer createLexer(@NotNull PsiElement psi, @NotNull Language languageForParser, @NotNull CharSequence text) {
+        if (!SharedTokenCache.INSTANCE.isEnabled() || languageForParser != KotlinLanguage.INSTANCE) return null;
+
+        VirtualFile file = psi.getContainingFile().getViewProvider().getVirtualFile();
+        return SharedTokenCache.INSTANCE.getLexer(file.getPath(), text);
+    }
+
     @Override
     public void indexStub(@NotNull KotlinFileStub stub, @NotNull IndexSink sink) {
         StubIndexService.getInstance().indexFile(stub, sink);
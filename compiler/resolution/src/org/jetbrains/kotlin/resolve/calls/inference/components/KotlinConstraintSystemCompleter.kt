@@ -15,6 +15,7 @@ import org.jetbrains.kotlin.types.UnwrappedType
 import org.jetbrains.kotlin.types.model.KotlinTypeMarker
 import org.jetbrains.kotlin.types.model.TypeConstructorMarker
 import org.jetbrains.kotlin.types.model.TypeVariableMarker
+import org.jetbrains.kotlin.utils.DeclarationProfiler
 import org.jetbrains.kotlin.utils.addIfNotNull
 import org.jetbrains.kotlin.utils.addToStdlib.firstIsInstanceOrNull
 import org.jetbrains.kotlin.utils.addToStdlib.safeAs
@@ -51,12 +52,23 @@ class KotlinConstraintSystemCompleter(
         topLevelType: UnwrappedType,
         analyze: (PostponedResolvedAtom) -> Unit
     ) {
-        runCompletion(c, completionMode, topLevelAtoms, topLevelType, collectVariablesFromContext = false, analyze = analyze)
+        // Lambdas and callable references are analyzed during completion, but their analysis is not a part of inference
+        val analyzeAtom: (PostponedResolvedAtom) -> Unit = if (DeclarationProfiler.isMeasuring) {
+            { atom -> DeclarationProfiler.measureNested(DeclarationProfiler.Kind.BODY_RESOLVE) { analyze(atom) } }
+        } else {
+            analyze
+        }
+
+        DeclarationProfiler.measureNested(DeclarationProfiler.Kind.INFERENCE) {
+            runCompletion(c, completionMode, topLevelAtoms, topLevelType, collectVariablesFromContext = false, analyze = analyzeAtom)
+        }
     }
 
     fun completeConstraintSystem(c: Context, topLevelType: UnwrappedType) {
-        runCompletion(c, ConstraintSystemCompletionMode.FULL, emptyList(), topLevelType, collectVariablesFromContext = true) {
-            error("Shouldn't be called in complete constraint system mode")
+        DeclarationProfiler.measureNested(DeclarationProfiler.Kind.INFERENCE) {
+            runCompletion(c, ConstraintSystemCompletionMode.FULL, emptyList(), topLevelType, collectVariablesFromContext = true) {
+                error("Shouldn't be called in complete constraint system mode")
+            }
         }
     }
 
@@ -29,6 +29,7 @@ import org.jetbrains.kotlin.resolve.calls.inference.model.NewConstraintSystemImp
 import org.jetbrains.kotlin.resolve.calls.tasks.ExplicitReceiverKind
 import org.jetbrains.kotlin.resolve.calls.tower.*
 import org.jetbrains.kotlin.types.TypeSubstitutor
+import org.jetbrains.kotlin.utils.DeclarationProfiler
 
 
 abstract class ResolutionPart {
@@ -105,6 +106,12 @@ class KotlinResolutionCandidate(
         if (stopOnFirstError && step > 0) return // error already happened
         if (step == stepCount) return
 
+        DeclarationProfiler.measureNested(DeclarationProfiler.Kind.INFERENCE) {
+            processRemainingParts(stopOnFirstError)
+        }
+    }
+
+    private fun processRemainingParts(stopOnFirstError: Boolean) {
         var partIndex = 0
         var workStep = step
         while (workStep > 0) {
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import com.intellij.openapi.util.io.FileUtil
+import junit.framework.TestCase
+import org.jetbrains.kotlin.cli.jvm.index.ClasspathIndexCache
+import java.io.File
+import java.io.FileOutputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class ClasspathIndexCacheTest : TestCase() {
+    private lateinit var workingDir: File
+
+    override fun setUp() {
+        super.setUp()
+        workingDir = FileUtil.createTempDirectory("ClasspathIndexCacheTest", null)
+    }
+
+    override fun tearDown() {
+        workingDir.deleteRecursively()
+        super.tearDown()
+    }
+
+    fun testJarIndex() {
+        val jar = createJar("a.jar", "foo/bar/A.class", "foo/B.class", "META-INF/main.kotlin_module", "META-INF/MANIFEST.MF")
+
+        val index = ClasspathIndexCache(File(workingDir, "index")).getJarIndex(jar)!!
+        assertEquals(setOf("", "foo", "foo.bar", "META-INF"), index.packages)
+        assertEquals(listOf("main.kotlin_module"), index.moduleMappings.keys.toList())
+        assertEquals("META-INF/main.kotlin_module", String(index.moduleMappings.getValue("main.kotlin_module")))
+    }
+
+    fun testIndexIsReadFromCache() {
+        val indexDir = File(workingDir, "index")
+        val jar = createJar("a.jar", "foo/A.class", "META-INF/main.kotlin_module")
+        ClasspathIndexCache(indexDir).getJarIndex(jar)
+
+        // The jar is not read as long as its size and modification time are the same
+        val modified = jar.lastModified()
+        jar.writeBytes(ByteArray(jar.length().toInt()))
+        jar.setLastModified(modified)
+        assertEquals(setOf("", "foo", "META-INF"), ClasspathIndexCache(indexDir).getJarIndex(jar)!!.packages)
+
+        createJar("a.jar", "bar/A.class", "bar/B.class", "META-INF/bar.kotlin_module")
+        val index = ClasspathIndexCache(indexDir).getJarIndex(jar)!!
+        assertEquals(setOf("", "bar", "META-INF"), index.packages)
+        assertEquals(listOf("bar.kotlin_module"), index.moduleMappings.keys.toList())
+    }
+
+    fun testNotJar() {
+        val file = File(workingDir, "a.jar").apply { writeText("not a jar") }
+        assertNull(ClasspathIndexCache(File(workingDir, "index")).getJarIndex(file))
+    }
+
+    private fun createJar(name: String, vararg entries: String): File {
+        val jar = File(workingDir, name)
+        ZipOutputStream(FileOutputStream(jar)).use { zip ->
+            for (entry in entries) {
+                zip.putNextEntry(ZipEntry(entry))
+                zip.write(entry.toByteArray())
+                zip.closeEntry()
+            }
+        }
+        return jar
+    }
+}
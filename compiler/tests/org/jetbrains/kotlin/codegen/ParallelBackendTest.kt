@@ -0,0 +1,180 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import org.jetbrains.kotlin.config.JVMConfigurationKeys
+import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.org.objectweb.asm.Opcodes
+
+class ParallelBackendTest : CodegenTestCase() {
+    fun testOutputIsIdenticalToSequential() {
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.NO_KOTLIN_REFLECT)
+        val project = myEnvironment.project
+        myFiles = CodegenTestFiles.create(
+            listOf(
+                KotlinTestUtils.createFile("a.kt", """
+                    package a
+
+                    @Deprecated("a")
+                    annotation class Ann(val values: IntArray, val name: String = "")
+
+                    enum class E { X, Y, Z }
+
+                    @Ann([1, 2, 3], name = "a")
+                    class A(private val s: String) {
+                        @Volatile var counter: Long = 0L
+
+                        fun describe(e: E): String = when (e) {
+                            E.X -> s
+                            E.Y -> s + counter
+                            E.Z -> listOf(s).map { it.length }.toString()
+                        }
+
+                        inner class Inner { fun get() = s }
+
+                        companion object {
+                            const val C = 42
+                            fun create() = A("c")
+                        }
+                    }
+                """.trimIndent(), project),
+                KotlinTestUtils.createFile("b.kt", """
+                    @file:JvmName("BFacade")
+                    package b
+
+                    import a.*
+
+                    inline fun <T> measure(block: () -> T): T = block()
+
+                    fun useA(items: List<Int?>): Int {
+                        var sum = 0
+                        for (item in items) {
+                            sum += measure { item ?: A.C }
+                        }
+                        val runnable = object : Runnable {
+                            override fun run() { sum++ }
+                        }
+                        runnable.run()
+                        return sum + A.create().describe(E.Y).length
+                    }
+                """.trimIndent(), project)
+            )
+        )
+
+        val sequential = compile(backendThreads = 1)
+        val parallel = compile(backendThreads = 4)
+
+        assertEquals(sequential.map { it.first }, parallel.map { it.first })
+        for ((expected, actual) in sequential.zip(parallel)) {
+            assertTrue("Class file differs: ${expected.first}", expected.second.contentEquals(actual.second))
+        }
+    }
+
+    // Method transformers run on backend threads concurrently, redundant boxing and null check elimination also map inline classes
+    fun testOutputIsTheSameInEveryParallelRun() {
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.NO_KOTLIN_REFLECT)
+        val project = myEnvironment.project
+        myFiles = CodegenTestFiles.create((1..FILES).map { i ->
+            KotlinTestUtils.createFile("f$i.kt", """
+                package p$i
+
+                inline class Id$i(val value: Int)
+
+                class Holder$i(val ids: List<Id$i>) {
+                    fun sum(): Int {
+                        var total: Int? = 0
+                        for (id in ids) {
+                            val boxed: Any = id
+                            if (boxed is Id$i) total = total!! + boxed.value
+                        }
+                        return total ?: -1
+                    }
+
+                    fun describe(): String = ids.map { "${'$'}{it.value}" }.joinToString { it + $i }
+
+                    object Companion$i { val default = Holder$i(listOf(Id$i($i))) }
+                }
+
+                fun use$i(x: Long?): Long = x?.let { it + $i } ?: Holder$i.Companion$i.default.sum().toLong()
+            """.trimIndent(), project)
+        })
+
+        val sequential = compile(backendThreads = 1)
+        repeat(RUNS) { run ->
+            val parallel = compile(backendThreads = 8)
+            assertEquals(sequential.map { it.first }, parallel.map { it.first })
+            for ((expected, actual) in sequential.zip(parallel)) {
+                assertTrue("Class file differs in run $run: ${expected.first}", expected.second.contentEquals(actual.second))
+            }
+        }
+    }
+
+    fun testModuleInfoIsReplayed() {
+        fun generateModuleInfo(builder: ClassBuilder) {
+            builder.visitor.visit(Opcodes.V9, Opcodes.ACC_MODULE, "module-info", null, null, null)
+            builder.visitor.visitModule("my.module", 0, null).apply {
+                visitRequire("java.base", Opcodes.ACC_MANDATED, null)
+                visitExport("a/b", 0)
+                visitOpen("a/c", 0, "other.module")
+                visitUse("a/Service")
+                visitProvide("a/Service", "a/ServiceImpl")
+                visitEnd()
+            }
+            builder.visitor.visitEnd()
+        }
+
+        val direct = ClassBuilderFactories.BINARIES.newClassBuilder(JvmDeclarationOrigin.NO_ORIGIN)
+        generateModuleInfo(direct)
+
+        val deferredFactory = DeferredClassBuilderFactory(ClassBuilderFactories.BINARIES, 2)
+        try {
+            val deferred = deferredFactory.newClassBuilder(JvmDeclarationOrigin.NO_ORIGIN)
+            generateModuleInfo(deferred)
+
+            assertTrue(ClassBuilderFactories.BINARIES.asBytes(direct).contentEquals(deferredFactory.asBytes(deferred)))
+        } finally {
+            deferredFactory.close()
+        }
+    }
+
+    // Classes are written on backend threads as soon as they are finished, text of a class is still available after that
+    fun testTextOutputIsIdenticalToSequential() {
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.NO_KOTLIN_REFLECT)
+        val project = myEnvironment.project
+        myFiles = CodegenTestFiles.create((1..FILES).map { i ->
+            KotlinTestUtils.createFile("f$i.kt", "package p$i\n\nclass C$i { fun f() = listOf($i).map { it + 1 } }", project)
+        })
+
+        fun text(backendThreads: Int): String {
+            val configuration = myEnvironment.configuration.copy().apply {
+                put(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, backendThreads)
+            }
+            val state = GenerationUtils.compileFiles(
+                myFiles.psiFiles, configuration, ClassBuilderFactories.TEST, myEnvironment::createPackagePartProvider
+            )
+            return state.factory.createText()
+        }
+
+        assertEquals(text(backendThreads = 1), text(backendThreads = 4))
+    }
+
+    private fun compile(backendThreads: Int): List<Pair<String, ByteArray>> {
+        val configuration = myEnvironment.configuration.copy().apply {
+            put(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, backendThreads)
+        }
+        val state = GenerationUtils.compileFiles(
+            myFiles.psiFiles, configuration, ClassBuilderFactories.BINARIES, myEnvironment::createPackagePartProvider
+        )
+        return state.factory.asList().map { it.relativePath to it.asByteArray() }
+    }
+
+    companion object {
+        private const val FILES = 40
+        private const val RUNS = 10
+    }
+}
@@ -29,12 +29,12 @@ class ReflectionClassLoaderTest : CodegenTestCase() {
 
     private fun Class<*>.methodByName(name: String) = declaredMethods.single { it.name == name }
 
+    private fun Class<*>.getKClass() = methodByName("kClass")(newInstance())
+
     fun doTest(cl1: ClassLoader, cl2: ClassLoader) {
         val t1 = cl1.loadClass("test.Test")
         val t2 = cl2.loadClass("test.Test")
 
-        fun Class<*>.getKClass() = methodByName("kClass")(newInstance())
-
         t1.methodByName("doTest")(t1.newInstance(), t1.getKClass(), t2.getKClass())
     }
 
@@ -63,6 +63,21 @@ class ReflectionClassLoaderTest : CodegenTestCase() {
         )
     }
 
+    fun testKClassIsCachedForEachClassLoader() {
+        // Classes with the same name loaded by different class loaders share an entry of the KClass cache
+
+        loadFile("$prefix/differentClassLoaders.kt")
+
+        val classLoaders = List(3) { createClassLoader() }
+        val kClasses = classLoaders.map { it.loadClass("test.Test").getKClass() }
+        for ((i, classLoader) in classLoaders.withIndex()) {
+            assertSame(kClasses[i], classLoader.loadClass("test.Test").getKClass())
+            for (j in 0 until i) {
+                assertNotSame(kClasses[j], kClasses[i])
+            }
+        }
+    }
+
     fun testParentFirst() {
         // Check that for a child class loader, a class reference would be the same as for his parent
 
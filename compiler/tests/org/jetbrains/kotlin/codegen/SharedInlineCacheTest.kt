@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.inline.*
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.commons.Method
+import org.jetbrains.org.objectweb.asm.tree.InsnNode
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+
+class SharedInlineCacheTest : TestCase() {
+    override fun setUp() {
+        super.setUp()
+        SharedInlineCache.clear()
+        SharedInlineCache.maxSizeInBytes = 1024 * 1024
+    }
+
+    override fun tearDown() {
+        SharedInlineCache.maxSizeInBytes = 0
+        SharedInlineCache.clear()
+        super.tearDown()
+    }
+
+    fun testValueIsReused() {
+        val first = SharedInlineCache.getOrPut(classBytes(0), methodId("foo")) { createNode() }
+        val second = SharedInlineCache.getOrPut(classBytes(0), methodId("foo")) { fail("Should be cached"); null }
+        assertSame(first, second)
+    }
+
+    fun testChangedClassIsNotReused() {
+        val first = SharedInlineCache.getOrPut(classBytes(0), methodId("foo")) { createNode() }
+        // The same size as the original class, as after a rebuild with a changed constant
+        val second = SharedInlineCache.getOrPut(classBytes(1), methodId("foo")) { createNode() }
+        assertNotSame(first, second)
+    }
+
+    fun testSizeIsBounded() {
+        SharedInlineCache.maxSizeInBytes = 1024
+        val first = SharedInlineCache.getOrPut(classBytes(0), methodId("foo")) { createNode(instructions = 10) }
+        SharedInlineCache.getOrPut(classBytes(0), methodId("bar")) { createNode(instructions = 10) }
+        val third = SharedInlineCache.getOrPut(classBytes(0), methodId("foo")) { createNode(instructions = 10) }
+        assertNotSame(first, third)
+
+        val statistics = arrayListOf<String>()
+        SharedInlineCache.reportStatistics { statistics.add(it) }
+        assertTrue(statistics.single(), statistics.single().contains("0 hits, 3 misses, 2 evictions"))
+    }
+
+    private fun classBytes(lastByte: Byte) = ByteArray(10).also { it[it.lastIndex] = lastByte }
+
+    private fun methodId(name: String) = MethodId("test/Inline", Method(name, "()V"))
+
+    private fun createNode(instructions: Int = 1): SMAPAndMethodNode {
+        val node = MethodNode(Opcodes.ACC_STATIC, "foo", "()V", null, null)
+        repeat(instructions) { node.instructions.add(InsnNode(Opcodes.NOP)) }
+        return SMAPAndMethodNode(node, SMAP(listOf(FileMapping.SKIP)))
+    }
+}
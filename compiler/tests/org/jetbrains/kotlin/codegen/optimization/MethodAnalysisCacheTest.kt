@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.optimization.common.ControlFlowGraph
+import org.jetbrains.kotlin.codegen.optimization.common.MethodAnalysisCache
+import org.jetbrains.kotlin.codegen.optimization.common.OptimizationBasicInterpreter
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
+import org.jetbrains.org.objectweb.asm.Label
+import org.jetbrains.org.objectweb.asm.Opcodes.*
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import org.jetbrains.org.objectweb.asm.tree.analysis.SourceInterpreter
+
+class MethodAnalysisCacheTest : TestCase() {
+    fun testGraphIsTheSameAsBuiltSeparately() {
+        val node = createMethod()
+        val analysis = MethodAnalysisCache("Owner", node)
+        analysis.analyze(SourceInterpreter())
+
+        assertEquals(successors(node, ControlFlowGraph.build(node)), successors(node, analysis.controlFlowGraph))
+    }
+
+    fun testBasicFrames() {
+        val node = createMethod()
+        val analysis = MethodAnalysisCache("Owner", node)
+
+        val expected = MethodTransformer.analyze("Owner", node, OptimizationBasicInterpreter()).map { it?.toString() }
+        assertEquals(expected, analysis.getBasicFrames().map { it?.toString() })
+        assertSame(analysis.getBasicFrames(), analysis.getBasicFrames())
+    }
+
+    private fun successors(node: MethodNode, graph: ControlFlowGraph): List<Set<Int>> =
+        (0 until node.instructions.size()).map { graph.getSuccessorsIndices(it).toSet() }
+
+    // static int test(int n) {
+    //     int result = 0;
+    //     for (int i = 0; i < n; i++) result += i;
+    //     try { result = Integer.parseInt("1"); } catch (Throwable e) { result = -1; }
+    //     return result;
+    // }
+    private fun createMethod(): MethodNode =
+        MethodNode(ACC_STATIC, "test", "(I)I", null, null).apply {
+            val loopStart = Label()
+            val loopEnd = Label()
+            val tryStart = Label()
+            val tryEnd = Label()
+            val handler = Label()
+            val afterTry = Label()
+
+            visitCode()
+            visitInsn(ICONST_0)
+            visitVarInsn(ISTORE, 1)
+            visitInsn(ICONST_0)
+            visitVarInsn(ISTORE, 2)
+
+            visitLabel(loopStart)
+            visitVarInsn(ILOAD, 2)
+            visitVarInsn(ILOAD, 0)
+            visitJumpInsn(IF_ICMPGE, loopEnd)
+            visitVarInsn(ILOAD, 1)
+            visitVarInsn(ILOAD, 2)
+            visitInsn(IADD)
+            visitVarInsn(ISTORE, 1)
+            visitIincInsn(2, 1)
+            visitJumpInsn(GOTO, loopStart)
+
+            visitLabel(loopEnd)
+            visitTryCatchBlock(tryStart, tryEnd, handler, "java/lang/Throwable")
+            visitLabel(tryStart)
+            visitLdcInsn("1")
+            visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "parseInt", "(Ljava/lang/String;)I", false)
+            visitVarInsn(ISTORE, 1)
+            visitLabel(tryEnd)
+            visitJumpInsn(GOTO, afterTry)
+
+            visitLabel(handler)
+            visitVarInsn(ASTORE, 3)
+            visitInsn(ICONST_M1)
+            visitVarInsn(ISTORE, 1)
+
+            visitLabel(afterTry)
+            visitVarInsn(ILOAD, 1)
+            visitInsn(IRETURN)
+            visitMaxs(2, 4)
+            visitEnd()
+        }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.optimization.common.SparseMethodAnalyzer
+import org.jetbrains.kotlin.codegen.optimization.common.forEachFrame
+import org.jetbrains.org.objectweb.asm.Label
+import org.jetbrains.org.objectweb.asm.Opcodes.*
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import org.jetbrains.org.objectweb.asm.tree.analysis.BasicInterpreter
+
+class SparseMethodAnalyzerTest : TestCase() {
+    fun testFramesAreTheSameAsWithRegularAnalyzer() {
+        val node = createMethod()
+
+        assertEquals(collectFrames(node, useSparseFrames = false), collectFrames(node, useSparseFrames = true))
+    }
+
+    fun testBasicBlocks() {
+        // entry, loop header, loop body, loop exit, catch handler, code after try/catch
+        assertEquals(6, SparseMethodAnalyzer.countBasicBlocks(createMethod()))
+    }
+
+    private fun collectFrames(node: MethodNode, useSparseFrames: Boolean): List<String> {
+        val frames = arrayListOf<String>()
+        forEachFrame("Owner", node, BasicInterpreter(), useSparseFrames) { i, frame ->
+            frames.add("$i: $frame")
+        }
+        return frames
+    }
+
+    // static Object test(int n) {
+    //     Object result = null;
+    //     for (int i = 0; i < n; i++) result = Integer.valueOf(i);
+    //     try { result = result.toString(); } catch (Throwable e) { result = e; }
+    //     return result;
+    // }
+    private fun createMethod(): MethodNode =
+        MethodNode(ACC_STATIC, "test", "(I)Ljava/lang/Object;", null, null).apply {
+            val loopStart = Label()
+            val loopEnd = Label()
+            val tryStart = Label()
+            val tryEnd = Label()
+            val handler = Label()
+            val afterTry = Label()
+
+            visitCode()
+            visitInsn(ACONST_NULL)
+            visitVarInsn(ASTORE, 1)
+            visitInsn(ICONST_0)
+            visitVarInsn(ISTORE, 2)
+
+            visitLabel(loopStart)
+            visitVarInsn(ILOAD, 2)
+            visitVarInsn(ILOAD, 0)
+            visitJumpInsn(IF_ICMPGE, loopEnd)
+            visitVarInsn(ILOAD, 2)
+            visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false)
+            visitVarInsn(ASTORE, 1)
+            visitIincInsn(2, 1)
+            visitJumpInsn(GOTO, loopStart)
+
+            visitLabel(loopEnd)
+            visitTryCatchBlock(tryStart, tryEnd, handler, "java/lang/Throwable")
+            visitLabel(tryStart)
+            visitVarInsn(ALOAD, 1)
+            visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "toString", "()Ljava/lang/String;", false)
+            visitVarInsn(ASTORE, 1)
+            visitLabel(tryEnd)
+            visitJumpInsn(GOTO, afterTry)
+
+            visitLabel(handler)
+            visitVarInsn(ASTORE, 3)
+            visitVarInsn(ALOAD, 3)
+            visitVarInsn(ASTORE, 1)
+
+            visitLabel(afterTry)
+            visitVarInsn(ALOAD, 1)
+            visitInsn(ARETURN)
+            visitMaxs(2, 4)
+            visitEnd()
+        }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
+import org.jetbrains.kotlin.codegen.optimization.transformer.TimedMethodTransformer
+import org.jetbrains.kotlin.codegen.optimization.transformer.TimedMethodTransformer.Companion.timed
+import org.jetbrains.kotlin.util.PerformanceCounter
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+
+class TimedMethodTransformerTest : TestCase() {
+    private class CountingTransformer : MethodTransformer() {
+        var count = 0
+
+        override fun transform(internalClassName: String, methodNode: MethodNode) {
+            count++
+        }
+    }
+
+    override fun tearDown() {
+        PerformanceCounter.setTimeCounterEnabled(false)
+        super.tearDown()
+    }
+
+    fun testTransformerIsNotWrappedWhenTimeIsNotMeasured() {
+        PerformanceCounter.setTimeCounterEnabled(false)
+        val transformer = CountingTransformer()
+
+        assertSame(transformer, timed(transformer))
+    }
+
+    fun testTransformersOfTheSameClassWithDifferentNamesHaveSeparateCounters() {
+        PerformanceCounter.setTimeCounterEnabled(true)
+        val first = CountingTransformer()
+        val second = CountingTransformer()
+        val timedFirst = timed(first, "TimedMethodTransformerTest first")
+        val timedSecond = timed(second, "TimedMethodTransformerTest second")
+        assertTrue(timedFirst is TimedMethodTransformer)
+
+        val methodNode = MethodNode(Opcodes.ACC_STATIC, "test", "()V", null, null)
+        timedFirst.transform("Owner", methodNode)
+        timedFirst.transform("Owner", methodNode)
+        timedSecond.transform("Owner", methodNode)
+        timed(CountingTransformer(), "TimedMethodTransformerTest first").transform("Owner", methodNode)
+
+        assertEquals(2, first.count)
+        assertEquals(1, second.count)
+        val report = arrayListOf<String>()
+        PerformanceCounter.report { report.add(it) }
+        assertTrue(report.any { it.startsWith("Method transformer TimedMethodTransformerTest first performed 3 times") })
+        assertTrue(report.any { it.startsWith("Method transformer TimedMethodTransformerTest second performed 1 times") })
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import junit.framework.TestCase
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+
+class CompilationSchedulerTest : TestCase() {
+    fun testCompilationsRunInParallelWithinBudget() {
+        val scheduler = CompilationScheduler(memoryBudget = 100, defaultEstimate = 50)
+        val first = scheduler.startCompilation(1, "a")
+        val second = scheduler.startCompilation(2, "b")
+        assertEquals(2, scheduler.runningCount)
+        scheduler.finishCompilation(first)
+        scheduler.finishCompilation(second)
+        assertEquals(0, scheduler.runningCount)
+    }
+
+    fun testCompilationExceedingBudgetWaits() {
+        val scheduler = CompilationScheduler(memoryBudget = 100, defaultEstimate = 60)
+        val first = scheduler.startCompilation(1, "a")
+
+        val started = CountDownLatch(1)
+        val waiting = thread {
+            scheduler.finishCompilation(scheduler.startCompilation(2, "b").also { started.countDown() })
+        }
+
+        assertFalse(started.await(200, TimeUnit.MILLISECONDS))
+        assertEquals(1, scheduler.queueDepth)
+
+        scheduler.finishCompilation(first)
+        assertTrue(started.await(10, TimeUnit.SECONDS))
+        waiting.join()
+        assertEquals(0, scheduler.queueDepth)
+    }
+
+    fun testCompilationExceedingWholeBudgetRunsAlone() {
+        val scheduler = CompilationScheduler(memoryBudget = 100, defaultEstimate = 1000)
+        val compilation = scheduler.startCompilation(1, "a")
+        assertEquals(1, scheduler.runningCount)
+        scheduler.finishCompilation(compilation)
+    }
+
+    fun testEstimateIsTakenFromPreviousCompilation() {
+        var usedHeap = 1000L
+        val scheduler = CompilationScheduler(memoryBudget = 10000, defaultEstimate = 10, usedHeap = { usedHeap })
+        val first = scheduler.startCompilation(1, "a")
+        usedHeap = 1500
+        scheduler.sampleMemory()
+        // the peak is kept when the heap shrinks
+        usedHeap = 1100
+        scheduler.finishCompilation(first)
+        assertEquals(500L, first.peakMemory)
+
+        val second = scheduler.startCompilation(2, "a")
+        assertEquals(500L, second.estimate)
+        scheduler.finishCompilation(second)
+
+        val other = scheduler.startCompilation(3, "b")
+        assertEquals(10L, other.estimate)
+        scheduler.finishCompilation(other)
+    }
+
+    fun testGrowthIsAttributedToAllRunningCompilations() {
+        var usedHeap = 0L
+        val scheduler = CompilationScheduler(memoryBudget = 10000, defaultEstimate = 10, usedHeap = { usedHeap })
+        val first = scheduler.startCompilation(1, "a")
+        usedHeap = 100
+        val second = scheduler.startCompilation(2, "b")
+        usedHeap = 300
+        scheduler.sampleMemory()
+        scheduler.finishCompilation(first)
+        scheduler.finishCompilation(second)
+
+        assertEquals(300L, first.peakMemory)
+        assertEquals(200L, second.peakMemory)
+    }
+
+    fun testEstimateIsNotLessThanDefault() {
+        val defaultEstimate = Long.MAX_VALUE / 4
+        val scheduler = CompilationScheduler(memoryBudget = Long.MAX_VALUE / 2, defaultEstimate = defaultEstimate)
+        scheduler.finishCompilation(scheduler.startCompilation(1, "a"))
+
+        val second = scheduler.startCompilation(2, "a")
+        assertEquals(defaultEstimate, second.estimate)
+        scheduler.finishCompilation(second)
+    }
+}
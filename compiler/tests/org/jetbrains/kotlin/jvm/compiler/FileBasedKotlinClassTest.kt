@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.descriptors.SourceElement
+import org.jetbrains.kotlin.load.kotlin.FileBasedKotlinClass
+import org.jetbrains.kotlin.load.kotlin.KotlinJvmBinaryClass
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.org.objectweb.asm.*
+
+class FileBasedKotlinClassTest : TestCase() {
+    private val contents = Pair::class.java.getResourceAsStream("Pair.class").use { it.readBytes() }
+
+    fun testAnnotationsAndMembersAreReadWithHeader() {
+        var fileContentsRead = 0
+        val kotlinClass = createClass { fileContentsRead++; contents }!!
+
+        assertEquals(listOf("kotlin/Metadata"), annotations(kotlinClass))
+        assertTrue(members(kotlinClass).containsAll(listOf("first:Ljava/lang/Object;", "component1()Ljava/lang/Object;")))
+        assertEquals(0, fileContentsRead)
+    }
+
+    fun testMembersAreTheSameAsInFileContents() {
+        val expected = arrayListOf<String>()
+        ClassReader(contents).accept(object : ClassVisitor(Opcodes.API_VERSION) {
+            override fun visitField(access: Int, name: String, desc: String, signature: String?, value: Any?): FieldVisitor? {
+                expected.add("$name:$desc")
+                return null
+            }
+
+            override fun visitMethod(access: Int, name: String, desc: String, signature: String?, exceptions: Array<out String>?): MethodVisitor? {
+                expected.add("$name$desc")
+                return null
+            }
+        }, ClassReader.SKIP_CODE)
+
+        assertEquals(expected, members(createClass { contents }!!))
+    }
+
+    fun testNotKotlinClass() {
+        val javaClassContents = String::class.java.getResourceAsStream("String.class").use { it.readBytes() }
+        assertNull(FileBasedKotlinClass.create(javaClassContents) { _, _, _, _ -> Unit })
+    }
+
+    private fun createClass(getContents: () -> ByteArray): FileBasedKotlinClass? =
+        FileBasedKotlinClass.create(contents) { classId, classVersion, header, innerClasses ->
+            object : FileBasedKotlinClass(classId, classVersion, header, innerClasses) {
+                override val location: String
+                    get() = "Pair.class"
+
+                override fun getFileContents(): ByteArray = getContents()
+                override fun hashCode(): Int = location.hashCode()
+                override fun equals(other: Any?): Boolean = other === this
+                override fun toString(): String = location
+            }
+        }
+
+    private fun annotations(kotlinClass: KotlinJvmBinaryClass): List<String> {
+        val result = arrayListOf<String>()
+        kotlinClass.loadClassAnnotations(object : KotlinJvmBinaryClass.AnnotationVisitor {
+            override fun visitAnnotation(classId: ClassId, source: SourceElement): KotlinJvmBinaryClass.AnnotationArgumentVisitor? {
+                result.add(classId.asString())
+                return null
+            }
+
+            override fun visitEnd() {
+            }
+        }, null)
+        return result
+    }
+
+    private fun members(kotlinClass: KotlinJvmBinaryClass): List<String> {
+        val result = arrayListOf<String>()
+        kotlinClass.visitMembers(object : KotlinJvmBinaryClass.MemberVisitor {
+            override fun visitMethod(name: Name, desc: String): KotlinJvmBinaryClass.MethodAnnotationVisitor? {
+                result.add("$name$desc")
+                return null
+            }
+
+            override fun visitField(name: Name, desc: String, initializer: Any?): KotlinJvmBinaryClass.AnnotationVisitor? {
+                result.add("$name:$desc")
+                return null
+            }
+        }, null)
+        return result
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.library.impl
+
+import junit.framework.TestCase
+
+class CombinedIrFileAccessorTest : TestCase() {
+    fun testSkippedDeclarationsAreNotIndexed() {
+        val reader = write(4) {
+            skipDeclaration()
+            addDeclaration(DeclarationId(2, false), bytes(2))
+            skipDeclaration()
+            addDeclaration(DeclarationId(1, false), bytes(1))
+        }
+
+        assertEquals(bytes(1).toList(), reader.declarationBytes(DeclarationId(1, false)).toList())
+        assertEquals(bytes(2).toList(), reader.declarationBytes(DeclarationId(2, false)).toList())
+        assertNoDeclaration(reader, DeclarationId(-1, true))
+        assertNoDeclaration(reader, DeclarationId(-1, false))
+    }
+
+    fun testLocalAndNonLocalDeclarationsWithSameId() {
+        val reader = write(4) {
+            addDeclaration(DeclarationId(5, true), bytes(50))
+            addDeclaration(DeclarationId(5, false), bytes(51))
+            addDeclaration(DeclarationId(3, true), bytes(30))
+            addDeclaration(DeclarationId(7, false), bytes(70))
+        }
+
+        assertEquals(bytes(50).toList(), reader.declarationBytes(DeclarationId(5, true)).toList())
+        assertEquals(bytes(51).toList(), reader.declarationBytes(DeclarationId(5, false)).toList())
+        assertEquals(bytes(30).toList(), reader.declarationBytes(DeclarationId(3, true)).toList())
+        assertEquals(bytes(70).toList(), reader.declarationBytes(DeclarationId(7, false)).toList())
+        assertNoDeclaration(reader, DeclarationId(3, false))
+        assertNoDeclaration(reader, DeclarationId(7, true))
+    }
+
+    fun testLastDeclarationWithDuplicateIdIsTaken() {
+        val reader = write(5) {
+            addDeclaration(DeclarationId(4, false), bytes(1))
+            addDeclaration(DeclarationId(2, false), bytes(2))
+            addDeclaration(DeclarationId(4, false), bytes(3))
+            addDeclaration(DeclarationId(9, false), bytes(4))
+            addDeclaration(DeclarationId(4, false), bytes(5))
+        }
+
+        assertEquals(bytes(5).toList(), reader.declarationBytes(DeclarationId(4, false)).toList())
+        assertEquals(bytes(2).toList(), reader.declarationBytes(DeclarationId(2, false)).toList())
+        assertEquals(bytes(4).toList(), reader.declarationBytes(DeclarationId(9, false)).toList())
+    }
+
+    private fun write(declarationCount: Int, write: CombinedIrFileWriter.() -> Unit): CombinedIrFileReader {
+        val writer = CombinedIrFileWriter(declarationCount)
+        writer.write()
+        return CombinedIrFileReader(writer.finishWriting())
+    }
+
+    // Declarations of different sizes, so that a wrong record is noticed
+    private fun bytes(n: Int) = ByteArray(n) { n.toByte() }
+
+    private fun assertNoDeclaration(reader: CombinedIrFileReader, id: DeclarationId) {
+        try {
+            reader.declarationBytes(id)
+            fail("No declaration expected for $id")
+        }
+        catch (e: Error) {
+            assertEquals("No declaration with $id here", e.message)
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.parsing
+
+import com.intellij.lexer.Lexer
+import junit.framework.TestCase
+import org.jetbrains.kotlin.lexer.KotlinLexer
+
+class SharedTokenCacheTest : TestCase() {
+    private val text = """
+        package test
+
+        class Foo(val x: Int) {
+            fun bar() = "${'$'}{x + 1} ${'$'}x" /* comment */
+        }
+    """.trimIndent()
+
+    override fun setUp() {
+        super.setUp()
+        SharedTokenCache.clear()
+        SharedTokenCache.maxSizeInBytes = 1024 * 1024
+    }
+
+    override fun tearDown() {
+        SharedTokenCache.maxSizeInBytes = 0
+        SharedTokenCache.clear()
+        super.tearDown()
+    }
+
+    fun testTokensAreTheSameAsLexed() {
+        val expected = tokens(KotlinLexer(), text)
+        assertEquals(expected, tokens(SharedTokenCache.getLexer("test.kt", text), text))
+        assertEquals(expected, tokens(SharedTokenCache.getLexer("test.kt", text), text))
+        assertStatistics("1 hits, 1 misses")
+    }
+
+    fun testChangedTextIsLexedAgain() {
+        SharedTokenCache.getLexer("test.kt", text)
+        val changedText = text.replace("bar", "baz")
+        assertEquals(tokens(KotlinLexer(), changedText), tokens(SharedTokenCache.getLexer("test.kt", changedText), changedText))
+        assertStatistics("0 hits, 2 misses")
+    }
+
+    fun testChangedTextReplacesPreviousTokens() {
+        val changedText = text.replace("bar", "baz")
+        SharedTokenCache.getLexer("test.kt", text)
+        SharedTokenCache.getLexer("test.kt", changedText)
+        SharedTokenCache.getLexer("other.kt", text)
+
+        // Only tokens of the last text of a file are kept
+        assertEquals(tokens(KotlinLexer(), text), tokens(SharedTokenCache.getLexer("test.kt", text), text))
+        assertStatistics("0 hits, 4 misses (0% hit rate), 0 evictions, 2 entries")
+    }
+
+    fun testSizeIsBounded() {
+        SharedTokenCache.maxSizeInBytes = 1024
+        SharedTokenCache.getLexer("first.kt", text)
+        SharedTokenCache.getLexer("second.kt", text)
+        SharedTokenCache.getLexer("first.kt", text)
+        assertStatistics("0 hits, 3 misses (0% hit rate), 2 evictions")
+    }
+
+    private fun tokens(lexer: Lexer, text: CharSequence): List<String> {
+        val result = arrayListOf<String>()
+        lexer.start(text)
+        while (lexer.tokenType != null) {
+            result.add("${lexer.tokenType} ${lexer.tokenStart} ${lexer.tokenEnd}")
+            lexer.advance()
+        }
+        return result
+    }
+
+    private fun assertStatistics(expected: String) {
+        val statistics = arrayListOf<String>()
+        SharedTokenCache.reportStatistics { statistics.add(it) }
+        assertTrue(statistics.single(), statistics.single().contains(expected))
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.storage;
+
+import kotlin.jvm.functions.Function0;
+import kotlin.jvm.functions.Function1;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LockFreeStorageManagerTest extends StorageManagerTest {
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+    private static final int SCOPE_COUNT = 200;
+    private static final int NAMES_PER_SCOPE = 100;
+
+    @Override
+    protected StorageManager createStorageManager() {
+        return new LockFreeStorageManager("LockFreeStorageManagerTest");
+    }
+
+    public void testLazyValueIsComputedOnceUnderContention() throws Exception {
+        StorageManager m = createStorageManager();
+        AtomicInteger computeCount = new AtomicInteger();
+        AtomicInteger postComputeCount = new AtomicInteger();
+        NotNullLazyValue<Object> value = m.createLazyValueWithPostCompute(
+                () -> {
+                    computeCount.incrementAndGet();
+                    return new Object();
+                },
+                null,
+                o -> {
+                    postComputeCount.incrementAndGet();
+                    return kotlin.Unit.INSTANCE;
+                }
+        );
+
+        List<Object> results = runConcurrently(16, () -> {
+            Object result = value.invoke();
+            // The value is published after postCompute
+            assertEquals(1, postComputeCount.get());
+            return result;
+        });
+        for (Object result : results) {
+            assertSame(results.get(0), result);
+        }
+        assertEquals(1, computeCount.get());
+    }
+
+    public void testMemoizedFunctionIsComputedOnceUnderContention() throws Exception {
+        StorageManager m = createStorageManager();
+        AtomicInteger computeCount = new AtomicInteger();
+        MemoizedFunctionToNotNull<Integer, Object> f = m.createMemoizedFunction(key -> {
+            computeCount.incrementAndGet();
+            return new Object();
+        });
+
+        List<List<Object>> results = runConcurrently(16, () -> {
+            List<Object> values = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                values.add(f.invoke(i));
+            }
+            return values;
+        });
+        for (List<Object> values : results) {
+            for (int i = 0; i < values.size(); i++) {
+                assertSame(results.get(0).get(i), values.get(i));
+            }
+        }
+        assertEquals(100, computeCount.get());
+    }
+
+    public void testValueComputedByAnotherThreadIsAwaited() throws Exception {
+        StorageManager m = createStorageManager();
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        NotNullLazyValue<String> value = m.createLazyValue(() -> {
+            computing.countDown();
+            await(released);
+            return "ok";
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> first = executor.submit(value::invoke);
+            await(computing);
+            assertTrue(value.isComputing());
+
+            // Another thread is computing the value, which is not a recursive call for this thread
+            Future<String> second = executor.submit(value::invoke);
+            released.countDown();
+            assertEquals("ok", value.invoke());
+            assertEquals("ok", first.get(1, TimeUnit.MINUTES));
+            assertEquals("ok", second.get(1, TimeUnit.MINUTES));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    // Two values depending on each other, which are computed in two threads: the thread which closes the cycle gets a recursive call
+    public void testCycleBetweenThreadsIsRecursion() throws Exception {
+        StorageManager m = createStorageManager();
+        CountDownLatch started = new CountDownLatch(2);
+        NotNullLazyValue<String>[] values = new NotNullLazyValue[2];
+        for (int i = 0; i < 2; i++) {
+            String name = i == 0 ? "a" : "b";
+            int other = 1 - i;
+            values[i] = m.createRecursionTolerantLazyValue(() -> {
+                started.countDown();
+                await(started);
+                return name + "(" + values[other].invoke() + ")";
+            }, name + "?");
+        }
+
+        AtomicInteger nextValue = new AtomicInteger();
+        List<String> results = runConcurrently(2, () -> values[nextValue.getAndIncrement()].invoke());
+        String a = values[0].invoke();
+        String b = values[1].invoke();
+        assertTrue(a + ", " + b, a.equals("a(b(a?))") && b.equals("b(a?)") || a.equals("a(b?)") && b.equals("b(a(b?))"));
+        assertEquals(new HashSet<>(Arrays.asList(a, b)), new HashSet<>(results));
+    }
+
+    // A thread in a compute() block waits for a value which is computed by another thread calling compute()
+    public void testComputeBlockWaitingForValueIsReentrant() throws Exception {
+        StorageManager m = createStorageManager();
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch inBlock = new CountDownLatch(1);
+        NotNullLazyValue<String> value = m.createLazyValue(() -> {
+            computing.countDown();
+            await(inBlock);
+            return m.compute(() -> "value");
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> computed = executor.submit(value::invoke);
+            await(computing);
+            String result = m.compute(() -> {
+                inBlock.countDown();
+                return "block(" + value.invoke() + ")";
+            });
+            assertEquals("block(value)", result);
+            assertEquals("value", computed.get(1, TimeUnit.MINUTES));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    // Prints the throughput of deserialized-scope-like lookups (a memoized function per scope, keyed by name) for both storage managers
+    public void testContentionScaling() throws Exception {
+        for (int threads : THREAD_COUNTS) {
+            long lockBased = measureScopeLookups(new LockBasedStorageManager("LockBased"), threads);
+            long lockFree = measureScopeLookups(createStorageManager(), threads);
+            System.out.println(String.format(
+                    "%2d thread(s): LockBasedStorageManager %6d ms, LockFreeStorageManager %6d ms", threads, lockBased, lockFree
+            ));
+        }
+    }
+
+    private static long measureScopeLookups(StorageManager m, int threads) throws Exception {
+        List<MemoizedFunctionToNotNull<String, List<String>>> scopes = new ArrayList<>();
+        for (int i = 0; i < SCOPE_COUNT; i++) {
+            NotNullLazyValue<String> scopeName = m.createLazyValue(() -> "scope");
+            scopes.add(m.createMemoizedFunction(new Function1<String, List<String>>() {
+                @Override
+                public List<String> invoke(String name) {
+                    return Collections.singletonList(scopeName.invoke() + "." + name);
+                }
+            }));
+        }
+
+        long start = System.nanoTime();
+        runConcurrently(threads, () -> {
+            int found = 0;
+            for (MemoizedFunctionToNotNull<String, List<String>> scope : scopes) {
+                for (int j = 0; j < NAMES_PER_SCOPE; j++) {
+                    found += scope.invoke("name" + j).size();
+                }
+            }
+            return found;
+        });
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    // Deserialized-scope-like lookups: a memoized function per scope, keyed by name, which reads a lazy value of the scope
+    public void testConcurrentScopeLookupsSeeSameValues() throws Exception {
+        StorageManager m = createStorageManager();
+        List<MemoizedFunctionToNotNull<String, List<String>>> scopes = new ArrayList<>();
+        for (int i = 0; i < SCOPE_COUNT; i++) {
+            String scopeId = "scope" + i;
+            NotNullLazyValue<String> scopeName = m.createLazyValue(() -> scopeId);
+            scopes.add(m.createMemoizedFunction(new Function1<String, List<String>>() {
+                @Override
+                public List<String> invoke(String name) {
+                    return Collections.singletonList(scopeName.invoke() + "." + name);
+                }
+            }));
+        }
+
+        List<List<List<String>>> results = runConcurrently(8, () -> {
+            List<List<String>> values = new ArrayList<>();
+            for (MemoizedFunctionToNotNull<String, List<String>> scope : scopes) {
+                for (int j = 0; j < NAMES_PER_SCOPE; j++) {
+                    values.add(scope.invoke("name" + j));
+                }
+            }
+            return values;
+        });
+
+        List<List<String>> expected = results.get(0);
+        assertEquals(SCOPE_COUNT * NAMES_PER_SCOPE, expected.size());
+        assertEquals(Collections.singletonList("scope1.name2"), expected.get(NAMES_PER_SCOPE + 2));
+        for (List<List<String>> values : results) {
+            for (int i = 0; i < values.size(); i++) {
+                assertSame(expected.get(i), values.get(i));
+            }
+        }
+    }
+
+    private static <T> List<T> runConcurrently(int threads, Function0<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(threads);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    return task.invoke();
+                }));
+            }
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
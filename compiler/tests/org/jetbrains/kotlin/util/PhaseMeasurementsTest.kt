@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.util
+
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
+import org.jetbrains.kotlin.config.CompilerConfiguration
+import org.jetbrains.kotlin.config.measurePhase
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class PhaseMeasurementsTest {
+    @Test
+    fun testMeasurementsAreSummedPerModuleAndPhase() {
+        val measurements = PhaseMeasurements()
+        repeat(3) {
+            measurements.measure("a", "Analysis") { Thread.sleep(1) }
+        }
+        measurements.measure("b", "Analysis") { ByteArray(1 shl 20) }
+        measurements.measure("a", "Code generation") {}
+
+        val result = measurements.getMeasurements()
+        assertEquals(listOf("a" to "Analysis", "b" to "Analysis", "a" to "Code generation"), result.map { it.module to it.phase })
+        assertEquals(listOf(3, 1, 1), result.map { it.count })
+        assertTrue(result[0].wallTimeNanos >= 3_000_000)
+    }
+
+    @Test
+    fun testAddedMeasurementsAreSummed() {
+        val measurements = PhaseMeasurements()
+        measurements.add("a", "Parsing", 10, 1_000)
+        measurements.measure("a", "Parsing") {}
+        measurements.add("a", "Parsing", 5, 2_000)
+
+        val measurement = measurements.getMeasurements().single()
+        assertEquals(16, measurement.count)
+        assertTrue(measurement.wallTimeNanos >= 3_000)
+    }
+
+    @Test
+    fun testMeasurementIsRecordedOnException() {
+        val measurements = PhaseMeasurements()
+        try {
+            measurements.measure(null, "Analysis") { throw IllegalStateException() }
+        } catch (e: IllegalStateException) {
+        }
+
+        assertEquals(1, measurements.getMeasurements().single().count)
+    }
+
+    @Test
+    fun testConfigurationMeasurePhase() {
+        val configuration = CompilerConfiguration()
+        assertEquals(42, configuration.measurePhase("Analysis") { 42 })
+
+        val measurements = PhaseMeasurements()
+        configuration.put(CommonConfigurationKeys.PHASE_MEASUREMENTS, measurements)
+        configuration.put(CommonConfigurationKeys.MODULE_NAME, "main")
+        assertEquals(42, configuration.measurePhase("Analysis") { 42 })
+        assertEquals("main", measurements.getMeasurements().single().module)
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import junit.framework.TestCase;
+
+import java.util.*;
+
+public class ColumnarSlicedMapTest extends TestCase {
+    private final WritableSlice<String, Integer> COLUMN = Slices.<String, Integer>sliceBuilder().setDebugName("COLUMN").build();
+    private final WritableSlice<String, Integer> OTHER = Slices.<String, Integer>sliceBuilder().setDebugName("OTHER").build();
+
+    private final ColumnarSlicedMap map = new ColumnarSlicedMap(false, Collections.singletonList(COLUMN));
+
+    public void testPutAndGet() {
+        map.put(COLUMN, "a", 1);
+        map.put(OTHER, "a", 2);
+        map.put(COLUMN, "b", 3);
+
+        assertEquals(1, (int) map.get(COLUMN, "a"));
+        assertEquals(2, (int) map.get(OTHER, "a"));
+        assertEquals(3, (int) map.get(COLUMN, "b"));
+        assertNull(map.get(OTHER, "b"));
+        assertEquals(1, (int) map.get(COLUMN.makeRawValueVersion(), "a"));
+
+        map.put(COLUMN, "a", 1);
+        assertEquals(1, (int) map.get(COLUMN, "a"));
+    }
+
+    public void testFurtherLookupInColumn() {
+        @SuppressWarnings("unchecked")
+        WritableSlice<String, Integer> FURTHER = Slices.<String, Integer>sliceBuilder()
+                .setFurtherLookupSlices(new ReadOnlySlice[] {COLUMN})
+                .setDebugName("FURTHER").build();
+
+        map.put(COLUMN, "a", 1);
+        assertEquals(1, (int) map.get(FURTHER, "a"));
+    }
+
+    public void testForEachAndSliceContents() {
+        map.put(COLUMN, "a", 1);
+        map.put(OTHER, "a", 2);
+        map.put(COLUMN, "b", 3);
+
+        Set<String> entries = new HashSet<>();
+        map.forEach((slice, key, value) -> {
+            entries.add(slice + " " + key + " " + value);
+            return null;
+        });
+        assertEquals(new HashSet<>(Arrays.asList("COLUMN a 1", "OTHER a 2", "COLUMN b 3")), entries);
+
+        assertEquals(2, map.getSliceContents(COLUMN).size());
+        assertEquals(1, map.getSliceContents(OTHER).size());
+
+        map.clear();
+        assertNull(map.get(COLUMN, "a"));
+        assertNull(map.get(OTHER, "a"));
+    }
+
+    public void testSliceStatistics() {
+        map.put(COLUMN, "a", 1);
+        map.put(COLUMN, "b", 2);
+        map.put(OTHER, "a", 3);
+
+        Map<String, Integer> entries = new HashMap<>();
+        for (ColumnarSlicedMap.SliceStatistics statistics : map.getSliceStatistics()) {
+            entries.put(statistics.getSlice().toString(), statistics.getEntries());
+            assertEquals(statistics.getSlice() == COLUMN, statistics.isColumn());
+            assertTrue(statistics.getEstimatedBytes() > 0);
+        }
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("COLUMN", 2);
+        expected.put("OTHER", 1);
+        assertEquals(expected, entries);
+    }
+
+    public void testSliceStatisticsEstimateColumnsAndOtherSlicesAlike() {
+        map.put(COLUMN, "a", 1);
+        map.put(COLUMN, "b", 2);
+        map.put(OTHER, "a", 3);
+        map.put(OTHER, "b", 4);
+
+        List<ColumnarSlicedMap.SliceStatistics> statistics = map.getSliceStatistics();
+        assertEquals(2, statistics.size());
+        assertEquals(statistics.get(0).getEstimatedBytes(), statistics.get(1).getEstimatedBytes());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.utils
+
+import com.intellij.mock.MockProject
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.util.Disposer
+import com.intellij.psi.PsiElement
+import com.intellij.psi.impl.FakePsiElement
+import org.jetbrains.kotlin.utils.DeclarationProfiler.Kind
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import kotlin.concurrent.thread
+
+class DeclarationProfilerTest {
+    private class Declaration : FakePsiElement() {
+        override fun getParent(): PsiElement? = null
+    }
+
+    private val disposable: Disposable = Disposer.newDisposable()
+
+    @After
+    fun tearDown() {
+        Disposer.dispose(disposable)
+    }
+
+    @Test
+    fun testNestedTimeIsAttributedToNestedDeclaration() {
+        val project = MockProject(null, disposable)
+        val outer = Declaration()
+        val inner = Declaration()
+
+        val profiler = DeclarationProfiler.start(project)
+        profiler.measure(outer, Kind.BODY_RESOLVE) {
+            profiler.measure(inner, Kind.BODY_RESOLVE) { Thread.sleep(30) }
+            DeclarationProfiler.measureNested(Kind.INFERENCE) { Thread.sleep(5) }
+        }
+        val entries = DeclarationProfiler.stop(project)
+
+        assertEquals(listOf<PsiElement>(inner, outer), entries.map { it.declaration })
+        val (innerEntry, outerEntry) = entries
+        assertTrue(innerEntry.getTimeNanos(Kind.BODY_RESOLVE) >= 30_000_000)
+        assertTrue(outerEntry.getTimeNanos(Kind.BODY_RESOLVE) < innerEntry.getTimeNanos(Kind.BODY_RESOLVE))
+        assertTrue(outerEntry.getTimeNanos(Kind.INFERENCE) >= 5_000_000)
+        assertEquals(0L, outerEntry.getTimeNanos(Kind.CODEGEN))
+    }
+
+    @Test
+    fun testCompilationsAreProfiledSeparately() {
+        val projects = listOf(MockProject(null, disposable), MockProject(null, disposable))
+        val declarations = projects.map { Declaration() }
+
+        val profilers = projects.map { DeclarationProfiler.start(it) }
+        projects.indices.map { index ->
+            thread {
+                profilers[index].measure(declarations[index], Kind.BODY_RESOLVE) {
+                    DeclarationProfiler.measureNested(Kind.INFERENCE) { Thread.sleep(10) }
+                }
+            }
+        }.forEach(Thread::join)
+
+        for ((index, project) in projects.withIndex()) {
+            val entries = DeclarationProfiler.stop(project)
+            assertEquals(listOf<PsiElement>(declarations[index]), entries.map { it.declaration })
+            assertTrue(entries.single().getTimeNanos(Kind.INFERENCE) >= 10_000_000)
+        }
+    }
+
+    @Test
+    fun testProjectIsProfiledByOneCompilationAtATime() {
+        val project = MockProject(null, disposable)
+        assertSame(DeclarationProfiler.DISABLED, DeclarationProfiler.getInstance(project))
+
+        val profiler = DeclarationProfiler.start(project)
+        try {
+            DeclarationProfiler.start(project)
+            fail("Profiler is started twice")
+        } catch (e: IllegalStateException) {
+            assertSame(profiler, DeclarationProfiler.getInstance(project))
+        }
+
+        DeclarationProfiler.stop(project)
+        assertSame(DeclarationProfiler.DISABLED, DeclarationProfiler.getInstance(project))
+    }
+
+    @Test
+    fun testNothingIsMeasuredWithoutDeclaration() {
+        val project = MockProject(null, disposable)
+        DeclarationProfiler.DISABLED.measure(Declaration(), Kind.CODEGEN) {}
+
+        val profiler = DeclarationProfiler.start(project)
+        profiler.measure(null, Kind.CODEGEN) {}
+        DeclarationProfiler.measureNested(Kind.INFERENCE) {}
+
+        assertTrue(DeclarationProfiler.stop(project).isEmpty())
+        assertTrue(DeclarationProfiler.DISABLED.getEntries().isEmpty())
+    }
+}
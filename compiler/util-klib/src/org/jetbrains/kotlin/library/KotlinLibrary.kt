@@ -3,6 +3,7 @@ package org.jetbrains.kotlin.library
 import org.jetbrains.kotlin.konan.file.File
 import org.jetbrains.kotlin.konan.properties.Properties
 import org.jetbrains.kotlin.konan.properties.propertyList
+import java.nio.ByteBuffer
 
 const val KLIB_PROPERTY_ABI_VERSION = "abi_version"
 const val KLIB_PROPERTY_COMPILER_VERSION = "compiler_version"
@@ -37,6 +38,13 @@ interface IrLibrary {
     fun symbol(index: Int): ByteArray
     fun type(index: Int): ByteArray
     fun string(index: Int): ByteArray
+
+    // Read-only views of the library files which may be read from several threads at once. Implementations should override them
+    // to avoid copying, by default they wrap the copied arrays
+    fun irDeclarationBuffer(index: Long, isLocal: Boolean): ByteBuffer = ByteBuffer.wrap(irDeclaration(index, isLocal)).asReadOnlyBuffer()
+    fun symbolBuffer(index: Int): ByteBuffer = ByteBuffer.wrap(symbol(index)).asReadOnlyBuffer()
+    fun typeBuffer(index: Int): ByteBuffer = ByteBuffer.wrap(type(index)).asReadOnlyBuffer()
+    fun stringBuffer(index: Int): ByteBuffer = ByteBuffer.wrap(string(index)).asReadOnlyBuffer()
 }
 
 val BaseKotlinLibrary.uniqueName: String
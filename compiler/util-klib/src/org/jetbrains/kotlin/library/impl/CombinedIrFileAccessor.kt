@@ -18,32 +18,75 @@ package org.jetbrains.kotlin.library.impl
 
 import org.jetbrains.kotlin.konan.file.File
 import java.io.RandomAccessFile
+import java.nio.ByteBuffer
 import java.nio.channels.FileChannel
+import java.util.*
 
 data class DeclarationId(val id: Long, val isLocal: Boolean)
 
+/**
+ * Like [SimpleIrTableFileReader], may be used from several threads at once. Index records are not copied from the mapped buffer:
+ * only numbers of the records sorted by declaration ids are kept, separately for local and non-local declarations.
+ */
 class CombinedIrFileReader(file: File) {
     private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
-    private val declarationToOffsetSize = mutableMapOf<DeclarationId, Pair<Int, Int>>()
+
+    private val declarations: DeclarationIndex
+    private val localDeclarations: DeclarationIndex
 
     init {
-        val declarationsCount = buffer.int
-        for (i in 0 until declarationsCount) {
-            val id = buffer.long
-            val isLocal = buffer.int != 0
-            val offset = buffer.int
-            val size = buffer.int
-            declarationToOffsetSize[DeclarationId(id, isLocal)] = offset to size
+        val declarationsCount = buffer.getInt(0)
+        var localCount = 0
+        for (record in 0 until declarationsCount) {
+            if (isWritten(record) && isLocal(record)) localCount++
+        }
+        val localRecords = IntArray(localCount)
+        val records = IntArray(declarationsCount - localCount)
+        var localIndex = 0
+        var index = 0
+        for (record in 0 until declarationsCount) {
+            // Skipped declarations leave empty records
+            if (!isWritten(record)) continue
+            if (isLocal(record)) localRecords[localIndex++] = record else records[index++] = record
         }
+        declarations = createIndex(records.copyOf(index))
+        localDeclarations = createIndex(localRecords)
     }
 
-    fun declarationBytes(id: DeclarationId): ByteArray {
-        val offsetSize = declarationToOffsetSize[id] ?: throw Error("No declaration with $id here")
-        val result = ByteArray(offsetSize.second)
-        buffer.position(offsetSize.first)
-        buffer.get(result, 0, offsetSize.second)
-        return result
+    fun declarationBuffer(id: DeclarationId): ByteBuffer {
+        val index = if (id.isLocal) localDeclarations else declarations
+        val position = Arrays.binarySearch(index.ids, id.id)
+        if (position < 0) throw Error("No declaration with $id here")
+        val record = index.records[position]
+        return buffer.sliceAt(buffer.getInt(recordOffset(record) + 12), buffer.getInt(recordOffset(record) + 16))
+    }
+
+    fun declarationBytes(id: DeclarationId): ByteArray = declarationBuffer(id).readBytes()
+
+    private class DeclarationIndex(val ids: LongArray, val records: IntArray)
+
+    // Records are in the order they were written in. If the same id is written more than once, the last record is taken
+    private fun createIndex(records: IntArray): DeclarationIndex {
+        val sortedIds = LongArray(records.size) { declarationId(records[it]) }.apply { sort() }
+        var size = 0
+        for (id in sortedIds) {
+            if (size == 0 || sortedIds[size - 1] != id) sortedIds[size++] = id
+        }
+        val ids = sortedIds.copyOf(size)
+        val sortedRecords = IntArray(size)
+        for (record in records) {
+            sortedRecords[Arrays.binarySearch(ids, declarationId(record))] = record
+        }
+        return DeclarationIndex(ids, sortedRecords)
     }
+
+    private fun recordOffset(record: Int) = INDEX_HEADER_SIZE + SINGLE_INDEX_RECORD_SIZE * record
+
+    private fun declarationId(record: Int) = buffer.getLong(recordOffset(record))
+
+    private fun isLocal(record: Int) = buffer.getInt(recordOffset(record) + 8) != 0
+
+    private fun isWritten(record: Int) = buffer.getInt(recordOffset(record) + 12) >= 0
 }
 
 private const val SINGLE_INDEX_RECORD_SIZE = 20  // sizeof(Long) + 3 * sizeof(Int).
@@ -91,6 +91,14 @@ open class IrLibraryImpl(
 
     override fun string(index: Int) = strings.tableItemBytes(index)
 
+    override fun irDeclarationBuffer(index: Long, isLocal: Boolean) = combinedDeclarations.declarationBuffer(DeclarationId(index, isLocal))
+
+    override fun symbolBuffer(index: Int) = symbols.tableItemBuffer(index)
+
+    override fun typeBuffer(index: Int) = types.tableItemBuffer(index)
+
+    override fun stringBuffer(index: Int) = strings.tableItemBuffer(index)
+
     private val combinedDeclarations: CombinedIrFileReader by lazy {
         CombinedIrFileReader(access.realFiles {
             it.irDeclarations
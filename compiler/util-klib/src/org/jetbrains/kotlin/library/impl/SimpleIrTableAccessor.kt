@@ -7,31 +7,47 @@ package org.jetbrains.kotlin.library.impl
 
 import org.jetbrains.kotlin.konan.file.File
 import java.io.RandomAccessFile
+import java.nio.ByteBuffer
 import java.nio.channels.FileChannel
 import java.nio.file.Files
 
+/**
+ * The mapped buffer is only accessed with absolute offsets and never changes its position, so the reader may be used from
+ * several threads at once. Items are handed out as slices of the mapped buffer, [tableItemBytes] copies them.
+ */
 class SimpleIrTableFileReader(file: File) {
     private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
     private val indexToOffset: IntArray
 
     init {
-        val count = buffer.int
+        val count = buffer.getInt(0)
         indexToOffset = IntArray(count + 1)
         indexToOffset[0] = 4 * (count + 1)
         for (i in 0 until count) {
-            val size = buffer.int
+            val size = buffer.getInt(4 * (i + 1))
             indexToOffset[i + 1] = indexToOffset[i] + size
         }
     }
 
-    fun tableItemBytes(id: Int): ByteArray {
+    fun tableItemBuffer(id: Int): ByteBuffer {
         val offset = indexToOffset[id]
-        val size = indexToOffset[id + 1] - offset
-        val result = ByteArray(size)
-        buffer.position(offset)
-        buffer.get(result, 0, size)
-        return result
+        return buffer.sliceAt(offset, indexToOffset[id + 1] - offset)
     }
+
+    fun tableItemBytes(id: Int): ByteArray = tableItemBuffer(id).readBytes()
+}
+
+internal fun ByteBuffer.sliceAt(offset: Int, size: Int): ByteBuffer {
+    val duplicate = duplicate()
+    duplicate.position(offset)
+    duplicate.limit(offset + size)
+    return duplicate.slice()
+}
+
+internal fun ByteBuffer.readBytes(): ByteArray {
+    val result = ByteArray(remaining())
+    duplicate().get(result)
+    return result
 }
 
 class SimpleIrTableFileWriter(val tableName: String, val itemsCount: Int) {
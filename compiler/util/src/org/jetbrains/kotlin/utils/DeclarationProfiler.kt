@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.utils
+
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Key
+import com.intellij.psi.PsiElement
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Attributes time spent on body resolution, inference, control flow analysis and code generation to source declarations,
+ * to find declarations which make compilation of a module slow.
+ *
+ * A profiler belongs to one compilation: it's attached to the project of the compilation by [start], and components of the
+ * compilation get it with [getInstance], so compilations running in the same process (e.g. in the compile daemon) are profiled
+ * separately. Compilations which don't profile declarations get [DISABLED].
+ *
+ * Time of a measurement nested into another one (e.g. of a local class or of a lambda analyzed during inference) is excluded
+ * from the outer measurement, so each declaration gets only its own time. A measurement without a declaration is attributed to
+ * the declaration of the innermost measurement in the current thread and recorded by its profiler, and is skipped if there is none.
+ * Declarations computed lazily (e.g. an implicit return type of a function) are attributed to the declaration which requested them.
+ */
+class DeclarationProfiler private constructor(val isEnabled: Boolean) {
+    enum class Kind(val description: String) {
+        BODY_RESOLVE("body resolve"),
+        INFERENCE("inference"),
+        CONTROL_FLOW_ANALYSIS("control flow analysis"),
+        CODEGEN("codegen")
+    }
+
+    class Entry(val declaration: PsiElement) {
+        private val timeNanos = LongArray(Kind.values().size)
+
+        val totalTimeNanos: Long
+            get() = timeNanos.sum()
+
+        fun getTimeNanos(kind: Kind): Long = timeNanos[kind.ordinal]
+
+        internal fun addTime(kind: Kind, nanos: Long) {
+            timeNanos[kind.ordinal] += nanos
+        }
+    }
+
+    @PublishedApi
+    internal class Frame(val profiler: DeclarationProfiler, val declaration: PsiElement) {
+        val startNanos = System.nanoTime()
+        var nestedTimeNanos = 0L
+    }
+
+    private val entries = LinkedHashMap<PsiElement, Entry>()
+
+    // Returns entries of all measured declarations sorted by their total time in descending order
+    fun getEntries(): List<Entry> = synchronized(entries) {
+        entries.values.sortedByDescending(Entry::totalTimeNanos)
+    }
+
+    // Java callers should check isEnabled before creating the block, so that nothing is allocated when the profiler is disabled
+    inline fun <T> measure(declaration: PsiElement?, kind: Kind, block: () -> T): T {
+        if (!isEnabled) return block()
+
+        val frame = enterFrame(this, declaration) ?: return block()
+        try {
+            return block()
+        } finally {
+            exitFrame(frame, kind)
+        }
+    }
+
+    private fun addTime(declaration: PsiElement, kind: Kind, nanos: Long) {
+        synchronized(entries) {
+            entries.getOrPut(declaration) { Entry(declaration) }.addTime(kind, nanos)
+        }
+    }
+
+    companion object {
+        @JvmField
+        val DISABLED = DeclarationProfiler(isEnabled = false)
+
+        private val PROFILER_KEY = Key.create<DeclarationProfiler>("DECLARATION_PROFILER")
+
+        // Measurements in progress in all threads, nested measurements don't look for the current thread's frames if there are none
+        @PublishedApi
+        internal val framesInProgress = AtomicInteger()
+
+        private val frames = object : ThreadLocal<ArrayList<Frame>>() {
+            override fun initialValue() = ArrayList<Frame>()
+        }
+
+        @JvmStatic
+        fun getInstance(project: Project): DeclarationProfiler = project.getUserData(PROFILER_KEY) ?: DISABLED
+
+        fun start(project: Project): DeclarationProfiler {
+            check(project.getUserData(PROFILER_KEY) == null) { "Declarations of the project are already profiled" }
+            return DeclarationProfiler(isEnabled = true).also { project.putUserData(PROFILER_KEY, it) }
+        }
+
+        fun stop(project: Project): List<Entry> {
+            val profiler = project.getUserData(PROFILER_KEY) ?: return emptyList()
+            project.putUserData(PROFILER_KEY, null)
+            return profiler.getEntries()
+        }
+
+        // Whether a measurement of any compilation is in progress in the current thread
+        val isMeasuring: Boolean
+            get() = framesInProgress.get() > 0 && frames.get().isNotEmpty()
+
+        // Measures a part of the innermost measurement in the current thread, inlined so that nothing is allocated if there is none
+        inline fun <T> measureNested(kind: Kind, block: () -> T): T {
+            if (framesInProgress.get() == 0) return block()
+
+            val frame = enterFrame(null, null) ?: return block()
+            try {
+                return block()
+            } finally {
+                exitFrame(frame, kind)
+            }
+        }
+
+        // A frame without a declaration belongs to the innermost frame's declaration and profiler
+        @PublishedApi
+        internal fun enterFrame(profiler: DeclarationProfiler?, declaration: PsiElement?): Frame? {
+            val stack = frames.get()
+            val frame = if (declaration != null && profiler != null) {
+                Frame(profiler, declaration)
+            } else {
+                val outer = stack.lastOrNull() ?: return null
+                Frame(outer.profiler, outer.declaration)
+            }
+            stack.add(frame)
+            framesInProgress.incrementAndGet()
+            return frame
+        }
+
+        @PublishedApi
+        internal fun exitFrame(frame: Frame, kind: Kind) {
+            val time = System.nanoTime() - frame.startNanos
+            val stack = frames.get()
+            stack.removeAt(stack.lastIndex)
+            framesInProgress.decrementAndGet()
+            stack.lastOrNull()?.let { it.nestedTimeNanos += time }
+            frame.profiler.addTime(frame.declaration, kind, time - frame.nestedTimeNanos)
+        }
+    }
+}
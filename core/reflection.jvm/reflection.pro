@@ -25,13 +25,6 @@
     ** toString();
 }
 
-# For tests on HashPMap, see compiler/testData/codegen/box/hashPMap
--keepclassmembers class kotlin.reflect.jvm.internal.pcollections.HashPMap {
-    public int size();
-    public boolean containsKey(java.lang.Object);
-    public kotlin.reflect.jvm.internal.pcollections.HashPMap minus(java.lang.Object);
-}
-
 # This is needed because otherwise ProGuard strips generic signature of this class (even though we pass `-keepattributes Signature` above)
 # See KT-23962 and https://sourceforge.net/p/proguard/bugs/482/
 -keep class kotlin.reflect.jvm.internal.impl.protobuf.GeneratedMessageLite$ExtendableMessageOrBuilder
@@ -16,54 +16,108 @@
 
 package kotlin.reflect.jvm.internal
 
+import java.lang.ref.ReferenceQueue
 import java.lang.ref.WeakReference
-import kotlin.reflect.jvm.internal.pcollections.HashPMap
+import java.util.concurrent.ConcurrentHashMap
 
-// TODO: collect nulls periodically
-// Key of the map is Class.getName(), each value is either a WeakReference<KClassImpl<*>> or an Array<WeakReference<KClassImpl<*>>>.
+// Key of the map is Class.getName(), each value is either a KClassReference or an Array<KClassReference>.
 // Arrays are needed because the same class can be loaded by different class loaders, which results in different Class instances.
-// This variable is not volatile intentionally: we don't care if there's a data race on it and some KClass instances will be lost.
-// We do care however about general performance on read access to it, thus no synchronization is done here whatsoever
-private var K_CLASS_CACHE = HashPMap.empty<String, Any>()
+// Reads are lock-free, entries are never copied on reads. References to collected KClass instances are removed on cache misses,
+// so that the map doesn't grow when class loaders are unloaded (e.g. on redeployment in application servers)
+private val K_CLASS_CACHE = ConcurrentHashMap<String, Any>()
+
+private val CLEARED_K_CLASS_REFERENCES = ReferenceQueue<KClassImpl<*>>()
+
+private class KClassReference(kClass: KClassImpl<*>) : WeakReference<KClassImpl<*>>(kClass, CLEARED_K_CLASS_REFERENCES) {
+    val name: String = kClass.jClass.name
+}
 
 // This function is invoked on each reflection access to Java classes, properties, etc. Performance is critical here.
 internal fun <T : Any> getOrCreateKotlinClass(jClass: Class<T>): KClassImpl<T> {
     val name = jClass.name
     val cached = K_CLASS_CACHE[name]
-    if (cached is WeakReference<*>) {
-        @Suppress("UNCHECKED_CAST")
-        val kClass = cached.get() as KClassImpl<T>?
+    if (cached != null) {
+        findKotlinClass(cached, jClass)?.let { return it }
+    }
+
+    removeClearedReferences()
+
+    val newKClass = KClassImpl(jClass)
+    val newReference = KClassReference(newKClass)
+    while (true) {
+        val current = K_CLASS_CACHE.putIfAbsent(name, newReference) ?: return newKClass
+
+        // Another thread could have created a KClass instance for the same class in the meantime
+        findKotlinClass(current, jClass)?.let { return it }
+
+        if (K_CLASS_CACHE.replace(name, current, appendReference(current, newReference))) return newKClass
+    }
+}
+
+private fun <T : Any> findKotlinClass(cached: Any, jClass: Class<T>): KClassImpl<T>? {
+    if (cached is KClassReference) {
+        val kClass = cached.get()
         if (kClass?.jClass == jClass) {
-            return kClass
+            @Suppress("UNCHECKED_CAST")
+            return kClass as KClassImpl<T>
         }
-    } else if (cached != null) {
-        // If the cached value is not a weak reference, it's an array of weak references
+    } else {
+        // If the cached value is not a reference, it's an array of references
         @Suppress("UNCHECKED_CAST")
-        (cached as Array<WeakReference<KClassImpl<T>>>)
-        for (ref in cached) {
-            val kClass = ref.get()
+        for (reference in cached as Array<KClassReference>) {
+            val kClass = reference.get()
             if (kClass?.jClass == jClass) {
-                return kClass
+                @Suppress("UNCHECKED_CAST")
+                return kClass as KClassImpl<T>
             }
         }
+    }
+    return null
+}
+
+private fun appendReference(cached: Any, reference: KClassReference): Array<KClassReference?> {
+    // This is the most unlikely case: the same class is loaded by several class loaders
+    @Suppress("UNCHECKED_CAST")
+    val references = if (cached is KClassReference) arrayOf(cached) else cached as Array<KClassReference>
+    val size = references.size
+    val newArray = arrayOfNulls<KClassReference>(size + 1)
+    // Don't use Arrays.copyOf because it works reflectively
+    System.arraycopy(references, 0, newArray, 0, size)
+    newArray[size] = reference
+    return newArray
+}
 
-        // This is the most unlikely case: we found a cached array of references of length at least 2 (can't be 1 because
-        // the single element would be cached instead), and none of those classes is the one we're looking for
-        val size = cached.size
-        val newArray = arrayOfNulls<WeakReference<KClassImpl<*>>>(size + 1)
-        // Don't use Arrays.copyOf because it works reflectively
-        System.arraycopy(cached, 0, newArray, 0, size)
-        val newKClass = KClassImpl(jClass)
-        newArray[size] = WeakReference(newKClass)
-        K_CLASS_CACHE = K_CLASS_CACHE.plus(name, newArray)
-        return newKClass
+private fun removeClearedReferences() {
+    while (true) {
+        val reference = CLEARED_K_CLASS_REFERENCES.poll() as KClassReference? ?: return
+        removeReference(reference)
     }
+}
 
-    val newKClass = KClassImpl(jClass)
-    K_CLASS_CACHE = K_CLASS_CACHE.plus(name, WeakReference(newKClass))
-    return newKClass
+private fun removeReference(reference: KClassReference) {
+    val name = reference.name
+    while (true) {
+        val cached = K_CLASS_CACHE[name] ?: return
+        if (cached === reference) {
+            if (K_CLASS_CACHE.remove(name, cached)) return
+            continue
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        val references = cached as? Array<KClassReference> ?: return
+        val index = references.indexOf(reference)
+        if (index < 0) return
+
+        val updated: Any = if (references.size == 2) references[1 - index] else {
+            val newArray = arrayOfNulls<KClassReference>(references.size - 1)
+            System.arraycopy(references, 0, newArray, 0, index)
+            System.arraycopy(references, index + 1, newArray, index, references.size - index - 1)
+            newArray
+        }
+        if (K_CLASS_CACHE.replace(name, cached, updated)) return
+    }
 }
 
 internal fun clearKClassCache() {
-    K_CLASS_CACHE = HashPMap.empty()
+    K_CLASS_CACHE.clear()
 }
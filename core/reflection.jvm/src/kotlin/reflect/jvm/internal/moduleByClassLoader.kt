@@ -16,17 +16,20 @@
 
 package kotlin.reflect.jvm.internal
 
+import java.lang.ref.ReferenceQueue
 import java.lang.ref.WeakReference
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ConcurrentMap
 import kotlin.reflect.jvm.internal.components.RuntimeModuleData
 import kotlin.reflect.jvm.internal.structure.safeClassLoader
 
-// TODO: collect nulls periodically
-private val moduleByClassLoader: ConcurrentMap<WeakClassLoaderBox, WeakReference<RuntimeModuleData>> = ConcurrentHashMap()
+private val moduleByClassLoader: ConcurrentMap<WeakClassLoaderBox, ModuleDataReference> = ConcurrentHashMap()
+
+// Both class loaders and module data referenced from the map are registered here, entries referencing them are removed on cache misses
+private val clearedReferences = ReferenceQueue<Any>()
 
 private class WeakClassLoaderBox(classLoader: ClassLoader) {
-    val ref: WeakReference<ClassLoader> = WeakReference(classLoader)
+    val ref: WeakReference<ClassLoader> = ClassLoaderReference(classLoader, this)
 
     // Identity hash code is saved because otherwise once the weak reference is GC'd we cannot compute it anymore
     val identityHashCode: Int = System.identityHashCode(classLoader)
@@ -44,6 +47,12 @@ private class WeakClassLoaderBox(classLoader: ClassLoader) {
         ref.get()?.toString() ?: "<null>"
 }
 
+private class ClassLoaderReference(classLoader: ClassLoader, val box: WeakClassLoaderBox) :
+    WeakReference<ClassLoader>(classLoader, clearedReferences)
+
+private class ModuleDataReference(module: RuntimeModuleData, val box: WeakClassLoaderBox) :
+    WeakReference<RuntimeModuleData>(module, clearedReferences)
+
 internal fun Class<*>.getOrCreateModule(): RuntimeModuleData {
     val classLoader = this.safeClassLoader
 
@@ -55,10 +64,12 @@ internal fun Class<*>.getOrCreateModule(): RuntimeModuleData {
         moduleByClassLoader.remove(key, cached)
     }
 
+    removeClearedReferences()
+
     val module = RuntimeModuleData.create(classLoader)
     try {
         while (true) {
-            val ref = moduleByClassLoader.putIfAbsent(key, WeakReference(module)) ?: return module
+            val ref = moduleByClassLoader.putIfAbsent(key, ModuleDataReference(module, key)) ?: return module
 
             val result = ref.get()
             if (result != null) return result
@@ -69,6 +80,17 @@ internal fun Class<*>.getOrCreateModule(): RuntimeModuleData {
     }
 }
 
+private fun removeClearedReferences() {
+    while (true) {
+        val ref = clearedReferences.poll() ?: return
+        when (ref) {
+            // The box of a collected class loader is only equal to itself or to other such boxes, which are stale as well
+            is ClassLoaderReference -> moduleByClassLoader.remove(ref.box)
+            is ModuleDataReference -> moduleByClassLoader.remove(ref.box, ref)
+        }
+    }
+}
+
 internal fun clearModuleByClassLoaderCache() {
     moduleByClassLoader.clear()
 }
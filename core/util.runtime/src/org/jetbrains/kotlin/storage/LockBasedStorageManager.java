@@ -591,9 +591,9 @@ public class LockBasedStorageManager implements StorageManager {
     }
 
     // equals and hashCode use only key
-    private static class KeyWithComputation<K, V> {
+    /*package*/ static class KeyWithComputation<K, V> {
         private final K key;
-        private final Function0<? extends V> computation;
+        /*package*/ final Function0<? extends V> computation;
 
         public KeyWithComputation(K key, Function0<? extends V> computation) {
             this.key = key;
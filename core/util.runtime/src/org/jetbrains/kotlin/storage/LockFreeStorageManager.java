@@ -0,0 +1,567 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.storage;
+
+import kotlin.Unit;
+import kotlin.jvm.functions.Function0;
+import kotlin.jvm.functions.Function1;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.utils.ExceptionUtilsKt;
+import org.jetbrains.kotlin.utils.WrappedValues;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A storage manager which does not serialize lazy computations on a single lock, unlike {@link LockBasedStorageManager}.
+ *
+ * Every lazy value and every key of a memoized function is a compute-once cell. A thread which finds the cell empty claims it
+ * with CAS and computes the value without holding any lock, other threads requesting the same cell wait until the value is published.
+ * So every cell is computed once and side effects of computations (e.g. trace writes) are not repeated. {@code postCompute} is run
+ * before the value is published, and only the computing thread sees the value until then.
+ *
+ * A thread requesting a cell which is being computed by a thread that (possibly indirectly) waits for the former one would deadlock.
+ * Such a request is treated as a recursive call, like {@link LockBasedStorageManager} does in a single thread for the same dependencies.
+ * {@link #compute(Function0)} blocks are mutually exclusive in the same way: a thread enters a block as reentrant
+ * if the thread which is in a block waits for it.
+ */
+public class LockFreeStorageManager implements StorageManager {
+    @NotNull
+    public static LockFreeStorageManager createWithExceptionHandling(
+            @NotNull String debugText,
+            @NotNull LockBasedStorageManager.ExceptionHandlingStrategy exceptionHandlingStrategy
+    ) {
+        return new LockFreeStorageManager(debugText, exceptionHandlingStrategy);
+    }
+
+    private static final AtomicReferenceFieldUpdater<LockFreeStorageManager, Claim> COMPUTE_CLAIM_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(LockFreeStorageManager.class, Claim.class, "computeClaim");
+
+    private final LockBasedStorageManager.ExceptionHandlingStrategy exceptionHandlingStrategy;
+    private final String debugText;
+
+    // A claim of the thread which is in a compute() block
+    @Nullable
+    private volatile Claim computeClaim = null;
+
+    // Only taken by threads which wait for a claim of another thread
+    private final Lock waitLock = new ReentrantLock();
+    private final Condition claimFinished = waitLock.newCondition();
+    // Guarded by waitLock
+    private final Map<Thread, Claim> awaitedClaims = new HashMap<Thread, Claim>();
+
+    private LockFreeStorageManager(
+            @NotNull String debugText,
+            @NotNull LockBasedStorageManager.ExceptionHandlingStrategy exceptionHandlingStrategy
+    ) {
+        this.exceptionHandlingStrategy = exceptionHandlingStrategy;
+        this.debugText = debugText;
+    }
+
+    public LockFreeStorageManager(@NotNull String debugText) {
+        this(debugText, LockBasedStorageManager.ExceptionHandlingStrategy.THROW);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " (" + debugText + ")";
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(@NotNull Function1<? super K, ? extends V> compute) {
+        return createMemoizedFunction(compute, LockFreeStorageManager.<K>createConcurrentHashMap());
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(
+            @NotNull Function1<? super K, ? extends V> compute,
+            @NotNull ConcurrentMap<K, Object> map
+    ) {
+        return new ComputeOnceMemoizedFunctionToNotNull<K, V>(this, map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(@NotNull Function1<? super K, ? extends V> compute) {
+        return createMemoizedFunctionWithNullableValues(compute, LockFreeStorageManager.<K>createConcurrentHashMap());
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(
+            @NotNull Function1<? super K, ? extends V> compute,
+            @NotNull ConcurrentMap<K, Object> map
+    ) {
+        return new ComputeOnceMemoizedFunction<K, V>(this, map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <K, V> CacheWithNullableValues<K, V> createCacheWithNullableValues() {
+        final MemoizedFunctionToNullable<LockBasedStorageManager.KeyWithComputation<K, V>, V> function =
+                createMemoizedFunctionWithNullableValues(LockFreeStorageManager.<K, V>computeKeyWithComputation());
+        return new CacheWithNullableValues<K, V>() {
+            @Nullable
+            @Override
+            public V computeIfAbsent(K key, @NotNull Function0<? extends V> computation) {
+                return function.invoke(new LockBasedStorageManager.KeyWithComputation<K, V>(key, computation));
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <K, V> CacheWithNotNullValues<K, V> createCacheWithNotNullValues() {
+        final MemoizedFunctionToNotNull<LockBasedStorageManager.KeyWithComputation<K, V>, V> function =
+                createMemoizedFunction(LockFreeStorageManager.<K, V>computeKeyWithComputation());
+        return new CacheWithNotNullValues<K, V>() {
+            @NotNull
+            @Override
+            public V computeIfAbsent(K key, @NotNull Function0<? extends V> computation) {
+                return function.invoke(new LockBasedStorageManager.KeyWithComputation<K, V>(key, computation));
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValue(@NotNull Function0<? extends T> computable) {
+        return new ComputeOnceNotNullLazyValue<T>(this, computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createRecursionTolerantLazyValue(
+            @NotNull Function0<? extends T> computable, @NotNull final T onRecursiveCall
+    ) {
+        return new ComputeOnceNotNullLazyValue<T>(this, computable) {
+            @Override
+            protected T recursionDetected(boolean firstTime) {
+                return onRecursiveCall;
+            }
+
+            @Override
+            protected String presentableName() {
+                return "RecursionTolerantLazyValue";
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValueWithPostCompute(
+            @NotNull Function0<? extends T> computable,
+            final Function1<? super Boolean, ? extends T> onRecursiveCall,
+            @NotNull final Function1<? super T, Unit> postCompute
+    ) {
+        return new ComputeOnceNotNullLazyValue<T>(this, computable) {
+            @Override
+            protected T recursionDetected(boolean firstTime) {
+                if (onRecursiveCall == null) {
+                    return super.recursionDetected(firstTime);
+                }
+                return onRecursiveCall.invoke(firstTime);
+            }
+
+            @Override
+            protected void postCompute(@NotNull T value) {
+                postCompute.invoke(value);
+            }
+
+            @Override
+            protected String presentableName() {
+                return "LazyValueWithPostCompute";
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValue(@NotNull Function0<? extends T> computable) {
+        return new ComputeOnceLazyValue<T>(this, computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createRecursionTolerantNullableLazyValue(@NotNull Function0<? extends T> computable, final T onRecursiveCall) {
+        return new ComputeOnceLazyValue<T>(this, computable) {
+            @Override
+            protected T recursionDetected(boolean firstTime) {
+                return onRecursiveCall;
+            }
+
+            @Override
+            protected String presentableName() {
+                return "RecursionTolerantNullableLazyValue";
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValueWithPostCompute(
+            @NotNull Function0<? extends T> computable, @NotNull final Function1<? super T, Unit> postCompute
+    ) {
+        return new ComputeOnceLazyValue<T>(this, computable) {
+            @Override
+            protected void postCompute(@Nullable T value) {
+                postCompute.invoke(value);
+            }
+
+            @Override
+            protected String presentableName() {
+                return "NullableLazyValueWithPostCompute";
+            }
+        };
+    }
+
+    @Override
+    public <T> T compute(@NotNull Function0<? extends T> computable) {
+        while (true) {
+            Claim current = computeClaim;
+            if (current == null) {
+                Claim claim = new Claim(/*computeBlock = */ true);
+                if (!COMPUTE_CLAIM_UPDATER.compareAndSet(this, null, claim)) continue;
+                try {
+                    return computable.invoke();
+                }
+                catch (Throwable throwable) {
+                    throw exceptionHandlingStrategy.handleException(throwable);
+                }
+                finally {
+                    computeClaim = null;
+                    finish(claim);
+                }
+            }
+
+            if (!await(current)) {
+                // A reentrant call, or the thread which is in a block waits for this one
+                try {
+                    return computable.invoke();
+                }
+                catch (Throwable throwable) {
+                    throw exceptionHandlingStrategy.handleException(throwable);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until the claim is finished.
+     *
+     * @return {@code false} without waiting if the claim is owned by the current thread or by a thread which waits for it,
+     * i.e. the current thread would wait for itself
+     */
+    private boolean await(@NotNull Claim claim) {
+        Thread currentThread = Thread.currentThread();
+        waitLock.lock();
+        try {
+            if (waitsFor(claim, currentThread)) return false;
+
+            claim.hasWaiters = true;
+            awaitedClaims.put(currentThread, claim);
+            // A thread waiting for a compute() block may now have to enter it
+            claimFinished.signalAll();
+            try {
+                while (!claim.finished) {
+                    if (claim.computeBlock && waitsFor(claim, currentThread)) return false;
+                    claimFinished.awaitUninterruptibly();
+                }
+            }
+            finally {
+                awaitedClaims.remove(currentThread);
+            }
+            return true;
+        }
+        finally {
+            waitLock.unlock();
+        }
+    }
+
+    // Whether the owner of the claim is the thread or waits for it through a chain of claims, must be called under waitLock
+    private boolean waitsFor(@NotNull Claim claim, @NotNull Thread thread) {
+        for (Claim awaited = claim; awaited != null && !awaited.finished; ) {
+            if (awaited.owner == thread) return true;
+
+            Claim next = awaitedClaims.get(awaited.owner);
+            // A thread waiting for a compute() block is the one to break the chain, it enters the block as reentrant
+            if (next != null && next.computeBlock) return false;
+            awaited = next;
+        }
+        return false;
+    }
+
+    // Must be called after the result of the claim is published or the cell is reset
+    private void finish(@NotNull Claim claim) {
+        claim.finished = true;
+        if (claim.hasWaiters) {
+            waitLock.lock();
+            try {
+                claimFinished.signalAll();
+            }
+            finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    @NotNull
+    private static <K> ConcurrentMap<K, Object> createConcurrentHashMap() {
+        // memory optimization: fewer segments and entries stored
+        return new ConcurrentHashMap<K, Object>(3, 1, 2);
+    }
+
+    @NotNull
+    private static <K, V> Function1<LockBasedStorageManager.KeyWithComputation<K, V>, V> computeKeyWithComputation() {
+        return new Function1<LockBasedStorageManager.KeyWithComputation<K, V>, V>() {
+            @Override
+            public V invoke(LockBasedStorageManager.KeyWithComputation<K, V> computation) {
+                return computation.computation.invoke();
+            }
+        };
+    }
+
+    private enum NotValue {
+        NOT_COMPUTED,
+        RECURSION_WAS_DETECTED
+    }
+
+    // A computation of a cell or a compute() block by the thread which has created the claim
+    private static class Claim {
+        private final Thread owner = Thread.currentThread();
+        private final boolean computeBlock;
+        private final AtomicBoolean recursionDetected = new AtomicBoolean();
+        private volatile boolean finished = false;
+        private volatile boolean hasWaiters = false;
+
+        // The computed value of a lazy value, which is seen only by the owner until it's published
+        private Object result = NotValue.NOT_COMPUTED;
+
+        private Claim(boolean computeBlock) {
+            this.computeBlock = computeBlock;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ComputeOnceLazyValue, Object> LAZY_VALUE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(ComputeOnceLazyValue.class, Object.class, "value");
+
+    private static class ComputeOnceLazyValue<T> implements NullableLazyValue<T> {
+        private final LockFreeStorageManager storageManager;
+        private final Function0<? extends T> computable;
+
+        @Nullable
+        private volatile Object value = NotValue.NOT_COMPUTED;
+
+        public ComputeOnceLazyValue(@NotNull LockFreeStorageManager storageManager, @NotNull Function0<? extends T> computable) {
+            this.storageManager = storageManager;
+            this.computable = computable;
+        }
+
+        @Override
+        public boolean isComputed() {
+            Object _value = value;
+            return !(_value instanceof NotValue) && !(_value instanceof Claim);
+        }
+
+        @Override
+        public boolean isComputing() {
+            return value instanceof Claim;
+        }
+
+        @Override
+        public T invoke() {
+            while (true) {
+                Object _value = value;
+                if (_value instanceof Claim) {
+                    Claim claim = (Claim) _value;
+                    if (claim.owner == Thread.currentThread() && claim.result != NotValue.NOT_COMPUTED) {
+                        // Called from postCompute
+                        return WrappedValues.unescapeThrowable(claim.result);
+                    }
+                    if (!storageManager.await(claim)) {
+                        // A recursive call, possibly through another thread which waits for this one
+                        return recursionDetected(/*firstTime = */ !claim.recursionDetected.getAndSet(true));
+                    }
+                    continue;
+                }
+
+                if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
+
+                if (_value == NotValue.RECURSION_WAS_DETECTED) {
+                    // The previous computation has failed because of a recursive call
+                    return recursionDetected(/*firstTime = */ false);
+                }
+
+                Claim claim = new Claim(/*computeBlock = */ false);
+                if (LAZY_VALUE_UPDATER.compareAndSet(this, NotValue.NOT_COMPUTED, claim)) {
+                    return compute(claim);
+                }
+            }
+        }
+
+        private T compute(@NotNull Claim claim) {
+            try {
+                T typedValue = computable.invoke();
+                claim.result = typedValue;
+                postCompute(typedValue);
+                value = typedValue;
+                return typedValue;
+            }
+            catch (Throwable throwable) {
+                if (ExceptionUtilsKt.isProcessCanceledException(throwable)) {
+                    value = NotValue.NOT_COMPUTED;
+                    //noinspection ConstantConditions
+                    throw (RuntimeException) throwable;
+                }
+
+                if (claim.result != NotValue.NOT_COMPUTED) {
+                    // postCompute has failed, the value is still the computed one
+                    value = claim.result;
+                }
+                else {
+                    // Store only if it's a genuine result, not something thrown through recursionDetected()
+                    value = claim.recursionDetected.get() ? NotValue.RECURSION_WAS_DETECTED : WrappedValues.escapeThrowable(throwable);
+                }
+
+                throw storageManager.exceptionHandlingStrategy.handleException(throwable);
+            }
+            finally {
+                storageManager.finish(claim);
+            }
+        }
+
+        /**
+         * @param firstTime {@code true} when recursion has been just detected, {@code false} otherwise
+         * @return a value to be returned on a recursive call or subsequent calls
+         */
+        protected T recursionDetected(boolean firstTime) {
+            throw new IllegalStateException("Recursive call in a lazy value under " + storageManager);
+        }
+
+        protected void postCompute(T value) {
+            // Doing something in post-compute helps prevent infinite recursion
+        }
+
+        @NotNull
+        public String renderDebugInformation() {
+            return presentableName() + ", storageManager=" + storageManager;
+        }
+
+        protected String presentableName() {
+            return this.getClass().getName();
+        }
+    }
+
+    private static class ComputeOnceNotNullLazyValue<T> extends ComputeOnceLazyValue<T> implements NotNullLazyValue<T> {
+        public ComputeOnceNotNullLazyValue(@NotNull LockFreeStorageManager storageManager, @NotNull Function0<? extends T> computable) {
+            super(storageManager, computable);
+        }
+
+        @Override
+        @NotNull
+        public T invoke() {
+            T result = super.invoke();
+            assert result != null : "compute() returned null";
+            return result;
+        }
+    }
+
+    private static class ComputeOnceMemoizedFunction<K, V> implements MemoizedFunctionToNullable<K, V> {
+        private final LockFreeStorageManager storageManager;
+        private final ConcurrentMap<K, Object> cache;
+        private final Function1<? super K, ? extends V> compute;
+
+        public ComputeOnceMemoizedFunction(
+                @NotNull LockFreeStorageManager storageManager,
+                @NotNull ConcurrentMap<K, Object> map,
+                @NotNull Function1<? super K, ? extends V> compute
+        ) {
+            this.storageManager = storageManager;
+            this.cache = map;
+            this.compute = compute;
+        }
+
+        @Override
+        @Nullable
+        public V invoke(K input) {
+            while (true) {
+                Object value = cache.get(input);
+                if (value instanceof Claim) {
+                    if (!storageManager.await((Claim) value)) {
+                        throw new AssertionError("Recursion detected on input: " + input + " under " + storageManager);
+                    }
+                    continue;
+                }
+                if (value != null) return WrappedValues.unescapeExceptionOrNull(value);
+
+                Claim claim = new Claim(/*computeBlock = */ false);
+                if (cache.putIfAbsent(input, claim) == null) {
+                    return compute(input, claim);
+                }
+            }
+        }
+
+        private V compute(K input, @NotNull Claim claim) {
+            try {
+                V typedValue = compute.invoke(input);
+                cache.put(input, WrappedValues.escapeNull(typedValue));
+                return typedValue;
+            }
+            catch (Throwable throwable) {
+                if (ExceptionUtilsKt.isProcessCanceledException(throwable)) {
+                    cache.remove(input, claim);
+                    //noinspection ConstantConditions
+                    throw (RuntimeException) throwable;
+                }
+
+                cache.put(input, WrappedValues.escapeThrowable(throwable));
+                throw storageManager.exceptionHandlingStrategy.handleException(throwable);
+            }
+            finally {
+                storageManager.finish(claim);
+            }
+        }
+
+        @Override
+        public boolean isComputed(K key) {
+            Object value = cache.get(key);
+            return value != null && !(value instanceof Claim);
+        }
+
+        protected LockFreeStorageManager getStorageManager() {
+            return storageManager;
+        }
+    }
+
+    private static class ComputeOnceMemoizedFunctionToNotNull<K, V> extends ComputeOnceMemoizedFunction<K, V>
+            implements MemoizedFunctionToNotNull<K, V> {
+        public ComputeOnceMemoizedFunctionToNotNull(
+                @NotNull LockFreeStorageManager storageManager, @NotNull ConcurrentMap<K, Object> map,
+                @NotNull Function1<? super K, ? extends V> compute
+        ) {
+            super(storageManager, map, compute);
+        }
+
+        @NotNull
+        @Override
+        public V invoke(K input) {
+            V result = super.invoke(input);
+            assert result != null : "compute() returned null under " + getStorageManager();
+            return result;
+        }
+    }
+}
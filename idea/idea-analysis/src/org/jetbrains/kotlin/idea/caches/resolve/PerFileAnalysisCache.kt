@@ -17,6 +17,7 @@
 package org.jetbrains.kotlin.idea.caches.resolve
 
 import com.intellij.openapi.progress.ProcessCanceledException
+import com.intellij.openapi.progress.ProgressManager
 import com.intellij.openapi.project.DumbService
 import com.intellij.openapi.project.IndexNotReadyException
 import com.intellij.openapi.project.Project
@@ -42,6 +43,8 @@ import org.jetbrains.kotlin.resolve.*
 import org.jetbrains.kotlin.resolve.lazy.BodyResolveMode
 import org.jetbrains.kotlin.resolve.lazy.ResolveSession
 import java.util.*
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.ReentrantLock
 
 internal class PerFileAnalysisCache(val file: KtFile, componentProvider: ComponentProvider) {
     private val globalContext = componentProvider.get<GlobalContext>()
@@ -52,6 +55,12 @@ internal class PerFileAnalysisCache(val file: KtFile, componentProvider: Compone
 
     private val cache = HashMap<PsiElement, AnalysisResult>()
 
+    // Each analyzable element is analyzed under its own lock, so that different declarations of the file can be analyzed
+    // in parallel (e.g. by highlighting and inspection passes). Both maps are guarded by the cache.
+    // A lock is removed when no thread holds it, waits for it or is about to take it.
+    private val analysisLocks = HashMap<KtElement, AnalysisLock>()
+    private val isAnalyzingInCurrentThread = ThreadLocal<Boolean>()
+
     private fun lookUp(analyzableElement: KtElement): AnalysisResult? {
         // Looking for parent elements that are already analyzed
         // Also removing all elements whose parents are already analyzed, to guarantee consistency
@@ -80,16 +89,54 @@ internal class PerFileAnalysisCache(val file: KtFile, componentProvider: Compone
 
         val analyzableParent = KotlinResolveDataProvider.findAnalyzableParent(element)
 
-        return synchronized<AnalysisResult>(this) {
+        synchronized(cache) { lookUp(analyzableParent) }?.let { return it }
 
-            val cached = lookUp(analyzableParent)
-            if (cached != null) return@synchronized cached
+        if (isAnalyzingInCurrentThread.get() == true) {
+            // Analysis of another element of the file has requested this one. Waiting for a lock here could lead to a deadlock
+            // with a thread which analyzes this element and waits for the other one, so the element is analyzed without locking.
+            // Both threads may analyze the element then, but only the result cached first is used
+            return analyzeAndCache(analyzableParent)
+        }
 
-            val result = analyze(analyzableParent)
+        val lock = synchronized(cache) {
+            analysisLocks.getOrPut(analyzableParent) { AnalysisLock() }.also { it.users++ }
+        }
+        try {
+            lock.lockWithCheckCanceled()
+            try {
+                // The element may have been analyzed by another thread while this one was waiting for the lock
+                synchronized(cache) { lookUp(analyzableParent) }?.let { return it }
 
-            cache[analyzableParent] = result
+                isAnalyzingInCurrentThread.set(true)
+                try {
+                    return analyzeAndCache(analyzableParent)
+                } finally {
+                    isAnalyzingInCurrentThread.remove()
+                }
+            } finally {
+                lock.unlock()
+            }
+        } finally {
+            synchronized(cache) {
+                if (--lock.users == 0) {
+                    analysisLocks.remove(analyzableParent)
+                }
+            }
+        }
+    }
 
-            return@synchronized result
+    private fun analyzeAndCache(analyzableElement: KtElement): AnalysisResult {
+        val result = analyze(analyzableElement)
+        // The element may have been analyzed by a nested request in another thread,
+        // its result is kept so that all requests get the same one
+        return synchronized(cache) {
+            lookUp(analyzableElement) ?: result.also { cache[analyzableElement] = it }
+        }
+    }
+
+    private fun ReentrantLock.lockWithCheckCanceled() {
+        while (!tryLock(CHECK_CANCELED_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            ProgressManager.checkCanceled()
         }
     }
 
@@ -120,6 +167,15 @@ internal class PerFileAnalysisCache(val file: KtFile, componentProvider: Compone
             return AnalysisResult.internalError(BindingContext.EMPTY, e)
         }
     }
+
+    private class AnalysisLock : ReentrantLock() {
+        // Threads which have got the lock from analysisLocks and haven't released it yet, guarded by the cache
+        var users = 0
+    }
+
+    companion object {
+        private const val CHECK_CANCELED_INTERVAL_MS = 10L
+    }
 }
 
 private object KotlinResolveDataProvider {
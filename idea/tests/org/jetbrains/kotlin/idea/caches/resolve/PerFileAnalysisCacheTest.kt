@@ -0,0 +1,132 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.idea.caches.resolve
+
+import com.intellij.openapi.extensions.Extensions
+import com.intellij.testFramework.PlatformTestUtil
+import org.jetbrains.kotlin.container.StorageComponentContainer
+import org.jetbrains.kotlin.container.useInstance
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor
+import org.jetbrains.kotlin.descriptors.ModuleDescriptor
+import org.jetbrains.kotlin.extensions.StorageComponentContainerContributor
+import org.jetbrains.kotlin.idea.test.KotlinLightCodeInsightFixtureTestCase
+import org.jetbrains.kotlin.idea.test.KotlinWithJdkAndRuntimeLightProjectDescriptor
+import org.jetbrains.kotlin.idea.util.application.runReadAction
+import org.jetbrains.kotlin.platform.TargetPlatform
+import org.jetbrains.kotlin.psi.KtDeclaration
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtNamedFunction
+import org.jetbrains.kotlin.resolve.BindingContext
+import org.jetbrains.kotlin.resolve.checkers.DeclarationChecker
+import org.jetbrains.kotlin.resolve.checkers.DeclarationCheckerContext
+import org.jetbrains.kotlin.test.JUnit3WithIdeaConfigurationRunner
+import org.junit.runner.RunWith
+import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+@RunWith(JUnit3WithIdeaConfigurationRunner::class)
+class PerFileAnalysisCacheTest : KotlinLightCodeInsightFixtureTestCase() {
+    override fun getProjectDescriptor() = KotlinWithJdkAndRuntimeLightProjectDescriptor.INSTANCE
+
+    fun testDeclarationsAnalyzedInParallelAreAnalyzedOnce() {
+        val text = (1..DECLARATIONS).joinToString("\n") { "fun f$it() = listOf($it).map { x -> x + 1 }.filter { x -> x > 0 }" }
+        val declarations = (myFixture.configureByText("test.kt", text) as KtFile).declarations
+
+        val barrier = CyclicBarrier(THREADS)
+        val executor = Executors.newFixedThreadPool(THREADS)
+        try {
+            val results = (1..THREADS).map { thread ->
+                executor.submit(Callable {
+                    barrier.await()
+                    // Threads go through declarations in different orders, so some of them wait for each other
+                    declarations.shuffled(Random(thread.toLong())).associateWith { declaration ->
+                        runReadAction { declaration.analyzeWithAllCompilerChecks().bindingContext }
+                    }
+                })
+            }.map { it.get(1, TimeUnit.MINUTES) }
+
+            for (declaration in declarations) {
+                val contexts = results.map { it.getValue(declaration) }
+                assertTrue(
+                    "${declaration.name} is analyzed more than once",
+                    contexts.all { it === contexts.first() && it != BindingContext.EMPTY }
+                )
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    fun testElementRequestedByAnalysisOfAnotherElementIsAnalyzedOnce() {
+        val file = myFixture.configureByText("test.kt", "fun requested() = 1\nfun requesting() = 2") as KtFile
+        val (requested, requesting) = file.declarations.map { it as KtNamedFunction }
+
+        val requestedIsAnalyzed = CountDownLatch(1)
+        val nestedRequestIsDone = CountDownLatch(1)
+        var nestedContext: BindingContext? = null
+        var requestedThread: Thread? = null
+
+        // Analysis of `requested` in the first thread waits while analysis of `requesting` in the second thread requests it
+        registerDeclarationChecker { declaration ->
+            if (declaration == requested && Thread.currentThread() == requestedThread) {
+                requestedIsAnalyzed.countDown()
+                assertTrue(nestedRequestIsDone.await(1, TimeUnit.MINUTES))
+            }
+            if (declaration == requesting) {
+                nestedContext = requested.analyzeWithAllCompilerChecks().bindingContext
+                nestedRequestIsDone.countDown()
+            }
+        }
+
+        val executor = Executors.newFixedThreadPool(2)
+        try {
+            val first = executor.submit(Callable {
+                requestedThread = Thread.currentThread()
+                runReadAction { requested.analyzeWithAllCompilerChecks().bindingContext }
+            })
+            assertTrue(requestedIsAnalyzed.await(1, TimeUnit.MINUTES))
+            executor.submit(Callable { runReadAction { requesting.analyzeWithAllCompilerChecks() } }).get(1, TimeUnit.MINUTES)
+
+            val context = first.get(1, TimeUnit.MINUTES)
+            assertSame(nestedContext, context)
+            assertSame(context, runReadAction { requested.analyzeWithAllCompilerChecks().bindingContext })
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private fun registerDeclarationChecker(check: (KtDeclaration) -> Unit) {
+        val checker = object : DeclarationChecker {
+            override fun check(declaration: KtDeclaration, descriptor: DeclarationDescriptor, context: DeclarationCheckerContext) {
+                check(declaration)
+            }
+        }
+        val contributor = object : StorageComponentContainerContributor {
+            override fun registerModuleComponents(
+                container: StorageComponentContainer,
+                platform: TargetPlatform,
+                moduleDescriptor: ModuleDescriptor
+            ) {
+                container.useInstance(checker)
+            }
+        }
+        PlatformTestUtil.registerExtension(
+            Extensions.getArea(project),
+            StorageComponentContainerContributor.extensionPointName,
+            contributor,
+            testRootDisposable
+        )
+    }
+
+    companion object {
+        private const val DECLARATIONS = 50
+        private const val THREADS = 8
+    }
+}
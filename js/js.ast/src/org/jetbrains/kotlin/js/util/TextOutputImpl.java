@@ -4,6 +4,9 @@
 
 package org.jetbrains.kotlin.js.util;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.Arrays;
 
 public class TextOutputImpl implements TextOutput {
@@ -13,6 +16,8 @@ public class TextOutputImpl implements TextOutput {
     private char[][] indents = new char[][] {new char[0]};
     private boolean justNewlined;
     private final StringBuilder out;
+    private final Writer writer;
+    private final static int writerBufferSize = 8192;
     private int position = 0;
     private int line = 0;
     private int column = 0;
@@ -26,8 +31,17 @@ public class TextOutputImpl implements TextOutput {
     }
 
     public TextOutputImpl(boolean compact) {
+        this(null, compact);
+    }
+
+    /**
+     * Streams the text to the writer instead of keeping all of it in memory.
+     * Text which isn't written yet is kept until {@link #flush()} is called, so {@link #toString()} is meaningless in this mode.
+     */
+    public TextOutputImpl(Writer writer, boolean compact) {
         this.compact = compact;
-        out = new StringBuilder();
+        this.writer = writer;
+        out = new StringBuilder(writer != null ? writerBufferSize * 2 : 16);
     }
 
     @Override
@@ -35,6 +49,30 @@ public class TextOutputImpl implements TextOutput {
         return out.toString();
     }
 
+    public void flush() {
+        if (writer == null) return;
+        try {
+            writer.append(out);
+            writer.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        out.setLength(0);
+    }
+
+    private void flushIfNeeded() {
+        if (writer != null && out.length() >= writerBufferSize) {
+            try {
+                writer.append(out);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            out.setLength(0);
+        }
+    }
+
     @Override
     public int getPosition() {
         return position;
@@ -76,6 +114,7 @@ public class TextOutputImpl implements TextOutput {
         line++;
         column = 0;
         justNewlined = true;
+        flushIfNeeded();
     }
 
     @Override
@@ -104,6 +143,7 @@ public class TextOutputImpl implements TextOutput {
     private void movePosition(int l) {
         position += l;
         column += l;
+        flushIfNeeded();
     }
 
     @Override
@@ -137,11 +177,13 @@ public class TextOutputImpl implements TextOutput {
         position += charSequence.length();
         column += charSequence.length();
         out.append(charSequence);
+        flushIfNeeded();
     }
 
     private void printAndCount(char[] chars) {
         position += chars.length;
         column += chars.length;
         out.append(chars);
+        flushIfNeeded();
     }
 }
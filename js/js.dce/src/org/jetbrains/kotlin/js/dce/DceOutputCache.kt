@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.dce
+
+import org.jetbrains.kotlin.js.backend.ast.*
+import java.io.*
+import java.security.MessageDigest
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Remembers fingerprints of output files written by [DeadCodeElimination.run]. An output file doesn't need to be written again
+ * if its fingerprint is the same and the file wasn't changed since it was written.
+ */
+internal class DceOutputCache(private val cacheFile: File) {
+    private class Entry(val fingerprint: String, val length: Long, val lastModified: Long)
+
+    private val entries = ConcurrentHashMap<String, Entry>()
+
+    init {
+        if (cacheFile.exists()) {
+            try {
+                DataInputStream(BufferedInputStream(FileInputStream(cacheFile))).use { input ->
+                    if (input.readInt() == VERSION) {
+                        repeat(input.readInt()) {
+                            entries[input.readUTF()] = Entry(input.readUTF(), input.readLong(), input.readLong())
+                        }
+                    }
+                }
+            }
+            catch (e: IOException) {
+                // The cache is rebuilt from scratch
+                entries.clear()
+            }
+        }
+    }
+
+    fun isUpToDate(file: InputFile, fingerprint: String): Boolean {
+        val entry = entries[file.outputPath] ?: return false
+        val outputFile = File(file.outputPath)
+        return entry.fingerprint == fingerprint &&
+               entry.length == outputFile.length() &&
+               entry.lastModified == outputFile.lastModified() &&
+               (file.sourceMapResource == null || File(file.outputPath + ".map").exists())
+    }
+
+    fun update(file: InputFile, fingerprint: String) {
+        val outputFile = File(file.outputPath)
+        entries[file.outputPath] = Entry(fingerprint, outputFile.length(), outputFile.lastModified())
+    }
+
+    // Entries of files which are not produced anymore are dropped
+    fun save(inputFiles: Collection<InputFile>) {
+        val outputPaths = inputFiles.mapTo(HashSet()) { it.outputPath }
+        val actualEntries = entries.filterKeys { it in outputPaths }
+
+        cacheFile.parentFile?.mkdirs()
+        DataOutputStream(BufferedOutputStream(FileOutputStream(cacheFile))).use { output ->
+            output.writeInt(VERSION)
+            output.writeInt(actualEntries.size)
+            for ((path, entry) in actualEntries) {
+                output.writeUTF(path)
+                output.writeUTF(entry.fingerprint)
+                output.writeLong(entry.length)
+                output.writeLong(entry.lastModified)
+            }
+        }
+    }
+
+    companion object {
+        private const val VERSION = 1
+    }
+}
+
+/**
+ * [Eliminator] only removes whole statements and variable declarations. Being parsed from the same text, a file is printed
+ * in the same way if the same statements are left in it, so their indices are enough to identify the output.
+ */
+internal object EliminationFingerprint {
+    fun indexStatements(block: JsBlock): Map<JsNode, Int> {
+        val indices = IdentityHashMap<JsNode, Int>()
+        block.accept(object : StatementVisitor() {
+            override fun visitStatement(x: JsNode) {
+                indices[x] = indices.size
+            }
+        })
+        return indices
+    }
+
+    fun compute(block: JsBlock, indices: Map<JsNode, Int>): String {
+        val digest = MessageDigest.getInstance("MD5")
+        block.accept(object : StatementVisitor() {
+            override fun visitStatement(x: JsNode) {
+                val index = indices[x] ?: -1
+                digest.update(byteArrayOf((index ushr 24).toByte(), (index ushr 16).toByte(), (index ushr 8).toByte(), index.toByte()))
+            }
+        })
+        return digest.digest().toHexString()
+    }
+
+    private abstract class StatementVisitor : RecursiveJsVisitor() {
+        abstract fun visitStatement(x: JsNode)
+
+        override fun visitVars(x: JsVars) {
+            visitStatement(x)
+            super.visitVars(x)
+        }
+
+        override fun visit(x: JsVars.JsVar) {
+            visitStatement(x)
+            super.visit(x)
+        }
+
+        override fun visitExpressionStatement(x: JsExpressionStatement) {
+            visitStatement(x)
+            super.visitExpressionStatement(x)
+        }
+
+        override fun visitReturn(x: JsReturn) {
+            visitStatement(x)
+            super.visitReturn(x)
+        }
+    }
+}
+
+internal fun ByteArray.toHexString(): String =
+    joinToString("") { (it.toInt() and 0xFF).toString(16).padStart(2, '0') }
@@ -18,6 +18,7 @@ package org.jetbrains.kotlin.js.dce
 
 import com.google.gwt.dev.js.rhino.CodePosition
 import com.google.gwt.dev.js.rhino.ErrorReporter
+import com.google.gwt.dev.js.rhino.Node as SyntaxTreeNode
 import org.jetbrains.kotlin.js.backend.JsToStringGenerationVisitor
 import org.jetbrains.kotlin.js.backend.ast.JsBlock
 import org.jetbrains.kotlin.js.backend.ast.JsGlobalBlock
@@ -27,16 +28,17 @@ import org.jetbrains.kotlin.js.dce.Context.Node
 import org.jetbrains.kotlin.js.facade.SourceMapBuilderConsumer
 import org.jetbrains.kotlin.js.inline.util.collectDefinedNames
 import org.jetbrains.kotlin.js.inline.util.fixForwardNameReferences
-import org.jetbrains.kotlin.js.parser.parse
-import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMapError
-import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMapLocationRemapper
-import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMapParser
-import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMapSuccess
+import org.jetbrains.kotlin.js.parser.parseSyntaxTree
+import org.jetbrains.kotlin.js.parser.sourcemaps.*
+import org.jetbrains.kotlin.js.parser.toJsStatements
 import org.jetbrains.kotlin.js.sourceMap.SourceFilePathResolver
 import org.jetbrains.kotlin.js.sourceMap.SourceMap3Builder
 import org.jetbrains.kotlin.js.util.TextOutputImpl
 import java.io.File
-import java.io.InputStreamReader
+import java.security.MessageDigest
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
 
 class DeadCodeElimination(private val logConsumer: (DCELogLevel, String) -> Unit) {
     val moduleMapping = mutableMapOf<JsBlock, String>()
@@ -72,24 +74,40 @@ class DeadCodeElimination(private val logConsumer: (DCELogLevel, String) -> Unit
     }
 
     companion object {
+        /**
+         * Input files are read and parsed in [threads] threads, names are bound in the global scope in the order of [inputFiles].
+         * Output files are printed in parallel as well.
+         *
+         * If [outputCacheFile] is given, it keeps fingerprints of input files together with sets of statements left in them,
+         * and output files which would be printed the same as in the previous run are not printed and written again.
+         *
+         * If [minify] is set, output files are printed without indentation and optional whitespace.
+         */
         fun run(
                 inputFiles: Collection<InputFile>,
                 rootReachableNames: Set<String>,
-                logConsumer: (DCELogLevel, String) -> Unit
+                logConsumer: (DCELogLevel, String) -> Unit,
+                threads: Int = 1,
+                outputCacheFile: File? = null,
+                minify: Boolean = false
         ): DeadCodeEliminationResult {
             val program = JsProgram()
             val dce = DeadCodeElimination(logConsumer)
 
+            val parsedFiles = inputFiles.toList().mapInParallel(threads) { file -> parseFile(file) }
+
             var hasErrors = false
-            val blocks = inputFiles.map { file ->
+            val blocks = inputFiles.zip(parsedFiles).map { (file, parsedFile) ->
+                parsedFile.messages.forEach { (level, message) -> logConsumer(level, message) }
+
                 val block = JsGlobalBlock()
-                val code = file.resource.reader().let { InputStreamReader(it, "UTF-8") }.use { it.readText() }
-                val statements = parse(code, Reporter(file.resource.name, logConsumer), program.scope, file.resource.name) ?: run {
+                val statements = parsedFile.syntaxTree?.toJsStatements(program.scope, file.resource.name) ?: run {
                     hasErrors = true
                     return@map block
                 }
-                val sourceMapParse = file.sourceMapResource
-                        ?.let { SourceMapParser.parse(InputStreamReader(it.reader(), "UTF-8").readText()) }
+                // Syntax trees of all files are not needed at once, only their JS AST
+                parsedFile.syntaxTree = null
+                val sourceMapParse = parsedFile.sourceMap
                 when (sourceMapParse) {
                     is SourceMapError -> {
                         logConsumer(
@@ -112,34 +130,104 @@ class DeadCodeElimination(private val logConsumer: (DCELogLevel, String) -> Unit
             program.globalBlock.statements += blocks
             program.globalBlock.fixForwardNameReferences()
 
+            val outputCache = outputCacheFile?.let { DceOutputCache(it) }
+            val statementIndices = outputCache?.let { blocks.map { EliminationFingerprint.indexStatements(it) } }
+
             dce.reachableNames += rootReachableNames
             dce.apply(program.globalBlock)
 
-            for ((file, block) in inputFiles.zip(blocks)) {
-                val sourceMapFile = File(file.outputPath + ".map")
-                val textOutput = TextOutputImpl()
-                val sourceMapBuilder = SourceMap3Builder(File(file.outputPath), textOutput, "")
+            inputFiles.indices.toList().mapInParallel(threads) { i ->
+                val file = parsedFiles[i].inputFile
+                val block = blocks[i]
+                if (outputCache != null) {
+                    val fingerprint = parsedFiles[i].contentFingerprint + EliminationFingerprint.compute(block, statementIndices!![i]) +
+                                      (if (minify) MINIFIED_FINGERPRINT_SUFFIX else "")
+                    if (outputCache.isUpToDate(file, fingerprint)) return@mapInParallel
+                    printFile(file, block, minify)
+                    outputCache.update(file, fingerprint)
+                }
+                else {
+                    printFile(file, block, minify)
+                }
+            }
+            outputCache?.save(inputFiles)
+
+            return DeadCodeEliminationResult(dce.reachableNodes, DeadCodeEliminationStatus.OK)
+        }
+
+        private class ParsedFile(
+                val inputFile: InputFile,
+                var syntaxTree: SyntaxTreeNode?,
+                val sourceMap: SourceMapParseResult?,
+                val contentFingerprint: String,
+                val messages: List<Pair<DCELogLevel, String>>
+        )
+
+        private fun parseFile(file: InputFile): ParsedFile {
+            val digest = MessageDigest.getInstance("MD5")
+            digest.update(file.resource.name.toByteArray())
+            digest.update(file.outputPath.toByteArray())
+
+            val codeBytes = file.resource.reader().use { it.readBytes() }
+            digest.update(codeBytes)
+            val messages = mutableListOf<Pair<DCELogLevel, String>>()
+            val syntaxTree = parseSyntaxTree(String(codeBytes, Charsets.UTF_8), Reporter(file.resource.name) { level, message ->
+                messages += level to message
+            })
+
+            val sourceMapParse = file.sourceMapResource?.let { resource ->
+                val sourceMapBytes = resource.reader().use { it.readBytes() }
+                digest.update(sourceMapBytes)
+                SourceMapParser.parse(String(sourceMapBytes, Charsets.UTF_8))
+            }
+
+            return ParsedFile(file, syntaxTree, sourceMapParse, digest.digest().toHexString(), messages)
+        }
+
+        // The code and the source map are written as they are printed, so neither of them is kept in memory as a whole
+        private fun printFile(file: InputFile, block: JsBlock, minify: Boolean) {
+            val outputFile = File(file.outputPath)
+            val sourceMapFile = File(file.outputPath + ".map")
+            outputFile.parentFile.mkdirs()
+
+            outputFile.bufferedWriter().use { writer ->
+                val textOutput = TextOutputImpl(writer, minify)
+                val sourceMapBuilder = SourceMap3Builder(outputFile, textOutput, "")
 
                 val inputFile = File(file.resource.name)
                 val sourceBaseDir = if (inputFile.exists()) inputFile.parentFile else File(".")
 
-                val sourcePathResolver = SourceFilePathResolver(emptyList(), File(file.outputPath).parentFile)
+                val sourcePathResolver = SourceFilePathResolver(emptyList(), outputFile.parentFile)
                 val consumer = SourceMapBuilderConsumer(sourceBaseDir, sourceMapBuilder, sourcePathResolver, true, true)
                 block.accept(JsToStringGenerationVisitor(textOutput, consumer))
-                val sourceMapContent = sourceMapBuilder.build()
-                sourceMapBuilder.addLink()
-
-                with(File(file.outputPath)) {
-                    parentFile.mkdirs()
-                    writeText(textOutput.toString())
-                }
 
                 if (file.sourceMapResource != null) {
-                    sourceMapFile.writeText(sourceMapContent)
+                    sourceMapFile.bufferedWriter().use { sourceMapBuilder.build(it) }
                 }
+                sourceMapBuilder.addLink()
+                textOutput.flush()
             }
+        }
 
-            return DeadCodeEliminationResult(dce.reachableNodes, DeadCodeEliminationStatus.OK)
+        private const val MINIFIED_FINGERPRINT_SUFFIX = "-min"
+
+        private fun <T, R> List<T>.mapInParallel(threads: Int, transform: (T) -> R): List<R> {
+            if (threads <= 1 || size <= 1) return map(transform)
+
+            val executor = Executors.newFixedThreadPool(minOf(threads, size))
+            try {
+                return map { executor.submit(Callable { transform(it) }) }.map {
+                    try {
+                        it.get()
+                    }
+                    catch (e: ExecutionException) {
+                        throw e.cause ?: e
+                    }
+                }
+            }
+            finally {
+                executor.shutdownNow()
+            }
         }
 
         private class Reporter(private val fileName: String, private val logConsumer: (DCELogLevel, String) -> Unit) : ErrorReporter {
@@ -69,4 +69,10 @@ public class JSConfigurationKeys {
 
     public static final CompilerConfigurationKey<List<String>> FRIEND_PATHS =
             CompilerConfigurationKey.create("friend module paths");
+
+    public static final CompilerConfigurationKey<Integer> IR_DESERIALIZATION_THREADS =
+            CompilerConfigurationKey.create("number of threads used to parse IR of dependencies");
+
+    public static final CompilerConfigurationKey<File> INLINE_FUNCTION_CACHE_DIR =
+            CompilerConfigurationKey.create("directory of the cache of parsed inline functions of libraries");
 }
@@ -77,6 +77,7 @@ class FunctionReader(
         specialFunctionsProvider: () -> Map<String, SpecialFunction>,
         offsetToSourceMappingProvider: () -> OffsetToSourceMapping,
         sourceMapProvider: () -> SourceMap?,
+        parsedFunctionsProvider: () -> ParsedFunctionCache.LibraryFunctions?,
         val outputDir: File?
     ) {
         val specialFunctions: Map<String, SpecialFunction> by lazy(specialFunctionsProvider)
@@ -85,6 +86,8 @@ class FunctionReader(
 
         val sourceMap: SourceMap? by lazy(sourceMapProvider)
 
+        val parsedFunctions: ParsedFunctionCache.LibraryFunctions? by lazy(parsedFunctionsProvider)
+
         val wrapFunctionRegex by lazy {
             specialFunctions.entries
                 .singleOrNull { (_, v) -> v == SpecialFunction.WRAP_FUNCTION }?.key
@@ -92,6 +95,10 @@ class FunctionReader(
         }
     }
 
+    private val parsedFunctionCache = config.configuration[JSConfigurationKeys.INLINE_FUNCTION_CACHE_DIR]?.let {
+        ParsedFunctionCache.getInstance(it)
+    }
+
     private val moduleNameToInfo by lazy {
         val result = HashMultimap.create<String, ModuleInfo>()
 
@@ -143,6 +150,7 @@ class FunctionReader(
                     specialFunctionsProvider = specialFunctionsProvider,
                     offsetToSourceMappingProvider = { OffsetToSourceMapping(content) },
                     sourceMapProvider = sourceMapProvider,
+                    parsedFunctionsProvider = { parsedFunctionCache?.forLibrary(path, content) },
                     outputDir = file?.parentFile
                 )
 
@@ -261,10 +269,9 @@ class FunctionReader(
             offset += wrapFunctionMatcher!!.end()
         }
 
-        val position = info.offsetToSourceMapping[offset]
-        val jsScope = JsRootScope(JsProgram())
-        val functionExpr = parseFunction(source, info.filePath, position, offset, ThrowExceptionOnErrorReporter, jsScope) ?: return null
-        functionExpr.fixForwardNameReferences()
+        val program = JsProgram()
+        val jsScope = JsRootScope(program)
+        val functionExpr = readParsedFunction(info, offset, program, jsScope) ?: return null
         val (function, wrapper) = if (isWrapped) {
             InlineMetadata.decomposeWrapper(functionExpr) ?: return null
         } else {
@@ -308,6 +315,16 @@ class FunctionReader(
         return FunctionWithWrapper(function, wrapper)
     }
 
+    private fun readParsedFunction(info: ModuleInfo, offset: Int, program: JsProgram, jsScope: JsScope): JsFunction? {
+        info.parsedFunctions?.read(offset, program)?.let { return it }
+
+        val position = info.offsetToSourceMapping[offset]
+        val functionExpr = parseFunction(info.fileContent, info.filePath, position, offset, ThrowExceptionOnErrorReporter, jsScope) ?: return null
+        functionExpr.fixForwardNameReferences()
+        info.parsedFunctions?.write(offset, functionExpr)
+        return functionExpr
+    }
+
     private fun markSpecialFunctions(function: JsFunction, allDefinedNames: Set<JsName>, info: ModuleInfo, scope: JsScope) {
         for (externalName in (collectReferencedNames(function) - allDefinedNames)) {
             info.specialFunctions[externalName.ident]?.let {
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.inline
+
+import com.intellij.util.containers.SLRUCache
+import org.jetbrains.kotlin.js.backend.ast.JsExpressionStatement
+import org.jetbrains.kotlin.js.backend.ast.JsFunction
+import org.jetbrains.kotlin.js.backend.ast.JsProgram
+import org.jetbrains.kotlin.js.backend.ast.JsProgramFragment
+import org.jetbrains.kotlin.serialization.js.ast.JsAstDeserializer
+import org.jetbrains.kotlin.serialization.js.ast.JsAstSerializer
+import java.io.*
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.CRC32
+
+/**
+ * Persistent cache of functions parsed by [FunctionReader] from JS libraries.
+ *
+ * Functions are kept in the JsAstProtoBuf format as they are right after parsing, everything that depends on a compilation
+ * (source map remapping, inline metadata) is still computed by [FunctionReader]. Functions of each library file are stored
+ * in a separate file named after the hash of the library file path and content, so changed libraries never get stale functions.
+ *
+ * Caches are shared between compilations running in the same process, e.g. in the daemon.
+ */
+class ParsedFunctionCache private constructor(private val directory: File) {
+    // Libraries which are not used anymore (e.g. older versions of a changed library) are evicted one by one,
+    // an evicted library which is still used by a compilation is loaded from its file again
+    private val libraries = object : SLRUCache<String, LibraryFunctions>(MAX_LIBRARIES_IN_MEMORY / 2, MAX_LIBRARIES_IN_MEMORY / 2) {
+        override fun createValue(hash: String) = LibraryFunctions(File(directory, "$hash.$VERSION"))
+    }
+
+    fun forLibrary(path: String, content: String): LibraryFunctions {
+        val hash = libraryHash(path, content)
+        return synchronized(libraries) { libraries.get(hash) }
+    }
+
+    /**
+     * Functions of a library file keyed by their offsets in it.
+     *
+     * New functions are appended to the end of the file, so a crashed or concurrent compilation can only leave a truncated
+     * last record. Records are checked against their checksums, a damaged record and everything after it are ignored,
+     * and the file is rewritten from scratch with the next function, so it doesn't stay damaged.
+     */
+    class LibraryFunctions internal constructor(private val file: File) {
+        @Volatile
+        private var isDamaged = false
+
+        private val functions: MutableMap<Int, ByteArray> by lazy { load() }
+
+        fun read(offset: Int, program: JsProgram): JsFunction? {
+            val data = functions[offset] ?: return null
+            val fragment = JsAstDeserializer(program, emptyList()).deserialize(ByteArrayInputStream(data))
+            return (fragment.declarationBlock.statements.singleOrNull() as? JsExpressionStatement)?.expression as? JsFunction
+        }
+
+        fun write(offset: Int, function: JsFunction) {
+            if (offset in functions) return
+
+            val fragment = JsProgramFragment(JsProgram().scope, "")
+            fragment.declarationBlock.statements += JsExpressionStatement(function)
+            val data = JsAstSerializer(null) { it.path }.serialize(fragment).toByteArray()
+            if (functions.putIfAbsent(offset, data) != null) return
+
+            try {
+                synchronized(this) {
+                    file.parentFile.mkdirs()
+                    if (isDamaged) {
+                        rewrite()
+                    }
+                    else {
+                        FileOutputStream(file, true).use { it.write(record(offset, data)) }
+                    }
+                }
+            }
+            catch (e: IOException) {
+                // The function is parsed again by the next compilation
+            }
+        }
+
+        // The file is replaced at once, so other compilations read either the old or the new one
+        private fun rewrite() {
+            val tmpFile = File.createTempFile(file.name, ".tmp", file.parentFile)
+            try {
+                FileOutputStream(tmpFile).buffered().use { output ->
+                    for ((offset, data) in functions) {
+                        output.write(record(offset, data))
+                    }
+                }
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+                isDamaged = false
+            }
+            finally {
+                tmpFile.delete()
+            }
+        }
+
+        private fun load(): MutableMap<Int, ByteArray> {
+            val result = ConcurrentHashMap<Int, ByteArray>()
+            if (!file.exists()) return result
+
+            try {
+                DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                    while (input.available() > 0) {
+                        val offset = input.readInt()
+                        val size = input.readInt()
+                        val checksum = input.readInt()
+                        if (size < 0 || size > input.available()) {
+                            isDamaged = true
+                            break
+                        }
+
+                        val data = ByteArray(size)
+                        input.readFully(data)
+                        if (checksum(data) != checksum) {
+                            isDamaged = true
+                            break
+                        }
+                        result[offset] = data
+                    }
+                }
+            }
+            catch (e: IOException) {
+                // Records read before a truncated one are still valid
+                isDamaged = true
+            }
+            return result
+        }
+
+        private fun record(offset: Int, data: ByteArray): ByteArray {
+            val record = ByteArrayOutputStream(data.size + 12)
+            DataOutputStream(record).use {
+                it.writeInt(offset)
+                it.writeInt(data.size)
+                it.writeInt(checksum(data))
+                it.write(data)
+            }
+            return record.toByteArray()
+        }
+
+        private fun checksum(data: ByteArray): Int = CRC32().apply { update(data) }.value.toInt()
+    }
+
+    companion object {
+        private const val VERSION = 2
+        private const val MAX_LIBRARIES_IN_MEMORY = 64
+
+        private val caches = ConcurrentHashMap<File, ParsedFunctionCache>()
+
+        @JvmStatic
+        fun getInstance(directory: File): ParsedFunctionCache =
+            caches.getOrPut(directory.absoluteFile) { ParsedFunctionCache(directory.absoluteFile) }
+
+        private fun libraryHash(path: String, content: String): String {
+            val digest = MessageDigest.getInstance("MD5")
+            digest.update(path.toByteArray(Charsets.UTF_8))
+            digest.update(0)
+            digest.update(content.toByteArray(Charsets.UTF_8))
+            return digest.digest().joinToString("") { (it.toInt() and 0xFF).toString(16).padStart(2, '0') }
+        }
+    }
+}
@@ -24,12 +24,21 @@ import java.io.StringReader
 
 fun parse(code: String, reporter: ErrorReporter, scope: JsScope, fileName: String): List<JsStatement>? {
     val insideFunction = scope is JsFunctionScope
-    val node = parse(code, CodePosition(0, 0), 0, reporter, insideFunction, Parser::parse)
-    return node?.toJsAst(scope, fileName) {
-        mapStatements(it)
-    }
+    return parseSyntaxTree(code, reporter, insideFunction)?.toJsStatements(scope, fileName)
 }
 
+/**
+ * The first half of [parse], which doesn't touch any JS scope, so it may run for several files in parallel.
+ * The result should be converted with [toJsStatements] in the thread which owns the scope.
+ */
+fun parseSyntaxTree(code: String, reporter: ErrorReporter, insideFunction: Boolean = false): Node? =
+        parse(code, CodePosition(0, 0), 0, reporter, insideFunction, Parser::parse)
+
+fun Node.toJsStatements(scope: JsScope, fileName: String): List<JsStatement> =
+        toJsAst(scope, fileName) {
+            mapStatements(it)
+        }
+
 fun parseExpressionOrStatement(
         code: String,
         reporter: ErrorReporter, scope: JsScope,
@@ -87,25 +87,7 @@ data class JsonString(val value: String) : JsonNode() {
     override fun write(writer: Writer) {
         writer.append('"')
         for (c in value) {
-            when (c) {
-                '\\' -> writer.append("\\\\")
-                '"' -> writer.append("\\\"")
-                '\r' -> writer.append("\\r")
-                '\n' -> writer.append("\\n")
-                '\t' -> writer.append("\\t")
-                '\b' -> writer.append("\\b")
-                '\u000C' -> writer.append("\\f")
-                in ' '..126.toChar() -> writer.append(c)
-                else -> {
-                    writer.append("\\u")
-                    var shift = 16
-                    repeat(4) {
-                        shift -= 4
-                        val digit = (c.toInt() ushr shift) and 0xF
-                        writer.append(if (digit < 10) (digit + '0'.toInt()).toChar() else (digit - 10 + 'a'.toInt()).toChar())
-                    }
-                }
-            }
+            writer.appendEscaped(c)
         }
         writer.append('"')
     }
@@ -113,6 +95,44 @@ data class JsonString(val value: String) : JsonNode() {
     override fun toString(): String = super.toString()
 }
 
+/**
+ * Writes characters read from [reader] as a JSON string, without keeping all of them in memory
+ */
+fun writeJsonString(reader: Reader, writer: Writer) {
+    val buffer = CharArray(8192)
+    writer.append('"')
+    while (true) {
+        val count = reader.read(buffer)
+        if (count < 0) break
+        for (i in 0 until count) {
+            writer.appendEscaped(buffer[i])
+        }
+    }
+    writer.append('"')
+}
+
+private fun Writer.appendEscaped(c: Char) {
+    when (c) {
+        '\\' -> append("\\\\")
+        '"' -> append("\\\"")
+        '\r' -> append("\\r")
+        '\n' -> append("\\n")
+        '\t' -> append("\\t")
+        '\b' -> append("\\b")
+        '\u000C' -> append("\\f")
+        in ' '..126.toChar() -> append(c)
+        else -> {
+            append("\\u")
+            var shift = 16
+            repeat(4) {
+                shift -= 4
+                val digit = (c.toInt() ushr shift) and 0xF
+                append(if (digit < 10) (digit + '0'.toInt()).toChar() else (digit - 10 + 'a'.toInt()).toChar())
+            }
+        }
+    }
+}
+
 data class JsonNumber(val value: Double) : JsonNode() {
     override fun write(writer: Writer) {
         if (value.toLong().toDouble() == value) {
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.test
+
+import org.jetbrains.kotlin.js.dce.DeadCodeElimination
+import org.jetbrains.kotlin.js.dce.DeadCodeEliminationStatus
+import org.jetbrains.kotlin.js.dce.InputFile
+import org.jetbrains.kotlin.js.dce.InputResource
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Test
+import java.io.File
+
+class DceOutputCacheTest {
+    @Test
+    fun unchangedOutputIsNotWrittenAgain() {
+        val dir = KotlinTestUtils.tmpDir("dceOutputCache")
+        val inputs = listOf("a", "b").map { name ->
+            val input = File(dir, "$name.js")
+            input.writeText(
+                """
+                (function(_) {
+                    function used() { return "used"; }
+                    function unused() { return "unused"; }
+                    _.used = used;
+                    _.unused = unused;
+                })(module.exports);
+                """.trimIndent()
+            )
+            InputFile(InputResource.file(input.path), null, File(dir, "out/$name.js").path, name)
+        }
+        val cacheFile = File(dir, "out/.cache")
+
+        fun runDce(vararg reachableNames: String) {
+            val result = DeadCodeElimination.run(inputs, reachableNames.toSet(), { _, _ -> }, threads = 2, outputCacheFile = cacheFile)
+            assertEquals(DeadCodeEliminationStatus.OK, result.status)
+        }
+
+        runDce("a.used", "b.used")
+        val output = File(inputs[0].outputPath)
+        val expected = output.readText()
+
+        // The same length and modification time, so it can only be left as is if the output is known to be up to date
+        val lastModified = output.lastModified()
+        val stub = expected.map { if (it.isWhitespace()) it else '_' }.joinToString("")
+        output.writeText(stub)
+        output.setLastModified(lastModified)
+
+        runDce("a.used", "b.used")
+        assertEquals(stub, output.readText())
+
+        runDce("a.used", "a.unused", "b.used")
+        assertNotEquals(stub, output.readText())
+        assertNotEquals(expected, output.readText())
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.test
+
+import com.intellij.openapi.util.Disposer
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
+import org.jetbrains.kotlin.config.CompilerConfiguration
+import org.jetbrains.kotlin.ir.backend.js.loadIr
+import org.jetbrains.kotlin.ir.backend.js.loadKlib
+import org.jetbrains.kotlin.ir.util.ExternalDependenciesGenerator
+import org.jetbrains.kotlin.ir.util.dump
+import org.jetbrains.kotlin.js.config.JSConfigurationKeys
+import org.jetbrains.kotlin.psi.KtPsiFactory
+import org.jetbrains.kotlin.test.testFramework.KtUsefulTestCase
+import org.jetbrains.kotlin.util.PhaseMeasurements
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class IrDeserializationTest {
+    private val runtimeKlib = loadKlib("compiler/ir/serialization.js/build/fullRuntime/klib")
+
+    @Test
+    fun testDeclarationsParsedInParallelAreLinkedAsSequentially() {
+        assertEquals(loadIrWithDependencies(deserializationThreads = 1), loadIrWithDependencies(deserializationThreads = 4))
+    }
+
+    // Returns dumps of the module and of all deserialized declarations of its dependencies
+    private fun loadIrWithDependencies(deserializationThreads: Int): String {
+        val disposable = Disposer.newDisposable()
+        try {
+            val environment =
+                KotlinCoreEnvironment.createForTests(disposable, CompilerConfiguration(), EnvironmentConfigFiles.JS_CONFIG_FILES)
+            val configuration = environment.configuration.copy()
+            configuration.put(CommonConfigurationKeys.MODULE_NAME, "test")
+            configuration.put(JSConfigurationKeys.IR_DESERIALIZATION_THREADS, deserializationThreads)
+            val file = KtPsiFactory(environment.project).createFile("test.kt", SOURCE)
+
+            val (moduleFragment, dependencyModules, irBuiltIns, symbolTable, deserializer) =
+                loadIr(environment.project, listOf(file), configuration, listOf(runtimeKlib), emptyList())
+            for (module in dependencyModules) {
+                ExternalDependenciesGenerator(module.descriptor, symbolTable, irBuiltIns, deserializer = deserializer)
+                    .generateUnboundSymbolsAsDependencies()
+            }
+
+            // Declarations are only parsed in parallel in rounds of at least 8 reachable declarations
+            val measurements = PhaseMeasurements().also { deserializer.reportDeserializationStatistics(it) }.getMeasurements()
+            assertTrue(measurements.sumBy { it.count } > 100)
+
+            return (listOf(moduleFragment) + dependencyModules).joinToString("\n") { it.dump() }
+        } finally {
+            Disposer.dispose(disposable)
+            KtUsefulTestCase.resetApplicationToNull()
+        }
+    }
+
+    companion object {
+        private val SOURCE = """
+            fun test(): String {
+                val numbers = listOf(3, 1, 2).sorted().map { it * 2 }.filter { it > 1 }.toMutableList()
+                val names = mutableMapOf("a" to numbers.size, "b" to numbers.sum()).mapValues { it.value.toString() }
+                return numbers.joinToString() + names + StringBuilder("abc").reverse() + "xyz".toUpperCase().padStart(5)
+            }
+        """.trimIndent()
+    }
+}
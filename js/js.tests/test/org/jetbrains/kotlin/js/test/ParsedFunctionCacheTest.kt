@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.test
+
+import com.google.gwt.dev.js.ThrowExceptionOnErrorReporter
+import com.google.gwt.dev.js.rhino.CodePosition
+import org.jetbrains.kotlin.js.backend.ast.*
+import org.jetbrains.kotlin.js.inline.ParsedFunctionCache
+import org.jetbrains.kotlin.js.inline.util.fixForwardNameReferences
+import org.jetbrains.kotlin.js.parser.parseFunction
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+import java.util.*
+
+class ParsedFunctionCacheTest {
+    private val library = """
+        var lib = function (_) {
+            'use strict';
+            function foo(a, b) {
+                var sum = a + b;
+                return function (c) {
+                    return sum * c + bar();
+                };
+            }
+            function bar() {
+                return "bar";
+            }
+            _.foo = foo;
+            return _;
+        }(module.exports);
+        """.trimIndent()
+
+    private val fooOffset = library.indexOf("function foo")
+    private val barOffset = library.indexOf("function bar")
+
+    @Test
+    fun functionReadFromCacheIsTheSameAsParsed() {
+        val dir = KotlinTestUtils.tmpDir("parsedFunctionCache")
+        ParsedFunctionCache.getInstance(dir).forLibrary(LIBRARY_PATH, library).write(fooOffset, parse(library, fooOffset))
+
+        // Another directory with the same files gets a new cache instance, so functions are read from the files
+        val copy = copyCache(dir)
+        val cached = ParsedFunctionCache.getInstance(copy).forLibrary(LIBRARY_PATH, library).read(fooOffset, JsProgram())
+        assertNotNull(cached)
+        assertSameFunction(parse(library, fooOffset), cached!!)
+    }
+
+    @Test
+    fun functionsOfChangedLibraryAreNotRead() {
+        val dir = KotlinTestUtils.tmpDir("parsedFunctionCache")
+        val cache = ParsedFunctionCache.getInstance(dir)
+        cache.forLibrary(LIBRARY_PATH, library).write(fooOffset, parse(library, fooOffset))
+
+        // The function starts at the same offset, but is different
+        val changedLibrary = library.replace("a + b", "a - b")
+        assertNull(cache.forLibrary(LIBRARY_PATH, changedLibrary).read(fooOffset, JsProgram()))
+        assertNull(ParsedFunctionCache.getInstance(copyCache(dir)).forLibrary(LIBRARY_PATH, changedLibrary).read(fooOffset, JsProgram()))
+
+        // The same content at another path is another library
+        assertNull(cache.forLibrary("other/$LIBRARY_PATH", library).read(fooOffset, JsProgram()))
+        assertNotNull(cache.forLibrary(LIBRARY_PATH, library).read(fooOffset, JsProgram()))
+    }
+
+    @Test
+    fun truncatedRecordIsIgnored() {
+        val dir = KotlinTestUtils.tmpDir("parsedFunctionCache")
+        val functions = ParsedFunctionCache.getInstance(dir).forLibrary(LIBRARY_PATH, library)
+        functions.write(fooOffset, parse(library, fooOffset))
+        functions.write(barOffset, parse(library, barOffset))
+
+        val copy = copyCache(dir)
+        val cacheFile = copy.listFiles()!!.single()
+        cacheFile.writeBytes(cacheFile.readBytes().let { it.copyOf(it.size - 3) })
+
+        val cached = ParsedFunctionCache.getInstance(copy).forLibrary(LIBRARY_PATH, library)
+        assertNotNull(cached.read(fooOffset, JsProgram()))
+        assertNull(cached.read(barOffset, JsProgram()))
+
+        // The function is written again after the truncated record and is read by the next compilation
+        cached.write(barOffset, parse(library, barOffset))
+        val recovered = ParsedFunctionCache.getInstance(copyCache(copy)).forLibrary(LIBRARY_PATH, library)
+        assertNotNull(recovered.read(fooOffset, JsProgram()))
+        assertNotNull(recovered.read(barOffset, JsProgram()))
+    }
+
+    @Test
+    fun evictedLibraryIsLoadedAgain() {
+        val dir = KotlinTestUtils.tmpDir("parsedFunctionCache")
+        val cache = ParsedFunctionCache.getInstance(dir)
+        val functions = cache.forLibrary(LIBRARY_PATH, library)
+        functions.write(fooOffset, parse(library, fooOffset))
+
+        repeat(200) { cache.forLibrary("lib$it.js", library) }
+
+        val reloaded = cache.forLibrary(LIBRARY_PATH, library)
+        assertNotSame(functions, reloaded)
+        assertSameFunction(parse(library, fooOffset), reloaded.read(fooOffset, JsProgram())!!)
+    }
+
+    @Test
+    fun usedLibraryIsNotEvictedByOtherLibraries() {
+        val cache = ParsedFunctionCache.getInstance(KotlinTestUtils.tmpDir("parsedFunctionCache"))
+        val functions = cache.forLibrary(LIBRARY_PATH, library)
+
+        repeat(200) {
+            cache.forLibrary("lib$it.js", library)
+            assertSame(functions, cache.forLibrary(LIBRARY_PATH, library))
+        }
+    }
+
+    private fun parse(code: String, offset: Int): JsFunction {
+        val line = code.substring(0, offset).count { it == '\n' }
+        val position = CodePosition(line, offset - code.lastIndexOf('\n', offset - 1) - 1)
+        val function = parseFunction(code, LIBRARY_PATH, position, offset, ThrowExceptionOnErrorReporter, JsRootScope(JsProgram()))!!
+        function.fixForwardNameReferences()
+        return function
+    }
+
+    private fun copyCache(dir: File): File {
+        val copy = KotlinTestUtils.tmpDir("parsedFunctionCacheCopy")
+        dir.copyRecursively(copy, overwrite = true)
+        return copy
+    }
+
+    private fun assertSameFunction(expected: JsFunction, actual: JsFunction) {
+        assertEquals(expected.toString(), actual.toString())
+        assertEquals(describe(expected), describe(actual))
+    }
+
+    // Lists nodes with their source locations and names, the same name objects get the same numbers
+    private fun describe(function: JsFunction): List<String> {
+        val result = mutableListOf<String>()
+        val nameNumbers = IdentityHashMap<JsName, Int>()
+        function.accept(object : RecursiveJsVisitor() {
+            override fun visitElement(node: JsNode) {
+                val name = (node as? HasName)?.name?.let { "${it.ident}#${nameNumbers.getOrPut(it) { nameNumbers.size }}" }
+                result += "${node.javaClass.simpleName} ${node.source} $name"
+                super.visitElement(node)
+            }
+        })
+        return result
+    }
+
+    companion object {
+        private const val LIBRARY_PATH = "lib.js"
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.test
+
+import com.google.gwt.dev.js.ThrowExceptionOnErrorReporter
+import org.jetbrains.kotlin.js.backend.JsToStringGenerationVisitor
+import org.jetbrains.kotlin.js.backend.ast.JsGlobalBlock
+import org.jetbrains.kotlin.js.backend.ast.JsProgram
+import org.jetbrains.kotlin.js.facade.SourceMapBuilderConsumer
+import org.jetbrains.kotlin.js.parser.parse
+import org.jetbrains.kotlin.js.sourceMap.SourceFilePathResolver
+import org.jetbrains.kotlin.js.sourceMap.SourceMap3Builder
+import org.jetbrains.kotlin.js.util.TextOutputImpl
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Test
+import java.io.File
+import java.io.StringWriter
+
+class StreamingOutputTest {
+    // Long enough to be written to the writer in several chunks
+    private val code = (1..500).joinToString("\n") { i ->
+        """
+        function foo$i(a, b) {
+            if (a > b) {
+                return "a$i";
+            }
+            return [a, b, { x: $i }];
+        }
+        """.trimIndent()
+    }
+
+    @Test
+    fun streamedOutputIsTheSameAsInMemoryOne() {
+        val (inMemoryCode, inMemorySourceMap) = print(null, compact = false)
+        val writer = StringWriter()
+        val (_, streamedSourceMap) = print(writer, compact = false)
+
+        assertEquals(inMemoryCode, writer.toString())
+        assertEquals(inMemorySourceMap, streamedSourceMap)
+    }
+
+    @Test
+    fun compactOutput() {
+        val writer = StringWriter()
+        print(writer, compact = true)
+        val compactCode = writer.toString()
+
+        assertFalse(compactCode.contains("  "))
+        assertEquals(print(null, compact = false).first.filterNot { it.isWhitespace() }, compactCode.filterNot { it.isWhitespace() })
+    }
+
+    private fun print(writer: StringWriter?, compact: Boolean): Pair<String, String> {
+        val program = JsProgram()
+        val block = JsGlobalBlock()
+        block.statements += parse(code, ThrowExceptionOnErrorReporter, program.scope, "test.kt")!!
+
+        val output = TextOutputImpl(writer, compact)
+        val sourceMapBuilder = SourceMap3Builder(File("test.js"), output, "")
+        val consumer = SourceMapBuilderConsumer(File("."), sourceMapBuilder, SourceFilePathResolver(mutableListOf()), false, false)
+        block.accept(JsToStringGenerationVisitor(output, consumer))
+        output.flush()
+
+        val sourceMap = if (writer != null) StringWriter().also { sourceMapBuilder.build(it) }.toString() else sourceMapBuilder.build()
+        return output.toString() to sourceMap
+    }
+}
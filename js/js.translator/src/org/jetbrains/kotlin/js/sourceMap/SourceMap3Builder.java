@@ -18,14 +18,12 @@ package org.jetbrains.kotlin.js.sourceMap;
 
 import com.intellij.openapi.util.text.StringUtil;
 import gnu.trove.TObjectIntHashMap;
-import kotlin.io.TextStreamsKt;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.js.parser.sourcemaps.*;
 import org.jetbrains.kotlin.js.util.TextOutput;
 
-import java.io.File;
-import java.io.Reader;
+import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Supplier;
@@ -70,32 +68,60 @@ public class SourceMap3Builder implements SourceMapBuilder {
 
     @Override
     public String build() {
-        @SuppressWarnings("unchecked")
-        JsonObject json = new JsonObject();
-        json.getProperties().put("version", new JsonNumber(3));
-        json.getProperties().put("file", new JsonString(generatedFile.getName()));
-        appendSources(json);
-        appendSourcesContent(json);
-        json.getProperties().put("names", new JsonArray());
-        json.getProperties().put("mappings", new JsonString(out.toString()));
-        return json.toString();
+        StringWriter writer = new StringWriter();
+        try {
+            build(writer);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the source map as it is built by {@link #build()}, but reads embedded sources one by one,
+     * so neither they nor the whole source map are kept in memory.
+     */
+    @Override
+    public void build(@NotNull Writer writer) throws IOException {
+        writer.append("{\"version\":3,\"file\":");
+        new JsonString(generatedFile.getName()).write(writer);
+        writer.append(",\"sources\":");
+        writeSources(writer);
+        writer.append(",\"sourcesContent\":");
+        writeSourcesContent(writer);
+        // Mappings consist of Base64 digits and separators only, so they don't need escaping
+        writer.append(",\"names\":[],\"mappings\":\"").append(out).append("\"}");
     }
 
-    private void appendSources(JsonObject json) {
+    private void writeSources(Writer writer) {
         JsonArray array = new JsonArray();
         for (String source : orderedSources) {
             array.getElements().add(new JsonString(pathPrefix + source));
         }
-        json.getProperties().put("sources", array);
+        array.write(writer);
     }
 
-    private void appendSourcesContent(JsonObject json) {
-        JsonArray array = new JsonArray();
-        for (Supplier<Reader> contentSupplier : orderedSourceContentSuppliers) {
-            Reader reader = contentSupplier.get();
-            array.getElements().add(reader != null ? new JsonString(TextStreamsKt.readText(reader)) : JsonNull.INSTANCE);
+    private void writeSourcesContent(Writer writer) throws IOException {
+        writer.append('[');
+        for (int i = 0; i < orderedSourceContentSuppliers.size(); i++) {
+            if (i > 0) {
+                writer.append(',');
+            }
+            Reader reader = orderedSourceContentSuppliers.get(i).get();
+            if (reader != null) {
+                try {
+                    JSONKt.writeJsonString(reader, writer);
+                }
+                finally {
+                    reader.close();
+                }
+            }
+            else {
+                JsonNull.INSTANCE.write(writer);
+            }
         }
-        json.getProperties().put("sourcesContent", array);
+        writer.append(']');
     }
 
     @Override
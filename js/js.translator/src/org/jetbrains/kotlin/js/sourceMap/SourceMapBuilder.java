@@ -17,6 +17,8 @@
 package org.jetbrains.kotlin.js.sourceMap;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
 
 public interface SourceMapBuilder extends SourceMapMappingConsumer {
     void skipLinesAtBeginning(int count);
@@ -26,4 +28,6 @@ public interface SourceMapBuilder extends SourceMapMappingConsumer {
     File getOutFile();
 
     String build();
+
+    void build(Writer writer) throws IOException;
 }